@@ -559,7 +559,7 @@ public class BookRecommenderApp extends Application {
         try {
             // Verifica connessione server prima di iniziare
             logger.info(resolveString("%app.connection.check"));
-            ServiceLocator.getBookService().searchGlobally(); // Test connessione semplice
+            ServiceLocator.getBookService().getTotalBooksCount(); // Test connessione senza scaricare il catalogo
             logger.info(resolveString("%app.connection.established"));
 
             BookServiceManager bookManager = BookServiceManager.getInstance();
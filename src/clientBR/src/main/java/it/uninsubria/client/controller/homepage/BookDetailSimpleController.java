@@ -76,9 +76,36 @@ public class BookDetailSimpleController extends ControllerBase implements Parame
     public void setBook(Book book) {
         this.currentBook = book;
         populateBookDetails();
+        loadFullDetailsIfPartial();
         loadBookSuggestions();
     }
 
+    /**
+     * I libri arrivati da liste e ricerche (BookSummary) non hanno i campi di dettaglio:
+     * in quel caso il libro completo viene caricato su richiesta.
+     */
+    private void loadFullDetailsIfPartial() {
+        Book book = currentBook;
+        if (book == null || book.getDescription() != null || book.getPublisher() != null || book.getPrice() != null) {
+            return;
+        }
+
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return ServiceLocator.getBookService().getBookDetails(book.getBook_id());
+            } catch (Exception e) {
+                logger.warning("Errore nel caricamento dettagli libro: " + e.getMessage());
+                return null;
+            }
+        }).thenAccept(fullBook -> Platform.runLater(() -> {
+            // Ignora la risposta se nel frattempo è stato selezionato un altro libro
+            if (fullBook != null && currentBook == book) {
+                currentBook = fullBook;
+                populateBookDetails();
+            }
+        }));
+    }
+
     /**
      * Popola l'interfaccia con i dettagli del libro
      */
@@ -239,22 +239,19 @@ public class CategoriesController extends ControllerBase implements Initializabl
         // 🚀 CARICAMENTO ASINCRONO: Non bloccare il thread UI!
         long startTime = System.currentTimeMillis();
         CompletableFuture.supplyAsync(() -> {
-            // ⚡ Prima prova: categorie già pre-calcolate (istantaneo)
-            Map<String, List<Book>> categoryIndex = ControllerDesign.getCategories();
+            // ⚡ Conteggi calcolati dal server: nessun bisogno di scaricare il catalogo
+            Map<String, Integer> categoryCounts = ControllerDesign.getCategoryCounts();
 
             long indexRetrievalTime = System.currentTimeMillis();
-            logger.fine("Category index retrieval time: " + (indexRetrievalTime - startTime) + "ms");
+            logger.fine("Category counts retrieval time: " + (indexRetrievalTime - startTime) + "ms");
 
-            // Se non ci sono categorie, dobbiamo calcolarle (fallback asincrono)
-            if (categoryIndex.isEmpty()) {
-                logger.warning("Categories not pre-calculated, computing asynchronously...");
-                categoryIndex = ControllerDesign.getCategoriesFallback();
-                logger.info("Categories computed in background: " + categoryIndex.size() + " categories");
-            }
+            // L'anteprima usa i libri locali solo se l'indice è già stato costruito
+            Map<String, List<Book>> categoryIndex = ControllerDesign.getCategoryIndex();
 
             // Crea le card in background
-            List<CategoryCard> categoryCards = categoryIndex.entrySet().stream()
-                .map(entry -> new CategoryCard(entry.getKey(), entry.getValue()))
+            List<CategoryCard> categoryCards = categoryCounts.entrySet().stream()
+                .map(entry -> new CategoryCard(entry.getKey(), entry.getValue(),
+                    categoryIndex.getOrDefault(entry.getKey(), List.of())))
                 .collect(Collectors.toList());
 
             long cardsCreationTime = System.currentTimeMillis();
@@ -534,6 +531,7 @@ public class CategoriesController extends ControllerBase implements Initializabl
      */
     private class CategoryCard {
         private final String categoryName;
+        private final int bookCount;
         private final List<Book> books;
         private final VBox card;
 
@@ -541,10 +539,12 @@ public class CategoriesController extends ControllerBase implements Initializabl
          * Creates a new category card with the specified category name and books.
          *
          * @param categoryName the name of the category
-         * @param books the list of books in this category
+         * @param bookCount the number of books in this category
+         * @param books books of this category available locally for the preview, possibly none
          */
-        public CategoryCard(String categoryName, List<Book> books) {
+        public CategoryCard(String categoryName, int bookCount, List<Book> books) {
             this.categoryName = categoryName;
+            this.bookCount = bookCount;
             this.books = books;
             this.card = createCard();
         }
@@ -561,7 +561,7 @@ public class CategoriesController extends ControllerBase implements Initializabl
             nameLabel.setWrapText(true);
 
             // Book count
-            Label countLabel = new Label(books.size() + " " + resolveString("%categories.books"));
+            Label countLabel = new Label(bookCount + " " + resolveString("%categories.books"));
             countLabel.setFont(Font.font("System", 12));
             countLabel.getStyleClass().add("categoriesTextSecondary");
 
@@ -635,7 +635,7 @@ public class CategoriesController extends ControllerBase implements Initializabl
          * @return the book count
          */
         public int getBookCount() {
-            return books.size();
+            return bookCount;
         }
 
         /**
@@ -8,6 +8,8 @@ import it.uninsubria.client.utils.classesUI.ParametrizedController;
 import it.uninsubria.client.utils.classesUI.ServiceLocator;
 import it.uninsubria.client.utils.classesUI.ThreadPoolManager;
 import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.CategoryPage;
+import it.uninsubria.shared.model.CategorySort;
 import it.uninsubria.shared.model.Library;
 import it.uninsubria.shared.utils.AppConstants;
 import it.uninsubria.shared.utils.LoggerUtil;
@@ -47,7 +49,7 @@ import org.kordamp.ikonli.javafx.FontIcon;
  * <p>Performance optimizations include:
  * <ul>
  * <li>Caching of category books</li>
- * <li>Asynchronous loading</li>
+ * <li>Asynchronous loading, one server page at a time</li>
  * <li>Virtualized list view with fixed cell size</li>
  * </ul>
  *
@@ -70,9 +72,16 @@ public class CategoryDetailController extends ControllerBase implements Initiali
 
     // Performance optimizations
     private static final long CATEGORY_CACHE_DURATION = AppConstants.Time.TIMEOUT_10_MINUTES;
+    private static final int CATEGORY_PAGE_SIZE = 50;
     private boolean booksLoaded = false;
     private long lastBooksLoadTime = 0;
 
+    // Paginazione lato server: le pagine arrivano già ordinate
+    private volatile boolean serverPaging = false;
+    private String nextCursor;
+    private boolean loadingPage = false;
+    private int categoryTotal = 0;
+
     @FXML private VBox mainContainer;
     @FXML private Label categoryTitleLabel;
     @FXML private Label statsLabel;
@@ -237,8 +246,19 @@ public class CategoryDetailController extends ControllerBase implements Initiali
 
         // ⚡ CARICAMENTO ASINCRONO: Non bloccare il thread UI!
         long startTime = System.currentTimeMillis();
+        String category = currentCategory;
+        String query = searchQuery();
+        CategorySort sort = toCategorySort(sortComboBox.getValue());
         CompletableFuture.supplyAsync(() -> {
             try {
+                // Prima pagina dal server, già filtrata dalla ricerca: non serve il catalogo completo
+                CategoryPage firstPage = loadServerPage(category, query, sort, null);
+                serverPaging = firstPage != null;
+                if (firstPage != null) {
+                    return firstPage;
+                }
+
+                // Fallback: indice locale delle categorie, costruito su tutti i libri
                 Map<String, List<Book>> categoryIndex = ControllerDesign.getCategories();
                 // Cerca la categoria ignorando maiuscole/minuscole
                 String searchKey = currentCategory.toLowerCase();
@@ -250,19 +270,28 @@ public class CategoryDetailController extends ControllerBase implements Initiali
                     }
                 }
                 logger.fine("Retrieved " + books.size() + " books for category: " + currentCategory);
-                return books;
+                return new CategoryPage(books, null, books.size());
             } catch (Exception e) {
                 logger.log(java.util.logging.Level.SEVERE, "Error loading books for category: " + currentCategory, e);
                 throw new RuntimeException(e);
             }
-        }).thenAccept(books -> {
+        }).thenAccept(page -> {
             // 🎯 AGGIORNA UI NEL THREAD JAVAFX
             Platform.runLater(() -> {
                 try {
-                    categoryBooks.setAll(books);
+                    // Una risposta arrivata dopo un cambio di categoria o di ricerca va scartata
+                    if (!category.equals(currentCategory) || !Objects.equals(query, searchQuery())) {
+                        return;
+                    }
+                    nextCursor = page.getNextCursor();
+                    categoryTotal = page.getTotalBooks();
+                    loadingPage = false;
+                    sortedBooks.setComparator(serverPaging ? null : getComparatorForSortOption(sortComboBox.getValue()));
+                    categoryBooks.setAll(page.getBooks());
 
                     long totalTime = System.currentTimeMillis() - startTime;
-                    logger.info("Category books loaded in " + totalTime + "ms (" + books.size() + " books for " + currentCategory + ")");
+                    logger.info("Category books loaded in " + totalTime + "ms (" + page.getBooks().size() + " of "
+                        + categoryTotal + " books for " + currentCategory + ")");
 
                     // Aggiorna cache
                     booksLoaded = true;
@@ -285,6 +314,80 @@ public class CategoryDetailController extends ControllerBase implements Initiali
         });
     }
 
+    /**
+     * Richiede una pagina della categoria al server.
+     *
+     * @return la pagina, o null se il server non la fornisce e serve l'indice locale
+     */
+    private CategoryPage loadServerPage(String category, String query, CategorySort sort, String cursor) {
+        try {
+            CategoryPage page = ServiceLocator.getBookService()
+                .getBooksByCategory(category, query, sort, cursor, CATEGORY_PAGE_SIZE);
+            // Una ricerca senza risultati è comunque una risposta del server
+            if (page != null && (page.getTotalBooks() > 0 || query != null)) {
+                return page;
+            }
+        } catch (Exception e) {
+            logger.warning("Pagina della categoria non disponibile dal server: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Carica la pagina successiva quando la lista arriva in fondo. Le pagine
+     * arrivano già filtrate dalla ricerca, che il server applica sull'intera categoria.
+     */
+    private void loadNextPage() {
+        if (!serverPaging || nextCursor == null || loadingPage) {
+            return;
+        }
+        loadingPage = true;
+        String category = currentCategory;
+        String query = searchQuery();
+        String cursor = nextCursor;
+        CategorySort sort = toCategorySort(sortComboBox.getValue());
+        CompletableFuture.supplyAsync(() -> loadServerPage(category, query, sort, cursor))
+            .thenAccept(page -> Platform.runLater(() -> {
+                // Una pagina arrivata dopo un cambio di categoria, di ricerca o di ordinamento va scartata
+                if (!category.equals(currentCategory) || !Objects.equals(query, searchQuery())
+                        || !cursor.equals(nextCursor)) {
+                    return;
+                }
+                loadingPage = false;
+                if (page == null) {
+                    return;
+                }
+                nextCursor = page.getNextCursor();
+                categoryBooks.addAll(page.getBooks());
+            }));
+    }
+
+    /**
+     * @return il testo cercato, o null se la ricerca è vuota
+     */
+    private String searchQuery() {
+        String text = searchField.getText();
+        return text != null && !text.trim().isEmpty() ? text.trim() : null;
+    }
+
+    private CategorySort toCategorySort(String sortOption) {
+        if (sortOption == null) {
+            return CategorySort.TITLE_ASC;
+        } else if (sortOption.equals(resolveString("%categories.detail.sort.title.desc"))) {
+            return CategorySort.TITLE_DESC;
+        } else if (sortOption.equals(resolveString("%categories.detail.sort.author.asc"))) {
+            return CategorySort.AUTHOR_ASC;
+        } else if (sortOption.equals(resolveString("%categories.detail.sort.author.desc"))) {
+            return CategorySort.AUTHOR_DESC;
+        } else if (sortOption.equals(resolveString("%categories.detail.sort.year.newest"))) {
+            return CategorySort.YEAR_NEWEST;
+        } else if (sortOption.equals(resolveString("%categories.detail.sort.year.oldest"))) {
+            return CategorySort.YEAR_OLDEST;
+        } else {
+            return CategorySort.TITLE_ASC;
+        }
+    }
+
     private void showErrorAlert(String message) {
         Platform.runLater(() -> {
             Alert alert = new Alert(Alert.AlertType.ERROR);
@@ -305,6 +408,12 @@ public class CategoryDetailController extends ControllerBase implements Initiali
 
         // Setup search functionality
         searchField.textProperty().addListener((observable, oldValue, newValue) -> {
+            if (serverPaging) {
+                // Con la paginazione del server la ricerca riparte dalla prima pagina, filtrata dal server
+                filteredBooks.setPredicate(book -> true);
+                reloadBooks();
+                return;
+            }
             filteredBooks.setPredicate(book -> {
                 if (newValue == null || newValue.isEmpty()) {
                     return true;
@@ -320,7 +429,12 @@ public class CategoryDetailController extends ControllerBase implements Initiali
         // Setup sorted list
         sortedBooks = new SortedList<>(filteredBooks);
         sortComboBox.valueProperty().addListener((obs, oldVal, newVal) -> {
-            sortedBooks.setComparator(getComparatorForSortOption(newVal));
+            if (serverPaging) {
+                // Con le pagine del server si richiede la categoria nel nuovo ordine
+                reloadBooks();
+            } else {
+                sortedBooks.setComparator(getComparatorForSortOption(newVal));
+            }
         });
         // Set initial comparator
         if (sortComboBox.getValue() != null) {
@@ -362,7 +476,7 @@ public class CategoryDetailController extends ControllerBase implements Initiali
         categoryTitleLabel.setText(capitalizeFirstLetter(currentCategory));
 
         // Update stats
-        int totalBooks = categoryBooks.size();
+        int totalBooks = serverPaging ? categoryTotal : categoryBooks.size();
         int visibleBooks = sortedBooks.size();
 
         String statsText;
@@ -534,6 +648,11 @@ public class CategoryDetailController extends ControllerBase implements Initiali
                 }
 
                 setGraphic(content);
+
+                // Ultima cella visibile: si carica la pagina successiva
+                if (getIndex() == getListView().getItems().size() - 1) {
+                    loadNextPage();
+                }
             }
         }
 
@@ -7,6 +7,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
@@ -44,6 +45,12 @@ import it.uninsubria.client.utils.classesUI.ThreadPoolManager;
 import it.uninsubria.client.utils.classesUI.UIAnimator;
 import it.uninsubria.client.utils.classesUI.UIHelpers;
 import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookFacets;
+import it.uninsubria.shared.model.BookSummary;
+import it.uninsubria.shared.model.FacetCount;
+import it.uninsubria.shared.model.FacetFilters;
+import it.uninsubria.shared.model.SearchCompletion;
+import it.uninsubria.shared.utils.AppConstants;
 import it.uninsubria.shared.utils.LoggerUtil;
 import javafx.animation.FadeTransition;
 import javafx.animation.PauseTransition;
@@ -51,8 +58,10 @@ import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.geometry.Pos;
+import javafx.geometry.Side;
 import javafx.scene.Parent;
 import javafx.scene.control.Button;
+import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
@@ -182,6 +191,12 @@ public class ControllerDesign extends ControllerBase {
 
     private Timer debounceTimer = null;
 
+    // Completamenti di titoli e autori mostrati a ogni tasto
+    private static final int COMPLETIONS_SHOWN = 8;
+    private final ContextMenu completionsMenu = new ContextMenu();
+    private boolean applyingCompletion = false;
+    private String completionsShownFor = null;
+
     private static List<Book> allBooks; // cache locale di tutti i libri
     private static Map<String, List<Book>> invertedIndex = new ConcurrentHashMap<>();
     private static Map<String, List<Book>> authorIndex = new ConcurrentHashMap<>();
@@ -274,6 +289,32 @@ public class ControllerDesign extends ControllerBase {
         return categoryIndex;
     }
 
+    /**
+     * Restituisce il numero di libri per categoria, in ordine di numerosità.
+     * I conteggi arrivano dal server senza scaricare il catalogo; se il server
+     * non li fornisce si usa l'indice locale delle categorie.
+     */
+    public static Map<String, Integer> getCategoryCounts() {
+        try {
+            BookFacets facets = ServiceLocator.getBookService().getFacets(null, new FacetFilters());
+            if (facets != null && !facets.getCategories().isEmpty()) {
+                Map<String, Integer> counts = new LinkedHashMap<>();
+                for (FacetCount category : facets.getCategories()) {
+                    counts.merge(category.getValue().trim(), category.getCount(), Integer::sum);
+                }
+                return counts;
+            }
+        } catch (Exception e) {
+            logger.warning("Conteggi per categoria del server non disponibili: " + e.getMessage());
+        }
+
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        getCategories().entrySet().stream()
+                .sorted((e1, e2) -> Integer.compare(e2.getValue().size(), e1.getValue().size()))
+                .forEach(entry -> counts.put(entry.getKey(), entry.getValue().size()));
+        return counts;
+    }
+
     /**
      * Assicura che i libri siano caricati
      */
@@ -840,6 +881,39 @@ public class ControllerDesign extends ControllerBase {
         return localSearchFiltered(author, authorIndex, "author_year", true, year);
     }
 
+    /**
+     * Ricerca sul server per riepiloghi, usata quando il catalogo locale non è
+     * stato caricato. Il dettaglio del libro viene caricato all'apertura.
+     */
+    private List<Book> remoteSearch(String term, int year) {
+        String title = null;
+        String author = null;
+        Integer publishYear = year > 0 ? year : null;
+        switch (currentSearchFilter) {
+            case TUTTI, TITOLO -> title = term;
+            case AUTORE -> {
+                author = term;
+                publishYear = null;
+            }
+            case AUTORE_ANNO -> {
+                if (publishYear == null) {
+                    return List.of();
+                }
+                author = term;
+            }
+        }
+        try {
+            return ServiceLocator.getBookService()
+                    .searchBookSummaries(title, author, publishYear, 0, AppConstants.Cache.MAX_SEARCH_PAGE_SIZE)
+                    .stream()
+                    .map(BookSummary::toBook)
+                    .collect(Collectors.toList());
+        } catch (Exception e) {
+            logger.warning("Ricerca sul server non riuscita: " + e.getMessage());
+            return List.of();
+        }
+    }
+
     /**
      * Ottiene i risultati per la pagina corrente dalla ricerca locale
      */
@@ -899,6 +973,11 @@ public class ControllerDesign extends ControllerBase {
                     case AUTORE_ANNO -> localSearchByAuthorAndYear(term, year);
                 };
 
+                // Catalogo locale non disponibile (caricamento fallito): ricerca sul server
+                if (allBooks == null || allBooks.isEmpty()) {
+                    allResults = remoteSearch(term, year);
+                }
+
                 // Salva tutti i risultati per la paginazione locale
                 allCurrentSearchResults = allResults != null ? allResults : List.of();
                 currentSearchPage = 0;
@@ -916,6 +995,92 @@ public class ControllerDesign extends ControllerBase {
         });
     }
 
+    /**
+     * Chiede al server i titoli e gli autori che completano il testo digitato
+     * e li mostra sotto la barra di ricerca. Le risposte arrivate dopo un
+     * altro tasto vengono scartate; se il server non ne ha, resta la ricerca
+     * completa con debounce.
+     */
+    private void mostraCompletamenti(String text) {
+        if (text.isEmpty()) {
+            completionsMenu.hide();
+            return;
+        }
+        ThreadPoolManager.executeIO(() -> {
+            List<SearchCompletion> completions;
+            try {
+                completions = ServiceLocator.getBookService().completeSearch(text, COMPLETIONS_SHOWN);
+            } catch (Exception e) {
+                logger.fine("Completamenti non disponibili: " + e.getMessage());
+                completions = List.of();
+            }
+            List<SearchCompletion> shown = completions;
+            Platform.runLater(() -> {
+                if (!text.equals(searchingBooks.getText().trim())) {
+                    return;
+                }
+                completionsMenu.getItems().clear();
+                for (SearchCompletion completion : shown) {
+                    completionsMenu.getItems().add(completionItem(completion));
+                }
+                completionsShownFor = text;
+                if (shown.isEmpty() || !searchingBooks.isFocused()) {
+                    completionsMenu.hide();
+                } else if (!completionsMenu.isShowing()) {
+                    completionsMenu.show(searchingBooks, Side.BOTTOM, 0, 0);
+                }
+            });
+        });
+    }
+
+    private MenuItem completionItem(SearchCompletion completion) {
+        boolean author = completion.getKind() == SearchCompletion.Kind.AUTHOR;
+        MenuItem item = new MenuItem(author
+                ? java.text.MessageFormat.format(resolveString("%search.completion.author"), completion.getText())
+                : completion.getText());
+        item.setMnemonicParsing(false);
+        item.setOnAction(event -> {
+            completionsMenu.hide();
+            if (author) {
+                // L'autore diventa il testo cercato, senza riaprire i completamenti
+                applyingCompletion = true;
+                searchingBooks.setText(completion.getText());
+                applyingCompletion = false;
+                searchingBooks.positionCaret(completion.getText().length());
+                if (debounceTimer != null) {
+                    debounceTimer.cancel();
+                }
+                cercaLibro(completion.getText());
+            } else {
+                apriLibroCompletato(completion.getBookId());
+            }
+        });
+        return item;
+    }
+
+    private void apriLibroCompletato(int bookId) {
+        hideSearchResults();
+        searchingBooks.clear();
+        searchingBooks.setDisable(true);
+        ThreadPoolManager.executeIO(() -> {
+            Book book = null;
+            try {
+                book = ServiceLocator.getBookService().getBookDetails(bookId);
+            } catch (Exception e) {
+                logger.warning("Impossibile caricare il libro " + bookId + ": " + e.getMessage());
+            }
+            Book found = book;
+            Platform.runLater(() -> {
+                if (found != null) {
+                    showBookInHomePage(found);
+                } else {
+                    searchingBooks.setDisable(false);
+                    NotificationManager.showError(resolveString("%controllerdesign.error.book.open"));
+                }
+            });
+        });
+    }
+
     @FXML
     public void closeListView(MouseEvent event) {
         hideSearchResults();
@@ -950,6 +1115,9 @@ public class ControllerDesign extends ControllerBase {
         // Ricerca in tempo reale mentre l'utente digita (con debounce)
         searchingBooks.textProperty().addListener((observable, oldValue, newValue) -> {
             String searchText = newValue.trim();
+            if (!applyingCompletion) {
+                mostraCompletamenti(searchText);
+            }
             if (!searchText.isEmpty() && searchText.length() >= 2) { // Minimo 2 caratteri per evitare ricerche troppo
                                                                      // frequenti
                 // Debounce: aspetta 300ms prima di fare la ricerca
@@ -961,6 +1129,10 @@ public class ControllerDesign extends ControllerBase {
                     @Override
                     public void run() {
                         Platform.runLater(() -> {
+                            // Con i completamenti a video la ricerca completa parte con Invio
+                            if (completionsMenu.isShowing() && searchText.equals(completionsShownFor)) {
+                                return;
+                            }
                             List<Book> cached = ClientCacheManager.get("query:" + searchText.toLowerCase());
                             if (cached != null && !cached.isEmpty()) {
                                 mostraRisultati(cached);
@@ -981,6 +1153,15 @@ public class ControllerDesign extends ControllerBase {
             }
         });
 
+        // Invio: ricerca completa sul testo digitato
+        searchingBooks.setOnAction(event -> {
+            String currentText = searchingBooks.getText().trim();
+            completionsMenu.hide();
+            if (!currentText.isEmpty()) {
+                cercaLibro(currentText);
+            }
+        });
+
         // Mantieni anche il click per compatibilità
         searchingBooks.setOnMouseClicked(event -> {
             String currentText = searchingBooks.getText().trim().toLowerCase();
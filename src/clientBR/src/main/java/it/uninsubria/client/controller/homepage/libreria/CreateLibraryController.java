@@ -145,20 +145,22 @@
                 }
             });
         } else {
-            // Fallback: carica i libri se non sono stati precaricati
-            bookManager.loadAllBooks().thenAccept(books -> {
-                Platform.runLater(() -> {
-                    List<Book> clonedBooks = books.stream()
-                            .map(this::cloneBook)
-                            .collect(Collectors.toList());
-                    availableBooks.setAll(clonedBooks);
-                    filteredBooks = new FilteredList<>(availableBooks, b -> true);
-                    booksListView.setItems(filteredBooks);
-                    setupListViewCellFactory();
+            // Fallback: carica i libri se non sono stati precaricati, mostrando ogni blocco appena arriva
+            availableBooks.clear();
+            filteredBooks = new FilteredList<>(availableBooks, b -> true);
+            booksListView.setItems(filteredBooks);
+            setupListViewCellFactory();
 
-                    // Setup search functionality
-                    setupBookSearch();
+            // Setup search functionality
+            setupBookSearch();
 
+            bookManager.loadAllBooks(chunk -> {
+                List<Book> clonedChunk = chunk.stream()
+                        .map(this::cloneBook)
+                        .collect(Collectors.toList());
+                Platform.runLater(() -> availableBooks.addAll(clonedChunk));
+            }).thenAccept(books -> {
+                Platform.runLater(() -> {
                     if(editMode && libraryToEdit != null){
                         libraryNameField.setText(libraryToEdit.getName());
                         libraryNameField.setEditable(false);
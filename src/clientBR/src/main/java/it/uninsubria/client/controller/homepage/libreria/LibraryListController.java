@@ -158,26 +158,15 @@ public class LibraryListController extends ControllerBase {
         }
 
         ThreadPoolManager.executeIOWithFeedback(() -> {
-            LoggerUtil.debug(logger, "Calling getUserLibraries for username: " + username);
-            List<Library> dbLibraries = ServiceLocator.getLibraryService().getUserLibraries(username);
+            LoggerUtil.debug(logger, "Calling getUserLibrariesWithBooks for username: " + username);
+            // Un'unica chiamata RMI: librerie dell'utente con i libri già popolati
+            List<Library> dbLibraries = ServiceLocator.getLibraryService().getUserLibrariesWithBooks(username);
             LoggerUtil.debug(logger, "Retrieved " + dbLibraries.size() + " libraries from database");
-
             for(Library lib : dbLibraries){
-                LoggerUtil.debug(logger, "Processing library: " + lib.getName() + " (ID: " + lib.getId() + ")");
-                List<Integer> bookIds = ServiceLocator.getLibraryService().getBooksInLibrariesImpl(lib.getId());
-                LoggerUtil.debug(logger, "Library " + lib.getName() + " has " + bookIds.size() + " book IDs");
-
-                List<Book> books = new ArrayList<>();
-                for(Integer bookId : bookIds){
-                    Book b = ServiceLocator.getBookService().getBookDetails(bookId);
-                    if(b != null){
-                        books.add(b);
-                    } else {
-                        LoggerUtil.debug(logger, "Book with ID " + bookId + " not found");
-                    }
+                if(lib.getLibriDisponibili() == null){
+                    lib.setLibriDisponibili(new ArrayList<>());
                 }
-                lib.setLibriDisponibili(books);
-                LoggerUtil.debug(logger, "Library " + lib.getName() + " now has " + books.size() + " books loaded");
+                LoggerUtil.debug(logger, "Library " + lib.getName() + " now has " + lib.getLibriDisponibili().size() + " books loaded");
             }
 
             Platform.runLater(() -> {
@@ -4,9 +4,11 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -87,6 +89,21 @@ public class MySuggestionsController extends ControllerBase implements Initializ
                         groupedByBase.computeIfAbsent(se.getBaseBookId(), k -> new ArrayList<>()).add(se);
                     }
 
+                    // Carica in un'unica chiamata tutti i libri (base e suggeriti) necessari all'albero
+                    Set<Integer> bookIds = new LinkedHashSet<>();
+                    for (SuggestionEntry se : entries) {
+                        bookIds.add(se.getBaseBookId());
+                        bookIds.add(se.getSuggestedBookId());
+                    }
+                    Map<Integer, Book> booksById = new HashMap<>();
+                    try {
+                        for (Book book : bookService.getBooksByIds(new ArrayList<>(bookIds))) {
+                            booksById.put(book.getBook_id(), book);
+                        }
+                    } catch (Exception inner) {
+                        logger.log(Level.WARNING, "Failed to load suggestion books, falling back to IDs", inner);
+                    }
+
                     TreeItem<String> root = new TreeItem<>(ROOT_NODE_TEXT);
                     root.setExpanded(true);
 
@@ -94,30 +111,22 @@ public class MySuggestionsController extends ControllerBase implements Initializ
                         int baseBookId = entry.getKey();
                         List<SuggestionEntry> suggestions = entry.getValue();
 
-                        try {
-                            Book baseBook = bookService.getBookDetails(baseBookId);
-                            String baseTitle = baseBook != null ? baseBook.getTitle() : "Libro #" + baseBookId;
-
-                            TreeItem<String> baseItem = new TreeItem<>(baseTitle + " (" + suggestions.size() + " suggerimenti)");
-                            baseItem.setExpanded(true);
-
-                            for (SuggestionEntry se : suggestions) {
-                                try {
-                                    Book suggestedBook = bookService.getBookDetails(se.getSuggestedBookId());
-                                    String suggestedTitle = suggestedBook != null ? suggestedBook.getTitle() : "Libro #" + se.getSuggestedBookId();
-                                    TreeItem<String> suggestionItem = new TreeItem<>(suggestedTitle);
-                                    baseItem.getChildren().add(suggestionItem);
-                                } catch (Exception inner) {
-                                    logger.log(Level.WARNING, "Failed to load suggested book: " + se.getSuggestedBookId(), inner);
-                                }
-                            }
-
-                            if (!baseItem.getChildren().isEmpty()) {
-                                root.getChildren().add(baseItem);
-                                suggestionsByBaseBook.put(baseTitle, suggestions);
-                            }
-                        } catch (Exception inner) {
-                            logger.log(Level.WARNING, "Failed to load base book: " + baseBookId, inner);
+                        Book baseBook = booksById.get(baseBookId);
+                        String baseTitle = baseBook != null ? baseBook.getTitle() : "Libro #" + baseBookId;
+
+                        TreeItem<String> baseItem = new TreeItem<>(baseTitle + " (" + suggestions.size() + " suggerimenti)");
+                        baseItem.setExpanded(true);
+
+                        for (SuggestionEntry se : suggestions) {
+                            Book suggestedBook = booksById.get(se.getSuggestedBookId());
+                            String suggestedTitle = suggestedBook != null ? suggestedBook.getTitle() : "Libro #" + se.getSuggestedBookId();
+                            TreeItem<String> suggestionItem = new TreeItem<>(suggestedTitle);
+                            baseItem.getChildren().add(suggestionItem);
+                        }
+
+                        if (!baseItem.getChildren().isEmpty()) {
+                            root.getChildren().add(baseItem);
+                            suggestionsByBaseBook.put(baseTitle, suggestions);
                         }
                     }
 
@@ -1,14 +1,19 @@
 package it.uninsubria.client.utils.classesUI;
 
 import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookSummary;
+import it.uninsubria.shared.rmi.RemoteBookCursor;
 import it.uninsubria.shared.utils.AppConstants;
 import it.uninsubria.shared.utils.LoggerUtil;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.rmi.RemoteException;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -24,7 +29,12 @@ public class BookServiceManager {
     // Cache state constants
     private static final int UNINITIALIZED_COUNT = -1;
 
-    private List<Book> allBooks = new CopyOnWriteArrayList<>();
+    // Catalogo in costruzione: libri ricevuti e ID già noti, protetti da booksLock
+    private final Object booksLock = new Object();
+    private final List<Book> loadedBooks = new ArrayList<>();
+    private final Set<Integer> knownIds = new HashSet<>();
+    // Istantanea immutabile letta dalla UI, ripubblicata a fine caricamento
+    private volatile List<Book> allBooks = Collections.emptyList();
     private List<Book> popularBooks = new CopyOnWriteArrayList<>(); // Libri popolari selezionati
     private boolean loaded = false;
     private boolean popularBooksSelected = false; // Flag per indicare se i libri popolari sono stati selezionati
@@ -34,11 +44,8 @@ public class BookServiceManager {
 
     // Helper methods for common operations
     private void addBooksToCache(List<Book> books) {
-        for (Book book : books) {
-            if (!containsBook(book.getBook_id())) {
-                allBooks.add(book);
-            }
-        }
+        addNewBooks(books);
+        publishBooks();
     }
 
     private void updateLoadingState(boolean isLoaded) {
@@ -64,7 +71,20 @@ public class BookServiceManager {
      * Carica tutti i libri dal server (una sola volta), con supporto cache locale
      */
     public CompletableFuture<List<Book>> loadAllBooks() {
+        return loadAllBooks(null);
+    }
+
+    /**
+     * Carica tutti i libri come {@link #loadAllBooks()}, notificando ogni blocco appena
+     * ricevuto così che la UI possa mostrare i primi libri senza attendere l'intero catalogo.
+     *
+     * @param onChunk riceve ogni blocco di libri (dal thread di caricamento), può essere null
+     */
+    public CompletableFuture<List<Book>> loadAllBooks(Consumer<List<Book>> onChunk) {
         if (loaded) {
+            if (onChunk != null) {
+                onChunk.accept(allBooks);
+            }
             return CompletableFuture.completedFuture(allBooks);
         }
 
@@ -73,11 +93,14 @@ public class BookServiceManager {
                 // Prima prova a caricare dalla cache locale
                 List<Book> cachedBooks = loadFromLocalCache();
                 if (cachedBooks != null && !cachedBooks.isEmpty()) {
+                    if (onChunk != null) {
+                        onChunk.accept(cachedBooks);
+                    }
                     return cachedBooks;
                 }
 
                 // Cache non valida o vuota, carica TUTTI i libri dal server
-                return loadAllBooksFromServer();
+                return loadAllBooksFromServer(onChunk);
 
             } catch (Exception e) {
                 logger.severe("Errore imprevisto nel caricamento libri: " + e.getMessage());
@@ -90,7 +113,7 @@ public class BookServiceManager {
         List<Book> cachedBooks = BookCacheManager.loadBooksFromCache();
         if (cachedBooks != null && !cachedBooks.isEmpty()) {
             logger.info("Caricamento libri dalla cache locale...");
-            allBooks.addAll(cachedBooks);
+            addBooksToCache(cachedBooks);
             updateLoadingState(true);
             logger.info("Libri caricati dalla cache: " + allBooks.size());
             return allBooks;
@@ -98,17 +121,28 @@ public class BookServiceManager {
         return null;
     }
 
-    private List<Book> loadAllBooksFromServer() {
+    private List<Book> loadAllBooksFromServer(Consumer<List<Book>> onChunk) {
         logger.info("Cache non disponibile, caricamento di tutti i libri dal server per categorie complete...");
 
         try {
-            int totalBooks = getTotalBooksCountFromServer();
-            List<Book> allServerBooks = loadBooksInBatches(totalBooks);
+            int addedBooks;
+            try {
+                addedBooks = streamBooksFromServer(onChunk);
+            } catch (Exception streamEx) {
+                // Server senza cursori o cursori esauriti: ripiega sulla paginazione
+                logger.warning("Streaming del catalogo non disponibile, uso la paginazione: " + streamEx.getMessage());
+                List<Book> added = addNewBooks(loadBooksInBatches(getTotalBooksCountFromServer()));
+                addedBooks = added.size();
+                if (onChunk != null) {
+                    onChunk.accept(added);
+                }
+            }
+            // Un'unica copia del catalogo, pubblicata quando è completo
+            publishBooks();
 
-            if (!allServerBooks.isEmpty()) {
-                allBooks.addAll(allServerBooks);
+            if (addedBooks > 0) {
                 updateLoadingState(true);
-                saveToCacheAndLog(allServerBooks, "Tutti i libri caricati dal server e salvati in cache");
+                saveToCacheAndLog(allBooks, "Tutti i libri caricati dal server e salvati in cache");
             } else {
                 logger.warning("Nessun libro ricevuto dal server");
             }
@@ -120,6 +154,66 @@ public class BookServiceManager {
         return allBooks;
     }
 
+    /**
+     * Legge il catalogo a blocchi da un cursore remoto, passando ogni blocco subito a
+     * {@code onChunk}. I libri restano nel catalogo in costruzione fino a {@link #publishBooks()}.
+     *
+     * @return il numero di libri aggiunti
+     */
+    private int streamBooksFromServer(Consumer<List<Book>> onChunk) throws Exception {
+        RemoteBookCursor cursor = it.uninsubria.client.di.DIContainer.getBookService()
+            .openCatalogCursor(AppConstants.Database.CURSOR_DEFAULT_CHUNK_SIZE);
+        int addedBooks = 0;
+        try {
+            List<Book> chunk;
+            while (!(chunk = cursor.nextChunk()).isEmpty()) {
+                List<Book> added = addNewBooks(chunk);
+                addedBooks += added.size();
+                if (onChunk != null) {
+                    onChunk.accept(added);
+                }
+                logger.fine("Blocco catalogo ricevuto: " + chunk.size() + " libri (totale: " + addedBooks + ")");
+            }
+        } finally {
+            try {
+                cursor.close();
+            } catch (RemoteException e) {
+                logger.fine("Chiusura cursore catalogo fallita: " + e.getMessage());
+            }
+        }
+        return addedBooks;
+    }
+
+    /** Aggiunge al catalogo in costruzione i libri non ancora presenti e restituisce quelli aggiunti. */
+    private List<Book> addNewBooks(List<Book> books) {
+        List<Book> fresh = new ArrayList<>(books.size());
+        synchronized (booksLock) {
+            for (Book book : books) {
+                if (knownIds.add(book.getBook_id())) {
+                    fresh.add(book);
+                }
+            }
+            loadedBooks.addAll(fresh);
+        }
+        return fresh;
+    }
+
+    /** Pubblica in {@code allBooks} un'istantanea immutabile del catalogo in costruzione. */
+    private void publishBooks() {
+        synchronized (booksLock) {
+            allBooks = Collections.unmodifiableList(new ArrayList<>(loadedBooks));
+        }
+    }
+
+    /** Svuota il catalogo, sia quello in costruzione sia quello pubblicato. */
+    private void clearBooks() {
+        synchronized (booksLock) {
+            loadedBooks.clear();
+            knownIds.clear();
+            allBooks = Collections.emptyList();
+        }
+    }
+
     private int getTotalBooksCountFromServer() throws Exception {
         int totalBooks = RetryUtils.executeWithRetry(
             () -> it.uninsubria.client.di.DIContainer.getBookService().getTotalBooksCount(),
@@ -153,11 +247,17 @@ public class BookServiceManager {
         return allServerBooks;
     }
 
+    // Le pagine arrivano come riepiloghi: i dettagli si caricano quando si apre il libro
     private List<Book> loadSingleBatch(int offset, int batchSize) throws Exception {
-        return RetryUtils.executeWithRetry(
+        List<BookSummary> summaries = RetryUtils.executeWithRetry(
             () -> it.uninsubria.client.di.DIContainer.getBookService().searchGloballyPaged(offset, batchSize),
             "Caricamento batch libri (offset=" + offset + ", size=" + batchSize + ")"
         );
+        List<Book> books = new ArrayList<>(summaries.size());
+        for (BookSummary summary : summaries) {
+            books.add(summary.toBook());
+        }
+        return books;
     }
 
     /**
@@ -268,13 +368,6 @@ public class BookServiceManager {
         });
     }
 
-    /**
-     * Verifica se un libro è già nella cache locale
-     */
-    private boolean containsBook(int bookId) {
-        return allBooks.stream().anyMatch(book -> book.getBook_id() == bookId);
-    }
-
     /**
      * Ottiene libri dalla cache locale (senza caricamento dal server)
      */
@@ -286,7 +379,7 @@ public class BookServiceManager {
      * Azzera la cache locale (utile per refresh forzato)
      */
     public void clearCache() {
-        allBooks.clear();
+        clearBooks();
         popularBooks.clear();
         loaded = false;
         popularBooksSelected = false;
@@ -299,13 +392,13 @@ public class BookServiceManager {
      * Forza ricaricamento dalla cache disco (ignora cache memoria)
      */
     public void reloadFromCache() {
-        allBooks.clear();
+        clearBooks();
         loaded = false;
         totalBooksCount = -1;
 
         List<Book> cachedBooks = BookCacheManager.loadBooksFromCache();
         if (cachedBooks != null && !cachedBooks.isEmpty()) {
-            allBooks.addAll(cachedBooks);
+            addBooksToCache(cachedBooks);
             loaded = true;
             logger.info("Ricaricato dalla cache disco: " + allBooks.size() + " libri");
         }
@@ -339,9 +432,11 @@ public class BookServiceManager {
 
         try {
             logger.info("Selezionando libri popolari per la home page...");
-            BookStatisticsManager statsManager = BookStatisticsManager.getInstance();
-
-            List<Book> selectedBooks = selectBooksWithStatistics(statsManager);
+            // La classifica del server evita di ricalcolare le statistiche libro per libro
+            List<Book> selectedBooks = loadPopularBooksFromServer();
+            if (selectedBooks.isEmpty()) {
+                selectedBooks = selectBooksWithStatistics(BookStatisticsManager.getInstance());
+            }
             if (selectedBooks.isEmpty()) {
                 selectedBooks = selectRandomBooksAsFallback();
             }
@@ -379,6 +474,20 @@ public class BookServiceManager {
         }
     }
 
+    private List<Book> loadPopularBooksFromServer() {
+        try {
+            List<Book> ranked = it.uninsubria.client.di.DIContainer.getBookService()
+                .getPopularBooks(0, MAX_POPULAR_BOOKS);
+            if (ranked != null && !ranked.isEmpty()) {
+                logger.info("Classifica di popolarità ricevuta dal server: " + ranked.size() + " libri");
+                return new ArrayList<>(ranked);
+            }
+        } catch (Exception e) {
+            logger.warning("Classifica di popolarità del server non disponibile: " + e.getMessage());
+        }
+        return new ArrayList<>();
+    }
+
     private List<Book> selectBooksWithStatistics(BookStatisticsManager statsManager) {
         List<Book> booksWithStats = allBooks.stream()
                 .filter(book -> statsManager.getBookStats(book.getBook_id()) != null)
@@ -6,7 +6,8 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 import it.uninsubria.shared.model.Book;
-import it.uninsubria.shared.model.Review;
+import it.uninsubria.shared.model.BookReviewStats;
+import it.uninsubria.shared.utils.AppConstants;
 
 /**
  * Gestisce le statistiche aggregate dei libri (valutazioni globali)
@@ -65,19 +66,14 @@ public class BookStatisticsManager {
 
         return CompletableFuture.runAsync(() -> {
             try {
-                for (Book book : allBooks) {
-                    List<Review> reviews = ServiceLocator.getReviewsService().getReviewsByBook(book.getBook_id());
-
-                    if (!reviews.isEmpty()) {
-                        double totalScore = 0.0;
-                        for (Review review : reviews) {
-                            totalScore += review.averageScore();
-                        }
-                        double averageRating = totalScore / reviews.size();
-
-                        BookStats stats = new BookStats(book.getBook_id(), averageRating, reviews.size());
-                        bookStats.put(book.getBook_id(), stats);
-                    }
+                // Un'unica chiamata RMI: il server aggrega media e conteggio con una GROUP BY
+                int[] bookIds = allBooks.stream().mapToInt(Book::getBook_id).toArray();
+                // Oltre il limite per richiesta si usano le statistiche di tutto il catalogo
+                List<BookReviewStats> statsList = bookIds.length > AppConstants.Cache.MAX_REVIEW_STATS_BATCH
+                    ? ServiceLocator.getReviewsService().getAllReviewStats()
+                    : ServiceLocator.getReviewsService().getReviewStatsForBooks(bookIds);
+                for (BookReviewStats s : statsList) {
+                    bookStats.put(s.getBookId(), new BookStats(s.getBookId(), s.getAverageRating(), s.getReviewCount()));
                 }
                 loaded = true;
                 logger.info("Statistiche libri caricate: " + bookStats.size() + " libri con recensioni");
@@ -8,7 +8,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import it.uninsubria.shared.rmi.BookService;
-import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookSummary;
 
 public class SmokeTestClient {
     private static final Logger logger = LoggerFactory.getLogger(SmokeTestClient.class);
@@ -17,10 +17,10 @@ public class SmokeTestClient {
         try {
             Registry registry = LocateRegistry.getRegistry("localhost", 1099);
             BookService bookService = (BookService) registry.lookup("BookService");
-            List<Book> books = bookService.searchGlobally();
+            List<BookSummary> books = bookService.searchGlobally();
             logger.info("Smoke test - books received: {}", books.size());
             // Test author search with correct format
-            List<Book> authorBooks = bookService.searchByAuthor("king, stephen");
+            List<BookSummary> authorBooks = bookService.searchByAuthor("king, stephen");
             logger.info("Search by author 'king, stephen': {} results", authorBooks.size());
             if (!authorBooks.isEmpty()) {
                 logger.info(" - {}", authorBooks.get(0).getTitle());
@@ -1,5 +1,7 @@
 package it.uninsubria.server.cache;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -147,6 +149,47 @@ public class CacheManager {
         }
     }
 
+    /**
+     * Get several values from user-specific cache in a single pass.
+     * Missing or expired keys are not present in the returned map.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Map<String, T> getAll(String userId, Collection<String> keys, Class<T> type) {
+        Map<String, T> found = new HashMap<>();
+        ConcurrentMap<String, CacheEntry> userCache = USER_CACHES.get(userId);
+        if (userCache == null) {
+            misses.addAndGet(keys.size());
+            return found;
+        }
+
+        for (String key : keys) {
+            CacheEntry e = userCache.get(key);
+            if (e == null) {
+                misses.incrementAndGet();
+                continue;
+            }
+            if (e.isExpired()) {
+                userCache.remove(key);
+                evictions.incrementAndGet();
+                misses.incrementAndGet();
+                continue;
+            }
+            e.recordAccess();
+            hits.incrementAndGet();
+            found.put(key, (T) e.value);
+        }
+        return found;
+    }
+
+    /**
+     * Put several values in user-specific cache with the same TTL and category
+     */
+    public static void putAll(String userId, Map<String, ?> entries, long ttlMs, String category) {
+        for (Map.Entry<String, ?> entry : entries.entrySet()) {
+            put(userId, entry.getKey(), entry.getValue(), ttlMs, category);
+        }
+    }
+
     /**
      * Invalidate cache for a specific user
      */
@@ -275,6 +318,7 @@ public class CacheManager {
     public static void invalidateUserLibraries(String userId) {
         String libraryKey = "libraries_" + userId;
         remove(userId, libraryKey);
+        remove(userId, "libraries_books_" + userId);
         logger.info("Invalidated library cache for user '" + userId + "', key: " + libraryKey);
     }
 
@@ -2,6 +2,7 @@ package it.uninsubria.server.cache;
 
 import it.uninsubria.server.monitoring.MonitoringService;
 import it.uninsubria.server.service.BookServiceCore;
+import it.uninsubria.server.util.ConnectionPoolManager;
 import it.uninsubria.shared.model.Book;
 
 import java.util.List;
@@ -18,7 +19,11 @@ public class CacheWarmUpService {
     private static final Logger logger = Logger.getLogger(CacheWarmUpService.class.getName());
 
     private static final ExecutorService warmUpExecutor = Executors.newFixedThreadPool(4, r -> {
-        Thread t = new Thread(r, "CacheWarmUp");
+        // Le letture del warm-up usano il pool di background, non quello dei client
+        Thread t = new Thread(() -> {
+            ConnectionPoolManager.markBackgroundThread();
+            r.run();
+        }, "CacheWarmUp");
         t.setDaemon(true);
         return t;
     });
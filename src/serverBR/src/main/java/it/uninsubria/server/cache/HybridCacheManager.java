@@ -16,7 +16,8 @@ public class HybridCacheManager {
 
     private static final Logger logger = Logger.getLogger(HybridCacheManager.class.getName());
 
-    private static final String CACHE_DIR = "./cache";
+    // Directory dei file di cache; i test la spostano in una directory temporanea
+    private static volatile Path cacheDir = Paths.get("./cache");
     private static final long DISK_CACHE_SIZE_MB = 500;
     private static final long DEFAULT_TTL_MS = AppConstants.Time.TIMEOUT_10_MINUTES;
 
@@ -40,8 +41,8 @@ public class HybridCacheManager {
     static {
         // Initialize disk cache directory
         try {
-            Files.createDirectories(Paths.get(CACHE_DIR));
-            logger.info("Hybrid cache directory initialized: " + CACHE_DIR);
+            Files.createDirectories(cacheDir);
+            logger.info("Hybrid cache directory initialized: " + cacheDir);
         } catch (IOException e) {
             logger.severe("Failed to initialize cache directory: " + e.getMessage());
         }
@@ -51,6 +52,17 @@ public class HybridCacheManager {
 
     // ===== PUBLIC API METHODS =====
 
+    /**
+     * Moves the disk cache to the given directory; entries already written stay in the previous one.
+     *
+     * @param directory directory the cache files are written to
+     * @throws IOException if the directory cannot be created
+     */
+    public static void setCacheDirectory(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        cacheDir = directory;
+    }
+
     /**
      * Get value from hybrid cache (memory first, then disk)
      */
@@ -184,7 +196,7 @@ public class HybridCacheManager {
     }
 
     private static <T> T loadFromDiskSync(String userId, String key, Class<T> type) {
-        Path filePath = Paths.get(CACHE_DIR, userId, key + ".cache");
+        Path filePath = cacheDir.resolve(userId).resolve(key + ".cache");
         if (!Files.exists(filePath)) {
             diskMisses.incrementAndGet();
             return null;
@@ -238,7 +250,7 @@ public class HybridCacheManager {
     }
 
     private static void saveToDisk(String userId, String key, Object value, long ttlMs, String category) {
-        Path userDir = Paths.get(CACHE_DIR, userId);
+        Path userDir = cacheDir.resolve(userId);
         Path filePath = userDir.resolve(key + ".cache");
 
         try {
@@ -262,7 +274,7 @@ public class HybridCacheManager {
     }
 
     private static void deleteUserDiskCache(String userId) {
-        Path userDir = Paths.get(CACHE_DIR, userId);
+        Path userDir = cacheDir.resolve(userId);
         try {
             if (Files.exists(userDir)) {
                 Files.walk(userDir)
@@ -282,7 +294,7 @@ public class HybridCacheManager {
     }
 
     private static void deleteUserDiskCacheByCategory(String userId, String category) {
-        Path userDir = Paths.get(CACHE_DIR, userId);
+        Path userDir = cacheDir.resolve(userId);
         if (!Files.exists(userDir)) return;
 
         try {
@@ -341,11 +353,11 @@ public class HybridCacheManager {
     }
 
     private static long getDiskCacheSize() {
-        Path cacheDir = Paths.get(CACHE_DIR);
-        if (!Files.exists(cacheDir)) return 0;
+        Path root = cacheDir;
+        if (!Files.exists(root)) return 0;
 
         try {
-            return Files.walk(cacheDir)
+            return Files.walk(root)
                 .filter(Files::isRegularFile)
                 .mapToLong(p -> {
                     try { return Files.size(p); } catch (IOException e) { return 0; }
@@ -357,14 +369,14 @@ public class HybridCacheManager {
     }
 
     private static void cleanupExpiredEntries() {
-        Path cacheDir = Paths.get(CACHE_DIR);
-        if (!Files.exists(cacheDir)) return;
+        Path root = cacheDir;
+        if (!Files.exists(root)) return;
 
         try {
             long now = System.currentTimeMillis();
             AtomicInteger removedCount = new AtomicInteger(0);
 
-            Files.walk(cacheDir)
+            Files.walk(root)
                 .filter(Files::isRegularFile)
                 .filter(p -> p.toString().endsWith(".cache"))
                 .forEach(p -> {
@@ -0,0 +1,143 @@
+package it.uninsubria.server.cache;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.uninsubria.server.monitoring.MonitoringService;
+import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookList;
+
+/**
+ * Keeps the serialized form of hot, shared RMI responses next to their cached object form.
+ * <p>
+ * An entry remembers the list instance it was encoded from: as long as the object
+ * cache keeps returning that same instance, the stored {@link BookList} and its
+ * bytes are reused and RMI threads only copy them to the socket. A new instance
+ * (the object cache was invalidated or reloaded) or {@link #invalidateByCategory}
+ * triggers a rebuild. Cached lists must not be modified after they are cached.
+ */
+public final class PreSerializedResponseCache {
+    private static final Logger logger = Logger.getLogger(PreSerializedResponseCache.class.getName());
+
+    private static final int MAX_ENTRIES = 256;
+
+    private static final class Entry {
+        final Object source;
+        final BookList payload;
+        final String category;
+
+        Entry(Object source, BookList payload, String category) {
+            this.source = source;
+            this.payload = payload;
+            this.category = category;
+        }
+    }
+
+    private static final Map<String, Entry> ENTRIES = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong builds = new AtomicLong();
+    private static final AtomicLong bytesServed = new AtomicLong();
+
+    private static final Counter bytesServedCounter;
+    private static final Counter hitCounter;
+    private static final Counter buildCounter;
+
+    static {
+        MeterRegistry registry = MonitoringService.getInstance().getRegistry();
+        bytesServedCounter = Counter.builder("rmi.preserialized.bytes")
+            .description("Response bytes served from the pre-serialized cache")
+            .baseUnit("bytes")
+            .register(registry);
+        hitCounter = Counter.builder("rmi.preserialized.requests").tag("result", "hit").register(registry);
+        buildCounter = Counter.builder("rmi.preserialized.requests").tag("result", "build").register(registry);
+    }
+
+    private PreSerializedResponseCache() {}
+
+    /**
+     * Returns the pre-encoded form of a cached book list, encoding it on first use.
+     *
+     * @param key response key, e.g. the object cache key
+     * @param category invalidation category, as used in {@link CacheManager}
+     * @param source the list returned by the object cache
+     * @return a list that writes stored bytes when marshalled; {@code source} wrapped normally if encoding fails
+     */
+    public static List<Book> books(String key, String category, List<Book> source) {
+        if (source == null) {
+            return null;
+        }
+        synchronized (ENTRIES) {
+            Entry entry = ENTRIES.get(key);
+            if (entry != null && entry.source == source) {
+                int size = entry.payload.encodedSize();
+                hits.incrementAndGet();
+                hitCounter.increment();
+                bytesServed.addAndGet(size);
+                bytesServedCounter.increment(size);
+                return entry.payload;
+            }
+        }
+
+        BookList payload;
+        try {
+            payload = BookList.preEncoded(source);
+        } catch (IOException e) {
+            logger.warning("Could not pre-serialize response " + key + ": " + e.getMessage());
+            return BookList.of(source);
+        }
+        builds.incrementAndGet();
+        buildCounter.increment();
+        synchronized (ENTRIES) {
+            ENTRIES.put(key, new Entry(source, payload, category));
+        }
+        return payload;
+    }
+
+    /**
+     * Drops the pre-serialized responses of a category.
+     *
+     * @param category the category to drop
+     */
+    public static void invalidateByCategory(String category) {
+        synchronized (ENTRIES) {
+            Iterator<Entry> it = ENTRIES.values().iterator();
+            while (it.hasNext()) {
+                if (category.equals(it.next().category)) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every pre-serialized response.
+     */
+    public static void clear() {
+        synchronized (ENTRIES) {
+            ENTRIES.clear();
+        }
+    }
+
+    public static long getHits() { return hits.get(); }
+    public static long getBuilds() { return builds.get(); }
+    public static long getBytesServed() { return bytesServed.get(); }
+
+    public static int size() {
+        synchronized (ENTRIES) {
+            return ENTRIES.size();
+        }
+    }
+}
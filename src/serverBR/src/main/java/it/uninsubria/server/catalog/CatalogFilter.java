@@ -0,0 +1,101 @@
+package it.uninsubria.server.catalog;
+
+/**
+ * Immutable set of conditions on the rows of a {@link ColumnarCatalog}.
+ * Null conditions are ignored; text conditions match a substring ignoring
+ * case, like the {@code ILIKE '%value%'} queries of the book DAO.
+ */
+public final class CatalogFilter {
+
+    private static final CatalogFilter ALL = new CatalogFilter(null, null, null, null, null, null, null);
+
+    private final String text;
+    private final String title;
+    private final String author;
+    private final Integer year;
+    private final String category;
+    private final String publisher;
+    private final Integer decade;
+
+    private CatalogFilter(String text, String title, String author, Integer year,
+                          String category, String publisher, Integer decade) {
+        this.text = text;
+        this.title = title;
+        this.author = author;
+        this.year = year;
+        this.category = category;
+        this.publisher = publisher;
+        this.decade = decade;
+    }
+
+    /**
+     * @return a filter matching every book
+     */
+    public static CatalogFilter all() {
+        return ALL;
+    }
+
+    /**
+     * @param value text to look for in the title or in the authors
+     */
+    public CatalogFilter withText(String value) {
+        return new CatalogFilter(blankToNull(value), title, author, year, category, publisher, decade);
+    }
+
+    public CatalogFilter withTitle(String value) {
+        return new CatalogFilter(text, blankToNull(value), author, year, category, publisher, decade);
+    }
+
+    public CatalogFilter withAuthor(String value) {
+        return new CatalogFilter(text, title, blankToNull(value), year, category, publisher, decade);
+    }
+
+    public CatalogFilter withYear(Integer value) {
+        return new CatalogFilter(text, title, author, value, category, publisher, decade);
+    }
+
+    /**
+     * @param value the exact category, case sensitive
+     */
+    public CatalogFilter withCategory(String value) {
+        return new CatalogFilter(text, title, author, year, value, publisher, decade);
+    }
+
+    /**
+     * @param value the exact publisher, case sensitive
+     */
+    public CatalogFilter withPublisher(String value) {
+        return new CatalogFilter(text, title, author, year, category, value, decade);
+    }
+
+    /**
+     * @param value the first year of the decade, e.g. 1990 for 1990-1999
+     */
+    public CatalogFilter withDecade(Integer value) {
+        return new CatalogFilter(text, title, author, year, category, publisher, value);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value;
+    }
+
+    public String getText() { return text; }
+    public String getTitle() { return title; }
+    public String getAuthor() { return author; }
+    public Integer getYear() { return year; }
+    public String getCategory() { return category; }
+    public String getPublisher() { return publisher; }
+    public Integer getDecade() { return decade; }
+
+    boolean matchesAll() {
+        return text == null && title == null && author == null && year == null
+            && category == null && publisher == null && decade == null;
+    }
+
+    /**
+     * @return this filter without the category, publisher and decade conditions
+     */
+    CatalogFilter withoutFacets() {
+        return new CatalogFilter(text, title, author, year, null, null, null);
+    }
+}
@@ -0,0 +1,16 @@
+package it.uninsubria.server.catalog;
+
+/**
+ * Orders a {@link ColumnarCatalog} can be paged in. Each order is a
+ * permutation of the rows computed once when the catalog is built.
+ */
+public enum CatalogOrder {
+    /** Ascending book id, the order of the database queries. */
+    ID,
+    /** Title, ignoring case, then book id. */
+    TITLE,
+    /** Authors, ignoring case, then book id. */
+    AUTHOR,
+    /** Most recent publication year first, then book id. */
+    NEWEST
+}
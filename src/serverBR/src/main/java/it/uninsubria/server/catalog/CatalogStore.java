@@ -0,0 +1,180 @@
+package it.uninsubria.server.catalog;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import it.uninsubria.server.dao.BookDAO;
+import it.uninsubria.server.dao.ResultCursor;
+import it.uninsubria.server.monitoring.MonitoringService;
+import it.uninsubria.server.recommendation.PopularityRanking;
+import it.uninsubria.server.util.ConnectionPoolManager;
+import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.utils.AppConstants;
+
+/**
+ * Keeps a {@link ColumnarCatalog} in step with the Books table.
+ * <p>
+ * The catalog is rebuilt periodically in the background by streaming the
+ * table through a cursor, one chunk at a time, and published with a single
+ * atomic swap. Until the first build completes {@link #get()} returns null
+ * and callers query the database as before.
+ * <p>
+ * Every build also indexes the titles and authors for type-ahead in a
+ * {@link CompletionIndex}. Its completions follow the popularity ranking, which
+ * changes more often than the catalog: the ranks alone are recomputed when a
+ * new ranking is published, without rebuilding the terms.
+ */
+public class CatalogStore {
+
+    private static final Logger logger = Logger.getLogger(CatalogStore.class.getName());
+
+    private final BookDAO bookDAO;
+    private final Supplier<PopularityRanking> popularity;
+    private final AtomicReference<ColumnarCatalog> catalog = new AtomicReference<>();
+    private final AtomicReference<CompletionIndex> completions = new AtomicReference<>();
+    private final AtomicBoolean building = new AtomicBoolean();
+    private ScheduledExecutorService scheduler;
+
+    public CatalogStore(BookDAO bookDAO) {
+        this(bookDAO, PopularityRanking::empty);
+    }
+
+    /**
+     * @param bookDAO the source of the catalog
+     * @param popularity the ranking that orders the type-ahead completions
+     */
+    public CatalogStore(BookDAO bookDAO, Supplier<PopularityRanking> popularity) {
+        this.bookDAO = bookDAO;
+        this.popularity = popularity;
+    }
+
+    /**
+     * Starts the periodic rebuild; the first one runs immediately.
+     *
+     * @param periodMs interval between rebuilds, in milliseconds
+     */
+    public synchronized void start(long periodMs) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            // La scansione del catalogo usa il pool di background, non quello dei client
+            Thread t = new Thread(() -> {
+                ConnectionPoolManager.markBackgroundThread();
+                r.run();
+            }, "ColumnarCatalogBuild");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::rebuildQuietly, 0, periodMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::rerankCompletions, AppConstants.Cache.COMPLETION_RERANK_MS,
+            AppConstants.Cache.COMPLETION_RERANK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic rebuild.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Rebuilds the catalog from the database and publishes it. A call made
+     * while another rebuild is running returns without doing anything.
+     *
+     * @return true if this call rebuilt the catalog
+     * @throws Exception if the catalog cannot be read
+     */
+    public boolean rebuild() throws Exception {
+        if (!building.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            long start = System.nanoTime();
+            ColumnarCatalog.Builder builder = ColumnarCatalog.builder();
+            int chunkSize = AppConstants.Database.CURSOR_DEFAULT_CHUNK_SIZE;
+            try (ResultCursor<Book> cursor = bookDAO.openCatalogCursor(chunkSize)) {
+                List<Book> chunk;
+                while (!(chunk = cursor.next(chunkSize)).isEmpty()) {
+                    for (Book book : chunk) {
+                        builder.add(book);
+                    }
+                }
+            }
+            ColumnarCatalog built = builder.build();
+            CompletionIndex index = CompletionIndex.build(built, popularity.get());
+            catalog.set(built);
+            completions.set(index);
+
+            long elapsed = System.nanoTime() - start;
+            MonitoringService.getInstance().getRegistry()
+                .timer("catalog.columnar.build")
+                .record(elapsed, TimeUnit.NANOSECONDS);
+            logger.info("Columnar catalog built: " + built.size() + " books, "
+                + (built.offHeapBytes() >> 20) + "MB off-heap, " + index.termCount() + " completion terms in "
+                + (index.offHeapBytes() >> 20) + "MB, in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+            return true;
+        } finally {
+            building.set(false);
+        }
+    }
+
+    /**
+     * Drops the catalog and schedules a rebuild; used after the Books table
+     * has been reloaded. Requests go to the database until the rebuild ends.
+     */
+    public synchronized void reset() {
+        catalog.set(null);
+        completions.set(null);
+        if (scheduler != null) {
+            scheduler.execute(this::rebuildQuietly);
+        }
+    }
+
+    /**
+     * @return the catalog currently served, or null before the first build
+     */
+    public ColumnarCatalog get() {
+        return catalog.get();
+    }
+
+    /**
+     * @return the type-ahead index of the current catalog, or null before the first build
+     */
+    public CompletionIndex getCompletions() {
+        return completions.get();
+    }
+
+    /**
+     * Orders the completions by the current popularity ranking, if it changed
+     * since the index was ranked.
+     *
+     * @return true if the index was reranked
+     */
+    public boolean rerankCompletions() {
+        CompletionIndex current = completions.get();
+        PopularityRanking ranking = popularity.get();
+        if (current == null || current.getRankingVersion() == ranking.getVersion()) {
+            return false;
+        }
+        // Una ricostruzione concorrente ha già usato il ranking più recente
+        return completions.compareAndSet(current, current.rerank(ranking));
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.warning("Columnar catalog build failed: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,809 @@
+package it.uninsubria.server.catalog;
+
+import java.nio.IntBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.uninsubria.server.dao.ResultCursor;
+import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookFacets;
+import it.uninsubria.shared.model.BookSummary;
+import it.uninsubria.shared.model.FacetCount;
+
+/**
+ * Immutable, off-heap columnar copy of the catalog.
+ * <p>
+ * Rows are stored in ascending book id. Ids and years are int columns.
+ * Category, publisher, price and month are dictionary encoded. Title,
+ * authors and description are UTF-8 blobs indexed by offset. All columns
+ * live in direct buffers, so a million books cost a few bytes of heap each
+ * instead of a {@link Book} with its strings, and the garbage collector
+ * never scans them.
+ * <p>
+ * Filters, paging and sorting run on the columns and return row numbers;
+ * {@link Book} and {@link BookSummary} objects are built only for the rows
+ * actually returned to a client. Reads use absolute gets only, so a catalog
+ * can be shared by any number of threads.
+ * <p>
+ * Category, publisher and publication decade also have posting lists, used
+ * to count facets without scanning the catalog when no search is active.
+ * The category lists exist in every {@link CatalogOrder}, so a page of a
+ * category is read directly from its list.
+ */
+public final class ColumnarCatalog {
+
+    private static final AtomicLong BUILDS = new AtomicLong();
+    private static final ColumnarCatalog EMPTY = builder().build();
+
+    // Dimensioni delle faccette, nell'ordine degli array di facets()
+    private static final int CATEGORY = 0;
+    private static final int PUBLISHER = 1;
+    private static final int DECADE = 2;
+    // Valore di faccetta non filtrato, o richiesto ma assente dal catalogo
+    private static final int ANY = -2;
+    private static final int NONE = -3;
+
+    private final long version = BUILDS.incrementAndGet();
+    private final int size;
+    private final IntBuffer ids;
+    private final IntBuffer years;
+    private final Utf8Column titles;
+    private final Utf8Column authors;
+    private final Utf8Column descriptions;
+    private final DictionaryColumn categories;
+    private final DictionaryColumn publishers;
+    private final DictionaryColumn prices;
+    private final DictionaryColumn months;
+    // Decennio di pubblicazione come indice in decadeStarts, -1 se l'anno manca
+    private final int[] decadeStarts;
+    private final IntBuffer decades;
+    // Permutazioni delle righe per gli ordinamenti diversi dall'id
+    private final IntBuffer byTitle;
+    private final IntBuffer byAuthor;
+    private final IntBuffer byNewest;
+    private final PostingIndex[] postings;
+    // Libri di ogni categoria in ciascun ordinamento, indicizzato per CatalogOrder.ordinal()
+    private final PostingIndex[] byCategory;
+
+    private ColumnarCatalog(Builder b, int[] decadeStarts, int[] decades,
+                            IntBuffer byTitle, IntBuffer byAuthor, IntBuffer byNewest) {
+        this.size = b.size;
+        this.ids = OffHeap.ints(b.ids, b.size);
+        this.years = OffHeap.ints(b.years, b.size);
+        this.titles = b.titles.build();
+        this.authors = b.authors.build();
+        this.descriptions = b.descriptions.build();
+        this.categories = b.categories.build();
+        this.publishers = b.publishers.build();
+        this.prices = b.prices.build();
+        this.months = b.months.build();
+        this.decadeStarts = decadeStarts;
+        this.decades = OffHeap.ints(decades, b.size);
+        this.byTitle = byTitle;
+        this.byAuthor = byAuthor;
+        this.byNewest = byNewest;
+        CatalogOrder[] orders = CatalogOrder.values();
+        this.byCategory = new PostingIndex[orders.length];
+        for (CatalogOrder order : orders) {
+            IntBuffer permutation = permutation(order);
+            byCategory[order.ordinal()] = PostingIndex.build(categories::code, size, categories.valueCount(),
+                permutation != null ? permutation::get : row -> row, true);
+        }
+        this.postings = new PostingIndex[] {
+            byCategory[CatalogOrder.ID.ordinal()],
+            PostingIndex.build(publishers::code, size, publishers.valueCount()),
+            PostingIndex.build(this.decades::get, size, decadeStarts.length)
+        };
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the catalog served before the first build
+     */
+    public static ColumnarCatalog empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return a number that changes with every build, for cache keys
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the highest book id, or 0 if the catalog is empty
+     */
+    public int maxBookId() {
+        return size == 0 ? 0 : ids.get(size - 1);
+    }
+
+    public int bookId(int row) {
+        return ids.get(row);
+    }
+
+    /**
+     * @return the row of a book, or -1 if the book is not in the catalog
+     */
+    public int rowOf(int bookId) {
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int id = ids.get(mid);
+            if (id < bookId) {
+                lo = mid + 1;
+            } else if (id > bookId) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Materializes a full book.
+     */
+    public Book book(int row) {
+        Book book = new Book();
+        book.setBook_id(ids.get(row));
+        book.setTitle(titles.get(row));
+        book.setAuthors(authors.get(row));
+        book.setDescription(descriptions.get(row));
+        book.setCategory(categories.get(row));
+        book.setPublisher(publishers.get(row));
+        book.setPrice(prices.get(row));
+        book.setPublisher_month(months.get(row));
+        book.setPublish_date_year(years.get(row));
+        return book;
+    }
+
+    /**
+     * Materializes the list projection of a book.
+     */
+    public BookSummary summary(int row) {
+        return new BookSummary(ids.get(row), titles.get(row), authors.get(row), categories.get(row), years.get(row));
+    }
+
+    String title(int row) {
+        return titles.get(row);
+    }
+
+    String authors(int row) {
+        return authors.get(row);
+    }
+
+    /**
+     * Returns the books of some rows as a list that materializes each book
+     * only when it is read, so a large result is turned into objects one book
+     * at a time while it is marshalled. The list is unmodifiable.
+     *
+     * @param rows the row numbers
+     * @return a view of the books of the rows
+     */
+    public List<Book> bookView(int[] rows) {
+        return new BookView(rows);
+    }
+
+    public List<Book> books(int[] rows) {
+        List<Book> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(book(row));
+        }
+        return result;
+    }
+
+    public List<BookSummary> summaries(int[] rows) {
+        List<BookSummary> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(summary(row));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a page of the rows matching a filter.
+     *
+     * @param filter the conditions
+     * @param order the order of the page
+     * @param offset the number of matching rows to skip
+     * @param limit the maximum number of rows to return
+     * @return row numbers
+     */
+    public int[] select(CatalogFilter filter, CatalogOrder order, int offset, int limit) {
+        if (offset < 0 || limit <= 0 || offset >= size) {
+            return new int[0];
+        }
+        if (filter.matchesAll() && order == CatalogOrder.ID) {
+            // Nessun filtro: la pagina è un intervallo di righe
+            int end = (int) Math.min(size, (long) offset + limit);
+            int[] rows = new int[end - offset];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = offset + i;
+            }
+            return rows;
+        }
+        Matcher matcher = new Matcher(filter);
+        if (matcher.impossible) {
+            return new int[0];
+        }
+        IntBuffer permutation = permutation(order);
+        int[] rows = new int[Math.min(limit, size)];
+        int skipped = 0;
+        int count = 0;
+        for (int p = 0; p < size && count < rows.length; p++) {
+            int row = permutation == null ? p : permutation.get(p);
+            if (!matcher.test(row)) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                rows[count++] = row;
+            }
+        }
+        return count == rows.length ? rows : Arrays.copyOf(rows, count);
+    }
+
+    /**
+     * @return the number of rows matching a filter
+     */
+    public int count(CatalogFilter filter) {
+        if (filter.matchesAll()) {
+            return size;
+        }
+        Matcher matcher = new Matcher(filter);
+        if (matcher.impossible) {
+            return 0;
+        }
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (matcher.test(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private IntBuffer permutation(CatalogOrder order) {
+        switch (order) {
+            case TITLE:
+                return byTitle;
+            case AUTHOR:
+                return byAuthor;
+            case NEWEST:
+                return byNewest;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Counts the books matching a filter by category, publisher and decade.
+     * <p>
+     * Each facet is counted ignoring its own condition, so that the other
+     * values stay selectable. Without text conditions and with at most one
+     * facet condition the counts come from the posting lists: the totals for
+     * the unfiltered facets, and the posting list of the selected value for
+     * the others. Otherwise one pass over the rows counts every facet, since
+     * a row failing exactly one facet condition still counts for that facet.
+     *
+     * @param filter the search and the selected facet values
+     * @param maxPublishers the number of publishers to return, most frequent first
+     * @return the counts; values without books are left out
+     */
+    public BookFacets facets(CatalogFilter filter, int maxPublishers) {
+        CatalogFilter search = filter.withoutFacets();
+        Matcher matcher = new Matcher(search);
+        int[] wanted = {
+            wanted(categories, filter.getCategory()),
+            wanted(publishers, filter.getPublisher()),
+            decadeCode(filter.getDecade())
+        };
+        int[][] counts = {
+            new int[categories.valueCount()], new int[publishers.valueCount()], new int[decadeStarts.length]
+        };
+        int active = -1;
+        int activeCount = 0;
+        for (int dim = 0; dim < wanted.length; dim++) {
+            if (wanted[dim] != ANY) {
+                active = dim;
+                activeCount++;
+            }
+        }
+
+        int total = 0;
+        if (search.matchesAll() && activeCount <= 1) {
+            for (int dim = 0; dim < counts.length; dim++) {
+                if (activeCount == 0 || dim == active) {
+                    for (int code = 0; code < counts[dim].length; code++) {
+                        counts[dim][code] = postings[dim].count(code);
+                    }
+                }
+            }
+            if (activeCount == 0) {
+                total = size;
+            } else if (wanted[active] != NONE) {
+                PostingIndex selected = postings[active];
+                for (int p = selected.start(wanted[active]); p < selected.end(wanted[active]); p++) {
+                    int row = selected.row(p);
+                    total++;
+                    for (int dim = 0; dim < counts.length; dim++) {
+                        int code = dim != active ? facetCode(dim, row) : -1;
+                        if (code >= 0) {
+                            counts[dim][code]++;
+                        }
+                    }
+                }
+            }
+        } else if (!matcher.impossible) {
+            for (int row = 0; row < size; row++) {
+                int failed = -1;
+                boolean skip = false;
+                for (int dim = 0; dim < wanted.length && !skip; dim++) {
+                    if (wanted[dim] != ANY && facetCode(dim, row) != wanted[dim]) {
+                        skip = failed >= 0;
+                        failed = dim;
+                    }
+                }
+                if (skip || !matcher.test(row)) {
+                    continue;
+                }
+                if (failed >= 0) {
+                    int code = facetCode(failed, row);
+                    if (code >= 0) {
+                        counts[failed][code]++;
+                    }
+                    continue;
+                }
+                total++;
+                for (int dim = 0; dim < counts.length; dim++) {
+                    int code = facetCode(dim, row);
+                    if (code >= 0) {
+                        counts[dim][code]++;
+                    }
+                }
+            }
+        }
+
+        List<FacetCount> decadeCounts = new ArrayList<>();
+        for (int code = 0; code < decadeStarts.length; code++) {
+            if (counts[DECADE][code] > 0) {
+                decadeCounts.add(new FacetCount(String.valueOf(decadeStarts[code]), counts[DECADE][code]));
+            }
+        }
+        return new BookFacets(total,
+            byCount(categories, counts[CATEGORY], Integer.MAX_VALUE),
+            decadeCounts,
+            byCount(publishers, counts[PUBLISHER], maxPublishers));
+    }
+
+    /**
+     * @return the number of books in a category
+     */
+    public int categorySize(String category) {
+        return categorySize(category, CatalogFilter.all());
+    }
+
+    /**
+     * Counts the books of a category that match a filter.
+     *
+     * @param category the category, matched as in {@link #categoryPage}
+     * @param filter the filter applied within the category
+     * @return the number of matching books
+     */
+    public int categorySize(String category, CatalogFilter filter) {
+        int code = categoryCode(category);
+        if (code < 0) {
+            return 0;
+        }
+        PostingIndex list = byCategory[CatalogOrder.ID.ordinal()];
+        if (filter.matchesAll()) {
+            return list.count(code);
+        }
+        Matcher matcher = new Matcher(filter);
+        if (matcher.impossible) {
+            return 0;
+        }
+        int count = 0;
+        for (int i = list.start(code); i < list.end(code); i++) {
+            if (matcher.test(list.row(i))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a page of the books of a category, read from the list of the
+     * category in the requested order.
+     * <p>
+     * Pages are chained by the id of the last book of the previous page: its
+     * position is looked up in the list, so a page costs the same at any
+     * depth, and a page after a rebuild resumes from the same book.
+     *
+     * @param category the category, matched exactly or else ignoring case and surrounding blanks
+     * @param order the order of the list
+     * @param descending whether to walk the list from its end
+     * @param afterBookId the last book of the previous page, or null for the first page
+     * @param limit the maximum number of rows to return
+     * @return row numbers; empty if the category is unknown or the previous
+     *     book is no longer in it
+     */
+    public int[] categoryPage(String category, CatalogOrder order, boolean descending, Integer afterBookId,
+                              int limit) {
+        return categoryPage(category, CatalogFilter.all(), order, descending, afterBookId, limit);
+    }
+
+    /**
+     * Returns a page of the books of a category that match a filter, read
+     * from the list of the category in the requested order and skipping the
+     * books that do not match.
+     *
+     * @param category the category, matched exactly or else ignoring case and surrounding blanks
+     * @param filter the filter applied within the category
+     * @param order the order of the list
+     * @param descending whether to walk the list from its end
+     * @param afterBookId the last book of the previous page, or null for the first page
+     * @param limit the maximum number of rows to return
+     * @return row numbers; empty if the category is unknown or the previous
+     *     book is no longer in it
+     */
+    public int[] categoryPage(String category, CatalogFilter filter, CatalogOrder order, boolean descending,
+                              Integer afterBookId, int limit) {
+        int code = categoryCode(category);
+        if (code < 0 || limit <= 0) {
+            return new int[0];
+        }
+        PostingIndex list = byCategory[order.ordinal()];
+        int start = list.start(code);
+        int end = list.end(code);
+        int next = descending ? end - 1 : start;
+        if (afterBookId != null) {
+            int row = rowOf(afterBookId);
+            if (row < 0 || categories.code(row) != code) {
+                // Il libro non è più nella categoria: la pagina non si può agganciare
+                return new int[0];
+            }
+            next = list.position(row) + (descending ? -1 : 1);
+        }
+        if (filter.matchesAll()) {
+            int count = descending ? Math.min(limit, next - start + 1) : Math.min(limit, end - next);
+            int[] rows = new int[Math.max(0, count)];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = list.row(descending ? next - i : next + i);
+            }
+            return rows;
+        }
+        Matcher matcher = new Matcher(filter);
+        if (matcher.impossible) {
+            return new int[0];
+        }
+        int[] rows = new int[Math.min(limit, end - start)];
+        int found = 0;
+        for (int i = next; found < rows.length && i >= start && i < end; i += descending ? -1 : 1) {
+            int row = list.row(i);
+            if (matcher.test(row)) {
+                rows[found++] = row;
+            }
+        }
+        return found == rows.length ? rows : Arrays.copyOf(rows, found);
+    }
+
+    private int categoryCode(String category) {
+        if (category == null) {
+            return DictionaryColumn.NULL_CODE;
+        }
+        int code = categories.codeOf(category);
+        if (code != DictionaryColumn.NULL_CODE) {
+            return code;
+        }
+        // Il client mostra i nomi ripuliti: si confronta come faceva l'indice locale
+        String wanted = category.trim();
+        for (int value = 0; value < categories.valueCount(); value++) {
+            if (categories.value(value).trim().equalsIgnoreCase(wanted)) {
+                return value;
+            }
+        }
+        return DictionaryColumn.NULL_CODE;
+    }
+
+    private static int wanted(DictionaryColumn column, String value) {
+        if (value == null) {
+            return ANY;
+        }
+        int code = column.codeOf(value);
+        return code == DictionaryColumn.NULL_CODE ? NONE : code;
+    }
+
+    private int decadeCode(Integer decade) {
+        if (decade == null) {
+            return ANY;
+        }
+        int code = Arrays.binarySearch(decadeStarts, decade);
+        return code >= 0 ? code : NONE;
+    }
+
+    private int facetCode(int dim, int row) {
+        switch (dim) {
+            case CATEGORY:
+                return categories.code(row);
+            case PUBLISHER:
+                return publishers.code(row);
+            default:
+                return decades.get(row);
+        }
+    }
+
+    private static List<FacetCount> byCount(DictionaryColumn column, int[] counts, int max) {
+        List<FacetCount> result = new ArrayList<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0 && !column.value(code).trim().isEmpty()) {
+                result.add(new FacetCount(column.value(code), counts[code]));
+            }
+        }
+        result.sort(Comparator.comparingInt(FacetCount::getCount).reversed().thenComparing(FacetCount::getValue));
+        return result.size() > max ? new ArrayList<>(result.subList(0, max)) : result;
+    }
+
+    /**
+     * Opens a cursor over the books with an id above {@code afterBookId}, in id
+     * order. The cursor holds no database resource; books are materialized one
+     * chunk at a time.
+     */
+    public ResultCursor<Book> cursor(int afterBookId) {
+        int first = rowOf(afterBookId);
+        if (first < 0) {
+            // Primo id maggiore di afterBookId
+            int lo = 0;
+            int hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ids.get(mid) <= afterBookId) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            first = lo;
+        } else {
+            first++;
+        }
+        return new RowCursor(first);
+    }
+
+    /**
+     * @return bytes held in direct buffers by the columns
+     */
+    public long offHeapBytes() {
+        long bytes = 4L * (ids.capacity() + years.capacity() + decades.capacity()
+            + byTitle.capacity() + byAuthor.capacity() + byNewest.capacity());
+        // postings[CATEGORY] è anche in byCategory
+        for (int dim = PUBLISHER; dim < postings.length; dim++) {
+            bytes += postings[dim].offHeapBytes();
+        }
+        for (PostingIndex index : byCategory) {
+            bytes += index.offHeapBytes();
+        }
+        return bytes + titles.offHeapBytes() + authors.offHeapBytes() + descriptions.offHeapBytes()
+            + categories.offHeapBytes() + publishers.offHeapBytes() + prices.offHeapBytes() + months.offHeapBytes();
+    }
+
+    /**
+     * A filter resolved against the columns of this catalog.
+     */
+    private final class Matcher {
+        private final Utf8Column.Needle text;
+        private final Utf8Column.Needle title;
+        private final Utf8Column.Needle author;
+        private final Integer year;
+        private final int category;
+        private final int publisher;
+        private final int decade;
+        private final boolean impossible;
+
+        Matcher(CatalogFilter filter) {
+            this.text = filter.getText() != null ? new Utf8Column.Needle(filter.getText()) : null;
+            this.title = filter.getTitle() != null ? new Utf8Column.Needle(filter.getTitle()) : null;
+            this.author = filter.getAuthor() != null ? new Utf8Column.Needle(filter.getAuthor()) : null;
+            this.year = filter.getYear();
+            this.category = wanted(categories, filter.getCategory());
+            this.publisher = wanted(publishers, filter.getPublisher());
+            this.decade = decadeCode(filter.getDecade());
+            // Un valore che nessun libro ha non può corrispondere
+            this.impossible = category == NONE || publisher == NONE || decade == NONE;
+        }
+
+        boolean test(int row) {
+            // Prima le colonne intere, poi le stringhe
+            return (year == null || years.get(row) == year)
+                && (category == ANY || categories.code(row) == category)
+                && (publisher == ANY || publishers.code(row) == publisher)
+                && (decade == ANY || decades.get(row) == decade)
+                && (title == null || titles.contains(row, title))
+                && (author == null || authors.contains(row, author))
+                && (text == null || titles.contains(row, text) || authors.contains(row, text));
+        }
+    }
+
+    private final class BookView extends AbstractList<Book> implements RandomAccess {
+        private final int[] rows;
+
+        BookView(int[] rows) {
+            this.rows = rows;
+        }
+
+        @Override
+        public Book get(int index) {
+            return book(rows[index]);
+        }
+
+        @Override
+        public int size() {
+            return rows.length;
+        }
+    }
+
+    private final class RowCursor implements ResultCursor<Book> {
+        private int next;
+        private boolean closed;
+
+        RowCursor(int first) {
+            this.next = first;
+        }
+
+        @Override
+        public List<Book> next(int max) {
+            if (closed || next >= size) {
+                return new ArrayList<>();
+            }
+            int end = (int) Math.min(size, (long) next + Math.max(1, max));
+            List<Book> chunk = new ArrayList<>(end - next);
+            for (int row = next; row < end; row++) {
+                chunk.add(book(row));
+            }
+            next = end;
+            return chunk;
+        }
+
+        @Override
+        public boolean isExhausted() {
+            return closed || next >= size;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * Collects books in ascending id order on the heap, then moves the columns
+     * off-heap in {@link #build()}.
+     */
+    public static final class Builder {
+        private int[] ids = new int[1024];
+        private int[] years = new int[1024];
+        private String[] titleKeys = new String[1024];
+        private String[] authorKeys = new String[1024];
+        private int size;
+        private final Utf8Column.Builder titles = new Utf8Column.Builder();
+        private final Utf8Column.Builder authors = new Utf8Column.Builder();
+        private final Utf8Column.Builder descriptions = new Utf8Column.Builder();
+        private final DictionaryColumn.Builder categories = new DictionaryColumn.Builder();
+        private final DictionaryColumn.Builder publishers = new DictionaryColumn.Builder();
+        private final DictionaryColumn.Builder prices = new DictionaryColumn.Builder();
+        private final DictionaryColumn.Builder months = new DictionaryColumn.Builder();
+
+        private Builder() {
+        }
+
+        /**
+         * Appends a book.
+         *
+         * @param book the book; its id must be greater than the one of the previous book
+         * @return this builder
+         * @throws IllegalArgumentException if the books are not in ascending id order
+         */
+        public Builder add(Book book) {
+            if (size > 0 && book.getBook_id() <= ids[size - 1]) {
+                throw new IllegalArgumentException("Books must be added in ascending id order: "
+                    + book.getBook_id() + " after " + ids[size - 1]);
+            }
+            if (size == ids.length) {
+                int capacity = ids.length + (ids.length >> 1);
+                ids = Arrays.copyOf(ids, capacity);
+                years = Arrays.copyOf(years, capacity);
+                titleKeys = Arrays.copyOf(titleKeys, capacity);
+                authorKeys = Arrays.copyOf(authorKeys, capacity);
+            }
+            ids[size] = book.getBook_id();
+            years[size] = book.getPublish_date_year();
+            titleKeys[size] = sortKey(book.getTitle());
+            authorKeys[size] = sortKey(book.getAuthors());
+            size++;
+            titles.add(book.getTitle());
+            authors.add(book.getAuthors());
+            descriptions.add(book.getDescription());
+            categories.add(book.getCategory());
+            publishers.add(book.getPublisher());
+            prices.add(book.getPrice());
+            months.add(book.getPublisher_month());
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Sorts the permutations and copies every column off-heap. The builder
+         * must not be used afterwards.
+         */
+        public ColumnarCatalog build() {
+            int[] byTitle = sortByKey(titleKeys);
+            int[] byAuthor = sortByKey(authorKeys);
+            titleKeys = null;
+            authorKeys = null;
+
+            long[] newest = new long[size];
+            for (int i = 0; i < size; i++) {
+                newest[i] = ((long) -years[i] << 32) | i;
+            }
+            Arrays.sort(newest);
+            int[] byNewest = new int[size];
+            for (int i = 0; i < size; i++) {
+                byNewest[i] = (int) newest[i];
+            }
+
+            // Anni mancanti (0 o negativi) restano senza decennio
+            int[] decadeStarts = Arrays.stream(years, 0, size)
+                .filter(year -> year > 0)
+                .map(year -> year - year % 10)
+                .distinct()
+                .sorted()
+                .toArray();
+            int[] decades = new int[size];
+            for (int i = 0; i < size; i++) {
+                decades[i] = years[i] > 0 ? Arrays.binarySearch(decadeStarts, years[i] - years[i] % 10) : -1;
+            }
+            return new ColumnarCatalog(this, decadeStarts, decades,
+                OffHeap.ints(byTitle, size), OffHeap.ints(byAuthor, size), OffHeap.ints(byNewest, size));
+        }
+
+        private static String sortKey(String value) {
+            return value != null ? value.toLowerCase(Locale.ROOT) : "";
+        }
+
+        private int[] sortByKey(String[] keys) {
+            // Le righe sono già in ordine di id: a parità di chiave vince la riga più bassa
+            Integer[] rows = new Integer[size];
+            for (int i = 0; i < size; i++) {
+                rows[i] = i;
+            }
+            Arrays.sort(rows, (a, b) -> {
+                int byKey = keys[a].compareTo(keys[b]);
+                return byKey != 0 ? byKey : Integer.compare(a, b);
+            });
+            int[] sorted = new int[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = rows[i];
+            }
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package it.uninsubria.server.catalog;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import it.uninsubria.server.recommendation.PopularityRanking;
+import it.uninsubria.shared.model.SearchCompletion;
+
+/**
+ * Type-ahead index over the titles and authors of a {@link ColumnarCatalog}.
+ * <p>
+ * Every distinct title and author is an entry. Its text is normalized (lower
+ * case, without accents and punctuation) and stored off-heap as UTF-8. The
+ * terms are the suffixes of the entries that start at a word, so "rosa"
+ * completes "Il Nome della Rosa". They are kept as a sorted array of
+ * (entry, offset) pairs, and the terms starting with a prefix are the range
+ * found by two binary searches.
+ * <p>
+ * An entry is ranked by its most popular book. The best K entries of a range
+ * are picked without visiting the range: the terms are grouped in blocks of
+ * {@value #BLOCK}, a sparse table gives the best block of any run of blocks,
+ * and a heap of sub-ranges keyed by their best term yields the terms best
+ * first. A lookup costs O(K log K) block scans however common the prefix is.
+ * <p>
+ * The terms depend only on the catalog; {@link #rerank(PopularityRanking)}
+ * shares them and recomputes the ranks when the popularity changes.
+ */
+public final class CompletionIndex {
+
+    private static final int BLOCK = 64;
+    // Parole di un'entrata da cui può iniziare un completamento
+    private static final int MAX_WORD_STARTS = 8;
+
+    private final Terms terms;
+    private final long rankingVersion;
+    // Rango del libro più popolare di ogni entrata, e la sua riga
+    private final IntBuffer entryRanks;
+    private final IntBuffer bestRows;
+    // Rango migliore di ogni blocco di termini
+    private final IntBuffer blockRanks;
+    // levels[k].get(b): il blocco migliore tra b e b + 2^k - 1
+    private final IntBuffer[] levels;
+
+    private CompletionIndex(Terms terms, PopularityRanking ranking) {
+        this.terms = terms;
+        this.rankingVersion = ranking.getVersion();
+        ColumnarCatalog catalog = terms.catalog;
+
+        // I libri senza segnali seguono quelli classificati, in ordine di id
+        int[] rowRanks = new int[catalog.size()];
+        for (int row = 0; row < rowRanks.length; row++) {
+            rowRanks[row] = ranking.size() + row;
+        }
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            int row = catalog.rowOf(ranking.bookAt(rank));
+            if (row >= 0) {
+                rowRanks[row] = rank;
+            }
+        }
+        int[] ranks = new int[terms.entryCount];
+        int[] best = new int[terms.entryCount];
+        for (int entry = 0; entry < terms.entryCount; entry++) {
+            PostingIndex rows = entry < terms.titleCount ? terms.titleRows : terms.authorRows;
+            int code = entry < terms.titleCount ? entry : entry - terms.titleCount;
+            ranks[entry] = Integer.MAX_VALUE;
+            for (int p = rows.start(code); p < rows.end(code); p++) {
+                int row = rows.row(p);
+                if (rowRanks[row] < ranks[entry]) {
+                    ranks[entry] = rowRanks[row];
+                    best[entry] = row;
+                }
+            }
+        }
+        this.entryRanks = OffHeap.ints(ranks, ranks.length);
+        this.bestRows = OffHeap.ints(best, best.length);
+
+        int termCount = terms.count();
+        int blocks = (termCount + BLOCK - 1) / BLOCK;
+        int[] blockBest = new int[blocks];
+        Arrays.fill(blockBest, Integer.MAX_VALUE);
+        for (int t = 0; t < termCount; t++) {
+            blockBest[t / BLOCK] = Math.min(blockBest[t / BLOCK], ranks[terms.entry(t)]);
+        }
+        this.blockRanks = OffHeap.ints(blockBest, blocks);
+
+        List<IntBuffer> table = new ArrayList<>();
+        int[] level = new int[blocks];
+        for (int b = 0; b < blocks; b++) {
+            level[b] = b;
+        }
+        for (int span = 1; span <= blocks; span <<= 1) {
+            int length = blocks - span + 1;
+            table.add(OffHeap.ints(level, length));
+            int[] wider = new int[Math.max(0, blocks - 2 * span + 1)];
+            for (int b = 0; b < wider.length; b++) {
+                int left = level[b];
+                int right = level[b + span];
+                wider[b] = blockBest[right] < blockBest[left] ? right : left;
+            }
+            level = wider;
+        }
+        this.levels = table.toArray(new IntBuffer[0]);
+    }
+
+    /**
+     * Indexes the titles and authors of a catalog.
+     *
+     * @param catalog the catalog
+     * @param ranking the popularity used to order the completions
+     */
+    public static CompletionIndex build(ColumnarCatalog catalog, PopularityRanking ranking) {
+        return new CompletionIndex(Terms.build(catalog), ranking);
+    }
+
+    /**
+     * @return an index with the same terms, ordered by another ranking
+     */
+    public CompletionIndex rerank(PopularityRanking ranking) {
+        return new CompletionIndex(terms, ranking);
+    }
+
+    /**
+     * @return the version of the ranking the completions are ordered by
+     */
+    public long getRankingVersion() {
+        return rankingVersion;
+    }
+
+    public int termCount() {
+        return terms.count();
+    }
+
+    /**
+     * Returns the most popular titles and authors with a word starting with a
+     * prefix. The prefix is normalized like the entries; a trailing blank
+     * asks for the word to be complete.
+     *
+     * @param prefix what the user typed so far
+     * @param k the maximum number of completions
+     * @return the completions, most popular first
+     */
+    public List<SearchCompletion> complete(String prefix, int k) {
+        List<SearchCompletion> result = new ArrayList<>();
+        byte[] key = normalize(prefix, true).getBytes(StandardCharsets.UTF_8);
+        if (key.length == 0 || k <= 0) {
+            return result;
+        }
+        int lo = bound(key, false);
+        int hi = bound(key, true);
+        // Sotto-intervalli {lo, hi, termine migliore, rango}, il migliore in testa
+        PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) ->
+            a[3] != b[3] ? Integer.compare(a[3], b[3]) : Integer.compare(a[2], b[2]));
+        push(ranges, lo, hi);
+        Set<Integer> seen = new HashSet<>();
+        while (!ranges.isEmpty() && result.size() < k) {
+            int[] range = ranges.poll();
+            int entry = terms.entry(range[2]);
+            // Un'entrata può comparire con più parole nello stesso intervallo
+            if (seen.add(entry)) {
+                result.add(completion(entry));
+            }
+            push(ranges, range[0], range[2]);
+            push(ranges, range[2] + 1, range[1]);
+        }
+        return result;
+    }
+
+    private void push(PriorityQueue<int[]> ranges, int lo, int hi) {
+        if (lo < hi) {
+            int best = best(lo, hi);
+            ranges.add(new int[] { lo, hi, best, rank(best) });
+        }
+    }
+
+    private SearchCompletion completion(int entry) {
+        ColumnarCatalog catalog = terms.catalog;
+        int row = bestRows.get(entry);
+        if (entry < terms.titleCount) {
+            return new SearchCompletion(SearchCompletion.Kind.TITLE, catalog.title(row).trim(), catalog.bookId(row));
+        }
+        return new SearchCompletion(SearchCompletion.Kind.AUTHOR, authorText(catalog.authors(row)), catalog.bookId(row));
+    }
+
+    private int rank(int term) {
+        return entryRanks.get(terms.entry(term));
+    }
+
+    /**
+     * @return the term with the best rank between lo and hi, excluded
+     */
+    private int best(int lo, int hi) {
+        int firstBlock = (lo + BLOCK - 1) / BLOCK;
+        int endBlock = hi / BLOCK;
+        if (firstBlock >= endBlock) {
+            return scan(lo, hi);
+        }
+        // Blocchi interi dalla tabella, i pezzi ai bordi termine per termine
+        int span = 31 - Integer.numberOfLeadingZeros(endBlock - firstBlock);
+        int left = levels[span].get(firstBlock);
+        int right = levels[span].get(endBlock - (1 << span));
+        int block = blockRanks.get(right) < blockRanks.get(left) ? right : left;
+        int best = better(scan(lo, firstBlock * BLOCK), scan(block * BLOCK, (block + 1) * BLOCK));
+        return better(best, scan(endBlock * BLOCK, hi));
+    }
+
+    private int scan(int lo, int hi) {
+        int best = -1;
+        for (int t = lo; t < hi; t++) {
+            best = better(best, t);
+        }
+        return best;
+    }
+
+    private int better(int a, int b) {
+        if (a < 0 || b < 0) {
+            return Math.max(a, b);
+        }
+        int byRank = Integer.compare(rank(a), rank(b));
+        return byRank < 0 || (byRank == 0 && a < b) ? a : b;
+    }
+
+    /**
+     * @return the first term whose first bytes are not below the key, or
+     *     above it if {@code after}
+     */
+    private int bound(byte[] key, boolean after) {
+        int lo = 0;
+        int hi = terms.count();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = terms.comparePrefix(mid, key);
+            if (cmp < 0 || (after && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return bytes held in direct buffers by the terms and the ranks
+     */
+    public long offHeapBytes() {
+        long bytes = terms.offHeapBytes() + 4L * (entryRanks.capacity() + bestRows.capacity() + blockRanks.capacity());
+        for (IntBuffer level : levels) {
+            bytes += 4L * level.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * Normalizes a title, an author or a prefix: lower case, without accents,
+     * with every run of other characters than letters and digits turned into
+     * a single blank.
+     *
+     * @param value the text, possibly null
+     * @param keepTrailingBlank whether a separator at the end becomes a blank
+     */
+    static String normalize(String value, boolean keepTrailingBlank) {
+        if (value == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD);
+        StringBuilder text = new StringBuilder(decomposed.length());
+        boolean blank = false;
+        for (int i = 0; i < decomposed.length(); ) {
+            int c = decomposed.codePointAt(i);
+            i += Character.charCount(c);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                if (blank && text.length() > 0) {
+                    text.append(' ');
+                }
+                blank = false;
+                text.appendCodePoint(Character.toLowerCase(c));
+            } else {
+                blank = true;
+            }
+        }
+        if (blank && keepTrailingBlank && text.length() > 0) {
+            text.append(' ');
+        }
+        return text.toString();
+    }
+
+    /**
+     * @return the authors without the "By " of the imported dataset, or null if blank
+     */
+    static String authorText(String authors) {
+        if (authors == null) {
+            return null;
+        }
+        String text = authors.trim();
+        if (text.regionMatches(true, 0, "by", 0, 2) && (text.length() == 2 || Character.isWhitespace(text.charAt(2)))) {
+            text = text.substring(2).trim();
+        }
+        return text.isEmpty() ? null : text;
+    }
+
+    /**
+     * The entries and their sorted terms, shared by every ranking of the same
+     * catalog. Titles come first, then authors.
+     */
+    private static final class Terms {
+        private final ColumnarCatalog catalog;
+        private final int titleCount;
+        private final int entryCount;
+        // Testo normalizzato delle entrate, una dopo l'altra
+        private final IntBuffer textOffsets;
+        private final ByteBuffer text;
+        // (entrata << 32) | offset della parola nel testo, in ordine di suffisso
+        private final LongBuffer sorted;
+        // Righe di ogni titolo e di ogni autore
+        private final PostingIndex titleRows;
+        private final PostingIndex authorRows;
+
+        private Terms(ColumnarCatalog catalog, int titleCount, int[] offsets, byte[] text, long[] sorted,
+                      PostingIndex titleRows, PostingIndex authorRows) {
+            this.catalog = catalog;
+            this.titleCount = titleCount;
+            this.entryCount = offsets.length - 1;
+            this.textOffsets = OffHeap.ints(offsets, offsets.length);
+            this.text = OffHeap.bytes(text, offsets[entryCount]);
+            this.sorted = OffHeap.longs(sorted);
+            this.titleRows = titleRows;
+            this.authorRows = authorRows;
+        }
+
+        static Terms build(ColumnarCatalog catalog) {
+            int size = catalog.size();
+            List<byte[]> texts = new ArrayList<>();
+            int[] titleCodes = new int[size];
+            Map<String, Integer> titles = new HashMap<>();
+            for (int row = 0; row < size; row++) {
+                titleCodes[row] = code(titles, texts, normalize(catalog.title(row), false));
+            }
+            int titleCount = texts.size();
+            int[] authorCodes = new int[size];
+            Map<String, Integer> authors = new HashMap<>();
+            for (int row = 0; row < size; row++) {
+                int code = code(authors, texts, normalize(authorText(catalog.authors(row)), false));
+                authorCodes[row] = code >= 0 ? code - titleCount : code;
+            }
+
+            int[] offsets = new int[texts.size() + 1];
+            int termCount = 0;
+            for (int entry = 0; entry < texts.size(); entry++) {
+                byte[] value = texts.get(entry);
+                offsets[entry + 1] = offsets[entry] + value.length;
+                termCount += wordStarts(value, null);
+            }
+            byte[] blob = new byte[offsets[texts.size()]];
+            Long[] terms = new Long[termCount];
+            int[] starts = new int[MAX_WORD_STARTS];
+            int t = 0;
+            for (int entry = 0; entry < texts.size(); entry++) {
+                byte[] value = texts.get(entry);
+                System.arraycopy(value, 0, blob, offsets[entry], value.length);
+                int count = wordStarts(value, starts);
+                for (int i = 0; i < count; i++) {
+                    terms[t++] = ((long) entry << 32) | starts[i];
+                }
+            }
+            Arrays.sort(terms, (a, b) -> {
+                int bySuffix = compareSuffixes(blob, offsets, a, b);
+                return bySuffix != 0 ? bySuffix : Long.compare(a, b);
+            });
+            long[] sorted = new long[termCount];
+            for (int i = 0; i < termCount; i++) {
+                sorted[i] = terms[i];
+            }
+            return new Terms(catalog, titleCount, offsets, blob, sorted,
+                PostingIndex.build(row -> titleCodes[row], size, titleCount),
+                PostingIndex.build(row -> authorCodes[row], size, texts.size() - titleCount));
+        }
+
+        private static int code(Map<String, Integer> codes, List<byte[]> texts, String key) {
+            if (key.isEmpty()) {
+                return -1;
+            }
+            return codes.computeIfAbsent(key, k -> {
+                texts.add(k.getBytes(StandardCharsets.UTF_8));
+                return texts.size() - 1;
+            });
+        }
+
+        /**
+         * Finds the offsets of the first words of a normalized text.
+         *
+         * @param starts where to write them, or null to count them only
+         * @return the number of offsets
+         */
+        private static int wordStarts(byte[] value, int[] starts) {
+            int count = 0;
+            for (int i = 0; i < value.length && count < MAX_WORD_STARTS; i++) {
+                if (i == 0 || value[i - 1] == ' ') {
+                    if (starts != null) {
+                        starts[count] = i;
+                    }
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private static int compareSuffixes(byte[] blob, int[] offsets, long a, long b) {
+            int from = offsets[(int) (a >>> 32)] + (int) a;
+            int end = offsets[(int) (a >>> 32) + 1];
+            int otherFrom = offsets[(int) (b >>> 32)] + (int) b;
+            int otherEnd = offsets[(int) (b >>> 32) + 1];
+            return Arrays.compareUnsigned(blob, from, end, blob, otherFrom, otherEnd);
+        }
+
+        int count() {
+            return sorted.capacity();
+        }
+
+        int entry(int term) {
+            return (int) (sorted.get(term) >>> 32);
+        }
+
+        /**
+         * Compares the start of a term with a key, as unsigned bytes.
+         *
+         * @return 0 if the term starts with the key
+         */
+        int comparePrefix(int term, byte[] key) {
+            long value = sorted.get(term);
+            int entry = (int) (value >>> 32);
+            int from = textOffsets.get(entry) + (int) value;
+            int end = textOffsets.get(entry + 1);
+            for (int i = 0; i < key.length; i++) {
+                if (from + i >= end) {
+                    return -1;
+                }
+                int cmp = Integer.compare(text.get(from + i) & 0xff, key[i] & 0xff);
+                if (cmp != 0) {
+                    return cmp;
+                }
+            }
+            return 0;
+        }
+
+        long offHeapBytes() {
+            return 4L * textOffsets.capacity() + text.capacity() + 8L * sorted.capacity()
+                + titleRows.offHeapBytes() + authorRows.offHeapBytes();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package it.uninsubria.server.catalog;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary-encoded string column for low-cardinality values such as
+ * categories and publishers: each distinct value is stored once on the heap
+ * and rows hold its code off-heap, -1 for null. Codes follow the order of
+ * first appearance.
+ */
+final class DictionaryColumn {
+
+    static final int NULL_CODE = -1;
+
+    private final String[] values;
+    private final Map<String, Integer> codes;
+    private final IntBuffer rows;
+
+    private DictionaryColumn(String[] values, Map<String, Integer> codes, IntBuffer rows) {
+        this.values = values;
+        this.codes = codes;
+        this.rows = rows;
+    }
+
+    int code(int row) {
+        return rows.get(row);
+    }
+
+    String get(int row) {
+        int code = rows.get(row);
+        return code == NULL_CODE ? null : values[code];
+    }
+
+    /**
+     * @return the code of a value, or {@link #NULL_CODE} if no row has it
+     */
+    int codeOf(String value) {
+        Integer code = value != null ? codes.get(value) : null;
+        return code != null ? code : NULL_CODE;
+    }
+
+    String value(int code) {
+        return values[code];
+    }
+
+    int valueCount() {
+        return values.length;
+    }
+
+    long offHeapBytes() {
+        return 4L * rows.capacity();
+    }
+
+    static final class Builder {
+        private final List<String> values = new ArrayList<>();
+        private final Map<String, Integer> codes = new HashMap<>();
+        private int[] rows = new int[1024];
+        private int size;
+
+        void add(String value) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, rows.length + (rows.length >> 1));
+            }
+            int code = NULL_CODE;
+            if (value != null) {
+                code = codes.computeIfAbsent(value, v -> {
+                    values.add(v);
+                    return values.size() - 1;
+                });
+            }
+            rows[size++] = code;
+        }
+
+        DictionaryColumn build() {
+            return new DictionaryColumn(values.toArray(new String[0]), new HashMap<>(codes),
+                OffHeap.ints(rows, size));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package it.uninsubria.server.catalog;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Copies primitive arrays built on the heap into direct buffers, outside the
+ * garbage collected heap. The returned buffers are only read with absolute
+ * gets, so they can be shared by any number of threads.
+ */
+final class OffHeap {
+
+    private OffHeap() {
+    }
+
+    static IntBuffer ints(int[] values, int length) {
+        IntBuffer buffer = ByteBuffer.allocateDirect(4 * length).order(ByteOrder.nativeOrder()).asIntBuffer();
+        buffer.put(values, 0, length);
+        return buffer.flip();
+    }
+
+    static LongBuffer longs(long[] values) {
+        LongBuffer buffer = ByteBuffer.allocateDirect(8 * values.length).order(ByteOrder.nativeOrder()).asLongBuffer();
+        buffer.put(values);
+        return buffer.flip();
+    }
+
+    static ByteBuffer bytes(byte[] values, int length) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+        buffer.put(values, 0, length);
+        return buffer.flip();
+    }
+}
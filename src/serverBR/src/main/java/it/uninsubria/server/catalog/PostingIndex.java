@@ -0,0 +1,106 @@
+package it.uninsubria.server.catalog;
+
+import java.nio.IntBuffer;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Posting lists of a coded column: for every code, the rows that have it,
+ * in ascending order or in the order of a permutation of the rows. The lists
+ * are stored off-heap back to back, with the start of every list, so the
+ * number of rows with a code is a subtraction. Optionally the position of
+ * every row is kept too, to resume a list after a given row.
+ */
+final class PostingIndex {
+
+    private final IntBuffer starts;
+    private final IntBuffer rows;
+    private final IntBuffer positions;
+
+    private PostingIndex(IntBuffer starts, IntBuffer rows, IntBuffer positions) {
+        this.starts = starts;
+        this.rows = rows;
+        this.positions = positions;
+    }
+
+    /**
+     * Groups the rows by code with a counting sort; rows with a negative code
+     * are left out.
+     *
+     * @param codes the code of every row
+     * @param size the number of rows
+     * @param valueCount the number of distinct codes
+     */
+    static PostingIndex build(IntUnaryOperator codes, int size, int valueCount) {
+        return build(codes, size, valueCount, row -> row, false);
+    }
+
+    /**
+     * Groups the rows by code keeping, within a code, the order of a
+     * permutation; the counting sort is stable, so one pass over the
+     * permutation is enough.
+     *
+     * @param codes the code of every row
+     * @param size the number of rows
+     * @param valueCount the number of distinct codes
+     * @param order the row at every position of the permutation
+     * @param withPositions whether to keep the position of every row for {@link #position(int)}
+     */
+    static PostingIndex build(IntUnaryOperator codes, int size, int valueCount, IntUnaryOperator order,
+                              boolean withPositions) {
+        int[] starts = new int[valueCount + 1];
+        for (int row = 0; row < size; row++) {
+            int code = codes.applyAsInt(row);
+            if (code >= 0) {
+                starts[code + 1]++;
+            }
+        }
+        for (int code = 0; code < valueCount; code++) {
+            starts[code + 1] += starts[code];
+        }
+        int[] next = starts.clone();
+        int[] rows = new int[starts[valueCount]];
+        int[] positions = withPositions ? new int[size] : null;
+        for (int p = 0; p < size; p++) {
+            int row = order.applyAsInt(p);
+            int code = codes.applyAsInt(row);
+            if (code >= 0) {
+                if (positions != null) {
+                    positions[row] = next[code];
+                }
+                rows[next[code]++] = row;
+            }
+        }
+        return new PostingIndex(OffHeap.ints(starts, starts.length), OffHeap.ints(rows, rows.length),
+            positions != null ? OffHeap.ints(positions, size) : null);
+    }
+
+    int count(int code) {
+        return starts.get(code + 1) - starts.get(code);
+    }
+
+    int start(int code) {
+        return starts.get(code);
+    }
+
+    int end(int code) {
+        return starts.get(code + 1);
+    }
+
+    /**
+     * @param position a position between {@link #start(int)} and {@link #end(int)} of a code
+     */
+    int row(int position) {
+        return rows.get(position);
+    }
+
+    /**
+     * @return the position of a row that has a code; only for an index built with positions
+     */
+    int position(int row) {
+        return positions.get(row);
+    }
+
+    long offHeapBytes() {
+        return 4L * (starts.capacity() + rows.capacity() + (positions != null ? positions.capacity() : 0));
+    }
+}
@@ -0,0 +1,132 @@
+package it.uninsubria.server.catalog;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Off-heap string column: the UTF-8 bytes of every row back to back, an
+ * offset per row and a null bitmap. A row is decoded into a {@link String}
+ * only when it is read; filters match the bytes in place.
+ */
+final class Utf8Column {
+
+    private final IntBuffer offsets;
+    private final ByteBuffer bytes;
+    private final LongBuffer nulls;
+
+    private Utf8Column(IntBuffer offsets, ByteBuffer bytes, LongBuffer nulls) {
+        this.offsets = offsets;
+        this.bytes = bytes;
+        this.nulls = nulls;
+    }
+
+    boolean isNull(int row) {
+        return (nulls.get(row >>> 6) & (1L << row)) != 0;
+    }
+
+    String get(int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        int from = offsets.get(row);
+        byte[] value = new byte[offsets.get(row + 1) - from];
+        bytes.get(from, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Tells whether a row contains a needle, ignoring case.
+     * <p>
+     * An ASCII needle is matched on the raw bytes, folding only the ASCII
+     * letters of the row: a multi-byte UTF-8 sequence never contains ASCII
+     * bytes, so it cannot produce a false match. Other needles decode the row.
+     */
+    boolean contains(int row, Needle needle) {
+        if (isNull(row)) {
+            return false;
+        }
+        if (!needle.ascii) {
+            return get(row).toLowerCase(Locale.ROOT).contains(needle.text);
+        }
+        byte[] pattern = needle.bytes;
+        int from = offsets.get(row);
+        int last = offsets.get(row + 1) - pattern.length;
+        for (int start = from; start <= last; start++) {
+            int i = 0;
+            while (i < pattern.length && lower(bytes.get(start + i)) == pattern[i]) {
+                i++;
+            }
+            if (i == pattern.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    long offHeapBytes() {
+        return 4L * offsets.capacity() + bytes.capacity() + 8L * nulls.capacity();
+    }
+
+    /**
+     * A lower-cased search string, prepared once per query.
+     */
+    static final class Needle {
+        final String text;
+        final byte[] bytes;
+        final boolean ascii;
+
+        Needle(String value) {
+            this.text = value.toLowerCase(Locale.ROOT);
+            this.bytes = text.getBytes(StandardCharsets.UTF_8);
+            this.ascii = bytes.length == text.length();
+        }
+    }
+
+    /**
+     * Appends rows on the heap, then copies them off-heap in {@link #build()}.
+     */
+    static final class Builder {
+        private int[] offsets = new int[1025];
+        private byte[] bytes = new byte[16 * 1024];
+        private long[] nulls = new long[16];
+        private int rows;
+
+        void add(String value) {
+            if (rows + 1 == offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length + (offsets.length >> 1));
+            }
+            if ((rows >>> 6) == nulls.length) {
+                nulls = Arrays.copyOf(nulls, nulls.length * 2);
+            }
+            int end = offsets[rows];
+            if (value == null) {
+                nulls[rows >>> 6] |= 1L << rows;
+            } else {
+                byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+                if ((long) end + encoded.length > Integer.MAX_VALUE - 8) {
+                    throw new IllegalStateException("String column larger than 2GB");
+                }
+                if (end + encoded.length > bytes.length) {
+                    long grown = Math.max(end + encoded.length, bytes.length + (long) (bytes.length >> 1));
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(grown, Integer.MAX_VALUE - 8));
+                }
+                System.arraycopy(encoded, 0, bytes, end, encoded.length);
+                end += encoded.length;
+            }
+            offsets[++rows] = end;
+        }
+
+        Utf8Column build() {
+            return new Utf8Column(OffHeap.ints(offsets, rows + 1), OffHeap.bytes(bytes, offsets[rows]),
+                OffHeap.longs(Arrays.copyOf(nulls, (rows + 63) >>> 6)));
+        }
+    }
+}
@@ -3,6 +3,10 @@ package it.uninsubria.server.dao;
 import java.util.List;
 
 import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookFacets;
+import it.uninsubria.shared.model.BookSummary;
+import it.uninsubria.shared.model.CategorySort;
+import it.uninsubria.shared.model.FacetFilters;
 import it.uninsubria.shared.model.ReviewManager;
 
 /**
@@ -60,6 +64,16 @@ public interface BookDAO {
      * @throws Exception if database access fails
      */
     Book findByID(int bookId) throws Exception;
+    /**
+     * Finds several books by their IDs with a single query per chunk of IDs.
+     * The order of the returned books is not guaranteed and IDs that do not
+     * exist are simply absent from the result.
+     *
+     * @param bookIds the book IDs
+     * @return the books found
+     * @throws Exception if database access fails
+     */
+    List<Book> findByIds(int[] bookIds) throws Exception;
     /**
      * Retrieves all books.
      *
@@ -67,6 +81,25 @@ public interface BookDAO {
      * @throws Exception if database access fails
      */
     List<Book> findAll() throws Exception;
+    /**
+     * Opens a cursor over the whole catalog ordered by id, read in chunks
+     * without materializing the result.
+     *
+     * @param fetchSize rows fetched from the database per round trip
+     * @return the open cursor; the caller must close it
+     * @throws Exception if database access fails
+     */
+    ResultCursor<Book> openCatalogCursor(int fetchSize) throws Exception;
+    /**
+     * Opens a cursor over the books with an id greater than {@code afterBookId},
+     * ordered by id; used to pick up the books added since a previous scan.
+     *
+     * @param afterBookId the last id already read
+     * @param fetchSize rows fetched from the database per round trip
+     * @return the open cursor; the caller must close it
+     * @throws Exception if database access fails
+     */
+    ResultCursor<Book> openCatalogCursor(int afterBookId, int fetchSize) throws Exception;
     /**
      * Gets suggested books for a given book.
      *
@@ -122,6 +155,56 @@ public interface BookDAO {
      * @throws Exception if database access fails
      */
     List<Book> findByAuthorPaged(String author, int offset, int limit) throws Exception;
+    /**
+     * Searches lightweight book summaries (id, title, authors, category, year)
+     * without reading descriptions and the other detail columns.
+     * Null or empty filters are ignored.
+     *
+     * @param title the title filter (partial match), or null
+     * @param author the author filter (partial match), or null
+     * @param year the publication year, or null
+     * @param offset the offset for pagination
+     * @param limit the maximum number of results
+     * @return the matching summaries ordered by book ID
+     * @throws Exception if database access fails
+     */
+    List<BookSummary> findSummaries(String title, String author, Integer year, int offset, int limit) throws Exception;
+    /**
+     * Counts the books matching a search by category, publisher and publication
+     * decade, each facet ignoring its own condition. Used while the in-memory
+     * catalog is not built yet.
+     *
+     * @param text text looked for in titles and authors (partial match), or null
+     * @param filters the selected facet values, or null
+     * @param maxPublishers the number of publishers to return, most frequent first
+     * @return the counts; values without books are left out
+     * @throws Exception if database access fails
+     */
+    BookFacets countFacets(String text, FacetFilters filters, int maxPublishers) throws Exception;
+    /**
+     * Reads a page of the books of a category in the given order. Pages are
+     * chained by the id of the last book of the previous page, as in the
+     * in-memory catalog, which serves them once it is built.
+     *
+     * @param category the category, ignoring case and surrounding blanks
+     * @param text text to look for in titles and authors, or null for the whole category
+     * @param sort the order of the page
+     * @param afterBookId the last book of the previous page, or null for the first page
+     * @param limit the maximum number of results
+     * @return the books of the page; empty if the previous book is not in the category
+     * @throws Exception if database access fails
+     */
+    List<Book> findByCategoryPaged(String category, String text, CategorySort sort, Integer afterBookId, int limit)
+        throws Exception;
+    /**
+     * Counts the books of a category that match a text.
+     *
+     * @param category the category, ignoring case and surrounding blanks
+     * @param text text to look for in titles and authors, or null for the whole category
+     * @return the number of matching books in the category
+     * @throws Exception if database access fails
+     */
+    int countByCategory(String category, String text) throws Exception;
     /**
      * Gets the total number of books.
      *
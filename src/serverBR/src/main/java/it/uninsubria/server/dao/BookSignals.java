@@ -0,0 +1,64 @@
+package it.uninsubria.server.dao;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of per-book popularity signals backed by primitive arrays:
+ * number and sum of review scores, number of libraries holding the book and
+ * number of times it was suggested.
+ */
+public final class BookSignals {
+
+    private int[] bookIds;
+    private int[] reviews;
+    private double[] scoreSums;
+    private int[] libraries;
+    private int[] suggestions;
+    private int size;
+
+    public BookSignals() {
+        this(1024);
+    }
+
+    public BookSignals(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        this.bookIds = new int[capacity];
+        this.reviews = new int[capacity];
+        this.scoreSums = new double[capacity];
+        this.libraries = new int[capacity];
+        this.suggestions = new int[capacity];
+    }
+
+    /**
+     * Appends the signals of a book.
+     *
+     * @param bookId the book id
+     * @param reviews number of scored reviews
+     * @param scoreSum sum of their final scores
+     * @param libraries number of libraries holding the book
+     * @param suggestions number of times the book was suggested
+     */
+    public void add(int bookId, int reviews, double scoreSum, int libraries, int suggestions) {
+        if (size == bookIds.length) {
+            int capacity = bookIds.length + (bookIds.length >> 1);
+            this.bookIds = Arrays.copyOf(this.bookIds, capacity);
+            this.reviews = Arrays.copyOf(this.reviews, capacity);
+            this.scoreSums = Arrays.copyOf(this.scoreSums, capacity);
+            this.libraries = Arrays.copyOf(this.libraries, capacity);
+            this.suggestions = Arrays.copyOf(this.suggestions, capacity);
+        }
+        this.bookIds[size] = bookId;
+        this.reviews[size] = reviews;
+        this.scoreSums[size] = scoreSum;
+        this.libraries[size] = libraries;
+        this.suggestions[size] = suggestions;
+        size++;
+    }
+
+    public int size() { return size; }
+    public int bookId(int i) { return bookIds[i]; }
+    public int reviews(int i) { return reviews[i]; }
+    public double scoreSum(int i) { return scoreSums[i]; }
+    public int libraries(int i) { return libraries[i]; }
+    public int suggestions(int i) { return suggestions[i]; }
+}
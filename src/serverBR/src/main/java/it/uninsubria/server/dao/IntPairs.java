@@ -0,0 +1,47 @@
+package it.uninsubria.server.dao;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of {@code (first, second)} int pairs backed by two primitive
+ * arrays. Used to move large id relations (e.g. base/suggested book,
+ * library/book) from the database to the in-memory recommenders without boxing
+ * one object per row.
+ */
+public final class IntPairs {
+
+    private int[] first;
+    private int[] second;
+    private int size;
+
+    public IntPairs() {
+        this(1024);
+    }
+
+    public IntPairs(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        this.first = new int[capacity];
+        this.second = new int[capacity];
+    }
+
+    /**
+     * Appends a pair.
+     *
+     * @param a the first value
+     * @param b the second value
+     */
+    public void add(int a, int b) {
+        if (size == first.length) {
+            int capacity = first.length + (first.length >> 1);
+            first = Arrays.copyOf(first, capacity);
+            second = Arrays.copyOf(second, capacity);
+        }
+        first[size] = a;
+        second[size] = b;
+        size++;
+    }
+
+    public int size() { return size; }
+    public int first(int i) { return first[i]; }
+    public int second(int i) { return second[i]; }
+}
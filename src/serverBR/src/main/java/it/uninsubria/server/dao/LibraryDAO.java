@@ -7,6 +7,7 @@ import it.uninsubria.shared.model.Library;
 public interface LibraryDAO {
 
     List<Library> getUserLibraries(String username) throws Exception;
+    List<Library> getUserLibrariesWithBooks(String username) throws Exception;
     List<Integer> getBooksInLibraries(int libreriaId) throws Exception;
     boolean libraryExistsForUser(String username, String libraryName)  throws Exception;
     Library addLibraryForUser(String username, Library library) throws Exception;
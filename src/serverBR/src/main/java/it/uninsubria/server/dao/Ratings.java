@@ -0,0 +1,51 @@
+package it.uninsubria.server.dao;
+
+import java.util.Arrays;
+
+/**
+ * Growable list of {@code (user, book, score)} ratings backed by primitive
+ * arrays, used to feed the collaborative filtering trainer.
+ */
+public final class Ratings {
+
+    private int[] users;
+    private int[] books;
+    private float[] scores;
+    private int size;
+
+    public Ratings() {
+        this(1024);
+    }
+
+    public Ratings(int initialCapacity) {
+        int capacity = Math.max(16, initialCapacity);
+        this.users = new int[capacity];
+        this.books = new int[capacity];
+        this.scores = new float[capacity];
+    }
+
+    /**
+     * Appends a rating.
+     *
+     * @param user the user id
+     * @param book the book id
+     * @param score the score
+     */
+    public void add(int user, int book, float score) {
+        if (size == users.length) {
+            int capacity = users.length + (users.length >> 1);
+            users = Arrays.copyOf(users, capacity);
+            books = Arrays.copyOf(books, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+        }
+        users[size] = user;
+        books[size] = book;
+        scores[size] = score;
+        size++;
+    }
+
+    public int size() { return size; }
+    public int user(int i) { return users[i]; }
+    public int book(int i) { return books[i]; }
+    public float score(int i) { return scores[i]; }
+}
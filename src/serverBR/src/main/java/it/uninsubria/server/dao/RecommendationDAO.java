@@ -0,0 +1,43 @@
+package it.uninsubria.server.dao;
+
+/**
+ * Bulk readers for the interaction signals the in-memory recommenders are built
+ * from. Every method scans a whole table, so callers run them on background
+ * threads only.
+ */
+public interface RecommendationDAO {
+    /**
+     * Loads every user suggestion as a {@code (base_book_id, suggested_book_id)} pair.
+     *
+     * @return the suggestion pairs
+     * @throws Exception if database access fails
+     */
+    IntPairs loadSuggestionPairs() throws Exception;
+
+    /**
+     * Loads the content of every library as {@code (libraries_id, book_id)}
+     * pairs, ordered by library.
+     *
+     * @return the library/book pairs
+     * @throws Exception if database access fails
+     */
+    IntPairs loadLibraryBooks() throws Exception;
+
+    /**
+     * Loads the final review score of every user for every book they reviewed;
+     * repeated reviews of the same book are averaged.
+     *
+     * @return the ratings
+     * @throws Exception if database access fails
+     */
+    Ratings loadRatings() throws Exception;
+
+    /**
+     * Loads the popularity signals of every book that was reviewed, shelved or
+     * suggested at least once, one entry per book.
+     *
+     * @return the per-book signals
+     * @throws Exception if database access fails
+     */
+    BookSignals loadBookSignals() throws Exception;
+}
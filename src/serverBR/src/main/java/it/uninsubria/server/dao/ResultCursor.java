@@ -0,0 +1,31 @@
+package it.uninsubria.server.dao;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Forward-only cursor over a query result, read in chunks.
+ * <p>
+ * The cursor keeps its connection and statement open until it is exhausted or
+ * closed, so callers must close it (try-with-resources) as soon as they are done.
+ *
+ * @param <T> the row type
+ */
+public interface ResultCursor<T> extends AutoCloseable {
+    /**
+     * Reads the next rows.
+     *
+     * @param max maximum number of rows to return
+     * @return up to {@code max} rows; an empty list once the result is exhausted
+     * @throws SQLException if database access fails
+     */
+    List<T> next(int max) throws SQLException;
+
+    /**
+     * @return true once every row has been read or the cursor is closed
+     */
+    boolean isExhausted();
+
+    @Override
+    void close() throws SQLException;
+}
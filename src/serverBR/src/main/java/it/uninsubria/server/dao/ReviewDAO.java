@@ -2,6 +2,7 @@ package it.uninsubria.server.dao;
 
 import java.util.List;
 
+import it.uninsubria.shared.model.BookReviewStats;
 import it.uninsubria.shared.model.Review;
 
 public interface ReviewDAO {
@@ -10,4 +11,6 @@ public interface ReviewDAO {
     boolean addReview(int userId, int book_id, Review review) throws Exception;
     List<Review> getReviewsByBook(int bookId) throws Exception;
     List<Review> getReviewsForBookAndUser(int userId, int bookId) throws Exception;
+    List<BookReviewStats> getReviewStatsForBooks(int[] bookIds) throws Exception;
+    List<BookReviewStats> getAllReviewStats() throws Exception;
 }
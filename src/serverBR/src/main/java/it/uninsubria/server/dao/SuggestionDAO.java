@@ -1,6 +1,7 @@
 package it.uninsubria.server.dao;
 
 import java.util.List;
+import java.util.Map;
 import it.uninsubria.shared.model.SuggestionEntry;
 import it.uninsubria.shared.model.Book;
 
@@ -15,6 +16,7 @@ public interface SuggestionDAO {
     boolean deleteUserSuggestion(int userId, int baseBookId, int suggestedBookId) throws Exception;
     int createBatch(int userId, Integer libraryId) throws Exception;
     int addToBatch(int batchId, int userId, Integer libraryId, int baseBookId, int suggestedBookId) throws Exception;
+    Map<Integer, Integer> addAllToBatch(int batchId, int userId, Integer libraryId, int baseBookId, List<Integer> suggestedBookIds) throws Exception;
     List<SuggestionEntry> getSuggestionsForBatch(int batchId) throws Exception;
     boolean updateSuggestion(int userId, int suggestionId, int newSuggestedBookId) throws Exception;
 }
@@ -0,0 +1,209 @@
+package it.uninsubria.server.dao;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Binds one connection and one transaction to the current thread for the
+ * duration of a service call.
+ * <p>
+ * Inside {@link #run(Work)} the first DAO that asks for a connection through
+ * {@link #connection(DataSource)} opens it with auto-commit disabled; every later
+ * DAO call on the same thread reuses it. The transaction commits when the
+ * outermost unit returns and rolls back if any nested unit failed. DAOs keep
+ * their try-with-resources blocks: closing, committing or changing auto-commit on
+ * the shared connection is ignored until the unit ends.
+ */
+public final class UnitOfWork {
+
+    private static final Logger logger = Logger.getLogger(UnitOfWork.class.getName());
+    private static final ThreadLocal<UnitOfWork> CURRENT = new ThreadLocal<>();
+
+    private Connection connection;
+    private Connection shared;
+    private boolean originalAutoCommit;
+    private boolean rollbackOnly;
+    private List<Runnable> afterCommit;
+
+    /**
+     * Work executed inside a unit of work.
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        T execute() throws Exception;
+    }
+
+    private UnitOfWork() {}
+
+    /**
+     * Runs the work in a unit of work, joining the current one if present.
+     *
+     * @param work the work to run
+     * @return the work result
+     * @throws Exception if the work or the commit fails; the transaction is rolled back
+     */
+    public static <T> T run(Work<T> work) throws Exception {
+        UnitOfWork current = CURRENT.get();
+        if (current != null) {
+            try {
+                return work.execute();
+            } catch (Exception e) {
+                current.rollbackOnly = true;
+                throw e;
+            }
+        }
+
+        UnitOfWork unit = new UnitOfWork();
+        CURRENT.set(unit);
+        try {
+            T result = work.execute();
+            unit.complete();
+            unit.runAfterCommit();
+            return result;
+        } catch (Exception e) {
+            unit.rollback();
+            throw e;
+        } finally {
+            CURRENT.remove();
+            unit.release();
+        }
+    }
+
+    /**
+     * Returns the connection of the current unit of work, opening it from the
+     * given DataSource on first use. Outside a unit of work a new connection is
+     * returned, as with {@link DataSource#getConnection()}.
+     *
+     * @param ds the DataSource to open the connection from
+     * @return the connection to use
+     * @throws SQLException if the connection cannot be obtained
+     */
+    public static Connection connection(DataSource ds) throws SQLException {
+        UnitOfWork current = CURRENT.get();
+        if (current == null) {
+            return ds.getConnection();
+        }
+        if (current.connection == null) {
+            Connection c = ds.getConnection();
+            current.originalAutoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            current.connection = c;
+            current.shared = share(c);
+        }
+        return current.shared;
+    }
+
+    /**
+     * Runs an action once the current unit of work has committed, or right away
+     * outside a unit of work. If the unit rolls back the action is discarded.
+     *
+     * @param action the action to run
+     */
+    public static void afterCommit(Runnable action) {
+        UnitOfWork current = CURRENT.get();
+        if (current == null) {
+            action.run();
+            return;
+        }
+        if (current.afterCommit == null) {
+            current.afterCommit = new ArrayList<>();
+        }
+        current.afterCommit.add(action);
+    }
+
+    /**
+     * @return true if the current thread is inside a unit of work
+     */
+    public static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    private void complete() throws SQLException {
+        if (connection == null) {
+            return;
+        }
+        if (rollbackOnly) {
+            connection.rollback();
+            throw new SQLException("Unit of work rolled back: a nested operation failed");
+        }
+        connection.commit();
+    }
+
+    private void runAfterCommit() {
+        if (afterCommit == null) {
+            return;
+        }
+        for (Runnable action : afterCommit) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                // Il commit è già avvenuto: un errore qui non deve far fallire la chiamata
+                logger.warning("After-commit action failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void rollback() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            logger.warning("Rollback failed: " + e.getMessage());
+        }
+    }
+
+    private void release() {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.setAutoCommit(originalAutoCommit);
+        } catch (SQLException e) {
+            logger.warning("Could not restore auto-commit: " + e.getMessage());
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.warning("Could not close unit of work connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * View of the bound connection whose transaction and lifecycle calls are no-ops.
+     */
+    private static Connection share(Connection target) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                String name = method.getName();
+                boolean whole = args == null || args.length == 0;
+                if (name.equals("rollback") && whole) {
+                    // Un rollback esplicito di una DAO annulla l'intera unità
+                    UnitOfWork current = CURRENT.get();
+                    if (current != null) {
+                        current.rollbackOnly = true;
+                    }
+                    return null;
+                }
+                if (name.equals("close") || name.equals("commit") || name.equals("setAutoCommit")) {
+                    return null;
+                }
+                if (name.equals("getAutoCommit")) {
+                    // La transazione appartiene all'unità: le DAO non committano da sole
+                    return Boolean.TRUE;
+                }
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+    }
+}
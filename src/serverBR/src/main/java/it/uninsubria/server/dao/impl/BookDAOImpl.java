@@ -1,5 +1,6 @@
 package it.uninsubria.server.dao.impl;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -9,7 +10,13 @@ import java.util.ArrayList;
 import java.util.List;
 
 import it.uninsubria.server.dao.BookDAO;
+import it.uninsubria.server.dao.ResultCursor;
 import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookFacets;
+import it.uninsubria.shared.model.BookSummary;
+import it.uninsubria.shared.model.CategorySort;
+import it.uninsubria.shared.model.FacetCount;
+import it.uninsubria.shared.model.FacetFilters;
 import it.uninsubria.shared.model.Review;
 import it.uninsubria.shared.model.ReviewManager;
 import it.uninsubria.shared.model.User;
@@ -18,8 +25,13 @@ import it.uninsubria.shared.model.User;
  * Implementation of BookDAO for database operations on Book entities.
  */
 public class BookDAOImpl implements BookDAO {
+    /** Maximum number of IDs bound to a single ANY(?) array parameter. */
+    private static final int IDS_CHUNK_SIZE = 1000;
+
     private final Connection conn;
     private final DataSource ds;
+    // Pool per le letture del catalogo, eventualmente su replica
+    private final DataSource readDs;
 
     /**
      * Constructs a BookDAOImpl with a database connection.
@@ -29,6 +41,7 @@ public class BookDAOImpl implements BookDAO {
     public BookDAOImpl(Connection conn) {
         this.conn = conn;
         this.ds = null;
+        this.readDs = null;
     }
 
     /**
@@ -37,11 +50,30 @@ public class BookDAOImpl implements BookDAO {
      * @param ds the data source
      */
     public BookDAOImpl(DataSource ds) {
+        this(ds, ds);
+    }
+
+    /**
+     * Constructs a BookDAOImpl reading the catalog from a separate data source.
+     * Books joined to data written by users (libraries, suggestions, reviews) are
+     * read from the primary, so a user sees their own writes.
+     *
+     * @param ds the primary data source
+     * @param readDs the data source for catalog reads
+     */
+    public BookDAOImpl(DataSource ds, DataSource readDs) {
         this.ds = ds;
+        this.readDs = readDs;
         this.conn = null;
     }
 
     private Connection getConnection() throws SQLException {
+        if (conn != null) return conn;
+        if (readDs != null) return readDs.getConnection();
+        throw new SQLException("No DataSource or Connection configured for BookDAOImpl");
+    }
+
+    private Connection getPrimaryConnection() throws SQLException {
         if (conn != null) return conn;
         if (ds != null) return ds.getConnection();
         throw new SQLException("No DataSource or Connection configured for BookDAOImpl");
@@ -57,6 +89,19 @@ public class BookDAOImpl implements BookDAO {
         return executeBookListQuery("SELECT * FROM Books");
     }
 
+    @Override
+    public ResultCursor<Book> openCatalogCursor(int fetchSize) throws Exception {
+        // Con una connessione condivisa il cursore non deve chiuderla
+        return new JdbcResultCursor<>(getConnection(), conn == null,
+            "SELECT * FROM Books ORDER BY book_id", fetchSize, this::parseBook);
+    }
+
+    @Override
+    public ResultCursor<Book> openCatalogCursor(int afterBookId, int fetchSize) throws Exception {
+        return new JdbcResultCursor<>(getConnection(), conn == null,
+            "SELECT * FROM Books WHERE book_id > ? ORDER BY book_id", fetchSize, this::parseBook, afterBookId);
+    }
+
     @Override
     public List<Book> findByTitle(String title) throws Exception {
         return executeBookListQuery("SELECT * FROM Books WHERE title ILIKE ?", buildLikePattern(title));
@@ -84,9 +129,41 @@ public class BookDAOImpl implements BookDAO {
         return executeSingleBookQuery("SELECT * FROM Books WHERE book_id = ?", bookId);
     }
 
+    @Override
+    public List<Book> findByIds(int[] bookIds) throws Exception {
+        List<Book> result = new ArrayList<>();
+        if (bookIds == null || bookIds.length == 0) {
+            return result;
+        }
+
+        try (Connection c = getConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT * FROM Books WHERE book_id = ANY(?)")) {
+            for (int from = 0; from < bookIds.length; from += IDS_CHUNK_SIZE) {
+                int to = Math.min(from + IDS_CHUNK_SIZE, bookIds.length);
+                Integer[] chunk = new Integer[to - from];
+                for (int i = from; i < to; i++) {
+                    chunk[i - from] = bookIds[i];
+                }
+
+                Array idsArray = c.createArrayOf("integer", chunk);
+                try {
+                    ps.setArray(1, idsArray);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            result.add(parseBook(rs));
+                        }
+                    }
+                } finally {
+                    idsArray.free();
+                }
+            }
+        }
+        return result;
+    }
+
     @Override
     public List<ReviewManager> getAggregatedReviews(int bookId) throws Exception {
-        return executeQuery(
+        return executeQuery(getPrimaryConnection(),
             "SELECT br.*, u.names, u.surnames FROM book_reviews br " +
             "LEFT JOIN Users u ON br.user_id = u.user_id " +
             "WHERE br.book_id = ? ORDER BY br.book_reviews_id DESC",
@@ -133,12 +210,12 @@ public class BookDAOImpl implements BookDAO {
 
     @Override
     public List<Book> getSuggestedBooks(int bookId) throws Exception {
-        return executeBookListQuery("SELECT b.* FROM Books b JOIN Suggested_Books s ON b.book_id = s.suggested_book_id WHERE s.base_book_id = ?", bookId);
+        return executeBookListQuery(getPrimaryConnection(), "SELECT b.* FROM Books b JOIN Suggested_Books s ON b.book_id = s.suggested_book_id WHERE s.base_book_id = ?", bookId);
     }
 
     @Override
     public List<Book> getLibraryBooks(int libraryId) throws Exception {
-        return executeBookListQuery("SELECT b.* FROM Books b JOIN Books_Libraries bl ON b.book_id = bl.book_id WHERE bl.libraries_id = ?", libraryId);
+        return executeBookListQuery(getPrimaryConnection(), "SELECT b.* FROM Books b JOIN Books_Libraries bl ON b.book_id = bl.book_id WHERE bl.libraries_id = ?", libraryId);
     }
 
     @Override
@@ -158,6 +235,171 @@ public class BookDAOImpl implements BookDAO {
                                    buildLikePattern(author), limit, offset);
     }
 
+    @Override
+    public List<BookSummary> findSummaries(String title, String author, Integer year, int offset, int limit) throws Exception {
+        // Solo le colonne mostrate nelle liste: niente descrizioni, editore, prezzo
+        StringBuilder sql = new StringBuilder(
+            "SELECT book_id, title, authors, category, publish_date_year FROM Books WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (title != null && !title.trim().isEmpty()) {
+            sql.append(" AND title ILIKE ?");
+            params.add(buildLikePattern(title.trim()));
+        }
+        if (author != null && !author.trim().isEmpty()) {
+            sql.append(" AND authors ILIKE ?");
+            params.add(buildLikePattern(author.trim()));
+        }
+        if (year != null) {
+            sql.append(" AND publish_date_year = ?");
+            params.add(year);
+        }
+        sql.append(" ORDER BY book_id LIMIT ? OFFSET ?");
+        params.add(limit);
+        params.add(offset);
+
+        return executeQuery(sql.toString(), rs -> {
+            List<BookSummary> list = new ArrayList<>();
+            while (rs.next()) {
+                list.add(new BookSummary(
+                    rs.getInt("book_id"),
+                    rs.getString("title"),
+                    rs.getString("authors"),
+                    rs.getString("category"),
+                    rs.getInt("publish_date_year")));
+            }
+            return list;
+        }, params.toArray());
+    }
+
+    @Override
+    public BookFacets countFacets(String text, FacetFilters filters, int maxPublishers) throws Exception {
+        String category = filters != null ? filters.getCategory() : null;
+        String publisher = filters != null ? filters.getPublisher() : null;
+        Integer decade = filters != null ? filters.getDecade() : null;
+
+        // Ogni faccetta si conta senza la propria condizione, come nel catalogo in memoria
+        List<Object> params = new ArrayList<>();
+        String where = facetConditions(params, text, category, publisher, decade);
+        int total = executeCountQuery("SELECT COUNT(*) FROM Books" + where, params.toArray());
+
+        params = new ArrayList<>();
+        where = facetConditions(params, text, null, publisher, decade);
+        List<FacetCount> categories = countByColumn("category", where, params, Integer.MAX_VALUE);
+
+        params = new ArrayList<>();
+        where = facetConditions(params, text, category, null, decade);
+        List<FacetCount> publishers = countByColumn("publisher", where, params, maxPublishers);
+
+        params = new ArrayList<>();
+        where = facetConditions(params, text, category, publisher, null);
+        String decadeStart = "publish_date_year - MOD(publish_date_year, 10)";
+        List<FacetCount> decades = executeQuery("SELECT " + decadeStart + ", COUNT(*) FROM Books" + where +
+            " AND publish_date_year > 0 GROUP BY " + decadeStart + " ORDER BY " + decadeStart, rs -> {
+                List<FacetCount> list = new ArrayList<>();
+                while (rs.next()) {
+                    list.add(new FacetCount(String.valueOf(rs.getInt(1)), rs.getInt(2)));
+                }
+                return list;
+            }, params.toArray());
+
+        return new BookFacets(total, categories, decades, publishers);
+    }
+
+    private String facetConditions(List<Object> params, String text, String category, String publisher, Integer decade) {
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+        if (text != null && !text.trim().isEmpty()) {
+            where.append(" AND (title ILIKE ? OR authors ILIKE ?)");
+            params.add(buildLikePattern(text.trim()));
+            params.add(buildLikePattern(text.trim()));
+        }
+        if (category != null) {
+            where.append(" AND category = ?");
+            params.add(category);
+        }
+        if (publisher != null) {
+            where.append(" AND publisher = ?");
+            params.add(publisher);
+        }
+        if (decade != null) {
+            where.append(" AND publish_date_year > 0 AND publish_date_year >= ? AND publish_date_year < ?");
+            params.add(decade);
+            params.add(decade + 10);
+        }
+        return where.toString();
+    }
+
+    private List<FacetCount> countByColumn(String column, String where, List<Object> params, int limit) throws Exception {
+        params.add(limit);
+        return executeQuery("SELECT " + column + ", COUNT(*) FROM Books" + where +
+            " AND " + column + " IS NOT NULL AND TRIM(" + column + ") <> ''" +
+            " GROUP BY " + column + " ORDER BY COUNT(*) DESC, " + column + " LIMIT ?", rs -> {
+                List<FacetCount> list = new ArrayList<>();
+                while (rs.next()) {
+                    list.add(new FacetCount(rs.getString(1), rs.getInt(2)));
+                }
+                return list;
+            }, params.toArray());
+    }
+
+    @Override
+    public List<Book> findByCategoryPaged(String category, String text, CategorySort sort, Integer afterBookId, int limit)
+            throws Exception {
+        CategorySort order = sort != null ? sort : CategorySort.TITLE_ASC;
+        boolean descending = order == CategorySort.TITLE_DESC || order == CategorySort.AUTHOR_DESC
+            || order == CategorySort.YEAR_OLDEST;
+        String key = categorySortKey(order, "b");
+        String direction = descending ? " DESC" : "";
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT b.* FROM Books b");
+        if (afterBookId != null) {
+            // La pagina riprende dopo la chiave di ordinamento dell'ultimo libro della precedente
+            sql.append(" JOIN (SELECT ").append(categorySortKey(order, "p")).append(" AS sort_key, p.book_id")
+                .append(" FROM Books p WHERE p.book_id = ? AND LOWER(TRIM(p.category)) = LOWER(TRIM(?))) a ON ")
+                .append(key).append(descending ? " < " : " > ").append("a.sort_key OR (")
+                .append(key).append(" = a.sort_key AND b.book_id").append(descending ? " < " : " > ").append("a.book_id)");
+            params.add(afterBookId);
+            params.add(category);
+        }
+        sql.append(" WHERE LOWER(TRIM(b.category)) = LOWER(TRIM(?))");
+        params.add(category);
+        sql.append(textCondition(params, text, "b"));
+        sql.append(" ORDER BY ").append(key).append(direction).append(", b.book_id").append(direction).append(" LIMIT ?");
+        params.add(limit);
+        return executeBookListQuery(sql.toString(), params.toArray());
+    }
+
+    // Stesse chiavi degli ordinamenti del catalogo in memoria: maiuscole ignorate, anni recenti prima
+    private static String categorySortKey(CategorySort sort, String alias) {
+        switch (sort) {
+            case AUTHOR_ASC:
+            case AUTHOR_DESC:
+                return "LOWER(COALESCE(" + alias + ".authors, ''))";
+            case YEAR_NEWEST:
+            case YEAR_OLDEST:
+                return "-COALESCE(" + alias + ".publish_date_year, 0)";
+            default:
+                return "LOWER(COALESCE(" + alias + ".title, ''))";
+        }
+    }
+
+    @Override
+    public int countByCategory(String category, String text) throws Exception {
+        List<Object> params = new ArrayList<>();
+        params.add(category);
+        String condition = textCondition(params, text, "b");
+        return executeCountQuery("SELECT COUNT(*) FROM Books b WHERE LOWER(TRIM(b.category)) = LOWER(TRIM(?))" + condition,
+            params.toArray());
+    }
+
+    private String textCondition(List<Object> params, String text, String alias) {
+        if (text == null || text.trim().isEmpty()) {
+            return "";
+        }
+        params.add(buildLikePattern(text.trim()));
+        params.add(buildLikePattern(text.trim()));
+        return " AND (" + alias + ".title ILIKE ? OR " + alias + ".authors ILIKE ?)";
+    }
+
     @Override
     public int getTotalBooksCount() throws Exception {
         return executeCountQuery("SELECT COUNT(*) FROM Books");
@@ -165,7 +407,11 @@ public class BookDAOImpl implements BookDAO {
 
     // Helper methods for common operations
     private <T> T executeQuery(String sql, QueryExecutor<T> executor, Object... params) throws Exception {
-        try (Connection c = getConnection();
+        return executeQuery(getConnection(), sql, executor, params);
+    }
+
+    private <T> T executeQuery(Connection connection, String sql, QueryExecutor<T> executor, Object... params) throws Exception {
+        try (Connection c = connection;
              PreparedStatement ps = c.prepareStatement(sql)) {
 
             // Set parameters
@@ -182,7 +428,11 @@ public class BookDAOImpl implements BookDAO {
     }
 
     private List<Book> executeBookListQuery(String sql, Object... params) throws Exception {
-        return executeQuery(sql, rs -> {
+        return executeBookListQuery(getConnection(), sql, params);
+    }
+
+    private List<Book> executeBookListQuery(Connection connection, String sql, Object... params) throws Exception {
+        return executeQuery(connection, sql, rs -> {
             List<Book> list = new ArrayList<>();
             while (rs.next()) {
                 list.add(parseBook(rs));
@@ -0,0 +1,133 @@
+package it.uninsubria.server.dao.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import it.uninsubria.server.dao.ResultCursor;
+import it.uninsubria.server.monitoring.InstrumentedDataSource;
+
+/**
+ * JDBC implementation of {@link ResultCursor}.
+ * <p>
+ * Auto-commit is disabled for the cursor's lifetime and the statement uses the
+ * given fetch size, so PostgreSQL streams rows through a server-side portal
+ * instead of loading the whole result in memory. The result is closed as soon as
+ * the last row has been read.
+ */
+class JdbcResultCursor<T> implements ResultCursor<T> {
+    private static final Logger logger = Logger.getLogger(JdbcResultCursor.class.getName());
+
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private final Connection connection;
+    private final boolean ownsConnection;
+    private final boolean originalAutoCommit;
+    private final PreparedStatement statement;
+    private final ResultSet resultSet;
+    private final RowMapper<T> mapper;
+    private boolean exhausted;
+    private boolean closed;
+
+    /**
+     * Opens the cursor; on failure everything opened so far is released.
+     *
+     * @param connection the connection to run the query on
+     * @param ownsConnection whether closing the cursor closes the connection
+     * @param sql the query
+     * @param fetchSize rows fetched from the database per round trip
+     * @param mapper maps the current row
+     * @param params query parameters
+     * @throws SQLException if the query cannot be started
+     */
+    JdbcResultCursor(Connection connection, boolean ownsConnection, String sql, int fetchSize,
+                     RowMapper<T> mapper, Object... params) throws SQLException {
+        this.connection = connection;
+        this.ownsConnection = ownsConnection;
+        this.mapper = mapper;
+        this.originalAutoCommit = connection.getAutoCommit();
+        if (ownsConnection) {
+            // Il cursore può restare aperto a lungo: non occupa un posto del limitatore
+            InstrumentedDataSource.releaseLimiterPermit(connection);
+        }
+        PreparedStatement ps = null;
+        try {
+            // Senza transazione il driver PostgreSQL ignora il fetch size e legge tutto
+            connection.setAutoCommit(false);
+            ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            this.statement = ps;
+            this.resultSet = ps.executeQuery();
+        } catch (SQLException e) {
+            if (ps != null) {
+                try { ps.close(); } catch (SQLException ignored) { }
+            }
+            restoreAndRelease();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized List<T> next(int max) throws SQLException {
+        if (exhausted || closed) {
+            return Collections.emptyList();
+        }
+        List<T> rows = new ArrayList<>(Math.min(max, 1024));
+        while (rows.size() < max) {
+            if (!resultSet.next()) {
+                exhausted = true;
+                close();
+                break;
+            }
+            rows.add(mapper.map(resultSet));
+        }
+        return rows;
+    }
+
+    @Override
+    public synchronized boolean isExhausted() {
+        return exhausted || closed;
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            resultSet.close();
+            statement.close();
+        } finally {
+            restoreAndRelease();
+        }
+    }
+
+    private void restoreAndRelease() {
+        try {
+            // Transazione di sola lettura: il rollback chiude il portal lato server
+            connection.rollback();
+            connection.setAutoCommit(originalAutoCommit);
+        } catch (SQLException e) {
+            logger.warning("Could not reset cursor connection: " + e.getMessage());
+        }
+        if (ownsConnection) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.warning("Could not close cursor connection: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
  package it.uninsubria.server.dao.impl;
 
+ import java.sql.Array;
  import java.sql.Connection;
  import java.sql.PreparedStatement;
  import java.sql.ResultSet;
@@ -7,10 +8,19 @@
  import java.util.logging.Logger;
  import javax.sql.DataSource;
  import java.util.ArrayList;
+ import java.util.HashMap;
+ import java.util.HashSet;
+ import java.util.LinkedHashMap;
  import java.util.List;
+ import java.util.Map;
+ import java.util.Set;
 
 import it.uninsubria.server.ServerMessageManager;
 import it.uninsubria.server.dao.LibraryDAO;
+import it.uninsubria.server.dao.UnitOfWork;
+import it.uninsubria.server.event.WriteEvent;
+import it.uninsubria.server.event.WriteEventBus;
+import it.uninsubria.server.util.SessionManager;
  import it.uninsubria.shared.model.Book;
  import it.uninsubria.shared.model.Library;
 
@@ -18,6 +28,9 @@ import it.uninsubria.server.dao.LibraryDAO;
 
      private static final Logger logger = Logger.getLogger(LibraryDAOImpl.class.getName());
 
+    // user_id dalla sessione se disponibile, altrimenti risolto nella stessa query
+    private static final String USER_ID_FILTER = "COALESCE(?, (SELECT user_id FROM Users WHERE userid = ?))";
+
     private final Connection conn;
     private final DataSource ds;
     public LibraryDAOImpl(Connection conn) {
@@ -32,10 +45,39 @@ import it.uninsubria.server.dao.LibraryDAO;
 
     private Connection getConnection() throws SQLException {
         if (conn != null) return conn;
-        if (ds != null) return ds.getConnection();
+        if (ds != null) return UnitOfWork.connection(ds);
         throw new SQLException(ServerMessageManager.getString("server.error.dao.datasource"));
     }
 
+    /**
+     * Binds the two parameters of {@link #USER_ID_FILTER} starting at the given index.
+     *
+     * @return the next parameter index
+     */
+    private int bindUser(PreparedStatement ps, int index, String username) throws SQLException {
+        ps.setObject(index, SessionManager.getSessionUserId(username), java.sql.Types.INTEGER);
+        ps.setString(index + 1, username);
+        return index + 2;
+    }
+
+    /**
+     * Resolves the user_id once for operations made of several statements.
+     *
+     * @return the user_id, or -1 if the user does not exist
+     */
+    private int resolveUserId(Connection c, String username) throws SQLException {
+        Integer userId = SessionManager.getSessionUserId(username);
+        if (userId != null) {
+            return userId;
+        }
+        try (PreparedStatement ps = c.prepareStatement("SELECT user_id FROM Users WHERE userid = ?")) {
+            ps.setString(1, username);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
     // validations
     private void validateUsername(String username) {
         if (username == null || username.trim().isEmpty()) {
@@ -69,10 +111,10 @@ import it.uninsubria.server.dao.LibraryDAO;
     public List<Library> getUserLibraries(String username) throws Exception {
         validateUsername(username);
         logger.fine("Getting libraries for user '" + username + "'");
+        String sql = "SELECT l.library_id, l.name_library FROM Library l WHERE l.user_id = " + USER_ID_FILTER;
         List<Library> libraries = new ArrayList<>();
-        String sql = "SELECT l.library_id, l.name_library FROM Library l WHERE l.user_id = (SELECT user_id FROM Users WHERE userid = ?)";
         try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, username);
+            bindUser(ps, 1, username);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     logger.fine("Found library ID " + rs.getInt("library_id") + ", name: " + rs.getString("name_library"));
@@ -86,6 +128,45 @@ import it.uninsubria.server.dao.LibraryDAO;
         return libraries;
     }
 
+    @Override
+    public List<Library> getUserLibrariesWithBooks(String username) throws Exception {
+        validateUsername(username);
+        logger.fine("Getting libraries with books for user '" + username + "'");
+        // Una sola query: librerie dell'utente + libri contenuti (LEFT JOIN per includere le librerie vuote).
+        // Solo le colonne mostrate dalle viste delle librerie: il dettaglio completo si carica all'apertura del libro
+        String sql = "SELECT l.library_id, l.name_library, b.book_id, b.title, b.authors, b.publish_date_year " +
+                     "FROM Library l " +
+                     "LEFT JOIN Books_Libraries bl ON bl.libraries_id = l.library_id " +
+                     "LEFT JOIN Books b ON b.book_id = bl.book_id " +
+                     "WHERE l.user_id = " + USER_ID_FILTER + " ORDER BY l.library_id, b.book_id";
+        Map<Integer, Library> librariesById = new LinkedHashMap<>();
+        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            bindUser(ps, 1, username);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    int libraryId = rs.getInt("library_id");
+                    Library library = librariesById.get(libraryId);
+                    if (library == null) {
+                        library = new Library(libraryId, username, rs.getString("name_library"));
+                        library.setLibriDisponibili(new ArrayList<>());
+                        librariesById.put(libraryId, library);
+                    }
+                    int bookId = rs.getInt("book_id");
+                    if (!rs.wasNull()) {
+                        Book book = new Book();
+                        book.setBook_id(bookId);
+                        book.setTitle(rs.getString("title"));
+                        book.setAuthors(rs.getString("authors"));
+                        book.setPublish_date_year(rs.getInt("publish_date_year"));
+                        library.getLibriDisponibili().add(book);
+                    }
+                }
+            }
+        }
+        logger.fine("Total libraries with books found: " + librariesById.size());
+        return new ArrayList<>(librariesById.values());
+    }
+
     @Override
     public List<Integer> getBooksInLibraries(int libreriaId) throws Exception {
         List<Integer> bookIds = new ArrayList<>();
@@ -108,18 +189,7 @@ import it.uninsubria.server.dao.LibraryDAO;
             ps.setInt(1, libraryId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    Book book = new Book(
-                        rs.getInt("book_id"),
-                        rs.getString("title"),
-                        rs.getString("authors"),
-                        rs.getInt("publish_date_year")
-                    );
-                    book.setDescription(rs.getString("descriptions"));
-                    book.setCategory(rs.getString("category"));
-                    book.setPublisher(rs.getString("publisher"));
-                    book.setPrice(rs.getString("price"));
-                    book.setPublisher_month(rs.getString("publish_date_month"));
-                    books.add(book);
+                    books.add(Book.fromResultSet(rs));
                 }
             }
         }
@@ -130,10 +200,10 @@ import it.uninsubria.server.dao.LibraryDAO;
     public boolean libraryExistsForUser(String username, String libraryName) throws Exception {
         validateUsername(username);
         validateLibraryName(libraryName);
-        String sql = "SELECT COUNT(*) FROM Library l WHERE l.user_id = (SELECT user_id FROM Users WHERE userid = ?) AND l.name_library = ?";
+        String sql = "SELECT COUNT(*) FROM Library l WHERE l.user_id = " + USER_ID_FILTER + " AND l.name_library = ?";
         try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, username);
-            ps.setString(2, libraryName);
+            int index = bindUser(ps, 1, username);
+            ps.setString(index, libraryName);
             try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
                     return rs.getInt(1) > 0;
@@ -150,28 +220,31 @@ import it.uninsubria.server.dao.LibraryDAO;
         validateBooksList(library.getLibriDisponibili());
 
         logger.fine("Adding library '" + library.getName() + "' for user '" + username + "' with " + library.getLibriDisponibili().size() + " books");
-        for (Book book : library.getLibriDisponibili()) {
-            logger.fine("  - Book: " + book.getTitle() + " (ID: " + book.getBook_id() + ")");
-        }
 
-        // Verifica che i libri non siano già presenti in altre librerie dell'utente
-        validateBooksNotInOtherLibraries(username, library.getLibriDisponibili());
+        try (Connection c = getConnection()) {
+            int userId = resolveUserId(c, username);
+            if (userId < 0) {
+                throw new IllegalArgumentException(ServerMessageManager.getString("server.error.dao.username.invalid"));
+            }
 
-        String sql = "INSERT INTO Library (name_library, user_id) VALUES (?, (SELECT user_id FROM Users WHERE userid = ?)) RETURNING library_id";
-        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, library.getName());
-            ps.setString(2, username);
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    library.setId(rs.getInt(1));
-                    // Add books
-                    addBooksToLibrary(library.getId(), library.getLibriDisponibili());
-                    if (c.getAutoCommit() == false) {
-                        c.commit();
-                        logger.fine("Transaction committed for library creation");
+            // Verifica che i libri non siano già presenti in altre librerie dell'utente
+            validateBooksNotInOtherLibraries(c, userId, library.getLibriDisponibili(), -1);
+
+            String sql = "INSERT INTO Library (name_library, user_id) VALUES (?, ?) RETURNING library_id";
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, library.getName());
+                ps.setInt(2, userId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        library.setId(rs.getInt(1));
+                        addBooksToLibrary(c, library.getId(), library.getLibriDisponibili());
                     }
                 }
             }
+            if (!c.getAutoCommit()) {
+                c.commit();
+                logger.fine("Transaction committed for library creation");
+            }
         }
         return library;
     }
@@ -184,18 +257,30 @@ import it.uninsubria.server.dao.LibraryDAO;
         }
         validateLibraryName(newLibrary.getName());
         validateBooksList(newLibrary.getLibriDisponibili());
+        if (oldLibrary == null) {
+            throw new IllegalArgumentException(ServerMessageManager.getString("server.error.dao.library.name.null"));
+        }
 
-        // Verifica che i libri non siano già presenti in altre librerie dell'utente (escludendo la libreria corrente)
-        validateBooksNotInOtherLibrariesExcludingCurrent(username, newLibrary.getLibriDisponibili(), oldLibrary.getId());
+        try (Connection c = getConnection()) {
+            int userId = resolveUserId(c, username);
 
-        String sql = "UPDATE Library SET name_library = ? WHERE library_id = ? AND user_id = (SELECT user_id FROM Users WHERE userid = ?)";
-        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setString(1, newLibrary.getName());
-            ps.setInt(2, oldLibrary.getId());
-            ps.setString(3, username);
-            ps.executeUpdate();
-            // Update books
-            updateBooksInLibrary(oldLibrary.getId(), newLibrary.getLibriDisponibili());
+            // Verifica che i libri non siano già presenti in altre librerie dell'utente (escludendo la libreria corrente)
+            validateBooksNotInOtherLibraries(c, userId, newLibrary.getLibriDisponibili(), oldLibrary.getId());
+
+            String sql = "UPDATE Library SET name_library = ? WHERE library_id = ? AND user_id = ?";
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setString(1, newLibrary.getName());
+                ps.setInt(2, oldLibrary.getId());
+                ps.setInt(3, userId);
+                if (ps.executeUpdate() == 0) {
+                    // Libreria inesistente o di un altro utente: i libri non vanno toccati
+                    return;
+                }
+            }
+            updateBooksInLibrary(c, oldLibrary.getId(), newLibrary.getLibriDisponibili());
+            if (!c.getAutoCommit()) {
+                c.commit();
+            }
         }
     }
 
@@ -204,88 +289,133 @@ import it.uninsubria.server.dao.LibraryDAO;
         validateUsername(username);
         logger.fine("Deleting library '" + library.getName() + "' (ID: " + library.getId() + ") for user '" + username + "'");
 
-        // First delete all book associations for this library
-        String deleteBooksSql = "DELETE FROM Books_Libraries WHERE libraries_id = ?";
-        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(deleteBooksSql)) {
-            ps.setInt(1, library.getId());
-            int booksDeleted = ps.executeUpdate();
-            logger.fine("Deleted " + booksDeleted + " book associations for library ID " + library.getId());
-        }
+        try (Connection c = getConnection()) {
+            int userId = resolveUserId(c, username);
 
-        // Then delete the library itself
-        String sql = "DELETE FROM Library WHERE library_id = ? AND user_id = (SELECT user_id FROM Users WHERE userid = ?)";
-        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            ps.setInt(1, library.getId());
-            ps.setString(2, username);
-            int librariesDeleted = ps.executeUpdate();
-            logger.fine("Deleted " + librariesDeleted + " libraries with ID " + library.getId());
-            if (c.getAutoCommit() == false) {
+            // First delete all book associations for this library (only if it belongs to the user)
+            String deleteBooksSql = "DELETE FROM Books_Libraries WHERE libraries_id = ? " +
+                                    "AND EXISTS (SELECT 1 FROM Library WHERE library_id = ? AND user_id = ?)";
+            try (PreparedStatement ps = c.prepareStatement(deleteBooksSql)) {
+                ps.setInt(1, library.getId());
+                ps.setInt(2, library.getId());
+                ps.setInt(3, userId);
+                int booksDeleted = ps.executeUpdate();
+                logger.fine("Deleted " + booksDeleted + " book associations for library ID " + library.getId());
+            }
+
+            // Then delete the library itself
+            String sql = "DELETE FROM Library WHERE library_id = ? AND user_id = ?";
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setInt(1, library.getId());
+                ps.setInt(2, userId);
+                int librariesDeleted = ps.executeUpdate();
+                logger.fine("Deleted " + librariesDeleted + " libraries with ID " + library.getId());
+            }
+            if (!c.getAutoCommit()) {
                 c.commit();
                 logger.fine("Transaction committed");
             }
         }
     }
 
-
-
-    private void validateBooksNotInOtherLibraries(String username, List<Book> books) throws Exception {
-        validateBooksNotInOtherLibrariesExcludingCurrent(username, books, -1);
-    }
-
-    private void validateBooksNotInOtherLibrariesExcludingCurrent(String username, List<Book> books, int excludeLibraryId) throws Exception {
+    /**
+     * Checks with a single query that none of the books is already in another library of the user.
+     */
+    private void validateBooksNotInOtherLibraries(Connection c, int userId, List<Book> books, int excludeLibraryId) throws SQLException {
         if (books == null || books.isEmpty()) {
             logger.fine("No books to validate");
             return;
         }
 
-        logger.fine("Validating " + books.size() + " books for user '" + username + "', excluding library ID " + excludeLibraryId);
+        logger.fine("Validating " + books.size() + " books for user ID " + userId + ", excluding library ID " + excludeLibraryId);
+        Map<Integer, Book> booksById = new HashMap<>();
+        for (Book book : books) {
+            booksById.put(book.getBook_id(), book);
+        }
+        Integer[] ids = booksById.keySet().toArray(new Integer[0]);
+
         String sql = "SELECT bl.book_id, l.name_library FROM Books_Libraries bl " +
                       "JOIN Library l ON bl.libraries_id = l.library_id " +
-                      "WHERE l.user_id = (SELECT user_id FROM Users WHERE userid = ?) " +
-                      "AND bl.book_id = ? AND bl.libraries_id != ?";
-        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
-            for (Book book : books) {
-                logger.fine("Checking book '" + book.getTitle() + "' (ID: " + book.getBook_id() + ")");
-                ps.setString(1, username);
-                ps.setInt(2, book.getBook_id());
-                ps.setInt(3, excludeLibraryId);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        logger.fine("Book '" + book.getTitle() + "' already exists in library '" + rs.getString("name_library") + "'");
-                        throw new IllegalArgumentException(ServerMessageManager.getString("server.error.dao.library.book.exists", book.getTitle(), rs.getString("name_library")));
-                    } else {
-                        logger.fine("Book '" + book.getTitle() + "' is available");
-                    }
+                      "WHERE l.user_id = ? AND bl.book_id = ANY(?) AND bl.libraries_id <> ? LIMIT 1";
+        Array array = c.createArrayOf("integer", ids);
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
+            ps.setInt(1, userId);
+            ps.setArray(2, array);
+            ps.setInt(3, excludeLibraryId);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    Book book = booksById.get(rs.getInt("book_id"));
+                    logger.fine("Book '" + book.getTitle() + "' already exists in library '" + rs.getString("name_library") + "'");
+                    throw new IllegalArgumentException(ServerMessageManager.getString("server.error.dao.library.book.exists", book.getTitle(), rs.getString("name_library")));
                 }
             }
+        } finally {
+            array.free();
         }
         logger.fine("All books passed validation");
     }
 
-    private void addBooksToLibrary(int libraryId, List<Book> books) throws Exception {
+    private void addBooksToLibrary(Connection c, int libraryId, List<Book> books) throws SQLException {
+        if (books.isEmpty()) {
+            return;
+        }
         String sql = "INSERT INTO Books_Libraries (libraries_id, book_id) VALUES (?, ?)";
-        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+        try (PreparedStatement ps = c.prepareStatement(sql)) {
             for (Book book : books) {
                 ps.setInt(1, libraryId);
                 ps.setInt(2, book.getBook_id());
                 ps.addBatch();
             }
             ps.executeBatch();
-            if (c.getAutoCommit() == false) {
-                c.commit();
-                logger.fine("Transaction committed for books addition");
-            }
         }
+        // Pubblicati solo al commit dell'unità: una libreria annullata non deve arrivare ai modelli
+        List<WriteEvent> events = new ArrayList<>(books.size());
+        for (Book book : books) {
+            events.add(WriteEvent.libraryBookAdded(libraryId, book.getBook_id()));
+        }
+        WriteEventBus.getInstance().publishOnCommit(events);
     }
 
-    private void updateBooksInLibrary(int libraryId, List<Book> books) throws Exception {
-        // Delete old
-        String deleteSql = "DELETE FROM Books_Libraries WHERE libraries_id = ?";
-        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(deleteSql)) {
+    /**
+     * Replaces the books of a library touching only the rows that change, so
+     * books already in the library are not published again as added.
+     */
+    private void updateBooksInLibrary(Connection c, int libraryId, List<Book> books) throws SQLException {
+        Set<Integer> current = new HashSet<>();
+        try (PreparedStatement ps = c.prepareStatement("SELECT book_id FROM Books_Libraries WHERE libraries_id = ?")) {
             ps.setInt(1, libraryId);
-            ps.executeUpdate();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    current.add(rs.getInt(1));
+                }
+            }
+        }
+
+        Set<Integer> kept = new HashSet<>();
+        List<Book> added = new ArrayList<>();
+        for (Book book : books) {
+            int id = book.getBook_id();
+            if (current.contains(id)) {
+                kept.add(id);
+            } else if (kept.add(id)) {
+                added.add(book);
+            }
+        }
+        current.removeAll(kept);
+
+        // Delete removed
+        if (!current.isEmpty()) {
+            Array removed = c.createArrayOf("integer", current.toArray(new Integer[0]));
+            try (PreparedStatement ps = c.prepareStatement(
+                    "DELETE FROM Books_Libraries WHERE libraries_id = ? AND book_id = ANY(?)")) {
+                ps.setInt(1, libraryId);
+                ps.setArray(2, removed);
+                ps.executeUpdate();
+            } finally {
+                removed.free();
+            }
         }
         // Add new
-        addBooksToLibrary(libraryId, books);
+        addBooksToLibrary(c, libraryId, added);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,107 @@
+package it.uninsubria.server.dao.impl;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+
+import it.uninsubria.server.dao.BookSignals;
+import it.uninsubria.server.dao.IntPairs;
+import it.uninsubria.server.dao.Ratings;
+import it.uninsubria.server.dao.RecommendationDAO;
+
+public class RecommendationDAOImpl implements RecommendationDAO {
+    private static final String SUGGESTION_PAIRS_SQL =
+        "SELECT base_book_id, suggested_book_id FROM Suggested_Books";
+    private static final String LIBRARY_BOOKS_SQL =
+        "SELECT libraries_id, book_id FROM Books_Libraries ORDER BY libraries_id";
+    private static final String RATINGS_SQL =
+        "SELECT user_id, book_id, AVG(final_score) FROM Book_Reviews " +
+        "WHERE final_score IS NOT NULL GROUP BY user_id, book_id";
+    // Un'unica scansione per libro: recensioni, librerie e suggerimenti sommati insieme
+    private static final String BOOK_SIGNALS_SQL =
+        "SELECT book_id, SUM(reviews), SUM(score_sum), SUM(libraries), SUM(suggestions) FROM (" +
+        " SELECT book_id, COUNT(*) AS reviews, SUM(final_score) AS score_sum, 0 AS libraries, 0 AS suggestions" +
+        " FROM Book_Reviews WHERE final_score IS NOT NULL GROUP BY book_id" +
+        " UNION ALL SELECT book_id, 0, 0, COUNT(*), 0 FROM Books_Libraries GROUP BY book_id" +
+        " UNION ALL SELECT suggested_book_id, 0, 0, 0, COUNT(*) FROM Suggested_Books GROUP BY suggested_book_id" +
+        ") s GROUP BY book_id";
+    // Le tabelle vengono lette in streaming: PostgreSQL usa il fetch size solo senza auto-commit
+    private static final int FETCH_SIZE = 10000;
+
+    private final DataSource ds;
+    private final Connection singleConn;
+
+    public RecommendationDAOImpl(DataSource ds) {
+        this.ds = ds;
+        this.singleConn = null;
+    }
+
+    public RecommendationDAOImpl(Connection conn) {
+        this.ds = null;
+        this.singleConn = conn;
+    }
+
+    private Connection getConnection() throws SQLException {
+        if (singleConn != null) return singleConn;
+        if (ds != null) return ds.getConnection();
+        throw new SQLException("No DataSource or Connection configured for RecommendationDAOImpl");
+    }
+
+    @FunctionalInterface
+    private interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    @Override
+    public IntPairs loadSuggestionPairs() throws SQLException {
+        IntPairs pairs = new IntPairs();
+        scan(SUGGESTION_PAIRS_SQL, rs -> pairs.add(rs.getInt(1), rs.getInt(2)));
+        return pairs;
+    }
+
+    @Override
+    public IntPairs loadLibraryBooks() throws SQLException {
+        IntPairs pairs = new IntPairs();
+        scan(LIBRARY_BOOKS_SQL, rs -> pairs.add(rs.getInt(1), rs.getInt(2)));
+        return pairs;
+    }
+
+    @Override
+    public Ratings loadRatings() throws SQLException {
+        Ratings ratings = new Ratings();
+        scan(RATINGS_SQL, rs -> ratings.add(rs.getInt(1), rs.getInt(2), rs.getFloat(3)));
+        return ratings;
+    }
+
+    @Override
+    public BookSignals loadBookSignals() throws SQLException {
+        BookSignals signals = new BookSignals();
+        scan(BOOK_SIGNALS_SQL, rs -> signals.add(rs.getInt(1), rs.getInt(2), rs.getDouble(3),
+            rs.getInt(4), rs.getInt(5)));
+        return signals;
+    }
+
+    private void scan(String sql, RowHandler handler) throws SQLException {
+        Connection c = getConnection();
+        boolean autoCommit = c.getAutoCommit();
+        try {
+            c.setAutoCommit(false);
+            try (PreparedStatement ps = c.prepareStatement(sql)) {
+                ps.setFetchSize(FETCH_SIZE);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        handler.handle(rs);
+                    }
+                }
+            }
+            c.commit();
+        } finally {
+            c.setAutoCommit(autoCommit);
+            if (c != singleConn) {
+                c.close();
+            }
+        }
+    }
+}
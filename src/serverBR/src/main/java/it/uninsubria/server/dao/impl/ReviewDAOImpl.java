@@ -1,5 +1,6 @@
 package it.uninsubria.server.dao.impl;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -9,6 +10,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 import it.uninsubria.server.dao.ReviewDAO;
+import it.uninsubria.server.event.WriteEvent;
+import it.uninsubria.server.event.WriteEventBus;
+import it.uninsubria.shared.model.BookReviewStats;
 import it.uninsubria.shared.model.User;
 import it.uninsubria.shared.model.Review;
 import org.slf4j.Logger;
@@ -16,16 +20,31 @@ import org.slf4j.LoggerFactory;
 
 public class ReviewDAOImpl implements ReviewDAO{
     private static final Logger logger = LoggerFactory.getLogger(ReviewDAOImpl.class);
+    private static final int IDS_CHUNK_SIZE = 1000;
+    // Media per recensione calcolata come Review.averageScore(): sei punteggi su 6
+    private static final String STATS_SELECT =
+        "SELECT book_id, COUNT(*) AS review_count, " +
+        "AVG((COALESCE(style, 0) + COALESCE(content, 0) + COALESCE(pleasentness, 0) + COALESCE(odness, 0) + " +
+        "COALESCE(editions, 0) + COALESCE(final_score, 0)) / 6.0) AS average_rating " +
+        "FROM book_reviews ";
     private final Connection conn;
     private final DataSource ds;
+    // Pool per le letture pubbliche (recensioni e statistiche per libro), eventualmente su replica
+    private final DataSource readDs;
 
     public ReviewDAOImpl(Connection conn) {
         this.conn = conn;
         this.ds = null;
+        this.readDs = null;
     }
 
     public ReviewDAOImpl(DataSource ds) {
+        this(ds, ds);
+    }
+
+    public ReviewDAOImpl(DataSource ds, DataSource readDs) {
         this.ds = ds;
+        this.readDs = readDs;
         this.conn = null;
     }
 
@@ -35,6 +54,11 @@ public class ReviewDAOImpl implements ReviewDAO{
         throw new SQLException("No DataSource or Connection configured for ReviewDAOImpl");
     }
 
+    private Connection getReadConnection() throws SQLException {
+        if (readDs != null) return readDs.getConnection();
+        return getConnection();
+    }
+
 
 
     @Override
@@ -59,6 +83,9 @@ public class ReviewDAOImpl implements ReviewDAO{
             ps.setString(14, v.getFinalNoteScore());
             ps.setInt(15, v.getFinalScore());
             int rows = ps.executeUpdate();
+            if (rows > 0) {
+                WriteEventBus.getInstance().publish(WriteEvent.reviewAdded(userId, book_id, v.getFinalScore()));
+            }
             return rows > 0;
         } catch (SQLException e) {
             logger.error("Database error in addReview", e);
@@ -179,7 +206,7 @@ public class ReviewDAOImpl implements ReviewDAO{
         List<Review> reviews = new ArrayList<>();
         String sql = "SELECT br.*, u.names, u.surnames, u.userid FROM book_reviews br " +
                      "JOIN users u ON br.user_id = u.user_id WHERE br.book_id = ?";
-        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+        try (Connection c = getReadConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
             ps.setInt(1, bookId);
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
@@ -216,4 +243,60 @@ public class ReviewDAOImpl implements ReviewDAO{
         }
         return reviews;
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<BookReviewStats> getReviewStatsForBooks(int[] bookIds) throws Exception {
+        List<BookReviewStats> stats = new ArrayList<>();
+        if (bookIds == null || bookIds.length == 0) {
+            return stats;
+        }
+
+        String sql = STATS_SELECT + "WHERE book_id = ANY(?) GROUP BY book_id";
+        try (Connection c = getReadConnection(); PreparedStatement ps = c.prepareStatement(sql)) {
+            for (int from = 0; from < bookIds.length; from += IDS_CHUNK_SIZE) {
+                int to = Math.min(from + IDS_CHUNK_SIZE, bookIds.length);
+                Integer[] chunk = new Integer[to - from];
+                for (int i = from; i < to; i++) {
+                    chunk[i - from] = bookIds[i];
+                }
+
+                Array idsArray = c.createArrayOf("integer", chunk);
+                try {
+                    ps.setArray(1, idsArray);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        readStats(rs, stats);
+                    }
+                } finally {
+                    idsArray.free();
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Database error in getReviewStatsForBooks", e);
+            throw e;
+        }
+        return stats;
+    }
+
+    @Override
+    public List<BookReviewStats> getAllReviewStats() throws Exception {
+        List<BookReviewStats> stats = new ArrayList<>();
+        String sql = STATS_SELECT + "GROUP BY book_id";
+        try (Connection c = getReadConnection(); PreparedStatement ps = c.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            readStats(rs, stats);
+        } catch (SQLException e) {
+            logger.error("Database error in getAllReviewStats", e);
+            throw e;
+        }
+        return stats;
+    }
+
+    private static void readStats(ResultSet rs, List<BookReviewStats> stats) throws SQLException {
+        while (rs.next()) {
+            stats.add(new BookReviewStats(
+                rs.getInt("book_id"),
+                rs.getDouble("average_rating"),
+                rs.getInt("review_count")));
+        }
+    }
+}
@@ -2,14 +2,41 @@ package it.uninsubria.server.dao.impl;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import javax.sql.DataSource;
 
 import it.uninsubria.server.dao.SuggestionDAO;
+import it.uninsubria.server.event.WriteEvent;
+import it.uninsubria.server.event.WriteEventBus;
 import it.uninsubria.shared.model.Book;
 import it.uninsubria.shared.model.SuggestionEntry;
 
 public class SuggestionDAOImpl implements SuggestionDAO {
+    // Gli ID vengono presi dalla sequenza della colonna SERIAL, non da MAX(suggested_id)+1
+    private static final String NEXT_ID_SQL =
+        "SELECT nextval(pg_get_serial_sequence('suggested_books', 'suggested_id'))";
+    private static final String NEXT_IDS_SQL =
+        "SELECT nextval(pg_get_serial_sequence('suggested_books', 'suggested_id')) FROM generate_series(1, ?)";
+    private static final String UPSERT_SQL =
+        "INSERT INTO Suggested_Books (suggested_id, user_id, libraries_id, base_book_id, suggested_book_id) " +
+        "VALUES (?, ?, ?, ?, ?) " +
+        "ON CONFLICT (user_id, libraries_id, base_book_id, suggested_book_id) " +
+        "DO UPDATE SET suggested_id = EXCLUDED.suggested_id " +
+        "RETURNING (xmax = 0)";
+    // Un solo statement per la batch; xmax = 0 distingue le righe inserite da quelle aggiornate
+    private static final String UPSERT_ALL_SQL =
+        "INSERT INTO Suggested_Books (suggested_id, user_id, libraries_id, base_book_id, suggested_book_id) " +
+        "SELECT s.id, ?, CAST(? AS INTEGER), ?, s.book FROM unnest(?, ?) AS s(id, book) " +
+        "ON CONFLICT (user_id, libraries_id, base_book_id, suggested_book_id) " +
+        "DO UPDATE SET suggested_id = EXCLUDED.suggested_id " +
+        "RETURNING suggested_book_id, (xmax = 0)";
+
     private final DataSource ds;
     private final Connection singleConn;
 
@@ -56,26 +83,20 @@ public class SuggestionDAOImpl implements SuggestionDAO {
     @Override
     public int addSuggestionReturningId(int userId, Integer libraryId, int baseBookId, int suggestedBookId)
             throws Exception {
-        String countSql = "SELECT COALESCE(MAX(suggested_id), 0) + 1 FROM Suggested_Books WHERE user_id = ?";
-        int suggestionId;
-        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(countSql)) {
+        String insertSql = "INSERT INTO Suggested_Books (user_id, libraries_id, base_book_id, suggested_book_id) VALUES (?, ?, ?, ?) RETURNING suggested_id";
+        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(insertSql)) {
             ps.setInt(1, userId);
+            ps.setObject(2, libraryId, java.sql.Types.INTEGER);
+            ps.setInt(3, baseBookId);
+            ps.setInt(4, suggestedBookId);
             try (ResultSet rs = ps.executeQuery()) {
                 rs.next();
-                suggestionId = rs.getInt(1);
+                int id = rs.getInt(1);
+                WriteEventBus.getInstance().publish(
+                    WriteEvent.suggestionAdded(userId, libraryId, baseBookId, suggestedBookId));
+                return id;
             }
         }
-
-        String insertSql = "INSERT INTO Suggested_Books (suggested_id, user_id, libraries_id, base_book_id, suggested_book_id) VALUES (?, ?, ?, ?, ?)";
-        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(insertSql)) {
-            ps.setInt(1, suggestionId);
-            ps.setInt(2, userId);
-            ps.setObject(3, libraryId, java.sql.Types.INTEGER);
-            ps.setInt(4, baseBookId);
-            ps.setInt(5, suggestedBookId);
-            ps.executeUpdate();
-        }
-        return suggestionId;
     }
     
 
@@ -89,6 +110,10 @@ public class SuggestionDAOImpl implements SuggestionDAO {
             ps.setInt(3, baseBookId);
             ps.setInt(4, suggestedBookId);
             int n = ps.executeUpdate();
+            if (n > 0) {
+                WriteEventBus.getInstance().publish(
+                    WriteEvent.suggestionAdded(userId, libraryId, baseBookId, suggestedBookId));
+            }
             return n > 0;
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -198,39 +223,140 @@ public class SuggestionDAOImpl implements SuggestionDAO {
 
     @Override
     public int createBatch(int userId, Integer libraryId) throws Exception {
-        // Calculate the next available suggested_id for this user
-        // No need to insert a placeholder record - just return the next available ID
-        String countSql = "SELECT COALESCE(MAX(suggested_id), 0) + 1 FROM Suggested_Books WHERE user_id = ?";
-        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(countSql)) {
-            ps.setInt(1, userId);
-            try (ResultSet rs = ps.executeQuery()) {
-                rs.next();
-                return rs.getInt(1);
-            }
+        // Reserve the batch id from the sequence: no placeholder record, no race on MAX(suggested_id)
+        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(NEXT_ID_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            rs.next();
+            return rs.getInt(1);
         }
     }
 
     @Override
     public int addToBatch(int batchId, int userId, Integer libraryId, int baseBookId, int suggestedBookId) throws Exception {
         // Insert or update the suggestion - if it exists, update the batch_id
-        String upsertSql = "INSERT INTO Suggested_Books (suggested_id, user_id, libraries_id, base_book_id, suggested_book_id) " +
-                          "VALUES (?, ?, ?, ?, ?) " +
-                          "ON CONFLICT (user_id, libraries_id, base_book_id, suggested_book_id) " +
-                          "DO UPDATE SET suggested_id = EXCLUDED.suggested_id";
-        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(upsertSql)) {
+        boolean inserted;
+        try (Connection c = getConnection(); PreparedStatement ps = c.prepareStatement(UPSERT_SQL)) {
             ps.setInt(1, batchId);
             ps.setInt(2, userId);
             ps.setObject(3, libraryId, java.sql.Types.INTEGER);
             ps.setInt(4, baseBookId);
             ps.setInt(5, suggestedBookId);
-            int rowsAffected = ps.executeUpdate();
-            if (rowsAffected == 0) {
-                throw new SQLException("Failed to insert or update suggestion - no rows affected");
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Failed to insert or update suggestion - no rows affected");
+                }
+                inserted = rs.getBoolean(1);
             }
         }
+        // Una riga già presente è stata solo spostata nella batch: non è un nuovo suggerimento
+        if (inserted) {
+            WriteEventBus.getInstance().publish(WriteEvent.suggestionAdded(userId, libraryId, baseBookId, suggestedBookId));
+        }
         return batchId;
     }
 
+    @Override
+    public Map<Integer, Integer> addAllToBatch(int batchId, int userId, Integer libraryId, int baseBookId, List<Integer> suggestedBookIds) throws Exception {
+        Map<Integer, Integer> saved = new LinkedHashMap<>();
+        List<Integer> inserted = new ArrayList<>();
+        if (suggestedBookIds == null || suggestedBookIds.isEmpty()) {
+            return saved;
+        }
+
+        // Candidates: distinct ids, never the base book itself (chk_suggestion_not_self)
+        Set<Integer> candidates = new LinkedHashSet<>();
+        for (Integer id : suggestedBookIds) {
+            if (id != null && id != baseBookId) {
+                candidates.add(id);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return saved;
+        }
+
+        try (Connection c = getConnection()) {
+            boolean originalAutoCommit = c.getAutoCommit();
+            c.setAutoCommit(false);
+            try {
+                // Unknown books would abort the whole transaction on the FK: filter them out up front
+                Set<Integer> existing = findExistingBookIds(c, candidates);
+                List<Integer> valid = new ArrayList<>();
+                for (Integer id : candidates) {
+                    if (existing.contains(id)) {
+                        valid.add(id);
+                    }
+                }
+
+                if (!valid.isEmpty()) {
+                    // First row takes the batch id, the others a block preallocated from the sequence
+                    int[] ids = new int[valid.size()];
+                    ids[0] = batchId;
+                    if (valid.size() > 1) {
+                        try (PreparedStatement ps = c.prepareStatement(NEXT_IDS_SQL)) {
+                            ps.setInt(1, valid.size() - 1);
+                            try (ResultSet rs = ps.executeQuery()) {
+                                for (int i = 1; rs.next(); i++) {
+                                    ids[i] = rs.getInt(1);
+                                }
+                            }
+                        }
+                    }
+
+                    Array idArray = c.createArrayOf("integer", Arrays.stream(ids).boxed().toArray(Integer[]::new));
+                    Array bookArray = c.createArrayOf("integer", valid.toArray(new Integer[0]));
+                    try (PreparedStatement ps = c.prepareStatement(UPSERT_ALL_SQL)) {
+                        ps.setInt(1, userId);
+                        ps.setObject(2, libraryId, java.sql.Types.INTEGER);
+                        ps.setInt(3, baseBookId);
+                        ps.setArray(4, idArray);
+                        ps.setArray(5, bookArray);
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                if (rs.getBoolean(2)) {
+                                    inserted.add(rs.getInt(1));
+                                }
+                            }
+                        }
+                    } finally {
+                        idArray.free();
+                        bookArray.free();
+                    }
+                    for (int i = 0; i < ids.length; i++) {
+                        saved.put(valid.get(i), ids[i]);
+                    }
+                }
+                c.commit();
+            } catch (Exception e) {
+                c.rollback();
+                throw e;
+            } finally {
+                c.setAutoCommit(originalAutoCommit);
+            }
+        }
+        // Solo le righe nuove: quelle già presenti sono già state contate dall'indice
+        for (Integer suggestedBookId : inserted) {
+            WriteEventBus.getInstance().publish(
+                WriteEvent.suggestionAdded(userId, libraryId, baseBookId, suggestedBookId));
+        }
+        return saved;
+    }
+
+    private Set<Integer> findExistingBookIds(Connection c, Set<Integer> bookIds) throws SQLException {
+        Set<Integer> existing = new HashSet<>();
+        Array idsArray = c.createArrayOf("integer", bookIds.toArray(new Integer[0]));
+        try (PreparedStatement ps = c.prepareStatement("SELECT book_id FROM Books WHERE book_id = ANY(?)")) {
+            ps.setArray(1, idsArray);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    existing.add(rs.getInt(1));
+                }
+            }
+        } finally {
+            idsArray.free();
+        }
+        return existing;
+    }
+
     @Override
     public List<SuggestionEntry> getSuggestionsForBatch(int batchId) throws Exception {
         List<SuggestionEntry> result = new ArrayList<>();
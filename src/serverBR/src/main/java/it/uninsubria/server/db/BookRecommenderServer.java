@@ -1,4 +1,6 @@
 package it.uninsubria.server.db;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.rmi.NoSuchObjectException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
@@ -28,6 +30,9 @@ import it.uninsubria.server.util.ConnectionPoolManager;
 import it.uninsubria.server.di.ServerDIContainer;
 import it.uninsubria.server.dao.SuggestionDAO;
 import it.uninsubria.server.dao.impl.SuggestionDAOImpl;
+import it.uninsubria.server.dao.RecommendationDAO;
+import it.uninsubria.server.dao.impl.RecommendationDAOImpl;
+import it.uninsubria.server.event.WriteEventBus;
 
 /**
  * Main server class for the Book Recommender application.
@@ -56,17 +61,37 @@ public class BookRecommenderServer{
      * @throws Exception if server startup fails
      */
     public static void startServer() throws Exception{
+        startServer(Paths.get(AppConstants.Recommendation.STATE_DIR));
+    }
+
+    /**
+     * Starts the Book Recommender server, checkpointing the recommenders under the given directory.
+     *
+     * @param stateDir directory of the recommender checkpoints
+     * @throws Exception if server startup fails
+     */
+    public static void startServer(Path stateDir) throws Exception{
 
             // DAO using DataSource for per-call connections
             javax.sql.DataSource ds = ConnectionPoolManager.getDataSource();
             UserDAO userDAO = new UserDAOImpl(ds);
-            BookDAO bookDAO = new BookDAOImpl(ds);
+            // Il catalogo è di sola lettura: pool read (o background per il warm-up);
+            // i libri di librerie, suggerimenti e recensioni restano sul primario
+            BookDAO bookDAO = new BookDAOImpl(ds, ConnectionPoolManager.getReadDataSource());
             LibraryDAO libraryDAO = new LibraryDAOImpl(ds);
-            ReviewDAO reviewDAO = new ReviewDAOImpl(ds);
+            ReviewDAO reviewDAO = new ReviewDAOImpl(ds, ConnectionPoolManager.getReadDataSource());
 
             // Initialize server DI container for core wiring
             SuggestionDAO suggestionDAO = new SuggestionDAOImpl(ds);
-            ServerDIContainer.init(bookDAO, libraryDAO, userDAO, reviewDAO, suggestionDAO);
+            RecommendationDAO recommendationDAO = new RecommendationDAOImpl(ConnectionPoolManager.getReadDataSource());
+            ServerDIContainer.init(bookDAO, libraryDAO, userDAO, reviewDAO, suggestionDAO, recommendationDAO, stateDir);
+            WriteEventBus.getInstance().start();
+            ServerDIContainer.getCoOccurrenceRecommender().start(AppConstants.Recommendation.COOCCURRENCE_REBUILD_MS);
+            ServerDIContainer.getContentRecommender().start(AppConstants.Recommendation.CONTENT_REFRESH_MS);
+            ServerDIContainer.getCollaborativeRecommender().start(AppConstants.Recommendation.ALS_RETRAIN_MS);
+            ServerDIContainer.getPopularityRanker().start(AppConstants.Recommendation.POPULARITY_REFRESH_MS);
+            ServerDIContainer.getTrendingAggregator().start();
+            ServerDIContainer.getCatalogStore().start(AppConstants.Cache.COLUMNAR_CATALOG_REFRESH_MS);
 
             // Implementazioni RMI
             userService = new UserServiceImpl(userDAO);
@@ -100,6 +125,26 @@ public class BookRecommenderServer{
      * @throws Exception if server shutdown fails
      */
     public static void stopServer() throws Exception {
+        WriteEventBus.getInstance().stop();
+        if (ServerDIContainer.getCoOccurrenceRecommender() != null) {
+            ServerDIContainer.getCoOccurrenceRecommender().stop();
+        }
+        if (ServerDIContainer.getContentRecommender() != null) {
+            ServerDIContainer.getContentRecommender().stop();
+        }
+        if (ServerDIContainer.getCollaborativeRecommender() != null) {
+            ServerDIContainer.getCollaborativeRecommender().stop();
+        }
+        if (ServerDIContainer.getPopularityRanker() != null) {
+            ServerDIContainer.getPopularityRanker().stop();
+        }
+        // Il bus è già fermo: nessun evento arriva dopo il salvataggio dei contatori
+        if (ServerDIContainer.getTrendingAggregator() != null) {
+            ServerDIContainer.getTrendingAggregator().stop();
+        }
+        if (ServerDIContainer.getCatalogStore() != null) {
+            ServerDIContainer.getCatalogStore().stop();
+        }
         if (registry != null) {
             // Unbind dei servizi (opzionale, ma pulito)
             try {
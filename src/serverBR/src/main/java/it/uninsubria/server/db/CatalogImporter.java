@@ -0,0 +1,340 @@
+package it.uninsubria.server.db;
+
+import it.uninsubria.shared.utils.AppConstants;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Resumable, delta-aware import of the book catalog from CSV.
+ * <p>
+ * Each row is identified by a fingerprint of title, authors and year; a second
+ * hash covers the remaining columns. Rows are inserted when the fingerprint is
+ * new, updated when the content hash differs and skipped otherwise. Every
+ * committed batch also stores the last CSV line in {@code Catalog_Import_State},
+ * so an interrupted import resumes from there and an unchanged dataset is
+ * recognised from its file hash without being parsed again.
+ */
+public class CatalogImporter {
+
+    private static final Logger logger = Logger.getLogger(CatalogImporter.class.getName());
+
+    private static final String CSV_RESOURCE = "BooksDatasetClean.csv";
+    private static final char SEPARATOR = '\u001f';
+
+    private static final String INSERT_SQL =
+        "INSERT INTO Books (title, authors, descriptions, category, publisher, price, publish_date_month, publish_date_year, fingerprint, content_hash) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL =
+        "UPDATE Books SET descriptions = ?, category = ?, publisher = ?, price = ?, publish_date_month = ?, content_hash = ? " +
+        "WHERE fingerprint = ?";
+    // Stesse formule di fingerprint()/contentHash(), per le righe caricate senza impronta (es. DataSeeder)
+    private static final String BACKFILL_SQL =
+        "UPDATE Books SET " +
+        "fingerprint = md5(title || chr(31) || authors || chr(31) || COALESCE(publish_date_year::text, '')), " +
+        "content_hash = md5(COALESCE(descriptions, '') || chr(31) || COALESCE(category, '') || chr(31) || " +
+        "COALESCE(publisher, '') || chr(31) || COALESCE(price, '') || chr(31) || COALESCE(publish_date_month, '')) " +
+        "WHERE fingerprint IS NULL";
+    private static final String SAVE_STATE_SQL =
+        "INSERT INTO Catalog_Import_State (source_name, source_hash, committed_line, completed, updated_at) " +
+        "VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP) " +
+        "ON CONFLICT (source_name) DO UPDATE SET source_hash = EXCLUDED.source_hash, " +
+        "committed_line = EXCLUDED.committed_line, completed = EXCLUDED.completed, updated_at = CURRENT_TIMESTAMP";
+
+    private CatalogImporter() {}
+
+    /**
+     * Imports the bundled catalog CSV, writing only new or changed rows.
+     *
+     * @param conn the database connection
+     * @return the number of existing books updated in place
+     * @throws Exception if the import fails
+     */
+    public static int importBooksFromCSV(Connection conn) throws Exception {
+        return importBooks(conn, CSV_RESOURCE, CatalogImporter::openCsv);
+    }
+
+    /**
+     * Imports a catalog CSV, read twice: once to hash it and once to import the rows.
+     *
+     * @param conn the database connection
+     * @param sourceName the name the import checkpoint is stored under
+     * @param source opens a new stream over the CSV (with header line)
+     * @return the number of existing books updated in place
+     * @throws Exception if the import fails
+     */
+    static int importBooks(Connection conn, String sourceName, CsvSource source) throws Exception {
+        String sourceHash;
+        try (InputStream input = source.open()) {
+            sourceHash = sha256(input);
+        }
+
+        // Con il catalogo vuoto (es. dopo un reset) il checkpoint non è più valido
+        ImportState state = DataSeeder.isBooksTableEmpty(conn) ? null : loadState(conn, sourceName);
+        int resumeLine = 0;
+        if (state != null && state.sourceHash.equals(sourceHash)) {
+            if (state.completed) {
+                logger.info("Catalog unchanged since last import, nothing to do");
+                return 0;
+            }
+            resumeLine = state.committedLine;
+            logger.info("Resuming catalog import after line " + resumeLine);
+        }
+
+        backfillFingerprints(conn);
+
+        try (InputStream input = source.open()) {
+            return importRows(conn, input, sourceName, sourceHash, resumeLine);
+        }
+    }
+
+    private static int importRows(Connection conn, InputStream input, String sourceName, String sourceHash,
+                                   int resumeLine) throws Exception {
+        final int BATCH_SIZE = AppConstants.Batch.DATA_SEEDER_BATCH_SIZE;
+        int line = 0;
+        int inserted = 0;
+        int updated = 0;
+        int unchanged = 0;
+        int skipped = 0;
+        long start = System.currentTimeMillis();
+
+        boolean originalAutoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+             PreparedStatement insert = conn.prepareStatement(INSERT_SQL);
+             PreparedStatement update = conn.prepareStatement(UPDATE_SQL)) {
+            reader.readLine(); // header
+            line++;
+
+            List<DataSeeder.BookRow> batch = new ArrayList<>(BATCH_SIZE);
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (line <= resumeLine) {
+                    continue;
+                }
+
+                String[] parts = DataSeeder.parseCSVLine(text);
+                DataSeeder.BookRow row = parts.length < 8 ? null : DataSeeder.toRow(parts);
+                if (row == null) {
+                    skipped++;
+                } else {
+                    batch.add(row);
+                }
+
+                if (batch.size() >= BATCH_SIZE) {
+                    int[] counts = writeBatch(conn, insert, update, batch);
+                    saveState(conn, sourceName, sourceHash, line, false);
+                    conn.commit();
+                    inserted += counts[0];
+                    updated += counts[1];
+                    unchanged += counts[2];
+                    batch.clear();
+                    logger.info("Catalog import committed up to line " + line);
+                }
+            }
+
+            int[] counts = writeBatch(conn, insert, update, batch);
+            saveState(conn, sourceName, sourceHash, line, true);
+            conn.commit();
+            inserted += counts[0];
+            updated += counts[1];
+            unchanged += counts[2];
+        } catch (Exception e) {
+            conn.rollback();
+            logger.severe("Catalog import failed at line " + line + ": " + e.getMessage());
+            throw e;
+        } finally {
+            conn.setAutoCommit(originalAutoCommit);
+        }
+
+        logger.info("Catalog import completed in " + (System.currentTimeMillis() - start) + " ms: inserted=" + inserted +
+                    ", updated=" + updated + ", unchanged=" + unchanged + ", skipped=" + skipped);
+        return updated;
+    }
+
+    /**
+     * Classifies the batch against the stored fingerprints and writes only new or changed rows.
+     *
+     * @return inserted, updated and unchanged counts
+     */
+    private static int[] writeBatch(Connection conn, PreparedStatement insert, PreparedStatement update,
+                                    List<DataSeeder.BookRow> batch) throws Exception {
+        int[] counts = new int[3];
+        if (batch.isEmpty()) {
+            return counts;
+        }
+
+        Set<String> fingerprints = new LinkedHashSet<>();
+        for (DataSeeder.BookRow row : batch) {
+            fingerprints.add(fingerprint(row));
+        }
+        Map<String, String> stored = loadContentHashes(conn, fingerprints);
+
+        for (DataSeeder.BookRow row : batch) {
+            String fingerprint = fingerprint(row);
+            String contentHash = contentHash(row);
+            String storedHash = stored.get(fingerprint);
+            if (storedHash == null) {
+                DataSeeder.bind(insert, row);
+                insert.setString(9, fingerprint);
+                insert.setString(10, contentHash);
+                insert.addBatch();
+                counts[0]++;
+            } else if (!storedHash.equals(contentHash)) {
+                update.setString(1, row.description);
+                update.setString(2, row.category);
+                update.setString(3, row.publisher);
+                update.setString(4, row.price);
+                update.setString(5, row.publishMonth);
+                update.setString(6, contentHash);
+                update.setString(7, fingerprint);
+                update.addBatch();
+                counts[1]++;
+            } else {
+                counts[2]++;
+            }
+            // Righe ripetute nel CSV contano come lo stesso libro
+            stored.put(fingerprint, contentHash);
+        }
+
+        if (counts[0] > 0) {
+            insert.executeBatch();
+        }
+        if (counts[1] > 0) {
+            update.executeBatch();
+        }
+        return counts;
+    }
+
+    private static Map<String, String> loadContentHashes(Connection conn, Set<String> fingerprints) throws SQLException {
+        Map<String, String> hashes = new HashMap<>();
+        Array array = conn.createArrayOf("text", fingerprints.toArray(new String[0]));
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT fingerprint, content_hash FROM Books WHERE fingerprint = ANY(?)")) {
+            ps.setArray(1, array);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    hashes.put(rs.getString(1), rs.getString(2));
+                }
+            }
+        } finally {
+            array.free();
+        }
+        return hashes;
+    }
+
+    private static void backfillFingerprints(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            int rows = st.executeUpdate(BACKFILL_SQL);
+            if (rows > 0) {
+                logger.info("Computed fingerprints for " + rows + " existing books");
+            }
+        }
+    }
+
+    private static ImportState loadState(Connection conn, String sourceName) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(
+                "SELECT source_hash, committed_line, completed FROM Catalog_Import_State WHERE source_name = ?")) {
+            ps.setString(1, sourceName);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    return new ImportState(rs.getString(1), rs.getInt(2), rs.getBoolean(3));
+                }
+            }
+        }
+        return null;
+    }
+
+    private static void saveState(Connection conn, String sourceName, String sourceHash, int line, boolean completed) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(SAVE_STATE_SQL)) {
+            ps.setString(1, sourceName);
+            ps.setString(2, sourceHash);
+            ps.setInt(3, line);
+            ps.setBoolean(4, completed);
+            ps.executeUpdate();
+        }
+    }
+
+    static String fingerprint(DataSeeder.BookRow row) {
+        return md5(row.title + SEPARATOR + row.authors + SEPARATOR + (row.publishYear != null ? row.publishYear : ""));
+    }
+
+    static String contentHash(DataSeeder.BookRow row) {
+        return md5(nullToEmpty(row.description) + SEPARATOR + nullToEmpty(row.category) + SEPARATOR +
+                   nullToEmpty(row.publisher) + SEPARATOR + nullToEmpty(row.price) + SEPARATOR +
+                   nullToEmpty(row.publishMonth));
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static String md5(String value) {
+        return HexFormat.of().formatHex(digest("MD5").digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String sha256(InputStream input) throws IOException {
+        MessageDigest md = digest("SHA-256");
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            md.update(buffer, 0, read);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static MessageDigest digest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " not available", e);
+        }
+    }
+
+    private static InputStream openCsv() throws IOException {
+        InputStream input = CatalogImporter.class.getClassLoader().getResourceAsStream(CSV_RESOURCE);
+        if (input == null) {
+            throw new IOException(CSV_RESOURCE + " not found in resources");
+        }
+        return input;
+    }
+
+    /**
+     * Opens the CSV to import.
+     */
+    @FunctionalInterface
+    interface CsvSource {
+        InputStream open() throws IOException;
+    }
+
+    private static final class ImportState {
+        final String sourceHash;
+        final int committedLine;
+        final boolean completed;
+
+        ImportState(String sourceHash, int committedLine, boolean completed) {
+            this.sourceHash = sourceHash;
+            this.committedLine = committedLine;
+            this.completed = completed;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import java.sql.SQLException;
 import java.util.stream.Collectors;
 import java.util.logging.Logger;
 
+import it.uninsubria.server.di.ServerDIContainer;
 import it.uninsubria.server.util.ConnectionPoolManager;
 import it.uninsubria.shared.utils.AppConstants;
 
@@ -18,6 +19,9 @@ public class DBInitializer{
 
     private static final Logger logger = Logger.getLogger(DBInitializer.class.getName());
 
+    private static final String RESET_SUGGESTION_SEQUENCE_SQL =
+        "SELECT setval(pg_get_serial_sequence('suggested_books', 'suggested_id'), 1, false)";
+
      /**
       * Ricrea le tabelle problematiche (Book_Reviews e Suggested_Books) per applicare le correzioni allo schema
       *
@@ -59,8 +63,7 @@ public class DBInitializer{
                     ");\n" +
                     "-- Ricrea Suggested_Books\n" +
                     "CREATE TABLE IF NOT EXISTS Suggested_Books (\n" +
-                    "    id SERIAL PRIMARY KEY,\n" +
-                    "    suggested_id INT NOT NULL,\n" +
+                    "    suggested_id SERIAL PRIMARY KEY,\n" +
                     "    user_id INT NOT NULL,\n" +
                     "    libraries_id INT NOT NULL,\n" +
                     "    base_book_id INT NOT NULL,\n" +
@@ -69,7 +72,9 @@ public class DBInitializer{
                     "    CONSTRAINT fk_sugg_user FOREIGN KEY (user_id) REFERENCES Users(user_id) ON DELETE CASCADE ON UPDATE CASCADE,\n" +
                     "    CONSTRAINT fk_sugg_library FOREIGN KEY (libraries_id) REFERENCES Library(library_id) ON DELETE CASCADE ON UPDATE CASCADE,\n" +
                     "    CONSTRAINT fk_sugg_base FOREIGN KEY (base_book_id) REFERENCES Books(book_id) ON DELETE CASCADE ON UPDATE CASCADE,\n" +
-                    "    CONSTRAINT fk_sugg_suggested FOREIGN KEY (suggested_book_id) REFERENCES Books(book_id) ON DELETE CASCADE ON UPDATE CASCADE\n" +
+                    "    CONSTRAINT fk_sugg_suggested FOREIGN KEY (suggested_book_id) REFERENCES Books(book_id) ON DELETE CASCADE ON UPDATE CASCADE,\n" +
+                    "    CONSTRAINT unique_user_suggestion UNIQUE (user_id, libraries_id, base_book_id, suggested_book_id),\n" +
+                    "    CONSTRAINT chk_suggestion_not_self CHECK (base_book_id <> suggested_book_id)\n" +
                     ");\n" +
                     "CREATE UNIQUE INDEX IF NOT EXISTS idx_library_user_name ON Library(user_id, name_library);\n" +
                     "CREATE INDEX IF NOT EXISTS idx_suggestion_user_library ON Suggested_Books(user_id, libraries_id);";
@@ -78,7 +83,7 @@ public class DBInitializer{
 
                 // Reset sequenze per le tabelle ricreate
                 stmt.execute("ALTER SEQUENCE IF EXISTS book_reviews_book_reviews_id_seq RESTART WITH 1;");
-                stmt.execute("ALTER SEQUENCE IF EXISTS Suggested_Books_id_seq RESTART WITH 1;");
+                stmt.execute(RESET_SUGGESTION_SEQUENCE_SQL);
 
                 // Assicurati che esistano utenti e libreria di test (solo se non esistono)
                 try (ResultSet userRs = stmt.executeQuery("SELECT COUNT(*) FROM Users")) {
@@ -156,9 +161,10 @@ public class DBInitializer{
                 }
 
                 // Dati di test per Suggested_Books
-                String suggestionsSql = "INSERT INTO Suggested_Books (suggested_id, user_id, libraries_id, base_book_id, suggested_book_id) VALUES " +
-                    "(1, 1, 1, 1, 2), (1, 1, 1, 1, 3), (1, 1, 1, 1, 4), (1, 1, 1, 2, 1), (1, 1, 1, 2, 3), " +
-                    "(1, 1, 1, 3, 1), (1, 1, 1, 3, 2), (1, 1, 1, 4, 5), (1, 1, 1, 5, 4);";
+                // Gli ID li assegna la sequenza, come per i suggerimenti inseriti dalla DAO
+                String suggestionsSql = "INSERT INTO Suggested_Books (user_id, libraries_id, base_book_id, suggested_book_id) VALUES " +
+                    "(1, 1, 1, 2), (1, 1, 1, 3), (1, 1, 1, 4), (1, 1, 2, 1), (1, 1, 2, 3), " +
+                    "(1, 1, 3, 1), (1, 1, 3, 2), (1, 1, 4, 5), (1, 1, 5, 4);";
 
                 try (Statement stmt = conn.createStatement()) {
                     stmt.execute(suggestionsSql);
@@ -292,25 +298,37 @@ public class DBInitializer{
                 "books_book_id_seq",
                 "users_user_id_seq",
                 "library_library_id_seq",
-                "book_reviews_book_reviews_id_seq",
-                "Suggested_Books_id_seq"
+                "book_reviews_book_reviews_id_seq"
             };
             for (String seq : sequences) {
                 stmt.executeUpdate("ALTER SEQUENCE " + seq + " RESTART WITH 1");
             }
+            // Il nome della sequenza dipende da come è nata la colonna (SERIAL o rinominata da id)
+            stmt.execute(RESET_SUGGESTION_SEQUENCE_SQL);
 
         }
         logger.info("Database svuotato e sequenze resettate.");
     }
 
     /**
-     * Reloads books data from CSV file.
+     * Reloads books data from CSV file, writing only new or changed rows
+     * and resuming an interrupted import from its last checkpoint. Books
+     * updated in place are re-indexed by rebuilding the in-memory catalog views.
      *
      * @param conn the database connection
      * @throws Exception if CSV loading fails
      */
     public static void reloadBooksFromCSV(Connection conn) throws Exception {
-        DataSeeder.seedBooksFromCSV(conn); // usa il nuovo DataSeeder
+        int updated = CatalogImporter.importBooksFromCSV(conn);
+        // I refresh incrementali vedono solo id nuovi: i libri modificati richiedono una ricostruzione
+        if (updated > 0) {
+            if (ServerDIContainer.getContentRecommender() != null) {
+                ServerDIContainer.getContentRecommender().reset();
+            }
+            if (ServerDIContainer.getCatalogStore() != null) {
+                ServerDIContainer.getCatalogStore().reset();
+            }
+        }
     }
     
     /**
@@ -1,23 +1,51 @@
 package it.uninsubria.server.db;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.uninsubria.server.monitoring.MonitoringService;
 import it.uninsubria.shared.utils.AppConstants;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
 
 /**
  * Utility class for seeding the database with book data from CSV file.
+ * <p>
+ * Ingestion is pipelined: a parser thread turns CSV lines into rows and hands
+ * them over in batches through a bounded queue, while the calling thread writes
+ * each batch with PostgreSQL COPY (or JDBC batching on other drivers).
  */
 public class DataSeeder {
 
     private static final Logger logger = Logger.getLogger(DataSeeder.class.getName());
 
+    private static final String INSERT_SQL =
+        "INSERT INTO Books (title, authors, descriptions, category, publisher, price, publish_date_month, publish_date_year) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+    private static final String COPY_SQL =
+        "COPY Books (title, authors, descriptions, category, publisher, price, publish_date_month, publish_date_year) " +
+        "FROM STDIN WITH (FORMAT text)";
+
+    /** Marks the end of the parsed stream in the queue. */
+    private static final List<BookRow> END_OF_INPUT = Collections.emptyList();
+
     /**
      * Seeds the database with book data from the CSV file.
      *
@@ -25,153 +53,331 @@ public class DataSeeder {
      * @throws Exception if seeding fails
      */
     public static void seedBooksFromCSV(Connection conn) throws Exception {
-        logger.info("Starting book data seeding from CSV...");
-
-        int insertedCount = 0;
-        int skippedCount = 0;
-        int errorCount = 0;
-        int totalLines = 0;
-        boolean originalAutoCommit = true; // Default value
-
         try (InputStream input = DataSeeder.class.getClassLoader().getResourceAsStream("BooksDatasetClean.csv")) {
             if (input == null) {
                 throw new IOException("BooksDatasetClean.csv not found in resources");
             }
+            seedBooks(conn, input);
+        }
+    }
+
+    /**
+     * Seeds the database with book data read from the given CSV stream.
+     *
+     * @param conn the database connection
+     * @param input the CSV stream (with header line)
+     * @return the ingestion statistics
+     * @throws Exception if seeding fails
+     */
+    public static SeedStats seedBooks(Connection conn, InputStream input) throws Exception {
+        logger.info("Starting book data seeding from CSV...");
+
+        SeedStats stats = new SeedStats();
+        BlockingQueue<List<BookRow>> queue = new ArrayBlockingQueue<>(AppConstants.Batch.DATA_SEEDER_QUEUE_CAPACITY);
+        AtomicReference<Throwable> parserFailure = new AtomicReference<>();
+
+        Thread parser = new Thread(() -> {
+            try {
+                parseRows(input, queue, stats);
+            } catch (Throwable t) {
+                parserFailure.set(t);
+            } finally {
+                try {
+                    queue.put(END_OF_INPUT);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "DataSeeder-Parser");
+        parser.setDaemon(true);
+
+        MeterRegistry registry = MonitoringService.getInstance().getRegistry();
+        Counter insertedCounter = registry.counter("db.seeder.rows.inserted");
+        Timer batchTimer = registry.timer("db.seeder.batch.duration");
+
+        boolean originalAutoCommit = conn.getAutoCommit();
+        CopyManager copyManager = copyManagerFor(conn);
+        logger.info("Seeding mode: " + (copyManager != null ? "COPY streaming" : "JDBC batch"));
+
+        long startNanos = System.nanoTime();
+        parser.start();
+        try {
+            conn.setAutoCommit(false);
+            try (PreparedStatement ps = conn.prepareStatement(INSERT_SQL)) {
+                List<BookRow> batch;
+                while ((batch = queue.take()) != END_OF_INPUT) {
+                    long batchStart = System.nanoTime();
+                    int written = writeBatch(conn, copyManager, ps, batch, stats);
+                    batchTimer.record(System.nanoTime() - batchStart, TimeUnit.NANOSECONDS);
+                    insertedCounter.increment(written);
+                    stats.inserted += written;
+                    logProgress(stats, written, startNanos);
+                }
+            }
+        } catch (Exception e) {
+            parser.interrupt();
+            logger.severe("Error during book data seeding at line " + stats.totalLines + ": " + e.getMessage());
+            logger.severe("Seeding statistics at failure: inserted=" + stats.inserted + ", skipped=" + stats.skipped + ", errors=" + stats.errors);
+            throw e;
+        } finally {
+            conn.setAutoCommit(originalAutoCommit);
+        }
+
+        Throwable failure = parserFailure.get();
+        if (failure != null) {
+            logger.severe("CSV parsing failed at line " + stats.totalLines + ": " + failure.getMessage());
+            throw failure instanceof Exception ? (Exception) failure : new IOException(failure);
+        }
 
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
-                String line;
-                boolean isFirstLine = true;
-
-                String insertSQL = "INSERT INTO Books (title, authors, descriptions, category, publisher, price, publish_date_month, publish_date_year) " +
-                                 "VALUES (?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
-
-                // Disable auto-commit for better performance
-                originalAutoCommit = conn.getAutoCommit();
-                conn.setAutoCommit(false);
-
-                try (PreparedStatement ps = conn.prepareStatement(insertSQL)) {
-                    int batchCount = 0;
-                    final int BATCH_SIZE = AppConstants.Batch.DATA_SEEDER_BATCH_SIZE;
-
-                    while ((line = reader.readLine()) != null) {
-                        totalLines++;
-                        if (isFirstLine) {
-                            isFirstLine = false; // Skip header
-                            continue;
-                        }
-
-                        // More robust parsing: find the last 7 separators to ensure we get exactly 8 fields
-                        String[] parts = parseCSVLine(line);
-                        if (parts.length < 8) {
-                            logger.warning("Line " + totalLines + " skipped: insufficient fields (" + parts.length + "/8) - " + line.substring(0, Math.min(100, line.length())));
-                            skippedCount++;
-                            continue;
-                        }
-
-                        try {
-                            // Extract and clean data
-                            String title = cleanString(parts[0]);
-                            String authors = cleanString(parts[1]);
-
-                            // Skip if required fields are empty
-                            if (title.isEmpty() || authors.isEmpty()) {
-                                skippedCount++;
-                                continue;
-                            }
-
-                            String description = cleanString(parts[2]);
-                            String category = cleanString(parts[3]);
-                            String publisher = cleanString(parts[4]);
-                            String price = cleanString(parts[5]);
-                            String publishMonth = cleanString(parts[6]);
-                            String publishYearStr = cleanString(parts[7]);
-
-                            // Parse year
-                            Integer publishYear = null;
-                            try {
-                                if (!publishYearStr.isEmpty()) {
-                                    publishYear = Integer.parseInt(publishYearStr.trim());
-                                    if (publishYear < 1000 || publishYear > 2100) {
-                                        publishYear = null; // Invalid year
-                                    }
-                                }
-                            } catch (NumberFormatException e) {
-                                // Keep as null
-                            }
-
-                            // Set parameters for insert (ON CONFLICT DO NOTHING handles duplicates)
-                            ps.setString(1, title);
-                            ps.setString(2, authors);
-                            ps.setString(3, description.isEmpty() ? null : description);
-                            ps.setString(4, category.isEmpty() ? null : category);
-                            ps.setString(5, publisher.isEmpty() ? null : publisher);
-                            ps.setString(6, price.isEmpty() ? null : price);
-                            ps.setString(7, publishMonth.isEmpty() ? null : publishMonth);
-                            if (publishYear != null) {
-                                ps.setInt(8, publishYear);
-                            } else {
-                                ps.setNull(8, java.sql.Types.INTEGER);
-                            }
-
-                            ps.executeUpdate(); // ON CONFLICT DO NOTHING means no rows affected for duplicates
-                            insertedCount++;
-                            batchCount++;
-
-                            // Commit batch periodically
-                            if (batchCount >= BATCH_SIZE) {
-                                try {
-                                    conn.commit();
-                                    batchCount = 0;
-                                    logger.info("Committed batch of " + BATCH_SIZE + " books. Total inserted: " + insertedCount);
-                                } catch (Exception commitEx) {
-                                    logger.severe("Failed to commit batch at line " + totalLines + ": " + commitEx.getMessage());
-                                    throw commitEx;
-                                }
-                            }
-
-                            // Log progress every 10000 books (ridotto per prestazioni)
-                            if (insertedCount % 10000 == 0) {
-                                logger.info("Inserted " + insertedCount + " books so far...");
-                            }
-
-                            } catch (Exception e) {
-                                logger.warning("Error processing line " + totalLines + ": " + e.getMessage());
-                                // Log the problematic line (truncated for readability)
-                                String truncatedLine = line.length() > 200 ? line.substring(0, 200) + "..." : line;
-                                logger.warning("Problematic line content: " + truncatedLine.replace("‰", " | "));
-                                errorCount++;
-
-                                // If we have too many errors, log a summary and continue
-                                if (errorCount % 100 == 0) {
-                                    logger.severe("Too many errors during seeding (" + errorCount + "). Check data quality.");
-                                }
-
-                                // Continue with next line
-                            }
-                    }
-
-                    // Final commit
-                    if (batchCount > 0) {
-                        conn.commit();
-                        logger.info("Committed final batch of " + batchCount + " books");
-                    }
+        stats.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        logger.info("Book data seeding completed:");
+        logger.info("  Total lines processed: " + (stats.totalLines - 1)); // -1 for header
+        logger.info("  Books inserted: " + stats.inserted);
+        logger.info("  Books skipped (insufficient/empty fields): " + stats.skipped);
+        logger.info("  Books with processing errors: " + stats.errors);
+        logger.info("  Throughput: " + stats.rowsPerSecond() + " rows/s in " + stats.elapsedMillis + " ms");
+        return stats;
+    }
+
+    /**
+     * Reads the CSV stream and enqueues cleaned rows in batches of
+     * {@link AppConstants.Batch#DATA_SEEDER_BATCH_SIZE}.
+     */
+    private static void parseRows(InputStream input, BlockingQueue<List<BookRow>> queue, SeedStats stats)
+            throws IOException, InterruptedException {
+        final int BATCH_SIZE = AppConstants.Batch.DATA_SEEDER_BATCH_SIZE;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            boolean isFirstLine = true;
+            List<BookRow> batch = new ArrayList<>(BATCH_SIZE);
+
+            while ((line = reader.readLine()) != null) {
+                stats.totalLines++;
+                if (isFirstLine) {
+                    isFirstLine = false; // Skip header
+                    continue;
                 }
 
-                // Restore original auto-commit setting
-                conn.setAutoCommit(originalAutoCommit);
+                String[] parts = parseCSVLine(line);
+                if (parts.length < 8) {
+                    logger.warning("Line " + stats.totalLines + " skipped: insufficient fields (" + parts.length + "/8) - " + line.substring(0, Math.min(100, line.length())));
+                    stats.skipped++;
+                    continue;
+                }
 
-                logger.info("Book data seeding completed:");
-                logger.info("  Total lines processed: " + (totalLines - 1)); // -1 for header
-                logger.info("  Books inserted: " + insertedCount);
-                logger.info("  Books skipped (duplicates/insufficient fields): " + skippedCount);
-                logger.info("  Books with processing errors: " + errorCount);
-                logger.info("  Expected final count: " + ((totalLines - 1) - skippedCount - errorCount));
+                BookRow row = toRow(parts);
+                if (row == null) {
+                    stats.skipped++;
+                    continue;
+                }
+
+                batch.add(row);
+                if (batch.size() >= BATCH_SIZE) {
+                    queue.put(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                queue.put(batch);
             }
-                } catch (Exception e) {
-                    logger.severe("Error during book data seeding at line " + totalLines + ": " + e.getMessage());
-                    logger.severe("Seeding statistics at failure: inserted=" + insertedCount + ", skipped=" + skippedCount + ", errors=" + errorCount);
-                    throw e;
+        }
+    }
+
+    /**
+     * Builds a row from the CSV fields, or returns null if required fields are empty.
+     */
+    static BookRow toRow(String[] parts) {
+        String title = cleanString(parts[0]);
+        String authors = cleanString(parts[1]);
+        if (title.isEmpty() || authors.isEmpty()) {
+            return null;
+        }
+
+        Integer publishYear = null;
+        String publishYearStr = cleanString(parts[7]);
+        try {
+            if (!publishYearStr.isEmpty()) {
+                publishYear = Integer.parseInt(publishYearStr.trim());
+                if (publishYear < 1000 || publishYear > 2100) {
+                    publishYear = null; // Invalid year
                 }
+            }
+        } catch (NumberFormatException e) {
+            // Keep as null
+        }
+
+        return new BookRow(title, authors, emptyToNull(cleanString(parts[2])), emptyToNull(cleanString(parts[3])),
+            emptyToNull(cleanString(parts[4])), emptyToNull(cleanString(parts[5])), emptyToNull(cleanString(parts[6])),
+            publishYear);
+    }
+
+    /**
+     * Writes and commits one batch. If the fast path fails the batch is rolled back
+     * and retried row by row, so a single bad row only costs itself.
+     *
+     * @return the number of rows written
+     */
+    private static int writeBatch(Connection conn, CopyManager copyManager, PreparedStatement ps,
+                                  List<BookRow> batch, SeedStats stats) throws SQLException {
+        try {
+            if (copyManager != null) {
+                copyManager.copyIn(COPY_SQL, new StringReader(toCopyText(batch)));
+            } else {
+                for (BookRow row : batch) {
+                    bind(ps, row);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            conn.commit();
+            return batch.size();
+        } catch (SQLException | IOException e) {
+            logger.warning("Batch write failed, retrying row by row: " + e.getMessage());
+            conn.rollback();
+            ps.clearBatch();
+        }
+
+        int written = 0;
+        for (BookRow row : batch) {
+            try {
+                bind(ps, row);
+                ps.executeUpdate();
+                conn.commit();
+                written++;
+            } catch (SQLException e) {
+                conn.rollback();
+                stats.errors++;
+                logger.warning("Error inserting book '" + row.title + "': " + e.getMessage());
+                if (stats.errors % 100 == 0) {
+                    logger.severe("Too many errors during seeding (" + stats.errors + "). Check data quality.");
+                }
+            }
+        }
+        return written;
+    }
+
+    static void bind(PreparedStatement ps, BookRow row) throws SQLException {
+        ps.setString(1, row.title);
+        ps.setString(2, row.authors);
+        ps.setString(3, row.description);
+        ps.setString(4, row.category);
+        ps.setString(5, row.publisher);
+        ps.setString(6, row.price);
+        ps.setString(7, row.publishMonth);
+        if (row.publishYear != null) {
+            ps.setInt(8, row.publishYear);
+        } else {
+            ps.setNull(8, java.sql.Types.INTEGER);
+        }
+    }
+
+    /**
+     * Encodes a batch in COPY text format (tab separated, \N for null).
+     */
+    private static String toCopyText(List<BookRow> batch) {
+        StringBuilder sb = new StringBuilder(batch.size() * 256);
+        for (BookRow row : batch) {
+            appendCopyField(sb, row.title).append('\t');
+            appendCopyField(sb, row.authors).append('\t');
+            appendCopyField(sb, row.description).append('\t');
+            appendCopyField(sb, row.category).append('\t');
+            appendCopyField(sb, row.publisher).append('\t');
+            appendCopyField(sb, row.price).append('\t');
+            appendCopyField(sb, row.publishMonth).append('\t');
+            appendCopyField(sb, row.publishYear != null ? row.publishYear.toString() : null).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static StringBuilder appendCopyField(StringBuilder sb, String value) {
+        if (value == null) {
+            return sb.append("\\N");
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(ch);
+            }
+        }
+        return sb;
+    }
+
+    /**
+     * Returns the PostgreSQL COPY API for the connection, or null on other drivers (e.g. H2 in tests).
+     */
+    private static CopyManager copyManagerFor(Connection conn) {
+        try {
+            if (conn.isWrapperFor(PGConnection.class)) {
+                return conn.unwrap(PGConnection.class).getCopyAPI();
+            }
+        } catch (SQLException e) {
+            logger.fine("COPY not available, falling back to JDBC batch: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static void logProgress(SeedStats stats, int written, long startNanos) {
+        // Log once every DEFAULT_SIZE inserted rows
+        if ((stats.inserted - written) / AppConstants.Batch.DEFAULT_SIZE < stats.inserted / AppConstants.Batch.DEFAULT_SIZE) {
+            stats.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            logger.info("Inserted " + stats.inserted + " books so far (" + stats.rowsPerSecond() + " rows/s)...");
+        }
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * A cleaned CSV row ready to be written to the Books table.
+     */
+    static final class BookRow {
+        final String title;
+        final String authors;
+        final String description;
+        final String category;
+        final String publisher;
+        final String price;
+        final String publishMonth;
+        final Integer publishYear;
+
+        BookRow(String title, String authors, String description, String category, String publisher,
+                String price, String publishMonth, Integer publishYear) {
+            this.title = title;
+            this.authors = authors;
+            this.description = description;
+            this.category = category;
+            this.publisher = publisher;
+            this.price = price;
+            this.publishMonth = publishMonth;
+            this.publishYear = publishYear;
+        }
+    }
+
+    /**
+     * Progress and throughput statistics of a seeding run.
+     */
+    public static final class SeedStats {
+        // Parser-side counters, read by the writer thread
+        private volatile int totalLines;
+        private volatile int skipped;
+        private int inserted;
+        private int errors;
+        private long elapsedMillis;
+
+        public int getTotalLines() { return totalLines; }
+        public int getSkipped() { return skipped; }
+        public int getInserted() { return inserted; }
+        public int getErrors() { return errors; }
+        public long getElapsedMillis() { return elapsedMillis; }
+
+        public long rowsPerSecond() {
+            return elapsedMillis > 0 ? inserted * 1000L / elapsedMillis : inserted;
+        }
     }
 
     /**
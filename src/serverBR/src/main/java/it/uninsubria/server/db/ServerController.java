@@ -3,6 +3,7 @@ package it.uninsubria.server.db;
 import it.uninsubria.shared.utils.AppConfig;
 import it.uninsubria.server.util.SessionManager;
 import it.uninsubria.server.util.ConnectionPoolManager;
+import it.uninsubria.server.di.ServerDIContainer;
 import it.uninsubria.server.ServerMessageManager;
 import java.sql.Connection;
 import javafx.concurrent.Task;
@@ -274,6 +275,24 @@ public class ServerController {
                     DBInitializer.ensureSchemaSync(resetConn);
                     // Ricarico i dati seed
                     DBInitializer.reloadBooksFromCSV(resetConn);
+                    // Gli id ripartono da 1: l'indice per contenuto va ricostruito
+                    if (ServerDIContainer.getContentRecommender() != null) {
+                        ServerDIContainer.getContentRecommender().reset();
+                    }
+                    // Modelli e checkpoint salvati fanno riferimento a utenti e libri eliminati
+                    if (ServerDIContainer.getCollaborativeRecommender() != null) {
+                        ServerDIContainer.getCollaborativeRecommender().reset();
+                    }
+                    if (ServerDIContainer.getCoOccurrenceRecommender() != null) {
+                        ServerDIContainer.getCoOccurrenceRecommender().reset();
+                    }
+                    if (ServerDIContainer.getTrendingAggregator() != null) {
+                        ServerDIContainer.getTrendingAggregator().reset();
+                    }
+                    // Il catalogo colonnare serve ancora i libri eliminati: si torna al DB fino alla nuova build
+                    if (ServerDIContainer.getCatalogStore() != null) {
+                        ServerDIContainer.getCatalogStore().reset();
+                    }
                 } finally {
                     // Always close connection to return to pool
                     if (resetConn != null) {
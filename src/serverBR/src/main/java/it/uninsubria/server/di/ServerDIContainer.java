@@ -1,11 +1,21 @@
 package it.uninsubria.server.di;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
+import it.uninsubria.server.catalog.CatalogStore;
 import it.uninsubria.server.dao.BookDAO;
 import it.uninsubria.server.dao.LibraryDAO;
 import it.uninsubria.server.dao.ReviewDAO;
 import it.uninsubria.server.dao.UserDAO;
 import it.uninsubria.server.dao.SuggestionDAO;
+import it.uninsubria.server.dao.RecommendationDAO;
+import it.uninsubria.server.event.WriteEventBus;
+import it.uninsubria.server.recommendation.CoOccurrenceRecommender;
+import it.uninsubria.server.recommendation.CollaborativeRecommender;
+import it.uninsubria.server.recommendation.ContentRecommender;
+import it.uninsubria.server.recommendation.PopularityRanker;
+import it.uninsubria.server.recommendation.TrendingAggregator;
 import it.uninsubria.server.service.BookServiceCore;
 import it.uninsubria.server.service.BookServiceCoreImpl;
 import it.uninsubria.server.service.LibraryServiceCore;
@@ -17,6 +27,7 @@ import it.uninsubria.server.service.ReviewsServiceCoreImpl;
 import it.uninsubria.server.service.SuggestionServiceCore;
 import it.uninsubria.server.service.SuggestionServiceCoreImpl;
 import it.uninsubria.shared.rmi.SuggestionsService;
+import it.uninsubria.shared.utils.AppConstants;
 
 public class ServerDIContainer {
     private static BookDAO bookDAO;
@@ -30,6 +41,12 @@ public class ServerDIContainer {
     private static ReviewsServiceCore reviewsCore;
     private static SuggestionServiceCore suggestionCore;
     private static SuggestionsService suggestionsService;
+    private static CoOccurrenceRecommender coOccurrenceRecommender;
+    private static ContentRecommender contentRecommender;
+    private static CollaborativeRecommender collaborativeRecommender;
+    private static PopularityRanker popularityRanker;
+    private static TrendingAggregator trendingAggregator;
+    private static CatalogStore catalogStore;
 
     public static void init(BookDAO b, LibraryDAO l, UserDAO u, ReviewDAO r) {
         bookDAO = b;
@@ -56,12 +73,52 @@ public class ServerDIContainer {
         suggestionCore = new SuggestionServiceCoreImpl(s);
     }
 
+    // Overload that also wires the in-memory recommenders, checkpointed under the default state directory
+    public static void init(BookDAO b, LibraryDAO l, UserDAO u, ReviewDAO r, SuggestionDAO s, RecommendationDAO rec) {
+        init(b, l, u, r, s, rec, Paths.get(AppConstants.Recommendation.STATE_DIR));
+    }
+
+    // Overload with the directory the recommenders checkpoint to (tests point it at a temporary directory)
+    public static void init(BookDAO b, LibraryDAO l, UserDAO u, ReviewDAO r, SuggestionDAO s, RecommendationDAO rec,
+                            Path stateDir) {
+        init(b, l, u, r, s);
+        if (coOccurrenceRecommender != null) {
+            WriteEventBus.getInstance().unsubscribe(coOccurrenceRecommender);
+            WriteEventBus.getInstance().unsubscribe(collaborativeRecommender);
+            WriteEventBus.getInstance().unsubscribe(popularityRanker);
+            WriteEventBus.getInstance().unsubscribe(trendingAggregator);
+        }
+        coOccurrenceRecommender = new CoOccurrenceRecommender(rec,
+            stateDir.resolve(AppConstants.Recommendation.COOCCURRENCE_CHECKPOINT_FILE));
+        contentRecommender = new ContentRecommender(b);
+        collaborativeRecommender = new CollaborativeRecommender(rec,
+            stateDir.resolve(AppConstants.Recommendation.ALS_MODEL_FILE));
+        popularityRanker = new PopularityRanker(rec);
+        trendingAggregator = new TrendingAggregator(
+            stateDir.resolve(AppConstants.Recommendation.TRENDING_CHECKPOINT_FILE));
+        catalogStore = new CatalogStore(b, popularityRanker::getRanking);
+        bookCore = new BookServiceCoreImpl(b, catalogStore, popularityRanker, trendingAggregator);
+        // Aggiornamenti incrementali dalle scritture delle DAO
+        WriteEventBus.getInstance().subscribe(coOccurrenceRecommender);
+        WriteEventBus.getInstance().subscribe(collaborativeRecommender);
+        WriteEventBus.getInstance().subscribe(popularityRanker);
+        WriteEventBus.getInstance().subscribe(trendingAggregator);
+        suggestionCore = new SuggestionServiceCoreImpl(s, coOccurrenceRecommender, contentRecommender,
+            collaborativeRecommender, bookCore);
+    }
+
     public static BookServiceCore getBookCore() { return bookCore; }
     public static LibraryServiceCore getLibraryCore() { return libraryCore; }
     public static UserServiceCore getUserCore() { return userCore; }
     public static ReviewsServiceCore getReviewsCore() { return reviewsCore; }
     public static SuggestionServiceCore getSuggestionCore() { return suggestionCore; }
     public static SuggestionDAO getSuggestionDAO() { return suggestionDAO; }
+    public static CoOccurrenceRecommender getCoOccurrenceRecommender() { return coOccurrenceRecommender; }
+    public static ContentRecommender getContentRecommender() { return contentRecommender; }
+    public static CollaborativeRecommender getCollaborativeRecommender() { return collaborativeRecommender; }
+    public static PopularityRanker getPopularityRanker() { return popularityRanker; }
+    public static TrendingAggregator getTrendingAggregator() { return trendingAggregator; }
+    public static CatalogStore getCatalogStore() { return catalogStore; }
     public static SuggestionsService getSuggestionsService() { return suggestionsService; }
     public static void setSuggestionsService(SuggestionsService service) { suggestionsService = service; }
 
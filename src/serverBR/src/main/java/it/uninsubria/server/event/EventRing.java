@@ -0,0 +1,95 @@
+package it.uninsubria.server.event;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring buffer for many producers and a single consumer.
+ * <p>
+ * Every slot carries a sequence number: a producer claims a position with a
+ * CAS on the tail and publishes the element by advancing the slot sequence,
+ * the consumer reads the slot only once its sequence says it is published.
+ * Producers never block: when the ring is full {@link #offer(Object)} fails.
+ */
+final class EventRing<E> {
+
+    private final int mask;
+    private final Object[] slots;
+    private final AtomicLongArray sequence;
+    private final AtomicLong tail = new AtomicLong();
+    // Solo il consumatore legge e scrive la testa
+    private long head;
+
+    /**
+     * @param capacity minimum capacity, rounded up to a power of two
+     */
+    EventRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.slots = new Object[size];
+        this.sequence = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequence.set(i, i);
+        }
+    }
+
+    /**
+     * Appends an element; safe to call from any thread.
+     *
+     * @param element the element
+     * @return false if the ring is full
+     */
+    boolean offer(E element) {
+        long pos = tail.get();
+        while (true) {
+            int slot = (int) (pos & mask);
+            long diff = sequence.get(slot) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots[slot] = element;
+                    sequence.set(slot, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Moves up to {@code max} published elements to {@code out}. Consumer thread only.
+     *
+     * @return number of elements moved
+     */
+    @SuppressWarnings("unchecked")
+    int drainTo(List<E> out, int max) {
+        int moved = 0;
+        while (moved < max) {
+            int slot = (int) (head & mask);
+            if (sequence.get(slot) != head + 1) {
+                break;
+            }
+            out.add((E) slots[slot]);
+            slots[slot] = null;
+            sequence.set(slot, head + mask + 1);
+            head++;
+            moved++;
+        }
+        return moved;
+    }
+
+    /**
+     * @return true if no published element is waiting. Consumer thread only.
+     */
+    boolean isEmpty() {
+        return sequence.get((int) (head & mask)) != head + 1;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
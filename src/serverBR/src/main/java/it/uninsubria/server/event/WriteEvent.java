@@ -0,0 +1,65 @@
+package it.uninsubria.server.event;
+
+/**
+ * Compact description of a committed write that in-memory models care about.
+ * <p>
+ * Events carry only ids and the score, never whole entities: they are
+ * hints for incremental updates, and the database stays the source of truth
+ * that the periodic rebuilds reload.
+ */
+public final class WriteEvent {
+
+    /**
+     * Kind of write.
+     */
+    public enum Type {
+        /** A user reviewed a book; {@link #getScore()} is the final score. */
+        REVIEW_ADDED,
+        /** A user suggested {@link #getRelatedBookId()} for {@link #getBookId()}. */
+        SUGGESTION_ADDED,
+        /** A book is on the shelf of {@link #getLibraryId()}. */
+        LIBRARY_BOOK_ADDED
+    }
+
+    private final Type type;
+    private final int userId;
+    private final int libraryId;
+    private final int bookId;
+    private final int relatedBookId;
+    private final float score;
+
+    private WriteEvent(Type type, int userId, int libraryId, int bookId, int relatedBookId, float score) {
+        this.type = type;
+        this.userId = userId;
+        this.libraryId = libraryId;
+        this.bookId = bookId;
+        this.relatedBookId = relatedBookId;
+        this.score = score;
+    }
+
+    public static WriteEvent reviewAdded(int userId, int bookId, float finalScore) {
+        return new WriteEvent(Type.REVIEW_ADDED, userId, 0, bookId, 0, finalScore);
+    }
+
+    public static WriteEvent suggestionAdded(int userId, Integer libraryId, int baseBookId, int suggestedBookId) {
+        return new WriteEvent(Type.SUGGESTION_ADDED, userId, libraryId != null ? libraryId : 0,
+            baseBookId, suggestedBookId, 0f);
+    }
+
+    public static WriteEvent libraryBookAdded(int libraryId, int bookId) {
+        return new WriteEvent(Type.LIBRARY_BOOK_ADDED, 0, libraryId, bookId, 0, 0f);
+    }
+
+    public Type getType() { return type; }
+    public int getUserId() { return userId; }
+    public int getLibraryId() { return libraryId; }
+    public int getBookId() { return bookId; }
+    public int getRelatedBookId() { return relatedBookId; }
+    public float getScore() { return score; }
+
+    @Override
+    public String toString() {
+        return type + "{user=" + userId + ", library=" + libraryId + ", book=" + bookId
+            + ", related=" + relatedBookId + ", score=" + score + "}";
+    }
+}
@@ -0,0 +1,168 @@
+package it.uninsubria.server.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import it.uninsubria.server.dao.UnitOfWork;
+import it.uninsubria.shared.utils.AppConstants;
+
+/**
+ * In-process bus that carries committed writes from the DAOs to the
+ * in-memory models, so they can update incrementally between rebuilds.
+ * <p>
+ * Publishing is a CAS on a bounded lock-free ring and never blocks the
+ * request thread. A single daemon dispatcher drains the ring in batches and
+ * hands each batch to every listener. When the ring is full the event is
+ * dropped and counted: listeners treat events as hints and their periodic
+ * rebuild from the database makes up for anything lost. With no listeners
+ * registered, publishing is a no-op.
+ */
+public final class WriteEventBus {
+
+    private static final Logger logger = Logger.getLogger(WriteEventBus.class.getName());
+    private static final WriteEventBus INSTANCE = new WriteEventBus(AppConstants.Recommendation.EVENT_QUEUE_CAPACITY);
+    private static final int MAX_BATCH = 512;
+    private static final long IDLE_PARK_NS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final EventRing<WriteEvent> ring;
+    private final List<WriteEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Thread dispatcher;
+    private volatile boolean idle;
+
+    WriteEventBus(int capacity) {
+        this.ring = new EventRing<>(capacity);
+    }
+
+    /**
+     * @return the bus shared by the whole server
+     */
+    public static WriteEventBus getInstance() {
+        return INSTANCE;
+    }
+
+    public void subscribe(WriteEventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void unsubscribe(WriteEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Publishes an event without blocking.
+     *
+     * @param event the event
+     * @return false if the event was dropped because the queue is full
+     */
+    public boolean publish(WriteEvent event) {
+        if (listeners.isEmpty()) {
+            return true;
+        }
+        if (!ring.offer(event)) {
+            long count = dropped.incrementAndGet();
+            if (count == 1 || count % 1000 == 0) {
+                logger.warning("Write event queue full, " + count + " events dropped so far");
+            }
+            return false;
+        }
+        published.incrementAndGet();
+        Thread consumer = dispatcher;
+        if (idle && consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * Publishes the events once the current unit of work commits, or right
+     * away outside a unit of work. Events of a rolled back unit are discarded.
+     *
+     * @param events the events
+     */
+    public void publishOnCommit(List<WriteEvent> events) {
+        if (events.isEmpty() || listeners.isEmpty()) {
+            return;
+        }
+        UnitOfWork.afterCommit(() -> {
+            for (WriteEvent event : events) {
+                publish(event);
+            }
+        });
+    }
+
+    /**
+     * Starts the dispatcher thread.
+     */
+    public synchronized void start() {
+        if (dispatcher != null) {
+            return;
+        }
+        Thread t = new Thread(this::dispatchLoop, "WriteEventDispatcher");
+        t.setDaemon(true);
+        dispatcher = t;
+        t.start();
+    }
+
+    /**
+     * Stops the dispatcher; events still queued are not delivered.
+     */
+    public synchronized void stop() {
+        Thread t = dispatcher;
+        if (t == null) {
+            return;
+        }
+        dispatcher = null;
+        t.interrupt();
+        try {
+            t.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void dispatchLoop() {
+        List<WriteEvent> batch = new ArrayList<>(MAX_BATCH);
+        while (dispatcher == Thread.currentThread() && !Thread.currentThread().isInterrupted()) {
+            if (ring.drainTo(batch, MAX_BATCH) == 0) {
+                idle = true;
+                // Ricontrolla dopo aver segnalato l'attesa: un evento appena pubblicato non va perso
+                if (ring.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NS);
+                }
+                idle = false;
+                continue;
+            }
+            List<WriteEvent> delivered = List.copyOf(batch);
+            batch.clear();
+            for (WriteEventListener listener : listeners) {
+                try {
+                    listener.onEvents(delivered);
+                } catch (RuntimeException e) {
+                    logger.warning("Write event listener " + listener.getClass().getSimpleName()
+                        + " failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return events accepted since startup
+     */
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    /**
+     * @return events dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,18 @@
+package it.uninsubria.server.event;
+
+import java.util.List;
+
+/**
+ * Consumer of the {@link WriteEventBus}. Events are delivered in batches on
+ * the dispatcher thread, in publication order, so implementations can
+ * coalesce the work of a whole batch and do not need to be thread-safe
+ * with respect to other deliveries.
+ */
+@FunctionalInterface
+public interface WriteEventListener {
+
+    /**
+     * @param events the events published since the previous delivery, never empty
+     */
+    void onEvents(List<WriteEvent> events);
+}
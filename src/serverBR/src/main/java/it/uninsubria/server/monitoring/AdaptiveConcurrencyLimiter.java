@@ -0,0 +1,224 @@
+package it.uninsubria.server.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * AIMD concurrency limiter for database work.
+ * <p>
+ * The limit grows by one while calls complete under the target latency and the
+ * limit is actually in use, and shrinks multiplicatively when a call is slower
+ * than the target or fails. Latency samples are fed separately from the permits
+ * ({@link #onSample}), so a permit can be held across several calls. Callers over the limit wait in a bounded queue up to
+ * a deadline; when the queue is full or the deadline passes they are rejected
+ * with {@link DatabaseOverloadedException}, so queued work never waits behind
+ * the pool's own connection timeout.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger logger = Logger.getLogger(AdaptiveConcurrencyLimiter.class.getName());
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final long maxWaitNanos;
+    private final int maxQueue;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private double limit;
+    private int inFlight;
+    private int waiting;
+
+    private Counter rejected;
+
+    /**
+     * @param name limiter name, used as metric tag
+     * @param minLimit lower bound of the limit
+     * @param maxLimit upper bound of the limit (e.g. the pool size)
+     * @param targetLatencyMs latency above which the limit is reduced
+     * @param maxWaitMs maximum time spent waiting for a permit
+     * @param maxQueue maximum number of waiting callers
+     */
+    public AdaptiveConcurrencyLimiter(String name, int minLimit, int maxLimit,
+                                      long targetLatencyMs, long maxWaitMs, int maxQueue) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid limits: min=" + minLimit + ", max=" + maxLimit);
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMs);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        this.maxQueue = maxQueue;
+        this.limit = Math.max(minLimit, maxLimit / 2);
+    }
+
+    /**
+     * Exports limit, in-flight calls, queue length and rejections to Micrometer.
+     *
+     * @param registry the meter registry
+     * @return this limiter
+     */
+    public AdaptiveConcurrencyLimiter bindTo(MeterRegistry registry) {
+        Gauge.builder("db.limiter.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+            .tag("pool", name)
+            .description("Current adaptive concurrency limit")
+            .register(registry);
+        Gauge.builder("db.limiter.inflight", this, AdaptiveConcurrencyLimiter::getInFlight)
+            .tag("pool", name)
+            .description("Database calls holding a permit")
+            .register(registry);
+        Gauge.builder("db.limiter.queued", this, AdaptiveConcurrencyLimiter::getWaiting)
+            .tag("pool", name)
+            .description("Database calls waiting for a permit")
+            .register(registry);
+        rejected = Counter.builder("db.limiter.rejected")
+            .tag("pool", name)
+            .description("Database calls shed by the concurrency limiter")
+            .register(registry);
+        return this;
+    }
+
+    /**
+     * Obtains a permit, waiting at most the configured deadline.
+     *
+     * @throws DatabaseOverloadedException if the queue is full or the deadline expires
+     */
+    public void acquire() throws DatabaseOverloadedException {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if (waiting >= maxQueue) {
+                throw reject("queue full (" + waiting + " waiting)");
+            }
+
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        throw reject("no permit within " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos) + " ms");
+                    }
+                    remaining = permitReleased.awaitNanos(remaining);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw reject("interrupted while waiting");
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a permit and feeds the observed latency into the limit.
+     *
+     * @param latencyNanos latency of the call made with the permit
+     * @param failed whether the call failed
+     */
+    public void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            adjust(latencyNanos, failed);
+            returnPermit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a permit without a latency sample: how long a permit was held is
+     * not a measure of the database (e.g. a connection kept open by a cursor).
+     */
+    public void release() {
+        lock.lock();
+        try {
+            returnPermit();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Feeds the latency of one call into the limit, without returning a permit.
+     *
+     * @param latencyNanos latency of the call
+     * @param failed whether the call failed
+     */
+    public void onSample(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            adjust(latencyNanos, failed);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjust(long latencyNanos, boolean failed) {
+        if (failed || latencyNanos > targetLatencyNanos) {
+            limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        } else if (inFlight * 2 >= limit) {
+            // Cresce solo se il limite è effettivamente usato
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        // Un limite più alto può sbloccare chi è in attesa
+        permitReleased.signalAll();
+    }
+
+    private void returnPermit() {
+        inFlight--;
+        permitReleased.signalAll();
+    }
+
+    private DatabaseOverloadedException reject(String reason) {
+        if (rejected != null) {
+            rejected.increment();
+        }
+        logger.warning("Database limiter [" + name + "] shedding request: " + reason +
+                       ", limit=" + (int) limit + ", inFlight=" + inFlight);
+        return new DatabaseOverloadedException("Database overloaded (" + name + "): " + reason);
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package it.uninsubria.server.monitoring;
+
+import java.sql.SQLTransientException;
+
+/**
+ * Thrown when the {@link AdaptiveConcurrencyLimiter} sheds a database call.
+ */
+public class DatabaseOverloadedException extends SQLTransientException {
+
+    public DatabaseOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,455 @@
+package it.uninsubria.server.monitoring;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import javax.sql.DataSource;
+
+/**
+ * DataSource wrapper that instruments every JDBC call made by the DAOs.
+ * <p>
+ * Connection acquisition, statement execution and result-set iteration are timed
+ * separately and published to Micrometer, tagged by pool, normalized SQL and the DAO
+ * method that first issued the statement.
+ * Queries slower than the threshold are logged with the calling DAO method and the
+ * shape of their bound parameters (types and sizes, never the values).
+ * <p>
+ * When an {@link AdaptiveConcurrencyLimiter} is given, each connection holds a
+ * permit from checkout to close, while the execution time of its statements drives
+ * the limit. How long a connection stays open is not a latency sample.
+ */
+public class InstrumentedDataSource implements DataSource {
+
+    private static final Logger logger = Logger.getLogger(InstrumentedDataSource.class.getName());
+
+    private static final String DAO_PACKAGE = "it.uninsubria.server.dao.";
+    private static final int MAX_SQL_TAG_LENGTH = 200;
+    private static final int MAX_CACHED_STATEMENTS = 1000;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern IN_LIST = Pattern.compile("(?i)\\bIN\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Map<String, String> normalizedSql = new ConcurrentHashMap<>();
+
+    private final DataSource delegate;
+    private final String poolName;
+    private final long slowQueryThresholdNanos;
+    private final MeterRegistry registry;
+    private final Timer acquireTimer;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Map<String, QueryMeters> meters = new ConcurrentHashMap<>();
+
+    /**
+     * @param delegate the pooled DataSource to wrap
+     * @param poolName pool name used as metric tag
+     * @param slowQueryThresholdMs execution time above which a query is logged
+     */
+    public InstrumentedDataSource(DataSource delegate, String poolName, long slowQueryThresholdMs) {
+        this(delegate, poolName, slowQueryThresholdMs, null);
+    }
+
+    /**
+     * @param delegate the pooled DataSource to wrap
+     * @param poolName pool name used as metric tag
+     * @param slowQueryThresholdMs execution time above which a query is logged
+     * @param limiter concurrency limiter applied to connection checkout, or null
+     */
+    public InstrumentedDataSource(DataSource delegate, String poolName, long slowQueryThresholdMs,
+                                  AdaptiveConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.poolName = poolName;
+        this.slowQueryThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMs);
+        this.registry = MonitoringService.getInstance().getRegistry();
+        this.acquireTimer = Timer.builder("db.connection.acquire")
+            .tag("pool", poolName)
+            .description("Time to obtain a connection from the pool")
+            .publishPercentileHistogram()
+            .register(registry);
+    }
+
+    /**
+     * @return the wrapped DataSource
+     */
+    public DataSource getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return acquire(null, null);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return acquire(username, password);
+    }
+
+    private Connection acquire(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        if (limiter != null) {
+            limiter.acquire();
+        }
+        Connection conn;
+        try {
+            conn = username == null ? delegate.getConnection() : delegate.getConnection(username, password);
+        } catch (SQLException | RuntimeException e) {
+            if (limiter != null) {
+                limiter.release(System.nanoTime() - start, true);
+            }
+            throw e;
+        }
+        acquireTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return wrap(conn);
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return delegate.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        delegate.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        delegate.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return delegate.getLoginTimeout();
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return delegate.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        return delegate.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || delegate.isWrapperFor(iface);
+    }
+
+    // ===== PROXIES =====
+
+    private Connection wrap(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, new ConnectionHandler(conn));
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+        private boolean released;
+
+        ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                try {
+                    return call(target, method, args);
+                } finally {
+                    releasePermit();
+                }
+            }
+            Object result = call(target, method, args);
+            if (result instanceof CallableStatement) {
+                return wrapStatement(CallableStatement.class, (Statement) result, (String) args[0]);
+            }
+            if (result instanceof PreparedStatement && name.equals("prepareStatement")) {
+                return wrapStatement(PreparedStatement.class, (Statement) result, (String) args[0]);
+            }
+            if (result instanceof Statement && name.equals("createStatement")) {
+                return wrapStatement(Statement.class, (Statement) result, null);
+            }
+            return result;
+        }
+
+        private synchronized void releasePermit() {
+            if (limiter != null && !released) {
+                released = true;
+                limiter.release();
+            }
+        }
+    }
+
+    /**
+     * Returns the limiter permit of a connection that stays open for a long time,
+     * such as one reading a cursor, so it does not take a slot of the limit. The
+     * number of such connections must be bounded by the caller. Connections not
+     * handed out by an InstrumentedDataSource are left as they are.
+     *
+     * @param conn the connection
+     */
+    public static void releaseLimiterPermit(Connection conn) {
+        if (!Proxy.isProxyClass(conn.getClass())) {
+            return;
+        }
+        InvocationHandler handler = Proxy.getInvocationHandler(conn);
+        if (handler instanceof ConnectionHandler) {
+            ((ConnectionHandler) handler).releasePermit();
+        }
+    }
+
+    private Statement wrapStatement(Class<? extends Statement> type, Statement stmt, String sql) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+            new Class<?>[] { type }, new StatementHandler(stmt, sql));
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final String sql;
+        // Forma dei parametri (tipo e dimensione), mai i valori
+        private final Map<Integer, String> parameterShapes = new TreeMap<>();
+        private int batchSize;
+
+        StatementHandler(Statement target, String sql) {
+            this.target = target;
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                parameterShapes.put((Integer) args[0], shapeOf(name, args[1]));
+                return call(target, method, args);
+            }
+            if (name.equals("clearParameters")) {
+                parameterShapes.clear();
+            } else if (name.equals("addBatch")) {
+                batchSize++;
+            } else if (name.equals("clearBatch")) {
+                batchSize = 0;
+            }
+            if (!name.startsWith("execute")) {
+                Object result = call(target, method, args);
+                if (result instanceof ResultSet && name.equals("getResultSet")) {
+                    return wrapResultSet((ResultSet) result, metersFor(sql));
+                }
+                return result;
+            }
+
+            String statementSql = (args != null && args.length > 0 && args[0] instanceof String) ? (String) args[0] : sql;
+            QueryMeters queryMeters = metersFor(statementSql);
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = call(target, method, args);
+            } catch (SQLException e) {
+                MonitoringService.getInstance().recordDatabaseError();
+                if (limiter != null) {
+                    // Solo timeout ed errori transitori segnalano un database in difficoltà
+                    limiter.onSample(System.nanoTime() - start, e instanceof SQLTransientException);
+                }
+                throw e;
+            }
+            long elapsed = System.nanoTime() - start;
+            if (limiter != null) {
+                limiter.onSample(elapsed, false);
+            }
+            queryMeters.execution.record(elapsed, TimeUnit.NANOSECONDS);
+            MonitoringService.getInstance().recordDatabaseQuery();
+
+            if (result instanceof Integer || result instanceof Long) {
+                queryMeters.rows.record(((Number) result).longValue());
+            } else if (result instanceof int[]) {
+                queryMeters.rows.record(affectedRows((int[]) result));
+            }
+            if (elapsed > slowQueryThresholdNanos) {
+                // Il metodo chiamante si cerca solo per le query lente: lo stack walk ha un costo
+                logger.warning(String.format("Slow query (%d ms) in %s: %s params=%s%s",
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), callerMethod(), queryMeters.sql, parameterShapes.values(),
+                    batchSize > 0 ? " batch=" + batchSize : ""));
+            }
+            if (name.equals("executeBatch")) {
+                batchSize = 0;
+            }
+            if (result instanceof ResultSet) {
+                return wrapResultSet((ResultSet) result, queryMeters);
+            }
+            return result;
+        }
+    }
+
+    private ResultSet wrapResultSet(ResultSet rs, QueryMeters queryMeters) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+            new Class<?>[] { ResultSet.class }, new ResultSetHandler(rs, queryMeters));
+    }
+
+    private static final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final QueryMeters queryMeters;
+        private long iterationNanos;
+        private long rows;
+        private boolean recorded;
+
+        ResultSetHandler(ResultSet target, QueryMeters queryMeters) {
+            this.target = target;
+            this.queryMeters = queryMeters;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("next")) {
+                long start = System.nanoTime();
+                Object result = call(target, method, args);
+                iterationNanos += System.nanoTime() - start;
+                if (Boolean.TRUE.equals(result)) {
+                    rows++;
+                }
+                return result;
+            }
+            if (name.equals("close") && !recorded) {
+                recorded = true;
+                queryMeters.iteration.record(iterationNanos, TimeUnit.NANOSECONDS);
+                queryMeters.rows.record(rows);
+            }
+            return call(target, method, args);
+        }
+    }
+
+    private static Object call(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ===== METERS =====
+
+    private QueryMeters metersFor(String sql) {
+        // Lo stack si percorre solo alla creazione dei meter di una nuova query, non a ogni esecuzione
+        return meters.computeIfAbsent(normalize(sql), key -> new QueryMeters(key, callerMethod()));
+    }
+
+    private final class QueryMeters {
+        final String sql;
+        final Timer execution;
+        final Timer iteration;
+        final DistributionSummary rows;
+
+        QueryMeters(String sql, String method) {
+            this.sql = sql;
+            String sqlTag = sql.length() > MAX_SQL_TAG_LENGTH ? sql.substring(0, MAX_SQL_TAG_LENGTH) : sql;
+            this.execution = Timer.builder("db.query.duration")
+                .tags("pool", poolName, "sql", sqlTag, "method", method)
+                .description("Statement execution time")
+                .publishPercentileHistogram()
+                .register(registry);
+            this.iteration = Timer.builder("db.resultset.iteration")
+                .tags("pool", poolName, "sql", sqlTag, "method", method)
+                .description("Time spent iterating result sets")
+                .publishPercentileHistogram()
+                .register(registry);
+            this.rows = DistributionSummary.builder("db.query.rows")
+                .tags("pool", poolName, "sql", sqlTag, "method", method)
+                .description("Rows read or affected per statement")
+                .baseUnit("rows")
+                .register(registry);
+        }
+    }
+
+    /**
+     * Normalizes SQL for use as a metric key: literals become {@code ?}, IN lists
+     * collapse to a single placeholder and whitespace is squeezed.
+     *
+     * @param sql the raw SQL
+     * @return the normalized SQL
+     */
+    static String normalize(String sql) {
+        if (sql == null) {
+            return "unknown";
+        }
+        String cached = normalizedSql.get(sql);
+        if (cached != null) {
+            return cached;
+        }
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = IN_LIST.matcher(normalized).replaceAll("IN (?)");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        if (normalizedSql.size() < MAX_CACHED_STATEMENTS) {
+            normalizedSql.put(sql, normalized);
+        }
+        return normalized;
+    }
+
+    /**
+     * Finds the DAO method issuing the statement, e.g. {@code BookDAOImpl.searchByTitle}:
+     * the outermost DAO frame, so shared query helpers are attributed to their caller.
+     */
+    private static String callerMethod() {
+        return StackWalker.getInstance().walk(frames -> frames
+            .dropWhile(f -> !f.getClassName().startsWith(DAO_PACKAGE))
+            .takeWhile(f -> f.getClassName().startsWith(DAO_PACKAGE))
+            .reduce((inner, outer) -> outer)
+            .map(f -> f.getClassName().substring(f.getClassName().lastIndexOf('.') + 1) + "." + f.getMethodName())
+            .orElse("other"));
+    }
+
+    private static String shapeOf(String setter, Object value) {
+        String type = setter.substring(3).toLowerCase();
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof String) {
+            return type + "(" + ((String) value).length() + ")";
+        }
+        if (value instanceof java.sql.Array) {
+            return "array";
+        }
+        if (type.equals("object")) {
+            return value.getClass().getSimpleName();
+        }
+        return type;
+    }
+
+    private static long affectedRows(int[] counts) {
+        long total = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                total += count;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,57 @@
+package it.uninsubria.server.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.uninsubria.shared.rmi.ConnectionStats;
+
+import java.util.function.Consumer;
+
+/**
+ * Publishes the traffic counters of closed RMI connections to Micrometer.
+ * <p>
+ * Per connection it records raw and on-the-wire bytes in each direction and the
+ * number of request/response messages, so the compression ratio and the
+ * round-trips per session can be read from the dashboards.
+ */
+public class RmiConnectionMetrics implements Consumer<ConnectionStats> {
+
+    private final DistributionSummary rawOut;
+    private final DistributionSummary wireOut;
+    private final DistributionSummary rawIn;
+    private final DistributionSummary wireIn;
+    private final DistributionSummary roundTrips;
+    private final Counter compressedFrames;
+
+    public RmiConnectionMetrics(MeterRegistry registry) {
+        this.rawOut = bytes(registry, "out", "raw");
+        this.wireOut = bytes(registry, "out", "wire");
+        this.rawIn = bytes(registry, "in", "raw");
+        this.wireIn = bytes(registry, "in", "wire");
+        this.roundTrips = DistributionSummary.builder("rmi.connection.roundtrips")
+            .description("Request/response messages received per RMI connection")
+            .register(registry);
+        this.compressedFrames = Counter.builder("rmi.frames.compressed")
+            .description("RMI frames sent or received deflated")
+            .register(registry);
+    }
+
+    private static DistributionSummary bytes(MeterRegistry registry, String direction, String encoding) {
+        return DistributionSummary.builder("rmi.connection.bytes")
+            .description("Bytes transferred per RMI connection")
+            .baseUnit("bytes")
+            .tag("direction", direction)
+            .tag("encoding", encoding)
+            .register(registry);
+    }
+
+    @Override
+    public void accept(ConnectionStats stats) {
+        rawOut.record(stats.getRawBytesOut());
+        wireOut.record(stats.getWireBytesOut());
+        rawIn.record(stats.getRawBytesIn());
+        wireIn.record(stats.getWireBytesIn());
+        roundTrips.record(stats.getMessagesIn());
+        compressedFrames.increment(stats.getCompressedFrames());
+    }
+}
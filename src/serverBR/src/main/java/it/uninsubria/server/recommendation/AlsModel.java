@@ -0,0 +1,125 @@
+package it.uninsubria.server.recommendation;
+
+import java.util.Arrays;
+
+/**
+ * Trained matrix factorization model: one latent vector per user and per book,
+ * whose dot product predicts the user's score for the book.
+ * <p>
+ * Factors are kept in flat float arrays. User factors are row-major
+ * ({@code userFactors[u * rank + f]}); item factors are stored transposed
+ * ({@code itemFactors[f * itemCount + i]}) so that scoring every book for a user
+ * is a sequence of element-wise multiply-adds over contiguous arrays, a loop
+ * the JIT compiles to SIMD instructions. The books each user has already rated
+ * are kept sorted per user and skipped while scoring.
+ */
+public final class AlsModel {
+
+    private static final int[] NO_BOOKS = new int[0];
+
+    private final int rank;
+    private final int[] userIds;
+    private final float[] userFactors;
+    private final int[] itemIds;
+    private final float[] itemFactors;
+    private final int[] ratedStart;
+    private final int[] rated;
+
+    /**
+     * @param rank latent factors per vector
+     * @param userIds sorted user ids
+     * @param userFactors row-major user factors
+     * @param itemIds sorted book ids
+     * @param itemFactors transposed item factors
+     * @param ratedStart offsets into {@code rated}, one per user plus one
+     * @param rated dense indices of the books rated by each user, sorted per user
+     */
+    AlsModel(int rank, int[] userIds, float[] userFactors, int[] itemIds, float[] itemFactors,
+             int[] ratedStart, int[] rated) {
+        this.rank = rank;
+        this.userIds = userIds;
+        this.userFactors = userFactors;
+        this.itemIds = itemIds;
+        this.itemFactors = itemFactors;
+        this.ratedStart = ratedStart;
+        this.rated = rated;
+    }
+
+    /**
+     * Returns the books with the highest predicted score for a user, excluding
+     * the books the user has already rated.
+     *
+     * @param userId the user
+     * @param topK maximum number of results
+     * @return book ids, best first; empty for users without ratings
+     */
+    public int[] recommend(int userId, int topK) {
+        int u = Arrays.binarySearch(userIds, userId);
+        if (u < 0 || topK <= 0) {
+            return NO_BOOKS;
+        }
+        int items = itemIds.length;
+        float[] scores = new float[items];
+        int base = u * rank;
+        for (int f = 0; f < rank; f++) {
+            float weight = userFactors[base + f];
+            int column = f * items;
+            for (int i = 0; i < items; i++) {
+                scores[i] += weight * itemFactors[column + i];
+            }
+        }
+
+        TopNHeap top = new TopNHeap(topK);
+        int next = ratedStart[u];
+        int end = ratedStart[u + 1];
+        for (int i = 0; i < items; i++) {
+            if (next < end && rated[next] == i) {
+                next++;
+                continue;
+            }
+            top.offer(itemIds[i], scores[i]);
+        }
+        top.sort();
+        return top.ids();
+    }
+
+    /**
+     * Returns the predicted affinity of a user for a book, relative to the global mean.
+     *
+     * @param userId the user
+     * @param bookId the book
+     * @return the dot product of the two factor vectors, 0 if either is unknown
+     */
+    public float predict(int userId, int bookId) {
+        int u = Arrays.binarySearch(userIds, userId);
+        int i = Arrays.binarySearch(itemIds, bookId);
+        if (u < 0 || i < 0) {
+            return 0f;
+        }
+        float sum = 0f;
+        for (int f = 0; f < rank; f++) {
+            sum += userFactors[u * rank + f] * itemFactors[f * itemIds.length + i];
+        }
+        return sum;
+    }
+
+    /**
+     * @return true if the user's ratings used in training include the book
+     */
+    boolean hasRated(int userId, int bookId) {
+        int u = Arrays.binarySearch(userIds, userId);
+        int i = Arrays.binarySearch(itemIds, bookId);
+        return u >= 0 && i >= 0 && Arrays.binarySearch(rated, ratedStart[u], ratedStart[u + 1], i) >= 0;
+    }
+
+    public int getRank() { return rank; }
+    public int getUserCount() { return userIds.length; }
+    public int getItemCount() { return itemIds.length; }
+
+    int[] userIds() { return userIds; }
+    float[] userFactors() { return userFactors; }
+    int[] itemIds() { return itemIds; }
+    float[] itemFactors() { return itemFactors; }
+    int[] ratedStart() { return ratedStart; }
+    int[] rated() { return rated; }
+}
@@ -0,0 +1,145 @@
+package it.uninsubria.server.recommendation;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Persists {@link AlsModel} factors to a file, so a restarted server serves
+ * recommendations immediately instead of waiting for a training run.
+ * <p>
+ * Layout (little endian): a header of six ints (magic, version, rank, users,
+ * items, rated entries) followed by the user ids, item ids, rated offsets,
+ * rated entries, user factors and transposed item factors, all as flat int or
+ * float arrays. The file is written to a temporary sibling and moved into place,
+ * so readers never see a partial model.
+ * <p>
+ * Files are read and written through a heap buffer rather than mapped: a
+ * mapping stays open until the buffer is collected, and on some platforms an
+ * open mapping prevents the file from being replaced or deleted.
+ */
+public final class AlsModelStore {
+
+    private static final int MAGIC = 0x414C5331; // "ALS1"
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 6;
+
+    private AlsModelStore() {
+    }
+
+    /**
+     * Writes a model.
+     *
+     * @param model the model
+     * @param file the destination file
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(AlsModel model, Path file) throws IOException {
+        int users = model.getUserCount();
+        int items = model.getItemCount();
+        long bytes = 4L * (HEADER_INTS + users + items + (users + 1) + model.rated().length
+            + model.userFactors().length + model.itemFactors().length);
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("ALS model too large to write: " + bytes + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.put(new int[] { MAGIC, VERSION, model.getRank(), users, items, model.rated().length });
+        ints.put(model.userIds()).put(model.itemIds()).put(model.ratedStart()).put(model.rated());
+        buffer.position(4 * ints.position());
+        buffer.asFloatBuffer().put(model.userFactors()).put(model.itemFactors());
+        buffer.rewind();
+        write(buffer, file);
+    }
+
+    /**
+     * Reads a model written by {@link #save(AlsModel, Path)}.
+     *
+     * @param file the model file
+     * @return the model
+     * @throws IOException if the file cannot be read or is not a model of this version
+     */
+    public static AlsModel load(Path file) throws IOException {
+        ByteBuffer buffer = read(file, 4L * HEADER_INTS);
+        long size = buffer.capacity();
+        IntBuffer ints = buffer.asIntBuffer();
+        int[] header = new int[HEADER_INTS];
+        ints.get(header);
+        if (header[0] != MAGIC || header[1] != VERSION) {
+            throw new IOException("Not an ALS model file (version " + header[1] + ")");
+        }
+        int rank = header[2];
+        int users = header[3];
+        int items = header[4];
+        long expected = 4L * (HEADER_INTS + users + items + (users + 1) + header[5]
+            + (long) users * rank + (long) items * rank);
+        if (rank <= 0 || users < 0 || items < 0 || header[5] < 0 || expected != size) {
+            throw new IOException("Corrupted ALS model file");
+        }
+        int[] userIds = new int[users];
+        int[] itemIds = new int[items];
+        int[] ratedStart = new int[users + 1];
+        int[] rated = new int[header[5]];
+        ints.get(userIds).get(itemIds).get(ratedStart).get(rated);
+        buffer.position(4 * ints.position());
+        float[] userFactors = new float[users * rank];
+        float[] itemFactors = new float[items * rank];
+        buffer.asFloatBuffer().get(userFactors).get(itemFactors);
+        return new AlsModel(rank, userIds, userFactors, itemIds, itemFactors, ratedStart, rated);
+    }
+
+    /**
+     * Writes a buffer to a temporary sibling of a file, syncs it and moves it
+     * into place. Shared by the other recommendation stores.
+     *
+     * @param buffer the content, from its position to its limit
+     * @param file the destination file
+     * @throws IOException if the file cannot be written
+     */
+    static void write(ByteBuffer buffer, Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a whole file into a little endian heap buffer.
+     *
+     * @param file the file
+     * @param minSize the smallest valid size, in bytes
+     * @return the content, positioned at the start
+     * @throws IOException if the file cannot be read or its size is out of range
+     */
+    static ByteBuffer read(Path file, long minSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < minSize || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid size for " + file.getFileName() + ": " + size);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Truncated file " + file.getFileName());
+                }
+            }
+            return buffer.flip();
+        }
+    }
+}
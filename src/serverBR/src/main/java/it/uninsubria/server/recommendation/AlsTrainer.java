@@ -0,0 +1,256 @@
+package it.uninsubria.server.recommendation;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import it.uninsubria.server.dao.Ratings;
+
+/**
+ * Trains an {@link AlsModel} with alternating least squares on explicit ratings.
+ * <p>
+ * Scores are centred on the global mean. Each iteration fixes the book factors
+ * and solves one regularized least-squares problem per user, then does the
+ * same per book; every problem is an independent {@code rank x rank} system
+ * solved with Cholesky, so the rows of each half-step are split across a
+ * {@link ForkJoinPool}. The regularization is scaled by the number of ratings
+ * of the row (ALS-WR). Initial factors come from a fixed seed, so a training
+ * run is deterministic whatever the parallelism.
+ */
+public final class AlsTrainer {
+
+    private static final long SEED = 42L;
+
+    private AlsTrainer() {
+    }
+
+    /**
+     * Trains a model.
+     *
+     * @param ratings the ratings, at most one per user and book
+     * @param rank latent factors per vector
+     * @param lambda regularization
+     * @param iterations alternating iterations
+     * @param pool the pool the solves run on
+     * @return the trained model
+     */
+    public static AlsModel train(Ratings ratings, int rank, float lambda, int iterations, ForkJoinPool pool) {
+        int n = ratings.size();
+        int[] userIds = new int[n];
+        int[] itemIds = new int[n];
+        double sum = 0;
+        for (int r = 0; r < n; r++) {
+            userIds[r] = ratings.user(r);
+            itemIds[r] = ratings.book(r);
+            sum += ratings.score(r);
+        }
+        userIds = sortedUnique(userIds);
+        itemIds = sortedUnique(itemIds);
+        float mean = n == 0 ? 0f : (float) (sum / n);
+        int users = userIds.length;
+        int items = itemIds.length;
+
+        int[] user = new int[n];
+        int[] item = new int[n];
+        for (int r = 0; r < n; r++) {
+            user[r] = Arrays.binarySearch(userIds, ratings.user(r));
+            item[r] = Arrays.binarySearch(itemIds, ratings.book(r));
+        }
+
+        // Per libro: ordine delle valutazioni per indice di libro (counting sort)
+        int[] itemStart = new int[items + 1];
+        for (int r = 0; r < n; r++) {
+            itemStart[item[r] + 1]++;
+        }
+        prefixSum(itemStart);
+        int[] byItem = new int[n];
+        int[] fill = Arrays.copyOf(itemStart, items);
+        for (int r = 0; r < n; r++) {
+            byItem[fill[item[r]]++] = r;
+        }
+        int[] itemUsers = new int[n];
+        float[] itemValues = new float[n];
+        for (int p = 0; p < n; p++) {
+            itemUsers[p] = user[byItem[p]];
+            itemValues[p] = ratings.score(byItem[p]) - mean;
+        }
+
+        // Per utente: distribuendo nell'ordine per libro ogni segmento resta ordinato
+        int[] userStart = new int[users + 1];
+        for (int r = 0; r < n; r++) {
+            userStart[user[r] + 1]++;
+        }
+        prefixSum(userStart);
+        int[] userItems = new int[n];
+        float[] userValues = new float[n];
+        fill = Arrays.copyOf(userStart, users);
+        for (int p = 0; p < n; p++) {
+            int r = byItem[p];
+            int q = fill[user[r]]++;
+            userItems[q] = item[r];
+            userValues[q] = ratings.score(r) - mean;
+        }
+
+        float[] userFactors = new float[users * rank];
+        float[] itemFactors = new float[items * rank];
+        Random random = new Random(SEED);
+        for (int i = 0; i < itemFactors.length; i++) {
+            itemFactors[i] = (float) (random.nextGaussian() * 0.1);
+        }
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            pool.invoke(new SolveTask(new HalfStep(userFactors, itemFactors, userStart, userItems, userValues,
+                rank, lambda, grain(users, pool)), 0, users));
+            pool.invoke(new SolveTask(new HalfStep(itemFactors, userFactors, itemStart, itemUsers, itemValues,
+                rank, lambda, grain(items, pool)), 0, items));
+        }
+
+        float[] transposed = new float[itemFactors.length];
+        for (int i = 0; i < items; i++) {
+            for (int f = 0; f < rank; f++) {
+                transposed[f * items + i] = itemFactors[i * rank + f];
+            }
+        }
+        return new AlsModel(rank, userIds, userFactors, itemIds, transposed, userStart, userItems);
+    }
+
+    private static int grain(int rows, ForkJoinPool pool) {
+        return Math.max(32, rows / (pool.getParallelism() * 8));
+    }
+
+    private static int[] sortedUnique(int[] values) {
+        Arrays.sort(values);
+        int k = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                values[k++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, k);
+    }
+
+    private static void prefixSum(int[] counts) {
+        for (int i = 1; i < counts.length; i++) {
+            counts[i] += counts[i - 1];
+        }
+    }
+
+    /**
+     * One half of an iteration: solves the rows of {@code target} with
+     * {@code fixed} held constant. Each row is written by exactly one task.
+     */
+    private static final class HalfStep {
+        final float[] target;
+        final float[] fixed;
+        final int[] start;
+        final int[] index;
+        final float[] values;
+        final int rank;
+        final float lambda;
+        final int grain;
+
+        HalfStep(float[] target, float[] fixed, int[] start, int[] index, float[] values,
+                 int rank, float lambda, int grain) {
+            this.target = target;
+            this.fixed = fixed;
+            this.start = start;
+            this.index = index;
+            this.values = values;
+            this.rank = rank;
+            this.lambda = lambda;
+            this.grain = grain;
+        }
+
+        void solveRows(int lo, int hi) {
+            int k = rank;
+            double[] a = new double[k * k];
+            double[] b = new double[k];
+            for (int row = lo; row < hi; row++) {
+                Arrays.fill(a, 0);
+                Arrays.fill(b, 0);
+                int from = start[row];
+                int to = start[row + 1];
+                for (int p = from; p < to; p++) {
+                    int offset = index[p] * k;
+                    double r = values[p];
+                    for (int x = 0; x < k; x++) {
+                        double fx = fixed[offset + x];
+                        b[x] += r * fx;
+                        for (int y = 0; y <= x; y++) {
+                            a[x * k + y] += fx * fixed[offset + y];
+                        }
+                    }
+                }
+                double reg = lambda * Math.max(1, to - from);
+                for (int x = 0; x < k; x++) {
+                    a[x * k + x] += reg;
+                }
+                choleskySolve(a, b, k);
+                for (int x = 0; x < k; x++) {
+                    target[row * k + x] = (float) b[x];
+                }
+            }
+        }
+
+        /**
+         * Solves {@code A x = b} in place for a symmetric positive definite A of
+         * which only the lower triangle is filled; the solution is left in b.
+         */
+        private static void choleskySolve(double[] a, double[] b, int k) {
+            for (int j = 0; j < k; j++) {
+                double d = a[j * k + j];
+                for (int p = 0; p < j; p++) {
+                    d -= a[j * k + p] * a[j * k + p];
+                }
+                d = Math.sqrt(d);
+                a[j * k + j] = d;
+                for (int i = j + 1; i < k; i++) {
+                    double s = a[i * k + j];
+                    for (int p = 0; p < j; p++) {
+                        s -= a[i * k + p] * a[j * k + p];
+                    }
+                    a[i * k + j] = s / d;
+                }
+            }
+            // L y = b, poi L^T x = y
+            for (int i = 0; i < k; i++) {
+                double s = b[i];
+                for (int p = 0; p < i; p++) {
+                    s -= a[i * k + p] * b[p];
+                }
+                b[i] = s / a[i * k + i];
+            }
+            for (int i = k - 1; i >= 0; i--) {
+                double s = b[i];
+                for (int p = i + 1; p < k; p++) {
+                    s -= a[p * k + i] * b[p];
+                }
+                b[i] = s / a[i * k + i];
+            }
+        }
+    }
+
+    private static final class SolveTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final transient HalfStep step;
+        private final int lo;
+        private final int hi;
+
+        SolveTask(HalfStep step, int lo, int hi) {
+            this.step = step;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= step.grain) {
+                step.solveRows(lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new SolveTask(step, lo, mid), new SolveTask(step, mid, hi));
+        }
+    }
+}
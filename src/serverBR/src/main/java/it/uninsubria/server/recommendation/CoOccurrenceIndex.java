@@ -0,0 +1,459 @@
+package it.uninsubria.server.recommendation;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import it.uninsubria.server.dao.IntPairs;
+
+/**
+ * Immutable item-to-item index: for every book, the top-N books that appear
+ * with it, ranked by popularity-normalised co-occurrence.
+ * <p>
+ * Two signals are combined. Books shelved in the same library co-occur with
+ * weight 1 in both directions; an explicit suggestion {@code base -> suggested}
+ * adds {@code suggestionWeight} in that direction and half of it in the reverse
+ * one. A book's popularity is the total weight of the signals it takes part in,
+ * and the score of {@code (a, b)} is {@code co(a, b) / sqrt(pop(a) * pop(b))},
+ * so bestsellers that sit on every shelf do not dominate every list.
+ * <p>
+ * Everything is kept in primitive arrays: book ids are mapped to dense
+ * indices (sorted, so binary search resolves them) and neighbour lists are
+ * stored in CSR form ({@code neighbourStart[i]..neighbourStart[i + 1]}). Rows
+ * are computed in parallel on a {@link ForkJoinPool}; the sparse co-occurrence
+ * matrix is never materialised, each task accumulates one row at a time in a
+ * dense scratch array and keeps only its top-N. The scratch arrays belong to
+ * the build and are released with it.
+ */
+public final class CoOccurrenceIndex {
+
+    private static final CoOccurrenceIndex EMPTY = new CoOccurrenceIndex(
+        new int[0], new int[1], new int[0], new float[0], new float[0], new int[0], new int[1], new int[0]);
+
+    /** Dense index -> book id, sorted. */
+    private final int[] bookIds;
+    private final int[] neighbourStart;
+    /** Neighbour book ids, best first within each row. */
+    private final int[] neighbours;
+    private final float[] scores;
+    /** Total signal weight of each book, the denominator of its scores. */
+    private final float[] popularity;
+    /** Dense index -> library id, sorted. */
+    private final int[] libraryIds;
+    private final int[] libraryStart;
+    /** Book ids of each library, sorted within the library. */
+    private final int[] libraryBooks;
+
+    CoOccurrenceIndex(int[] bookIds, int[] neighbourStart, int[] neighbours, float[] scores, float[] popularity,
+                      int[] libraryIds, int[] libraryStart, int[] libraryBooks) {
+        this.bookIds = bookIds;
+        this.neighbourStart = neighbourStart;
+        this.neighbours = neighbours;
+        this.scores = scores;
+        this.popularity = popularity;
+        this.libraryIds = libraryIds;
+        this.libraryStart = libraryStart;
+        this.libraryBooks = libraryBooks;
+    }
+
+    /**
+     * @return an index with no books, used until the first build completes
+     */
+    public static CoOccurrenceIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds the index.
+     *
+     * @param suggestions {@code (base_book_id, suggested_book_id)} pairs
+     * @param shelves {@code (libraries_id, book_id)} pairs
+     * @param neighboursPerBook neighbours kept per book
+     * @param maxShelfSize libraries with more books are ignored as co-occurrence signal
+     * @param suggestionWeight weight of a suggestion relative to a shared shelf
+     * @param pool the pool the rows are computed on
+     * @return the new index
+     */
+    public static CoOccurrenceIndex build(IntPairs suggestions, IntPairs shelves, int neighboursPerBook,
+                                          int maxShelfSize, float suggestionWeight, ForkJoinPool pool) {
+        int[] bookIds = distinct(suggestions, shelves);
+        int n = bookIds.length;
+        if (n == 0) {
+            return EMPTY;
+        }
+        Builder b = new Builder(n, neighboursPerBook, maxShelfSize);
+        float[] pop = b.pop;
+
+        // Libreria -> libri (indici densi), via counting sort
+        int[] libraryIds = distinctFirst(shelves);
+        int libs = libraryIds.length;
+        int[] libStart = new int[libs + 1];
+        int[] shelfLib = new int[shelves.size()];
+        int[] shelfBook = new int[shelves.size()];
+        for (int i = 0; i < shelves.size(); i++) {
+            shelfLib[i] = Arrays.binarySearch(libraryIds, shelves.first(i));
+            shelfBook[i] = Arrays.binarySearch(bookIds, shelves.second(i));
+            libStart[shelfLib[i] + 1]++;
+            pop[shelfBook[i]] += 1f;
+        }
+        prefixSum(libStart);
+        int[] libMembers = new int[shelves.size()];
+        int[] fill = Arrays.copyOf(libStart, libs);
+        for (int i = 0; i < shelfLib.length; i++) {
+            libMembers[fill[shelfLib[i]]++] = shelfBook[i];
+        }
+        for (int l = 0; l < libs; l++) {
+            Arrays.sort(libMembers, libStart[l], libStart[l + 1]);
+        }
+
+        // Libro -> librerie che lo contengono
+        int[] bookLibStart = new int[n + 1];
+        for (int book : shelfBook) {
+            bookLibStart[book + 1]++;
+        }
+        prefixSum(bookLibStart);
+        int[] bookLibs = new int[shelfBook.length];
+        fill = Arrays.copyOf(bookLibStart, n);
+        for (int l = 0; l < libs; l++) {
+            for (int p = libStart[l]; p < libStart[l + 1]; p++) {
+                bookLibs[fill[libMembers[p]]++] = l;
+            }
+        }
+
+        // Suggerimenti come archi pesati: diretto con peso pieno, inverso con metà peso
+        int[] suggStart = new int[n + 1];
+        int[] from = new int[suggestions.size()];
+        int[] to = new int[suggestions.size()];
+        int edges = 0;
+        for (int i = 0; i < suggestions.size(); i++) {
+            int a = Arrays.binarySearch(bookIds, suggestions.first(i));
+            int c = Arrays.binarySearch(bookIds, suggestions.second(i));
+            if (a == c) {
+                continue;
+            }
+            from[edges] = a;
+            to[edges] = c;
+            edges++;
+            suggStart[a + 1]++;
+            suggStart[c + 1]++;
+            pop[a] += suggestionWeight;
+            pop[c] += suggestionWeight;
+        }
+        prefixSum(suggStart);
+        int[] suggTo = new int[2 * edges];
+        float[] suggWeight = new float[2 * edges];
+        fill = Arrays.copyOf(suggStart, n);
+        for (int e = 0; e < edges; e++) {
+            int p = fill[from[e]]++;
+            suggTo[p] = to[e];
+            suggWeight[p] = suggestionWeight;
+            p = fill[to[e]]++;
+            suggTo[p] = from[e];
+            suggWeight[p] = suggestionWeight / 2f;
+        }
+
+        b.libStart = libStart;
+        b.libMembers = libMembers;
+        b.bookLibStart = bookLibStart;
+        b.bookLibs = bookLibs;
+        b.suggStart = suggStart;
+        b.suggTo = suggTo;
+        b.suggWeight = suggWeight;
+        b.grain = Math.max(64, n / (pool.getParallelism() * 8));
+        pool.invoke(new RowTask(b, 0, n));
+
+        // Compattazione delle righe in formato CSR
+        int[] neighbourStart = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            neighbourStart[i + 1] = neighbourStart[i] + b.rowIds[i].length;
+        }
+        int[] neighbours = new int[neighbourStart[n]];
+        float[] scores = new float[neighbourStart[n]];
+        for (int i = 0; i < n; i++) {
+            int[] row = b.rowIds[i];
+            for (int j = 0; j < row.length; j++) {
+                neighbours[neighbourStart[i] + j] = bookIds[row[j]];
+            }
+            System.arraycopy(b.rowScores[i], 0, scores, neighbourStart[i], row.length);
+        }
+        int[] libraryBooks = new int[libMembers.length];
+        for (int i = 0; i < libMembers.length; i++) {
+            libraryBooks[i] = bookIds[libMembers[i]];
+        }
+        return new CoOccurrenceIndex(bookIds, neighbourStart, neighbours, scores, pop,
+            libraryIds, libStart, libraryBooks);
+    }
+
+    /**
+     * Returns the books most related to a base book, excluding the base book and
+     * the books already in the given library.
+     *
+     * @param baseBookId the base book
+     * @param libraryId the library whose books are excluded; any unknown id (e.g. 0) excludes nothing
+     * @param topN maximum number of results
+     * @return related book ids, best first
+     */
+    public int[] recommend(int baseBookId, int libraryId, int topN) {
+        int row = Arrays.binarySearch(bookIds, baseBookId);
+        if (row < 0 || topN <= 0) {
+            return new int[0];
+        }
+        int lib = Arrays.binarySearch(libraryIds, libraryId);
+        int libFrom = lib >= 0 ? libraryStart[lib] : 0;
+        int libTo = lib >= 0 ? libraryStart[lib + 1] : 0;
+
+        int end = neighbourStart[row + 1];
+        int[] result = new int[Math.min(topN, end - neighbourStart[row])];
+        int count = 0;
+        for (int p = neighbourStart[row]; p < end && count < result.length; p++) {
+            int candidate = neighbours[p];
+            if (libTo > libFrom && Arrays.binarySearch(libraryBooks, libFrom, libTo, candidate) >= 0) {
+                continue;
+            }
+            result[count++] = candidate;
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the score of {@code related} in the neighbour list of {@code baseBookId}.
+     *
+     * @param baseBookId the base book
+     * @param related the related book
+     * @return the score, or 0 if {@code related} is not among the stored neighbours
+     */
+    public float score(int baseBookId, int related) {
+        int row = Arrays.binarySearch(bookIds, baseBookId);
+        if (row < 0) {
+            return 0f;
+        }
+        for (int p = neighbourStart[row]; p < neighbourStart[row + 1]; p++) {
+            if (neighbours[p] == related) {
+                return scores[p];
+            }
+        }
+        return 0f;
+    }
+
+    /**
+     * Returns whether a library contained a book when the index was built.
+     *
+     * @param libraryId the library
+     * @param bookId the book
+     * @return true if the book is in the library
+     */
+    public boolean inLibrary(int libraryId, int bookId) {
+        int lib = Arrays.binarySearch(libraryIds, libraryId);
+        return lib >= 0 && Arrays.binarySearch(libraryBooks, libraryStart[lib], libraryStart[lib + 1], bookId) >= 0;
+    }
+
+    /**
+     * Returns the total weight of the signals a book takes part in.
+     *
+     * @param bookId the book
+     * @return the popularity, 0 for books without signals
+     */
+    public float popularity(int bookId) {
+        int row = Arrays.binarySearch(bookIds, bookId);
+        return row >= 0 ? popularity[row] : 0f;
+    }
+
+    /**
+     * Returns the books of a library, as of the build.
+     *
+     * @param libraryId the library
+     * @return the book ids, sorted; empty for unknown libraries
+     */
+    int[] libraryMembers(int libraryId) {
+        int lib = Arrays.binarySearch(libraryIds, libraryId);
+        return lib >= 0 ? Arrays.copyOfRange(libraryBooks, libraryStart[lib], libraryStart[lib + 1]) : new int[0];
+    }
+
+    /**
+     * @return the dense row of a book, negative if the book has no signals
+     */
+    int rowOf(int bookId) {
+        return Arrays.binarySearch(bookIds, bookId);
+    }
+
+    // Accesso diretto agli array per patch incrementali e checkpoint: non vanno modificati
+    int[] bookIds() { return bookIds; }
+    int[] neighbourStart() { return neighbourStart; }
+    int[] neighbours() { return neighbours; }
+    float[] scores() { return scores; }
+    float[] popularity() { return popularity; }
+    int[] libraryIds() { return libraryIds; }
+    int[] libraryStart() { return libraryStart; }
+    int[] libraryBooks() { return libraryBooks; }
+
+    /**
+     * @return number of books with at least one signal
+     */
+    public int bookCount() {
+        return bookIds.length;
+    }
+
+    /**
+     * @return total number of stored neighbour entries
+     */
+    public int neighbourCount() {
+        return neighbours.length;
+    }
+
+    private static int[] distinct(IntPairs suggestions, IntPairs shelves) {
+        int[] all = new int[2 * suggestions.size() + shelves.size()];
+        int k = 0;
+        for (int i = 0; i < suggestions.size(); i++) {
+            all[k++] = suggestions.first(i);
+            all[k++] = suggestions.second(i);
+        }
+        for (int i = 0; i < shelves.size(); i++) {
+            all[k++] = shelves.second(i);
+        }
+        return sortedUnique(all);
+    }
+
+    private static int[] distinctFirst(IntPairs pairs) {
+        int[] all = new int[pairs.size()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = pairs.first(i);
+        }
+        return sortedUnique(all);
+    }
+
+    static int[] sortedUnique(int[] values) {
+        Arrays.sort(values);
+        int k = 0;
+        for (int i = 0; i < values.length; i++) {
+            if (i == 0 || values[i] != values[i - 1]) {
+                values[k++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, k);
+    }
+
+    private static void prefixSum(int[] counts) {
+        for (int i = 1; i < counts.length; i++) {
+            counts[i] += counts[i - 1];
+        }
+    }
+
+    /**
+     * Shared state of one build; each row is written by exactly one task.
+     */
+    private static final class Builder {
+        final int neighboursPerBook;
+        final int maxShelfSize;
+        final float[] pop;
+        final int[][] rowIds;
+        final float[][] rowScores;
+        final int size;
+        /** Scratch densi liberi di questa build, riusati tra i task foglia. */
+        final ConcurrentLinkedQueue<Scratch> scratch = new ConcurrentLinkedQueue<>();
+        int[] libStart;
+        int[] libMembers;
+        int[] bookLibStart;
+        int[] bookLibs;
+        int[] suggStart;
+        int[] suggTo;
+        float[] suggWeight;
+        int grain;
+
+        Builder(int n, int neighboursPerBook, int maxShelfSize) {
+            this.neighboursPerBook = neighboursPerBook;
+            this.maxShelfSize = maxShelfSize;
+            this.pop = new float[n];
+            this.rowIds = new int[n][];
+            this.rowScores = new float[n][];
+            this.size = n;
+        }
+
+        void computeRows(int lo, int hi) {
+            // Al più uno scratch per task in esecuzione: azzerato riga per riga e restituito alla build
+            Scratch s = scratch.poll();
+            if (s == null) {
+                s = new Scratch(size);
+            }
+            try {
+                for (int row = lo; row < hi; row++) {
+                    computeRow(row, s.accumulator, s.touched);
+                }
+            } finally {
+                scratch.offer(s);
+            }
+        }
+
+        private void computeRow(int a, float[] acc, int[] seen) {
+            int t = 0;
+            for (int p = bookLibStart[a]; p < bookLibStart[a + 1]; p++) {
+                int lib = bookLibs[p];
+                int from = libStart[lib];
+                int to = libStart[lib + 1];
+                if (to - from > maxShelfSize) {
+                    continue;
+                }
+                for (int q = from; q < to; q++) {
+                    int c = libMembers[q];
+                    if (c == a) {
+                        continue;
+                    }
+                    if (acc[c] == 0f) {
+                        seen[t++] = c;
+                    }
+                    acc[c] += 1f;
+                }
+            }
+            for (int p = suggStart[a]; p < suggStart[a + 1]; p++) {
+                int c = suggTo[p];
+                if (acc[c] == 0f) {
+                    seen[t++] = c;
+                }
+                acc[c] += suggWeight[p];
+            }
+
+            TopNHeap top = new TopNHeap(Math.min(neighboursPerBook, t));
+            for (int i = 0; i < t; i++) {
+                int c = seen[i];
+                top.offer(c, acc[c] / (float) Math.sqrt(pop[a] * pop[c]));
+                acc[c] = 0f;
+            }
+            top.sort();
+            rowIds[a] = top.ids();
+            rowScores[a] = top.scores();
+        }
+    }
+
+    private static final class Scratch {
+        final float[] accumulator;
+        final int[] touched;
+
+        Scratch(int n) {
+            this.accumulator = new float[n];
+            this.touched = new int[n];
+        }
+    }
+
+    private static final class RowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final transient Builder builder;
+        private final int lo;
+        private final int hi;
+
+        RowTask(Builder builder, int lo, int hi) {
+            this.builder = builder;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= builder.grain) {
+                builder.computeRows(lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new RowTask(builder, lo, mid), new RowTask(builder, mid, hi));
+        }
+    }
+}
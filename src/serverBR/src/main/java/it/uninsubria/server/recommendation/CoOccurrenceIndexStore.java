@@ -0,0 +1,98 @@
+package it.uninsubria.server.recommendation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+
+/**
+ * Checkpoints a {@link CoOccurrenceIndex} to a file, so a
+ * restarted server serves related books, including the incremental updates
+ * folded in at the last checkpoint, without a full rebuild.
+ * <p>
+ * Layout (little endian): a header of six ints (magic, version, books,
+ * neighbour entries, libraries, library entries) followed by the book ids,
+ * neighbour offsets, neighbours, library ids, library offsets and library
+ * books as int arrays, then scores and popularity as float arrays. As for
+ * {@link AlsModelStore}, the file goes through a heap buffer, is written to a
+ * temporary sibling and moved into place.
+ */
+public final class CoOccurrenceIndexStore {
+
+    private static final int MAGIC = 0x434F4931; // "COI1"
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 6;
+
+    private CoOccurrenceIndexStore() {
+    }
+
+    /**
+     * Writes an index.
+     *
+     * @param index the index
+     * @param file the destination file
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(CoOccurrenceIndex index, Path file) throws IOException {
+        int books = index.bookIds().length;
+        int entries = index.neighbours().length;
+        int libraries = index.libraryIds().length;
+        int shelved = index.libraryBooks().length;
+        long bytes = 4L * (HEADER_INTS + books + (books + 1) + entries + libraries + (libraries + 1) + shelved
+            + entries + books);
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Co-occurrence index too large to write: " + bytes + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.put(new int[] { MAGIC, VERSION, books, entries, libraries, shelved });
+        ints.put(index.bookIds()).put(index.neighbourStart()).put(index.neighbours())
+            .put(index.libraryIds()).put(index.libraryStart()).put(index.libraryBooks());
+        buffer.position(4 * ints.position());
+        buffer.asFloatBuffer().put(index.scores()).put(index.popularity());
+        buffer.rewind();
+        AlsModelStore.write(buffer, file);
+    }
+
+    /**
+     * Reads an index written by {@link #save(CoOccurrenceIndex, Path)}.
+     *
+     * @param file the checkpoint file
+     * @return the index
+     * @throws IOException if the file cannot be read or is not a checkpoint of this version
+     */
+    public static CoOccurrenceIndex load(Path file) throws IOException {
+        ByteBuffer buffer = AlsModelStore.read(file, 4L * HEADER_INTS);
+        long size = buffer.capacity();
+        IntBuffer ints = buffer.asIntBuffer();
+        int[] header = new int[HEADER_INTS];
+        ints.get(header);
+        if (header[0] != MAGIC || header[1] != VERSION) {
+            throw new IOException("Not a co-occurrence checkpoint (version " + header[1] + ")");
+        }
+        int books = header[2];
+        int entries = header[3];
+        int libraries = header[4];
+        int shelved = header[5];
+        long expected = 4L * (HEADER_INTS + (long) books + (books + 1L) + entries + libraries
+            + (libraries + 1L) + shelved + entries + books);
+        if (books < 0 || entries < 0 || libraries < 0 || shelved < 0 || expected != size) {
+            throw new IOException("Corrupted co-occurrence checkpoint");
+        }
+        int[] bookIds = new int[books];
+        int[] neighbourStart = new int[books + 1];
+        int[] neighbours = new int[entries];
+        int[] libraryIds = new int[libraries];
+        int[] libraryStart = new int[libraries + 1];
+        int[] libraryBooks = new int[shelved];
+        ints.get(bookIds).get(neighbourStart).get(neighbours)
+            .get(libraryIds).get(libraryStart).get(libraryBooks);
+        buffer.position(4 * ints.position());
+        float[] scores = new float[entries];
+        float[] popularity = new float[books];
+        buffer.asFloatBuffer().get(scores).get(popularity);
+        return new CoOccurrenceIndex(bookIds, neighbourStart, neighbours, scores, popularity,
+            libraryIds, libraryStart, libraryBooks);
+    }
+}
@@ -0,0 +1,345 @@
+package it.uninsubria.server.recommendation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import it.uninsubria.server.dao.IntPairs;
+import it.uninsubria.server.dao.RecommendationDAO;
+import it.uninsubria.server.event.WriteEvent;
+import it.uninsubria.server.event.WriteEventListener;
+import it.uninsubria.server.monitoring.MonitoringService;
+import it.uninsubria.server.util.ConnectionPoolManager;
+import it.uninsubria.shared.utils.AppConstants;
+
+/**
+ * Serves item-to-item recommendations from an in-memory {@link CoOccurrenceIndex}.
+ * <p>
+ * The index is rebuilt in the background from the suggestion and library
+ * tables and published with a single atomic swap: lookups never wait for a
+ * rebuild and always see a complete index, the previous one until the new
+ * one is ready. Until the first build completes the recommender answers with
+ * empty results.
+ * <p>
+ * Between rebuilds, suggestions and shelved books arriving from the
+ * {@link it.uninsubria.server.event.WriteEventBus} patch the affected neighbour
+ * lists on the dispatcher thread (see {@link LiveCoOccurrenceIndex}). The
+ * patches are periodically folded into a new index and checkpointed to disk;
+ * at startup the checkpoint is served right away and the first full rebuild
+ * waits for the regular period.
+ */
+public class CoOccurrenceRecommender implements WriteEventListener {
+
+    private static final Logger logger = Logger.getLogger(CoOccurrenceRecommender.class.getName());
+
+    private final RecommendationDAO dao;
+    private final Path checkpointFile;
+    private final AtomicReference<LiveCoOccurrenceIndex> index = new AtomicReference<>(live(CoOccurrenceIndex.empty()));
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final ForkJoinPool pool;
+    // Serializza applicazione degli eventi, compattazione e sostituzione dell'indice
+    private final Object updateLock = new Object();
+    // Eventi ricevuti durante una rebuild, riapplicati sul nuovo indice
+    private List<WriteEvent> pendingDuringRebuild;
+    // Incrementata da reset(): rebuild e checkpoint iniziati prima vengono scartati
+    private volatile long generation;
+    // Serializza scrittura e cancellazione del checkpoint
+    private final Object checkpointLock = new Object();
+    private ScheduledExecutorService scheduler;
+
+    public CoOccurrenceRecommender(RecommendationDAO dao) {
+        this(dao, null);
+    }
+
+    public CoOccurrenceRecommender(RecommendationDAO dao, int parallelism) {
+        this(dao, null, parallelism);
+    }
+
+    public CoOccurrenceRecommender(RecommendationDAO dao, Path checkpointFile) {
+        this(dao, checkpointFile, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * @param dao source of the signals
+     * @param checkpointFile file the index is checkpointed to, or null to disable checkpoints
+     * @param parallelism threads used by a rebuild
+     */
+    public CoOccurrenceRecommender(RecommendationDAO dao, Path checkpointFile, int parallelism) {
+        this.dao = dao;
+        this.checkpointFile = checkpointFile;
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("CoOccurrenceBuild-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+    }
+
+    private static LiveCoOccurrenceIndex live(CoOccurrenceIndex base) {
+        return new LiveCoOccurrenceIndex(base, AppConstants.Recommendation.COOCCURRENCE_NEIGHBOURS,
+            AppConstants.Recommendation.INCREMENTAL_MAX_SHELF_SIZE, AppConstants.Recommendation.SUGGESTION_WEIGHT);
+    }
+
+    /**
+     * Loads the checkpoint and starts the periodic rebuild and checkpoint.
+     * Without a checkpoint the first build runs immediately.
+     *
+     * @param periodMs interval between rebuilds, in milliseconds
+     */
+    public synchronized void start(long periodMs) {
+        if (scheduler != null) {
+            return;
+        }
+        boolean loaded = loadCheckpoint();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            // Le scansioni delle tabelle usano il pool di background, non quello dei client
+            Thread t = new Thread(() -> {
+                ConnectionPoolManager.markBackgroundThread();
+                r.run();
+            }, "CoOccurrenceRebuild");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::rebuildQuietly, loaded ? periodMs : 0, periodMs, TimeUnit.MILLISECONDS);
+        if (checkpointFile != null) {
+            long checkpointMs = AppConstants.Recommendation.COOCCURRENCE_CHECKPOINT_MS;
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    checkpoint();
+                } catch (Exception e) {
+                    logger.warning("Co-occurrence checkpoint failed: " + e.getMessage());
+                }
+            }, checkpointMs, checkpointMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the periodic rebuild and the build pool.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        pool.shutdownNow();
+    }
+
+    /**
+     * Replaces the index with an empty one, deletes the checkpoint and
+     * schedules a rebuild; used after the database has been reset.
+     */
+    public synchronized void reset() {
+        synchronized (checkpointLock) {
+            synchronized (updateLock) {
+                generation++;
+                index.set(live(CoOccurrenceIndex.empty()));
+            }
+            if (checkpointFile != null) {
+                try {
+                    Files.deleteIfExists(checkpointFile);
+                } catch (IOException e) {
+                    logger.warning("Could not delete co-occurrence checkpoint " + checkpointFile + ": " + e.getMessage());
+                }
+            }
+        }
+        if (scheduler != null) {
+            scheduler.execute(this::rebuildQuietly);
+        }
+    }
+
+    /**
+     * Rebuilds the index from the database and publishes it. A call made while
+     * another rebuild is running returns without doing anything.
+     *
+     * @return true if this call rebuilt the index
+     * @throws Exception if the signals cannot be loaded
+     */
+    public boolean rebuild() throws Exception {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return false;
+        }
+        long builtGeneration;
+        synchronized (updateLock) {
+            pendingDuringRebuild = new ArrayList<>();
+            builtGeneration = generation;
+        }
+        try {
+            long start = System.nanoTime();
+            IntPairs suggestions = dao.loadSuggestionPairs();
+            IntPairs shelves = dao.loadLibraryBooks();
+            CoOccurrenceIndex built = CoOccurrenceIndex.build(suggestions, shelves,
+                AppConstants.Recommendation.COOCCURRENCE_NEIGHBOURS,
+                AppConstants.Recommendation.MAX_SHELF_SIZE,
+                AppConstants.Recommendation.SUGGESTION_WEIGHT, pool);
+            synchronized (updateLock) {
+                if (builtGeneration != generation) {
+                    logger.info("Co-occurrence index discarded: the database was reset during the rebuild");
+                    return false;
+                }
+                // Gli eventi arrivati durante la lettura potrebbero mancare dallo snapshot:
+                // riapplicarli costa al più qualche conteggio doppio fino alla prossima rebuild
+                LiveCoOccurrenceIndex fresh = live(built);
+                if (!pendingDuringRebuild.isEmpty()) {
+                    fresh.apply(pendingDuringRebuild);
+                }
+                index.set(fresh);
+            }
+            saveCheckpoint(built, builtGeneration);
+
+            long elapsed = System.nanoTime() - start;
+            MonitoringService.getInstance().getRegistry()
+                .timer("recommendation.cooccurrence.rebuild")
+                .record(elapsed, TimeUnit.NANOSECONDS);
+            logger.info("Co-occurrence index rebuilt: " + built.bookCount() + " books, "
+                + built.neighbourCount() + " neighbours in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+            return true;
+        } finally {
+            synchronized (updateLock) {
+                pendingDuringRebuild = null;
+            }
+            rebuilding.set(false);
+        }
+    }
+
+    /**
+     * Applies suggestions and shelved books to the served index. Called by the
+     * event bus dispatcher, never on a request thread.
+     *
+     * @param events the events of one batch
+     */
+    @Override
+    public void onEvents(List<WriteEvent> events) {
+        long start = System.nanoTime();
+        synchronized (updateLock) {
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.addAll(events);
+            }
+            index.get().apply(events);
+        }
+        MonitoringService.getInstance().getRegistry()
+            .timer("recommendation.cooccurrence.incremental")
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Folds the incremental updates into a new index and writes it to the
+     * checkpoint file. Does nothing if no update arrived since the last
+     * checkpoint or rebuild.
+     *
+     * @return true if a checkpoint was written
+     * @throws Exception if the checkpoint cannot be written
+     */
+    public boolean checkpoint() throws Exception {
+        CoOccurrenceIndex compacted;
+        long compactedGeneration;
+        synchronized (updateLock) {
+            LiveCoOccurrenceIndex current = index.get();
+            if (current.appliedEvents() == 0) {
+                return false;
+            }
+            compacted = current.compact();
+            compactedGeneration = generation;
+            index.set(live(compacted));
+        }
+        return saveCheckpoint(compacted, compactedGeneration);
+    }
+
+    private boolean saveCheckpoint(CoOccurrenceIndex snapshot, long snapshotGeneration) {
+        if (checkpointFile == null) {
+            return false;
+        }
+        synchronized (checkpointLock) {
+            // Un indice precedente al reset non deve ricomparire su disco
+            if (snapshotGeneration != generation) {
+                return false;
+            }
+            try {
+                CoOccurrenceIndexStore.save(snapshot, checkpointFile);
+                return true;
+            } catch (Exception e) {
+                logger.warning("Could not checkpoint co-occurrence index to " + checkpointFile + ": " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    private void rebuildQuietly() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            logger.warning("Co-occurrence index rebuild failed: " + e.getMessage());
+        }
+    }
+
+    private boolean loadCheckpoint() {
+        if (checkpointFile == null || !Files.exists(checkpointFile)) {
+            return false;
+        }
+        try {
+            CoOccurrenceIndex restored = CoOccurrenceIndexStore.load(checkpointFile);
+            synchronized (updateLock) {
+                if (index.get().base().bookCount() == 0) {
+                    index.set(live(restored));
+                }
+            }
+            logger.info("Co-occurrence index loaded from " + checkpointFile + " (" + restored.bookCount() + " books)");
+            return true;
+        } catch (Exception e) {
+            logger.warning("Could not load co-occurrence checkpoint from " + checkpointFile + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Returns the books most related to a base book, excluding the books already
+     * in the given library.
+     *
+     * @param baseBookId the base book
+     * @param libraryId the library whose books are excluded
+     * @param topN maximum number of results
+     * @return related book ids, best first
+     */
+    public int[] recommend(int baseBookId, int libraryId, int topN) {
+        return index.get().recommend(baseBookId, libraryId, topN);
+    }
+
+    /**
+     * Returns whether a library contains a book, as of the last rebuild plus
+     * the books shelved since.
+     *
+     * @param libraryId the library
+     * @param bookId the book
+     * @return true if the book is in the library
+     */
+    public boolean inLibrary(int libraryId, int bookId) {
+        return index.get().inLibrary(libraryId, bookId);
+    }
+
+    /**
+     * Returns the score of a related book for a base book, incremental updates included.
+     *
+     * @param baseBookId the base book
+     * @param related the related book
+     * @return the score, or 0 if {@code related} is not among the neighbours
+     */
+    public float score(int baseBookId, int related) {
+        return index.get().score(baseBookId, related);
+    }
+
+    /**
+     * @return the index of the last rebuild or checkpoint, without the updates applied since
+     */
+    public CoOccurrenceIndex getIndex() {
+        return index.get().base();
+    }
+}
@@ -0,0 +1,262 @@
+package it.uninsubria.server.recommendation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import it.uninsubria.server.dao.Ratings;
+import it.uninsubria.server.dao.RecommendationDAO;
+import it.uninsubria.server.event.WriteEvent;
+import it.uninsubria.server.event.WriteEventListener;
+import it.uninsubria.server.monitoring.MonitoringService;
+import it.uninsubria.server.util.ConnectionPoolManager;
+import it.uninsubria.shared.utils.AppConstants;
+
+/**
+ * Serves "recommended for you" lists from an {@link AlsModel} trained on the
+ * review scores.
+ * <p>
+ * At startup the last persisted model is loaded from disk, if any; training
+ * then runs periodically in the background and each new model is swapped in
+ * atomically and persisted. Until a model is available users get no results.
+ * <p>
+ * Reviews published on the {@link it.uninsubria.server.event.WriteEventBus}
+ * are recorded per user, so a book reviewed after the last training is not
+ * recommended back to its reviewer; the records are dropped once a trained
+ * model includes them.
+ */
+public class CollaborativeRecommender implements WriteEventListener {
+
+    private static final Logger logger = Logger.getLogger(CollaborativeRecommender.class.getName());
+
+    private final RecommendationDAO dao;
+    private final Path modelFile;
+    private final AtomicReference<AlsModel> model = new AtomicReference<>();
+    private final AtomicBoolean training = new AtomicBoolean();
+    // Incrementata da reset(): un addestramento iniziato prima viene scartato
+    private final AtomicLong generation = new AtomicLong();
+    // Utente -> libri recensiti dopo l'ultimo addestramento, ordinati
+    private final Map<Integer, int[]> reviewedSinceTraining = new ConcurrentHashMap<>();
+    private final ForkJoinPool pool;
+    private ScheduledExecutorService scheduler;
+
+    public CollaborativeRecommender(RecommendationDAO dao, Path modelFile) {
+        this(dao, modelFile, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public CollaborativeRecommender(RecommendationDAO dao, Path modelFile, int parallelism) {
+        this.dao = dao;
+        this.modelFile = modelFile;
+        this.pool = new ForkJoinPool(parallelism, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("AlsTraining-" + t.getPoolIndex());
+            t.setDaemon(true);
+            return t;
+        }, null, false);
+    }
+
+    /**
+     * Loads the persisted model and starts the periodic training. Without a
+     * persisted model the first training runs immediately.
+     *
+     * @param periodMs interval between training runs, in milliseconds
+     */
+    public synchronized void start(long periodMs) {
+        if (scheduler != null) {
+            return;
+        }
+        boolean loaded = loadPersisted();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            // La lettura delle recensioni usa il pool di background, non quello dei client
+            Thread t = new Thread(() -> {
+                ConnectionPoolManager.markBackgroundThread();
+                r.run();
+            }, "AlsRetrain");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::retrainQuietly, loaded ? periodMs : 0, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Drops the served and the persisted model and schedules a new training;
+     * used after the database has been reset, when user and book ids restart.
+     */
+    public synchronized void reset() {
+        generation.incrementAndGet();
+        model.set(null);
+        reviewedSinceTraining.clear();
+        if (modelFile != null) {
+            try {
+                Files.deleteIfExists(modelFile);
+            } catch (IOException e) {
+                logger.warning("Could not delete ALS model " + modelFile + ": " + e.getMessage());
+            }
+        }
+        if (scheduler != null) {
+            scheduler.execute(this::retrainQuietly);
+        }
+    }
+
+    /**
+     * Stops the periodic training and the training pool.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        pool.shutdownNow();
+    }
+
+    /**
+     * Trains a new model from the current ratings, publishes it and persists it.
+     * A call made while another training is running returns without doing anything.
+     *
+     * @return true if this call trained a model
+     * @throws Exception if the ratings cannot be loaded
+     */
+    public boolean retrain() throws Exception {
+        if (!training.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            long start = System.nanoTime();
+            long trainedGeneration = generation.get();
+            Ratings ratings = dao.loadRatings();
+            AlsModel trained = AlsTrainer.train(ratings,
+                AppConstants.Recommendation.ALS_RANK,
+                AppConstants.Recommendation.ALS_LAMBDA,
+                AppConstants.Recommendation.ALS_ITERATIONS, pool);
+            if (trainedGeneration != generation.get()) {
+                logger.info("ALS model discarded: the database was reset during training");
+                return false;
+            }
+            model.set(trained);
+            reviewedSinceTraining.replaceAll((user, books) -> notRatedIn(trained, user, books));
+            reviewedSinceTraining.values().removeIf(books -> books.length == 0);
+
+            long elapsed = System.nanoTime() - start;
+            MonitoringService.getInstance().getRegistry()
+                .timer("recommendation.als.training")
+                .record(elapsed, TimeUnit.NANOSECONDS);
+            logger.info("ALS model trained on " + ratings.size() + " ratings (" + trained.getUserCount()
+                + " users, " + trained.getItemCount() + " books) in " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+
+            if (modelFile != null) {
+                try {
+                    AlsModelStore.save(trained, modelFile);
+                } catch (Exception e) {
+                    logger.warning("Could not persist ALS model to " + modelFile + ": " + e.getMessage());
+                }
+            }
+            return true;
+        } finally {
+            training.set(false);
+        }
+    }
+
+    /**
+     * Returns the books with the highest predicted score for a user, excluding
+     * the books the user has already reviewed.
+     *
+     * @param userId the user
+     * @param topK maximum number of results
+     * @return book ids, best first
+     */
+    public int[] recommend(int userId, int topK) {
+        AlsModel current = model.get();
+        if (current == null) {
+            return new int[0];
+        }
+        int[] reviewed = reviewedSinceTraining.get(userId);
+        if (reviewed == null) {
+            return current.recommend(userId, topK);
+        }
+        int[] candidates = current.recommend(userId, topK + reviewed.length);
+        int[] result = new int[Math.min(topK, candidates.length)];
+        int count = 0;
+        for (int p = 0; p < candidates.length && count < result.length; p++) {
+            if (Arrays.binarySearch(reviewed, candidates[p]) < 0) {
+                result[count++] = candidates[p];
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Records reviews written since the last training. Called by the event bus dispatcher.
+     *
+     * @param events the events of one batch
+     */
+    @Override
+    public void onEvents(List<WriteEvent> events) {
+        for (WriteEvent event : events) {
+            if (event.getType() == WriteEvent.Type.REVIEW_ADDED) {
+                reviewedSinceTraining.merge(event.getUserId(), new int[] { event.getBookId() },
+                    CollaborativeRecommender::union);
+            }
+        }
+    }
+
+    private static int[] union(int[] sorted, int[] single) {
+        int pos = Arrays.binarySearch(sorted, single[0]);
+        if (pos >= 0) {
+            return sorted;
+        }
+        pos = -pos - 1;
+        int[] out = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, out, 0, pos);
+        out[pos] = single[0];
+        System.arraycopy(sorted, pos, out, pos + 1, sorted.length - pos);
+        return out;
+    }
+
+    private static int[] notRatedIn(AlsModel trained, int userId, int[] books) {
+        return Arrays.stream(books).filter(book -> !trained.hasRated(userId, book)).toArray();
+    }
+
+    /**
+     * @return the model currently served, or null before the first model is available
+     */
+    public AlsModel getModel() {
+        return model.get();
+    }
+
+    private void retrainQuietly() {
+        try {
+            retrain();
+        } catch (Exception e) {
+            logger.warning("ALS training failed: " + e.getMessage());
+        }
+    }
+
+    private boolean loadPersisted() {
+        if (modelFile == null || !Files.exists(modelFile)) {
+            return false;
+        }
+        try {
+            AlsModel persisted = AlsModelStore.load(modelFile);
+            model.compareAndSet(null, persisted);
+            logger.info("ALS model loaded from " + modelFile + " (" + persisted.getUserCount() + " users, "
+                + persisted.getItemCount() + " books)");
+            return true;
+        } catch (Exception e) {
+            logger.warning("Could not load ALS model from " + modelFile + ": " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package it.uninsubria.server.recommendation;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntPredicate;
+import java.util.logging.Logger;
+
+import it.uninsubria.server.dao.BookDAO;
+import it.uninsubria.server.dao.ResultCursor;
+import it.uninsubria.server.monitoring.MonitoringService;
+import it.uninsubria.server.util.ConnectionPoolManager;
+import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.utils.AppConstants;
+
+/**
+ * Keeps a {@link ContentSimilarityIndex} in step with the catalog.
+ * <p>
+ * The index is filled incrementally: each refresh streams only the books with
+ * an id above the highest one already seen, one cursor chunk at a time, and
+ * every chunk is searchable as soon as it is added. After the catalog is
+ * reloaded (ids restart from 1) {@link #reset()} swaps in an empty index and
+ * fills it again.
+ */
+public class ContentRecommender {
+
+    private static final Logger logger = Logger.getLogger(ContentRecommender.class.getName());
+
+    private final BookDAO bookDAO;
+    private final AtomicReference<ContentSimilarityIndex> index = new AtomicReference<>(new ContentSimilarityIndex());
+    private ScheduledExecutorService scheduler;
+
+    public ContentRecommender(BookDAO bookDAO) {
+        this.bookDAO = bookDAO;
+    }
+
+    /**
+     * Starts the periodic refresh; the first one runs immediately.
+     *
+     * @param periodMs interval between refreshes, in milliseconds
+     */
+    public synchronized void start(long periodMs) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            // La scansione del catalogo usa il pool di background, non quello dei client
+            Thread t = new Thread(() -> {
+                ConnectionPoolManager.markBackgroundThread();
+                r.run();
+            }, "ContentIndexRefresh");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic refresh.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Adds the books inserted since the previous refresh. Refreshes are not meant
+     * to run concurrently: the scheduler runs them one at a time.
+     *
+     * @return the number of books added
+     * @throws Exception if the catalog cannot be read
+     */
+    public int refresh() throws Exception {
+        ContentSimilarityIndex current = index.get();
+        long start = System.nanoTime();
+        int added = 0;
+        int chunkSize = AppConstants.Database.CURSOR_DEFAULT_CHUNK_SIZE;
+        try (ResultCursor<Book> cursor = bookDAO.openCatalogCursor(current.getMaxBookId(), chunkSize)) {
+            List<Book> chunk;
+            while (!(chunk = cursor.next(chunkSize)).isEmpty()) {
+                added += current.addAll(chunk);
+            }
+        }
+        if (added > 0) {
+            long elapsed = System.nanoTime() - start;
+            MonitoringService.getInstance().getRegistry()
+                .timer("recommendation.content.refresh")
+                .record(elapsed, TimeUnit.NANOSECONDS);
+            logger.info("Content index: " + added + " books added (" + current.size() + " total) in "
+                + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+        }
+        return added;
+    }
+
+    /**
+     * Replaces the index with an empty one and schedules a full refresh; used
+     * after the catalog has been reloaded.
+     */
+    public synchronized void reset() {
+        index.set(new ContentSimilarityIndex());
+        if (scheduler != null) {
+            scheduler.execute(this::refreshQuietly);
+        }
+    }
+
+    /**
+     * Returns the books whose metadata is most similar to a book.
+     *
+     * @param bookId the base book
+     * @param topN maximum number of results
+     * @param exclude books to leave out
+     * @return similar book ids, most similar first
+     */
+    public int[] similar(int bookId, int topN, IntPredicate exclude) {
+        return index.get().similar(bookId, topN, exclude);
+    }
+
+    /**
+     * @return the index currently served
+     */
+    public ContentSimilarityIndex getIndex() {
+        return index.get();
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            logger.warning("Content index refresh failed: " + e.getMessage());
+        }
+    }
+}
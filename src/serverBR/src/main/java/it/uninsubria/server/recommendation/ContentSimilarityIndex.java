@@ -0,0 +1,529 @@
+package it.uninsubria.server.recommendation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+
+import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.utils.AppConstants;
+
+/**
+ * Content-based similarity index over book metadata, used for books that have
+ * no shelving or suggestion history.
+ * <p>
+ * Each book becomes a set of hashed features: title words and word bigrams,
+ * author tokens, the category and the first words of the description, each
+ * prefixed with its field. A MinHash signature of the set is split into LSH
+ * bands; books that share a band bucket are candidates, ranked by the number of
+ * shared bands, and the best {@code maxCandidates} are re-scored with the exact
+ * Jaccard similarity of their feature sets. Bucket and candidate bounds keep
+ * the cost of a lookup fixed whatever the catalog size.
+ * <p>
+ * Books are added incrementally; signatures and band keys are computed and
+ * sorted outside the lock, so lookups are only blocked while a batch is linked
+ * into the buckets. A book id already indexed is ignored.
+ * <p>
+ * Everything is kept in primitive arrays. Book ids map to slots through an
+ * array indexed by id. Buckets live in runs, each a sorted {@code long[]} of
+ * band keys with the slots of every key in CSR form; each batch becomes a run
+ * and runs of similar size are merged, so a lookup binary-searches a
+ * logarithmic number of runs.
+ */
+public class ContentSimilarityIndex {
+
+    private static final int[] NO_BOOKS = new int[0];
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final int MIN_TOKEN_LENGTH = 3;
+    private static final int DESCRIPTION_TOKENS = 60;
+    private static final Set<String> STOPWORDS = Set.of(
+        "the", "and", "for", "with", "from", "that", "this", "into", "are", "was", "his", "her", "its",
+        "their", "who", "which", "book", "della", "delle", "degli", "dei", "del", "con", "per", "una",
+        "uno", "che", "non", "nel", "nella", "sul", "sulla", "gli", "come", "dal", "dalla", "libro");
+
+    private final int bands;
+    private final int rows;
+    private final int maxBucketSize;
+    private final int maxCandidates;
+    private final long[] seeds;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Book id -> slot + 1; 0 for books not indexed. */
+    private int[] slotByBookId = new int[1024];
+    /** Bucket runs, oldest (and largest) first. */
+    private final List<BucketRun> runs = new ArrayList<>();
+    private int[] bookIds = new int[1024];
+    private int[][] features = new int[1024][];
+    private int[] signatures;
+    private int size;
+    private int maxBookId;
+
+    public ContentSimilarityIndex() {
+        this(AppConstants.Recommendation.MINHASH_BANDS, AppConstants.Recommendation.MINHASH_ROWS,
+            AppConstants.Recommendation.LSH_MAX_BUCKET_SIZE, AppConstants.Recommendation.LSH_MAX_CANDIDATES);
+    }
+
+    public ContentSimilarityIndex(int bands, int rows, int maxBucketSize, int maxCandidates) {
+        this.bands = bands;
+        this.rows = rows;
+        this.maxBucketSize = maxBucketSize;
+        this.maxCandidates = maxCandidates;
+        this.seeds = new long[bands * rows];
+        long seed = 0x5DEECE66DL;
+        for (int i = 0; i < seeds.length; i++) {
+            seed = mix(seed + 0x9E3779B97F4A7C15L);
+            seeds[i] = seed;
+        }
+        this.signatures = new int[bookIds.length * seeds.length];
+    }
+
+    /**
+     * Adds a batch of books.
+     *
+     * @param books the books; ids already indexed are skipped
+     * @return the number of books added
+     */
+    public int addAll(Collection<Book> books) {
+        int hashes = seeds.length;
+        int[] ids = new int[books.size()];
+        int[][] sets = new int[books.size()][];
+        int[] sigs = new int[books.size() * hashes];
+        int n = 0;
+        for (Book book : books) {
+            ids[n] = book.getBook_id();
+            sets[n] = features(book);
+            signature(sets[n], sigs, n * hashes);
+            n++;
+        }
+        // Voce = libro * bands + banda: a parità di chiave l'ordine resta quello della batch
+        long[] keys = new long[n * bands];
+        int[] entries = new int[n * bands];
+        for (int i = 0; i < n; i++) {
+            for (int band = 0; band < bands; band++) {
+                int e = i * bands + band;
+                keys[e] = bucketKey(sigs, i * hashes, band);
+                entries[e] = e;
+            }
+        }
+        sortByKey(keys, entries);
+
+        int added = 0;
+        lock.writeLock().lock();
+        try {
+            int[] batchSlots = new int[n];
+            for (int i = 0; i < n; i++) {
+                maxBookId = Math.max(maxBookId, ids[i]);
+                batchSlots[i] = -1;
+                if (sets[i].length == 0 || ids[i] < 0 || slotOf(ids[i]) >= 0) {
+                    continue;
+                }
+                int slot = size++;
+                ensureCapacity(size);
+                bookIds[slot] = ids[i];
+                features[slot] = sets[i];
+                System.arraycopy(sigs, i * hashes, signatures, slot * hashes, hashes);
+                if (ids[i] >= slotByBookId.length) {
+                    slotByBookId = Arrays.copyOf(slotByBookId, Math.max(ids[i] + 1, slotByBookId.length * 2));
+                }
+                slotByBookId[ids[i]] = slot + 1;
+                batchSlots[i] = slot;
+                added++;
+            }
+            if (added > 0) {
+                addRun(buildRun(keys, entries, batchSlots));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return added;
+    }
+
+    /**
+     * Returns the books whose metadata is most similar to a book.
+     *
+     * @param bookId the base book
+     * @param topN maximum number of results
+     * @param exclude books to leave out (the base book is always left out)
+     * @return similar book ids, most similar first
+     */
+    public int[] similar(int bookId, int topN, IntPredicate exclude) {
+        lock.readLock().lock();
+        try {
+            int base = slotOf(bookId);
+            if (base < 0 || topN <= 0) {
+                return NO_BOOKS;
+            }
+            int[] candidates = new int[bands * maxBucketSize];
+            int count = 0;
+            for (int band = 0; band < bands; band++) {
+                long key = bucketKey(signatures, base * seeds.length, band);
+                // Il bucket è la concatenazione delle run, dalla più vecchia, fino a maxBucketSize
+                int taken = 0;
+                for (BucketRun run : runs) {
+                    int p = Arrays.binarySearch(run.keys, key);
+                    if (p < 0) {
+                        continue;
+                    }
+                    for (int q = run.start[p]; q < run.start[p + 1] && taken < maxBucketSize; q++, taken++) {
+                        int slot = run.slots[q];
+                        if (slot != base && !exclude.test(bookIds[slot])) {
+                            candidates[count++] = slot;
+                        }
+                    }
+                }
+            }
+
+            // Conteggio delle bande condivise: stima della similarità senza confrontare gli insiemi
+            Arrays.sort(candidates, 0, count);
+            int[] hits = new int[count];
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (unique > 0 && candidates[unique - 1] == candidates[i]) {
+                    hits[unique - 1]++;
+                } else {
+                    candidates[unique] = candidates[i];
+                    hits[unique++] = 1;
+                }
+            }
+            int cutoff = 1;
+            int budget = maxCandidates;
+            if (unique > maxCandidates) {
+                int[] histogram = new int[bands + 1];
+                for (int i = 0; i < unique; i++) {
+                    histogram[hits[i]]++;
+                }
+                for (cutoff = bands; cutoff > 1 && histogram[cutoff] <= budget; cutoff--) {
+                    budget -= histogram[cutoff];
+                }
+            }
+
+            int[] baseFeatures = features[base];
+            TopNHeap top = new TopNHeap(topN);
+            for (int i = 0; i < unique; i++) {
+                if (hits[i] < cutoff || (hits[i] == cutoff && budget-- <= 0)) {
+                    continue;
+                }
+                float similarity = jaccard(baseFeatures, features[candidates[i]]);
+                if (similarity >= AppConstants.Recommendation.CONTENT_MIN_SIMILARITY) {
+                    top.offer(bookIds[candidates[i]], similarity);
+                }
+            }
+            top.sort();
+            return top.ids();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the exact Jaccard similarity of the feature sets of two books.
+     *
+     * @param a the first book
+     * @param b the second book
+     * @return the similarity, or 0 if either book is not indexed
+     */
+    public float similarity(int a, int b) {
+        lock.readLock().lock();
+        try {
+            int slotA = slotOf(a);
+            int slotB = slotOf(b);
+            return slotA < 0 || slotB < 0 ? 0f : jaccard(features[slotA], features[slotB]);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of indexed books
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the highest book id seen, indexed or not; new books are read after it
+     */
+    public int getMaxBookId() {
+        lock.readLock().lock();
+        try {
+            return maxBookId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Extracts the sorted, distinct feature hashes of a book.
+     *
+     * @param book the book
+     * @return the feature set
+     */
+    static int[] features(Book book) {
+        int[] out = new int[64];
+        int n = 0;
+        String previous = null;
+        for (String token : tokens(book.getTitle())) {
+            out = append(out, n++, hash("t:", token));
+            if (previous != null) {
+                out = append(out, n++, hash("b:", previous + ' ' + token));
+            }
+            previous = token;
+        }
+        for (String token : tokens(book.getAuthors())) {
+            out = append(out, n++, hash("a:", token));
+        }
+        String category = normalize(book.getCategory());
+        if (!category.isEmpty()) {
+            out = append(out, n++, hash("c:", category));
+        }
+        int taken = 0;
+        for (String token : tokens(book.getDescription())) {
+            if (taken++ == DESCRIPTION_TOKENS) {
+                break;
+            }
+            out = append(out, n++, hash("d:", token));
+        }
+
+        Arrays.sort(out, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (unique == 0 || out[unique - 1] != out[i]) {
+                out[unique++] = out[i];
+            }
+        }
+        return Arrays.copyOf(out, unique);
+    }
+
+    /**
+     * Jaccard similarity of two sorted, distinct int sets.
+     */
+    static float jaccard(int[] a, int[] b) {
+        int i = 0;
+        int j = 0;
+        int common = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int union = a.length + b.length - common;
+        return union == 0 ? 0f : (float) common / union;
+    }
+
+    private void signature(int[] set, int[] out, int offset) {
+        Arrays.fill(out, offset, offset + seeds.length, Integer.MAX_VALUE);
+        for (int feature : set) {
+            for (int h = 0; h < seeds.length; h++) {
+                int value = (int) (mix(feature ^ seeds[h]) >>> 33);
+                if (value < out[offset + h]) {
+                    out[offset + h] = value;
+                }
+            }
+        }
+    }
+
+    private long bucketKey(int[] sigs, int signatureOffset, int band) {
+        int offset = signatureOffset + band * rows;
+        long h = band;
+        for (int r = 0; r < rows; r++) {
+            h = h * 0x100000001B3L + sigs[offset + r];
+        }
+        return mix(h);
+    }
+
+    private int slotOf(int bookId) {
+        return bookId >= 0 && bookId < slotByBookId.length ? slotByBookId[bookId] - 1 : -1;
+    }
+
+    /**
+     * Groups the sorted entries of a batch by band key, keeping at most
+     * {@code maxBucketSize} slots per key; entries of skipped books are dropped.
+     */
+    private BucketRun buildRun(long[] keys, int[] entries, int[] batchSlots) {
+        long[] runKeys = new long[keys.length];
+        int[] start = new int[keys.length + 1];
+        int[] slots = new int[keys.length];
+        int k = 0;
+        int m = 0;
+        for (int i = 0; i < keys.length; i++) {
+            int slot = batchSlots[entries[i] / bands];
+            if (slot < 0) {
+                continue;
+            }
+            if (k == 0 || runKeys[k - 1] != keys[i]) {
+                runKeys[k] = keys[i];
+                start[k++] = m;
+            } else if (m - start[k - 1] == maxBucketSize) {
+                continue;
+            }
+            slots[m++] = slot;
+        }
+        start[k] = m;
+        return new BucketRun(Arrays.copyOf(runKeys, k), Arrays.copyOf(start, k + 1), Arrays.copyOf(slots, m));
+    }
+
+    /**
+     * Appends a run and merges it with the previous ones while they are not
+     * larger, so run sizes halve from the oldest to the newest.
+     */
+    private void addRun(BucketRun run) {
+        runs.add(run);
+        int last = runs.size() - 1;
+        while (last > 0 && runs.get(last - 1).slots.length <= runs.get(last).slots.length) {
+            BucketRun merged = merge(runs.get(last - 1), runs.remove(last));
+            runs.set(--last, merged);
+        }
+    }
+
+    /**
+     * Merges two runs; for a shared key the slots of the older run come first,
+     * up to {@code maxBucketSize} in total.
+     */
+    private BucketRun merge(BucketRun older, BucketRun newer) {
+        long[] keys = new long[older.keys.length + newer.keys.length];
+        int[] start = new int[keys.length + 1];
+        int[] slots = new int[older.slots.length + newer.slots.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        int m = 0;
+        while (i < older.keys.length || j < newer.keys.length) {
+            boolean fromOlder = j == newer.keys.length
+                || (i < older.keys.length && older.keys[i] <= newer.keys[j]);
+            boolean fromNewer = i == older.keys.length
+                || (j < newer.keys.length && newer.keys[j] <= older.keys[i]);
+            keys[k] = fromOlder ? older.keys[i] : newer.keys[j];
+            start[k++] = m;
+            int limit = m + maxBucketSize;
+            if (fromOlder) {
+                for (int p = older.start[i]; p < older.start[i + 1] && m < limit; p++) {
+                    slots[m++] = older.slots[p];
+                }
+                i++;
+            }
+            if (fromNewer) {
+                for (int p = newer.start[j]; p < newer.start[j + 1] && m < limit; p++) {
+                    slots[m++] = newer.slots[p];
+                }
+                j++;
+            }
+        }
+        start[k] = m;
+        return new BucketRun(Arrays.copyOf(keys, k), Arrays.copyOf(start, k + 1), Arrays.copyOf(slots, m));
+    }
+
+    /**
+     * Stable bottom-up merge sort of parallel arrays by key.
+     */
+    private static void sortByKey(long[] keys, int[] values) {
+        int n = keys.length;
+        long[] srcKeys = keys;
+        int[] srcValues = values;
+        long[] dstKeys = new long[n];
+        int[] dstValues = new int[n];
+        for (int width = 1; width < n; width <<= 1) {
+            for (int lo = 0; lo < n; lo += width << 1) {
+                int mid = Math.min(lo + width, n);
+                int hi = Math.min(lo + (width << 1), n);
+                int i = lo;
+                int j = mid;
+                for (int o = lo; o < hi; o++) {
+                    if (j < hi && (i == mid || srcKeys[j] < srcKeys[i])) {
+                        dstKeys[o] = srcKeys[j];
+                        dstValues[o] = srcValues[j++];
+                    } else {
+                        dstKeys[o] = srcKeys[i];
+                        dstValues[o] = srcValues[i++];
+                    }
+                }
+            }
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            int[] swapValues = srcValues;
+            srcValues = dstValues;
+            dstValues = swapValues;
+        }
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, n);
+            System.arraycopy(srcValues, 0, values, 0, n);
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= bookIds.length) {
+            return;
+        }
+        int capacity = Math.max(required, bookIds.length + (bookIds.length >> 1));
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        features = Arrays.copyOf(features, capacity);
+        signatures = Arrays.copyOf(signatures, capacity * seeds.length);
+    }
+
+    private static String[] tokens(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return new String[0];
+        }
+        String[] words = NON_WORD.split(normalized);
+        int n = 0;
+        for (String word : words) {
+            if (word.length() >= MIN_TOKEN_LENGTH && !STOPWORDS.contains(word)) {
+                words[n++] = word;
+            }
+        }
+        return Arrays.copyOf(words, n);
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static int[] append(int[] values, int index, int value) {
+        if (index == values.length) {
+            values = Arrays.copyOf(values, values.length * 2);
+        }
+        values[index] = value;
+        return values;
+    }
+
+    private static int hash(String field, String token) {
+        return (int) mix(field.hashCode() * 0x9E3779B97F4A7C15L + token.hashCode());
+    }
+
+    /** SplitMix64 finalizer. */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Sorted, distinct band keys with their slots in CSR form ({@code start[k]..start[k + 1]}). */
+    private static final class BucketRun {
+        final long[] keys;
+        final int[] start;
+        final int[] slots;
+
+        BucketRun(long[] keys, int[] start, int[] slots) {
+            this.keys = keys;
+            this.start = start;
+            this.slots = slots;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package it.uninsubria.server.recommendation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import it.uninsubria.server.event.WriteEvent;
+
+/**
+ * A {@link CoOccurrenceIndex} plus the writes seen since it was built.
+ * <p>
+ * Every suggestion or shelved book turns into co-occurrence and popularity
+ * deltas, accumulated per book. After each batch of events, the neighbour
+ * list of every book that received a delta is recomputed once. The recomputed
+ * row contains the base neighbours, rescored from their recovered counts, and
+ * the books that gained co-occurrences. Only these patched rows and the new
+ * shelf memberships are read by lookups, from concurrent maps; lookups on
+ * untouched books go straight to the base index.
+ * <p>
+ * Two approximations hold until the next compaction or rebuild. A pair whose
+ * base count fell outside the stored top-N restarts from its delta. A book
+ * whose popularity changed is not rescored in the rows of its neighbours.
+ * <p>
+ * {@link #apply(List)} and {@link #compact()} must be called by one thread at
+ * a time; lookups are safe from any thread.
+ */
+final class LiveCoOccurrenceIndex {
+
+    private static final int[] NO_BOOKS = new int[0];
+
+    private final CoOccurrenceIndex base;
+    private final int neighboursPerBook;
+    private final int maxShelfSize;
+    private final float suggestionWeight;
+
+    // Stato del solo thread che applica gli eventi
+    private final Map<Integer, Map<Integer, Float>> coDelta = new HashMap<>();
+    private final Map<Integer, Float> popDelta = new HashMap<>();
+    // Letti dalle richieste: ogni valore è immutabile e viene sostituito per intero
+    private final Map<Integer, Row> rows = new ConcurrentHashMap<>();
+    private final Map<Integer, int[]> addedShelves = new ConcurrentHashMap<>();
+    private volatile int appliedEvents;
+
+    /**
+     * @param base the index the deltas apply to
+     * @param neighboursPerBook neighbours kept per book
+     * @param incrementalMaxShelfSize books added to larger libraries only update membership and popularity
+     * @param suggestionWeight weight of a suggestion relative to a shared shelf
+     */
+    LiveCoOccurrenceIndex(CoOccurrenceIndex base, int neighboursPerBook, int incrementalMaxShelfSize,
+                          float suggestionWeight) {
+        this.base = base;
+        this.neighboursPerBook = neighboursPerBook;
+        this.maxShelfSize = incrementalMaxShelfSize;
+        this.suggestionWeight = suggestionWeight;
+    }
+
+    private static final class Row {
+        final int[] ids;
+        final float[] scores;
+
+        Row(int[] ids, float[] scores) {
+            this.ids = ids;
+            this.scores = scores;
+        }
+    }
+
+    /**
+     * Applies a batch of events and patches the affected neighbour lists.
+     *
+     * @param events the events; kinds other than suggestions and shelved books are ignored
+     * @return the number of neighbour lists recomputed
+     */
+    int apply(List<WriteEvent> events) {
+        Set<Integer> dirty = new HashSet<>();
+        int applied = 0;
+        for (WriteEvent event : events) {
+            switch (event.getType()) {
+                case SUGGESTION_ADDED: {
+                    int a = event.getBookId();
+                    int c = event.getRelatedBookId();
+                    if (a == c) {
+                        break;
+                    }
+                    // Stessi pesi della build: pieno in avanti, metà all'indietro
+                    addCo(a, c, suggestionWeight);
+                    addCo(c, a, suggestionWeight / 2f);
+                    popDelta.merge(a, suggestionWeight, Float::sum);
+                    popDelta.merge(c, suggestionWeight, Float::sum);
+                    dirty.add(a);
+                    dirty.add(c);
+                    applied++;
+                    break;
+                }
+                case LIBRARY_BOOK_ADDED: {
+                    int lib = event.getLibraryId();
+                    int b = event.getBookId();
+                    if (inLibrary(lib, b)) {
+                        break;
+                    }
+                    int[] members = members(lib);
+                    popDelta.merge(b, 1f, Float::sum);
+                    if (members.length < maxShelfSize) {
+                        for (int m : members) {
+                            addCo(b, m, 1f);
+                            addCo(m, b, 1f);
+                            dirty.add(m);
+                        }
+                    }
+                    dirty.add(b);
+                    addedShelves.put(lib, insertSorted(addedShelves.getOrDefault(lib, NO_BOOKS), b));
+                    applied++;
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        for (int book : dirty) {
+            rows.put(book, patchRow(book));
+        }
+        appliedEvents += applied;
+        return dirty.size();
+    }
+
+    private void addCo(int a, int c, float weight) {
+        coDelta.computeIfAbsent(a, k -> new HashMap<>()).merge(c, weight, Float::sum);
+    }
+
+    private float popularity(int bookId) {
+        return base.popularity(bookId) + popDelta.getOrDefault(bookId, 0f);
+    }
+
+    /**
+     * Recomputes the neighbour list of a book from the base row and the deltas.
+     */
+    private Row patchRow(int a) {
+        Map<Integer, Float> deltas = coDelta.getOrDefault(a, Map.of());
+        float basePopA = base.popularity(a);
+        float popA = popularity(a);
+        TopNHeap top = new TopNHeap(neighboursPerBook);
+
+        int row = base.rowOf(a);
+        if (row >= 0) {
+            int[] neighbours = base.neighbours();
+            float[] scores = base.scores();
+            for (int p = base.neighbourStart()[row]; p < base.neighbourStart()[row + 1]; p++) {
+                int c = neighbours[p];
+                // Il conteggio di base si ricava invertendo la normalizzazione della build
+                float co = scores[p] * (float) Math.sqrt(basePopA * base.popularity(c)) + deltas.getOrDefault(c, 0f);
+                top.offer(c, co / (float) Math.sqrt(popA * popularity(c)));
+            }
+        }
+        for (Map.Entry<Integer, Float> delta : deltas.entrySet()) {
+            int c = delta.getKey();
+            if (row >= 0 && base.score(a, c) > 0f) {
+                continue;
+            }
+            top.offer(c, delta.getValue() / (float) Math.sqrt(popA * popularity(c)));
+        }
+        top.sort();
+        return new Row(top.ids(), top.scores());
+    }
+
+    /**
+     * Returns the books most related to a base book, excluding the books in the
+     * given library, patched rows first.
+     *
+     * @param baseBookId the base book
+     * @param libraryId the library whose books are excluded
+     * @param topN maximum number of results
+     * @return related book ids, best first
+     */
+    int[] recommend(int baseBookId, int libraryId, int topN) {
+        Row row = rows.get(baseBookId);
+        int[] added = addedShelves.get(libraryId);
+        if (row == null && added == null) {
+            return base.recommend(baseBookId, libraryId, topN);
+        }
+        int[] candidates;
+        if (row != null) {
+            candidates = row.ids;
+        } else {
+            // Riga non toccata: si chiede alla base qualche candidato in più per coprire le esclusioni
+            candidates = base.recommend(baseBookId, libraryId, topN + added.length);
+        }
+        int[] result = new int[Math.min(topN, candidates.length)];
+        int count = 0;
+        for (int p = 0; p < candidates.length && count < result.length; p++) {
+            if (!inLibrary(libraryId, candidates[p])) {
+                result[count++] = candidates[p];
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    boolean inLibrary(int libraryId, int bookId) {
+        if (base.inLibrary(libraryId, bookId)) {
+            return true;
+        }
+        int[] added = addedShelves.get(libraryId);
+        return added != null && Arrays.binarySearch(added, bookId) >= 0;
+    }
+
+    /**
+     * Returns the score of {@code related} in the neighbour list of {@code baseBookId}.
+     */
+    float score(int baseBookId, int related) {
+        Row row = rows.get(baseBookId);
+        if (row == null) {
+            return base.score(baseBookId, related);
+        }
+        for (int p = 0; p < row.ids.length; p++) {
+            if (row.ids[p] == related) {
+                return row.scores[p];
+            }
+        }
+        return 0f;
+    }
+
+    private int[] members(int libraryId) {
+        int[] built = base.libraryMembers(libraryId);
+        int[] added = addedShelves.getOrDefault(libraryId, NO_BOOKS);
+        if (added.length == 0) {
+            return built;
+        }
+        int[] all = Arrays.copyOf(built, built.length + added.length);
+        System.arraycopy(added, 0, all, built.length, added.length);
+        return all;
+    }
+
+    private static int[] insertSorted(int[] sorted, int value) {
+        int pos = -Arrays.binarySearch(sorted, value) - 1;
+        int[] out = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, out, 0, pos);
+        out[pos] = value;
+        System.arraycopy(sorted, pos, out, pos + 1, sorted.length - pos);
+        return out;
+    }
+
+    /**
+     * Folds the patched rows, popularity deltas and shelf additions into a new
+     * immutable index, so they can be checkpointed and the deltas dropped.
+     *
+     * @return the merged index; the base itself if no event was applied
+     */
+    CoOccurrenceIndex compact() {
+        if (appliedEvents == 0) {
+            return base;
+        }
+        int[] baseIds = base.bookIds();
+        int[] ids = Arrays.copyOf(baseIds, baseIds.length + popDelta.size());
+        int k = baseIds.length;
+        for (int id : popDelta.keySet()) {
+            ids[k++] = id;
+        }
+        ids = CoOccurrenceIndex.sortedUnique(ids);
+        int n = ids.length;
+
+        int[] start = new int[n + 1];
+        float[] pop = new float[n];
+        for (int i = 0; i < n; i++) {
+            Row row = rows.get(ids[i]);
+            int baseRow = base.rowOf(ids[i]);
+            int length = row != null ? row.ids.length
+                : baseRow >= 0 ? base.neighbourStart()[baseRow + 1] - base.neighbourStart()[baseRow] : 0;
+            start[i + 1] = start[i] + length;
+            pop[i] = popularity(ids[i]);
+        }
+        int[] neighbours = new int[start[n]];
+        float[] scores = new float[start[n]];
+        for (int i = 0; i < n; i++) {
+            Row row = rows.get(ids[i]);
+            if (row != null) {
+                System.arraycopy(row.ids, 0, neighbours, start[i], row.ids.length);
+                System.arraycopy(row.scores, 0, scores, start[i], row.scores.length);
+            } else if (start[i + 1] > start[i]) {
+                int from = base.neighbourStart()[base.rowOf(ids[i])];
+                System.arraycopy(base.neighbours(), from, neighbours, start[i], start[i + 1] - start[i]);
+                System.arraycopy(base.scores(), from, scores, start[i], start[i + 1] - start[i]);
+            }
+        }
+
+        int[] baseLibs = base.libraryIds();
+        int[] libs = Arrays.copyOf(baseLibs, baseLibs.length + addedShelves.size());
+        k = baseLibs.length;
+        for (int lib : addedShelves.keySet()) {
+            libs[k++] = lib;
+        }
+        libs = CoOccurrenceIndex.sortedUnique(libs);
+        int[] libStart = new int[libs.length + 1];
+        int[][] libMembers = new int[libs.length][];
+        for (int l = 0; l < libs.length; l++) {
+            int[] all = members(libs[l]);
+            Arrays.sort(all);
+            libMembers[l] = all;
+            libStart[l + 1] = libStart[l] + all.length;
+        }
+        int[] libraryBooks = new int[libStart[libs.length]];
+        for (int l = 0; l < libs.length; l++) {
+            System.arraycopy(libMembers[l], 0, libraryBooks, libStart[l], libMembers[l].length);
+        }
+        return new CoOccurrenceIndex(ids, start, neighbours, scores, pop, libs, libStart, libraryBooks);
+    }
+
+    /**
+     * @return the index the deltas apply to
+     */
+    CoOccurrenceIndex base() {
+        return base;
+    }
+
+    /**
+     * @return number of events applied on top of the base index
+     */
+    int appliedEvents() {
+        return appliedEvents;
+    }
+}
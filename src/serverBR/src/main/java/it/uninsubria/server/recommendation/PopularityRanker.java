@@ -0,0 +1,169 @@
+package it.uninsubria.server.recommendation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import it.uninsubria.server.dao.BookSignals;
+import it.uninsubria.server.dao.RecommendationDAO;
+import it.uninsubria.server.event.WriteEvent;
+import it.uninsubria.server.event.WriteEventListener;
+import it.uninsubria.server.monitoring.MonitoringService;
+import it.uninsubria.server.util.ConnectionPoolManager;
+import it.uninsubria.shared.utils.AppConstants;
+
+/**
+ * Serves the catalog ranked by popularity from an in-memory
+ * {@link PopularityRanking}.
+ * <p>
+ * The ranking is reloaded periodically in the background from the review,
+ * library and suggestion aggregates (see {@link PopularityTable} for the
+ * score) and published with an atomic swap. Reviews arriving from the
+ * {@link it.uninsubria.server.event.WriteEventBus} move the reviewed book to
+ * its new rank on the dispatcher thread, so a page read right after a review
+ * already reflects it. Shelved and suggested books only count from the next
+ * reload: their events may repeat an existing row and would inflate the
+ * counters. Until the first load completes the ranking is empty.
+ */
+public class PopularityRanker implements WriteEventListener {
+
+    private static final Logger logger = Logger.getLogger(PopularityRanker.class.getName());
+
+    private final RecommendationDAO dao;
+    private final AtomicReference<PopularityRanking> ranking = new AtomicReference<>(PopularityRanking.empty());
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    // Serializza l'applicazione degli eventi e la sostituzione della tabella
+    private final Object updateLock = new Object();
+    private PopularityTable table;
+    // Eventi ricevuti durante un ricaricamento, riapplicati sulla nuova tabella
+    private List<WriteEvent> pendingDuringRefresh;
+    private ScheduledExecutorService scheduler;
+
+    public PopularityRanker(RecommendationDAO dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Starts the periodic reload; the first one runs immediately.
+     *
+     * @param periodMs interval between reloads, in milliseconds
+     */
+    public synchronized void start(long periodMs) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(() -> {
+                ConnectionPoolManager.markBackgroundThread();
+                r.run();
+            }, "PopularityRefresh");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                refresh();
+            } catch (Exception e) {
+                logger.warning("Popularity ranking refresh failed: " + e.getMessage());
+            }
+        }, 0, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic reload.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Reloads the signals, ranks the catalog and publishes the ranking. A call
+     * made while another reload is running returns without doing anything.
+     *
+     * @return true if this call reloaded the ranking
+     * @throws Exception if the signals cannot be loaded
+     */
+    public boolean refresh() throws Exception {
+        if (!refreshing.compareAndSet(false, true)) {
+            return false;
+        }
+        synchronized (updateLock) {
+            pendingDuringRefresh = new ArrayList<>();
+        }
+        try {
+            long start = System.nanoTime();
+            BookSignals signals = dao.loadBookSignals();
+            synchronized (updateLock) {
+                // La versione continua da quella servita, così le cache delle pagine non si confondono
+                PopularityTable fresh = new PopularityTable(signals,
+                    AppConstants.Recommendation.POPULARITY_PRIOR_WEIGHT,
+                    AppConstants.Recommendation.POPULARITY_LIBRARY_WEIGHT,
+                    AppConstants.Recommendation.POPULARITY_SUGGESTION_WEIGHT,
+                    ranking.get().getVersion() + 1);
+                applyReviews(fresh, pendingDuringRefresh);
+                table = fresh;
+                ranking.set(fresh.snapshot());
+            }
+
+            long elapsed = System.nanoTime() - start;
+            MonitoringService.getInstance().getRegistry()
+                .timer("recommendation.popularity.refresh")
+                .record(elapsed, TimeUnit.NANOSECONDS);
+            logger.info("Popularity ranking refreshed: " + signals.size() + " books in "
+                + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms");
+            return true;
+        } finally {
+            synchronized (updateLock) {
+                pendingDuringRefresh = null;
+            }
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * Moves the reviewed books to their new rank. Called by the event bus
+     * dispatcher, never on a request thread.
+     *
+     * @param events the events of one batch
+     */
+    @Override
+    public void onEvents(List<WriteEvent> events) {
+        long start = System.nanoTime();
+        synchronized (updateLock) {
+            if (pendingDuringRefresh != null) {
+                pendingDuringRefresh.addAll(events);
+            }
+            if (table != null && applyReviews(table, events)) {
+                ranking.set(table.snapshot());
+            }
+        }
+        MonitoringService.getInstance().getRegistry()
+            .timer("recommendation.popularity.incremental")
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private static boolean applyReviews(PopularityTable target, List<WriteEvent> events) {
+        boolean moved = false;
+        for (WriteEvent event : events) {
+            if (event.getType() == WriteEvent.Type.REVIEW_ADDED) {
+                moved |= target.addReview(event.getBookId(), event.getScore());
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * @return the ranking currently served
+     */
+    public PopularityRanking getRanking() {
+        return ranking.get();
+    }
+}
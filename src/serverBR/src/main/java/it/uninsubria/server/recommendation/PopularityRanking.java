@@ -0,0 +1,51 @@
+package it.uninsubria.server.recommendation;
+
+import java.util.Arrays;
+
+/**
+ * Immutable snapshot of the catalog ranked by popularity, best first.
+ * <p>
+ * The version changes whenever the order changes, so callers can key caches
+ * of pages on it. A review that leaves the order as it is does not publish a
+ * new snapshot, so the scores may lag behind until the next change.
+ */
+public final class PopularityRanking {
+
+    private static final PopularityRanking EMPTY = new PopularityRanking(new int[0], new float[0], 0L);
+
+    private final int[] bookIds;
+    private final float[] scores;
+    private final long version;
+
+    PopularityRanking(int[] bookIds, float[] scores, long version) {
+        this.bookIds = bookIds;
+        this.scores = scores;
+        this.version = version;
+    }
+
+    /**
+     * @return the ranking served before the first load
+     */
+    public static PopularityRanking empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns a page of the ranking.
+     *
+     * @param offset the number of books to skip
+     * @param limit the maximum number of books to return
+     * @return book ids, most popular first; empty past the end
+     */
+    public int[] page(int offset, int limit) {
+        if (offset < 0 || limit <= 0 || offset >= bookIds.length) {
+            return new int[0];
+        }
+        return Arrays.copyOfRange(bookIds, offset, (int) Math.min(bookIds.length, (long) offset + limit));
+    }
+
+    public int size() { return bookIds.length; }
+    public int bookAt(int rank) { return bookIds[rank]; }
+    public float scoreAt(int rank) { return scores[rank]; }
+    public long getVersion() { return version; }
+}
@@ -0,0 +1,234 @@
+package it.uninsubria.server.recommendation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import it.uninsubria.server.dao.BookSignals;
+
+/**
+ * Mutable popularity scores of the catalog, kept sorted as reviews arrive.
+ * <p>
+ * The score of a book is its Bayesian average review score times the log of
+ * its engagement:
+ * <pre>
+ *   quality    = (C * m + sum of scores) / (C + reviews)
+ *   engagement = reviews + wL * libraries + wS * suggestions
+ *   score      = quality * log(1 + engagement)
+ * </pre>
+ * where {@code m} is the mean score of all reviews and {@code C} the prior
+ * weight: books with few reviews are pulled towards the mean instead of
+ * ranking first on a single five. Ties are broken by book id.
+ * <p>
+ * Counters live in primitive arrays indexed by a dense slot per book;
+ * {@code order} holds the slots by rank and {@code position} the rank of
+ * each slot. A review changes the score of one book, which is moved to its
+ * new rank with a binary search and one array shift. The mean stays the one
+ * computed at load time until the next full load.
+ * <p>
+ * Not thread safe: one writer at a time, readers use {@link #snapshot()}.
+ */
+final class PopularityTable {
+
+    /** Mean used when no review exists yet: the middle of the 1-5 scale. */
+    private static final float DEFAULT_MEAN = 3f;
+
+    private final float priorWeight;
+    private final float libraryWeight;
+    private final float suggestionWeight;
+    private final float mean;
+
+    private final Map<Integer, Integer> slots;
+    private int[] bookIds;
+    private int[] reviews;
+    private double[] scoreSums;
+    private int[] libraries;
+    private int[] suggestions;
+    private float[] scores;
+    private int[] order;
+    private int[] position;
+    private int size;
+    private long version;
+
+    /**
+     * Scores and sorts the loaded signals.
+     *
+     * @param signals per-book signals, one entry per book
+     * @param priorWeight reviews worth of prior pulling scores towards the mean
+     * @param libraryWeight weight of a library holding the book, relative to a review
+     * @param suggestionWeight weight of a suggestion of the book, relative to a review
+     * @param version version of the first snapshot
+     */
+    PopularityTable(BookSignals signals, float priorWeight, float libraryWeight, float suggestionWeight,
+                    long version) {
+        this.priorWeight = priorWeight;
+        this.libraryWeight = libraryWeight;
+        this.suggestionWeight = suggestionWeight;
+        this.version = version;
+
+        int n = signals.size();
+        long totalReviews = 0;
+        double totalScore = 0;
+        for (int i = 0; i < n; i++) {
+            totalReviews += signals.reviews(i);
+            totalScore += signals.scoreSum(i);
+        }
+        this.mean = totalReviews > 0 ? (float) (totalScore / totalReviews) : DEFAULT_MEAN;
+
+        // Ordinamento su chiavi primitive: punteggio decrescente nei 32 bit alti, id crescente nei bassi.
+        // I punteggi non sono negativi, quindi i loro bit crescono con il valore
+        Map<Integer, Integer> loaded = new HashMap<>(n * 2);
+        float[] unsorted = new float[n];
+        long[] keys = new long[n];
+        for (int i = 0; i < n; i++) {
+            unsorted[i] = score(signals.reviews(i), signals.scoreSum(i), signals.libraries(i), signals.suggestions(i));
+            keys[i] = ((long) (Integer.MAX_VALUE - Float.floatToIntBits(unsorted[i])) << 32)
+                | (signals.bookId(i) & 0xFFFFFFFFL);
+            loaded.put(signals.bookId(i), i);
+        }
+        Arrays.sort(keys);
+
+        int capacity = Math.max(16, n);
+        this.slots = new HashMap<>(capacity * 2);
+        this.bookIds = new int[capacity];
+        this.reviews = new int[capacity];
+        this.scoreSums = new double[capacity];
+        this.libraries = new int[capacity];
+        this.suggestions = new int[capacity];
+        this.scores = new float[capacity];
+        this.order = new int[capacity];
+        this.position = new int[capacity];
+        // Gli slot seguono l'ordine iniziale: lo slot r è al rango r
+        for (int rank = 0; rank < n; rank++) {
+            int i = loaded.get((int) keys[rank]);
+            bookIds[rank] = signals.bookId(i);
+            reviews[rank] = signals.reviews(i);
+            scoreSums[rank] = signals.scoreSum(i);
+            libraries[rank] = signals.libraries(i);
+            suggestions[rank] = signals.suggestions(i);
+            scores[rank] = unsorted[i];
+            order[rank] = rank;
+            position[rank] = rank;
+            slots.put(bookIds[rank], rank);
+        }
+        this.size = n;
+    }
+
+    private float score(int reviewCount, double scoreSum, int libraryCount, int suggestionCount) {
+        double quality = (priorWeight * mean + scoreSum) / (priorWeight + reviewCount);
+        double engagement = reviewCount + libraryWeight * libraryCount + suggestionWeight * suggestionCount;
+        return (float) (quality * Math.log1p(engagement));
+    }
+
+    /**
+     * Adds a review and moves the book to its new rank.
+     *
+     * @param bookId the reviewed book, added to the table if unknown
+     * @param finalScore the final score of the review
+     * @return true if the order changed
+     */
+    boolean addReview(int bookId, float finalScore) {
+        Integer existing = slots.get(bookId);
+        int slot = existing != null ? existing : append(bookId);
+        reviews[slot]++;
+        scoreSums[slot] += finalScore;
+        scores[slot] = score(reviews[slot], scoreSums[slot], libraries[slot], suggestions[slot]);
+        boolean moved = reposition(slot) || existing == null;
+        if (moved) {
+            version++;
+        }
+        return moved;
+    }
+
+    private int append(int bookId) {
+        if (size == bookIds.length) {
+            int capacity = bookIds.length + (bookIds.length >> 1);
+            bookIds = Arrays.copyOf(bookIds, capacity);
+            reviews = Arrays.copyOf(reviews, capacity);
+            scoreSums = Arrays.copyOf(scoreSums, capacity);
+            libraries = Arrays.copyOf(libraries, capacity);
+            suggestions = Arrays.copyOf(suggestions, capacity);
+            scores = Arrays.copyOf(scores, capacity);
+            order = Arrays.copyOf(order, capacity);
+            position = Arrays.copyOf(position, capacity);
+        }
+        int slot = size++;
+        bookIds[slot] = bookId;
+        order[slot] = slot;
+        position[slot] = slot;
+        slots.put(bookId, slot);
+        return slot;
+    }
+
+    private boolean before(int a, int b) {
+        return scores[a] > scores[b] || (scores[a] == scores[b] && bookIds[a] < bookIds[b]);
+    }
+
+    /**
+     * Moves a slot whose score changed to its rank, shifting the books in between by one.
+     */
+    private boolean reposition(int slot) {
+        int from = position[slot];
+        int to;
+        if (from > 0 && before(slot, order[from - 1])) {
+            // Primo rango in [0, from) che il libro supera
+            int lo = 0;
+            int hi = from - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (before(slot, order[mid])) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            to = lo;
+            System.arraycopy(order, to, order, to + 1, from - to);
+        } else if (from < size - 1 && before(order[from + 1], slot)) {
+            // Ultimo rango in (from, size) che precede il libro
+            int lo = from + 1;
+            int hi = size - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (before(order[mid], slot)) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            to = lo;
+            System.arraycopy(order, from + 1, order, from, to - from);
+        } else {
+            return false;
+        }
+        order[to] = slot;
+        for (int r = Math.min(from, to); r <= Math.max(from, to); r++) {
+            position[order[r]] = r;
+        }
+        return true;
+    }
+
+    /**
+     * @return a copy of the current ranking
+     */
+    PopularityRanking snapshot() {
+        int[] ids = new int[size];
+        float[] ranked = new float[size];
+        for (int r = 0; r < size; r++) {
+            ids[r] = bookIds[order[r]];
+            ranked[r] = scores[order[r]];
+        }
+        return new PopularityRanking(ids, ranked, version);
+    }
+
+    /**
+     * @return the mean review score the prior pulls towards
+     */
+    float mean() {
+        return mean;
+    }
+
+    long version() {
+        return version;
+    }
+}
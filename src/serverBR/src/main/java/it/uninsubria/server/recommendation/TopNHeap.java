@@ -0,0 +1,100 @@
+package it.uninsubria.server.recommendation;
+
+import java.util.Arrays;
+
+/**
+ * Bounded min-heap over primitive {@code (id, score)} pairs that keeps the
+ * best {@code capacity} entries offered. Ties on score prefer the lower id, so
+ * results are deterministic.
+ */
+final class TopNHeap {
+
+    private final int[] ids;
+    private final float[] scores;
+    private int size;
+
+    TopNHeap(int capacity) {
+        this.ids = new int[Math.max(0, capacity)];
+        this.scores = new float[ids.length];
+    }
+
+    /**
+     * Offers an entry; it is kept if the heap is not full or it beats the worst kept entry.
+     */
+    void offer(int id, float score) {
+        if (size < ids.length) {
+            ids[size] = id;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (size > 0 && worse(0, id, score)) {
+            ids[0] = id;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Sorts the kept entries best first. The heap must not be offered more
+     * entries afterwards.
+     *
+     * @return the number of kept entries
+     */
+    int sort() {
+        // Heap sort: estraendo il minimo in coda l'array resta in ordine decrescente
+        for (int last = size - 1; last > 0; last--) {
+            swap(0, last);
+            siftDown(0, last);
+        }
+        return size;
+    }
+
+    int[] ids() {
+        return size == ids.length ? ids : Arrays.copyOf(ids, size);
+    }
+
+    float[] scores() {
+        return size == scores.length ? scores : Arrays.copyOf(scores, size);
+    }
+
+    /** Whether entry {@code i} ranks below {@code (id, score)}. */
+    private boolean worse(int i, int id, float score) {
+        return scores[i] < score || (scores[i] == score && ids[i] > id);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(i, ids[parent], scores[parent])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int n) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) {
+                return;
+            }
+            if (child + 1 < n && worse(child + 1, ids[child], scores[child])) {
+                child++;
+            }
+            if (!worse(child, ids[i], scores[i])) {
+                return;
+            }
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int id = ids[i];
+        ids[i] = ids[j];
+        ids[j] = id;
+        float s = scores[i];
+        scores[i] = scores[j];
+        scores[j] = s;
+    }
+}
@@ -0,0 +1,159 @@
+package it.uninsubria.server.recommendation;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+import it.uninsubria.server.event.WriteEvent;
+import it.uninsubria.server.event.WriteEventListener;
+import it.uninsubria.server.monitoring.MonitoringService;
+import it.uninsubria.shared.model.TrendingWindow;
+import it.uninsubria.shared.utils.AppConstants;
+
+/**
+ * Tracks what readers are shelving and reviewing right now.
+ * <p>
+ * Reviews and books added to libraries arriving from the
+ * {@link it.uninsubria.server.event.WriteEventBus} are counted per book in
+ * exponentially decayed {@link TrendingCounters}, one per
+ * {@link TrendingWindow}, on the dispatcher thread. After each batch an
+ * immutable {@link TrendingRanking} is published through a volatile field:
+ * reads never lock and never wait for the writer. The counters are saved at
+ * shutdown and reloaded at startup.
+ */
+public class TrendingAggregator implements WriteEventListener {
+
+    private static final Logger logger = Logger.getLogger(TrendingAggregator.class.getName());
+
+    private final Path checkpointFile;
+    private final LongSupplier clock;
+    // Serializza eventi, caricamento e salvataggio; le letture usano solo lo snapshot
+    private final Object updateLock = new Object();
+    private TrendingCounters counters;
+    private volatile TrendingRanking ranking = TrendingRanking.empty();
+
+    /**
+     * @param checkpointFile file the counters are saved to, or null to keep them in memory only
+     */
+    public TrendingAggregator(Path checkpointFile) {
+        this(checkpointFile, System::currentTimeMillis);
+    }
+
+    TrendingAggregator(Path checkpointFile, LongSupplier clock) {
+        this.checkpointFile = checkpointFile;
+        this.clock = clock;
+        this.counters = new TrendingCounters(AppConstants.Recommendation.TRENDING_CANDIDATES, clock.getAsLong());
+    }
+
+    /**
+     * Reloads the counters saved at the last shutdown, if any.
+     */
+    public void start() {
+        if (checkpointFile == null || !Files.exists(checkpointFile)) {
+            return;
+        }
+        try {
+            TrendingCounters restored = TrendingCountersStore.load(checkpointFile,
+                AppConstants.Recommendation.TRENDING_CANDIDATES);
+            synchronized (updateLock) {
+                counters = restored;
+                ranking = restored.snapshot();
+            }
+            logger.info("Trending counters loaded from " + checkpointFile + " (" + restored.size() + " books)");
+        } catch (Exception e) {
+            logger.warning("Could not load trending counters from " + checkpointFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Saves the counters. Call after the event bus has stopped, so no event
+     * arrives after the save.
+     */
+    public void stop() {
+        if (checkpointFile == null) {
+            return;
+        }
+        try {
+            synchronized (updateLock) {
+                TrendingCountersStore.save(counters, checkpointFile);
+            }
+        } catch (Exception e) {
+            logger.warning("Could not save trending counters to " + checkpointFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Clears the counters and deletes the saved ones; used after the database
+     * has been reset.
+     */
+    public void reset() {
+        synchronized (updateLock) {
+            counters = new TrendingCounters(AppConstants.Recommendation.TRENDING_CANDIDATES, clock.getAsLong());
+            ranking = TrendingRanking.empty();
+            if (checkpointFile != null) {
+                try {
+                    Files.deleteIfExists(checkpointFile);
+                } catch (IOException e) {
+                    logger.warning("Could not delete trending counters " + checkpointFile + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts reviews and shelved books. Called by the event bus dispatcher,
+     * never on a request thread.
+     *
+     * @param events the events of one batch
+     */
+    @Override
+    public void onEvents(List<WriteEvent> events) {
+        long start = System.nanoTime();
+        synchronized (updateLock) {
+            long now = clock.getAsLong();
+            boolean counted = false;
+            for (WriteEvent event : events) {
+                switch (event.getType()) {
+                    case REVIEW_ADDED:
+                        counters.add(event.getBookId(), AppConstants.Recommendation.TRENDING_REVIEW_WEIGHT, now);
+                        counted = true;
+                        break;
+                    case LIBRARY_BOOK_ADDED:
+                        counters.add(event.getBookId(), AppConstants.Recommendation.TRENDING_LIBRARY_WEIGHT, now);
+                        counted = true;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            if (counted) {
+                ranking = counters.snapshot();
+            }
+        }
+        MonitoringService.getInstance().getRegistry()
+            .timer("recommendation.trending.incremental")
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the books with the most recent activity in a window.
+     *
+     * @param window the time scale of the activity
+     * @param k maximum number of results
+     * @return book ids, most active first; books whose activity has faded are left out
+     */
+    public int[] getTrendingBooks(TrendingWindow window, int k) {
+        return ranking.top(window, k, clock.getAsLong(), AppConstants.Recommendation.TRENDING_MIN_SCORE);
+    }
+
+    /**
+     * @return the ranking currently served
+     */
+    public TrendingRanking getRanking() {
+        return ranking;
+    }
+}
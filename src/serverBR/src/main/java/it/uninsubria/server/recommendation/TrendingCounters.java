@@ -0,0 +1,253 @@
+package it.uninsubria.server.recommendation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import it.uninsubria.shared.model.TrendingWindow;
+
+/**
+ * Exponentially decayed activity counters per book, one per
+ * {@link TrendingWindow}, with the heaviest books of each window tracked in
+ * an indexed min-heap.
+ * <p>
+ * The decayed count of a book at time {@code t} is
+ * {@code sum(weight * exp(-rate * (t - t_event)))}. Counters are stored
+ * relative to a landmark time {@code L} as
+ * {@code sum(weight * exp(rate * (t_event - L)))}: every counter of a window
+ * shares the same factor {@code exp(-rate * (t - L))}, so an update is one
+ * add and the order never needs the decay applied. When the stored values
+ * grow too large the landmark moves forward and every counter is rescaled.
+ * <p>
+ * Stored values only grow, so the books outside a heap never outweigh its
+ * minimum and each heap holds the exact top {@code candidates} books of its
+ * window.
+ * <p>
+ * Not thread safe: one writer at a time, readers use {@link #snapshot()}.
+ */
+final class TrendingCounters {
+
+    private static final TrendingWindow[] WINDOWS = TrendingWindow.values();
+    // exp(300) ~ 1e130: i conteggi restano lontani dall'overflow dei double
+    private static final double MAX_EXPONENT = 300.0;
+
+    private final int candidates;
+    private final double[] rates;
+    private long landmark;
+
+    private final Map<Integer, Integer> slots = new HashMap<>();
+    private int[] bookIds;
+    private final double[][] counters;
+    private int size;
+
+    private final int[][] heaps;
+    private final int[] heapSizes;
+    private final int[][] heapPositions;
+
+    /**
+     * @param candidates books tracked per window
+     * @param landmark initial landmark time, in milliseconds
+     */
+    TrendingCounters(int candidates, long landmark) {
+        this.candidates = candidates;
+        this.landmark = landmark;
+        this.rates = new double[WINDOWS.length];
+        for (TrendingWindow window : WINDOWS) {
+            rates[window.ordinal()] = Math.log(2) / window.getHalfLifeMillis();
+        }
+        int capacity = 256;
+        this.bookIds = new int[capacity];
+        this.counters = new double[WINDOWS.length][capacity];
+        this.heaps = new int[WINDOWS.length][candidates];
+        this.heapSizes = new int[WINDOWS.length];
+        this.heapPositions = new int[WINDOWS.length][capacity];
+    }
+
+    /**
+     * Restores counters saved with {@link #bookIds()}, {@link #counters(TrendingWindow)}
+     * and {@link #landmark()}.
+     */
+    static TrendingCounters restore(int candidates, long landmark, int[] bookIds, double[][] stored) {
+        TrendingCounters restored = new TrendingCounters(candidates, landmark);
+        for (int i = 0; i < bookIds.length; i++) {
+            int slot = restored.slot(bookIds[i]);
+            for (int w = 0; w < WINDOWS.length; w++) {
+                restored.counters[w][slot] = stored[w][i];
+                restored.offer(w, slot);
+            }
+        }
+        return restored;
+    }
+
+    /**
+     * Counts an event for a book.
+     *
+     * @param bookId the book
+     * @param weight weight of the event
+     * @param now time of the event, in milliseconds
+     */
+    void add(int bookId, float weight, long now) {
+        if (maxExponent(now) > MAX_EXPONENT) {
+            rescale(now);
+        }
+        int slot = slot(bookId);
+        for (int w = 0; w < WINDOWS.length; w++) {
+            counters[w][slot] += weight * Math.exp(rates[w] * (now - landmark));
+            offer(w, slot);
+        }
+    }
+
+    private double maxExponent(long now) {
+        double max = 0;
+        for (double rate : rates) {
+            max = Math.max(max, rate * (now - landmark));
+        }
+        return max;
+    }
+
+    /**
+     * Moves the landmark to {@code now}, multiplying every counter by its decay
+     * since the old landmark; the order inside each window does not change.
+     */
+    private void rescale(long now) {
+        for (int w = 0; w < WINDOWS.length; w++) {
+            double factor = Math.exp(-rates[w] * (now - landmark));
+            double[] window = counters[w];
+            for (int slot = 0; slot < size; slot++) {
+                window[slot] *= factor;
+            }
+        }
+        landmark = now;
+    }
+
+    private int slot(int bookId) {
+        Integer existing = slots.get(bookId);
+        if (existing != null) {
+            return existing;
+        }
+        if (size == bookIds.length) {
+            int capacity = bookIds.length + (bookIds.length >> 1);
+            bookIds = Arrays.copyOf(bookIds, capacity);
+            for (int w = 0; w < WINDOWS.length; w++) {
+                counters[w] = Arrays.copyOf(counters[w], capacity);
+                heapPositions[w] = Arrays.copyOf(heapPositions[w], capacity);
+            }
+        }
+        int slot = size++;
+        bookIds[slot] = bookId;
+        for (int w = 0; w < WINDOWS.length; w++) {
+            heapPositions[w][slot] = -1;
+        }
+        slots.put(bookId, slot);
+        return slot;
+    }
+
+    /**
+     * Updates the heap of a window after the counter of a slot grew.
+     */
+    private void offer(int w, int slot) {
+        int[] heap = heaps[w];
+        int[] positions = heapPositions[w];
+        double[] values = counters[w];
+        int pos = positions[slot];
+        if (pos >= 0) {
+            siftDown(w, pos);
+        } else if (heapSizes[w] < candidates) {
+            pos = heapSizes[w]++;
+            heap[pos] = slot;
+            positions[slot] = pos;
+            siftUp(w, pos);
+        } else if (candidates > 0 && values[slot] > values[heap[0]]) {
+            positions[heap[0]] = -1;
+            heap[0] = slot;
+            positions[slot] = 0;
+            siftDown(w, 0);
+        }
+    }
+
+    private void siftUp(int w, int pos) {
+        int[] heap = heaps[w];
+        double[] values = counters[w];
+        int slot = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (values[heap[parent]] <= values[slot]) {
+                break;
+            }
+            move(w, heap[parent], pos);
+            pos = parent;
+        }
+        move(w, slot, pos);
+    }
+
+    private void siftDown(int w, int pos) {
+        int[] heap = heaps[w];
+        double[] values = counters[w];
+        int n = heapSizes[w];
+        int slot = heap[pos];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= n) {
+                break;
+            }
+            if (child + 1 < n && values[heap[child + 1]] < values[heap[child]]) {
+                child++;
+            }
+            if (values[heap[child]] >= values[slot]) {
+                break;
+            }
+            move(w, heap[child], pos);
+            pos = child;
+        }
+        move(w, slot, pos);
+    }
+
+    private void move(int w, int slot, int pos) {
+        heaps[w][pos] = slot;
+        heapPositions[w][slot] = pos;
+    }
+
+    /**
+     * @return the tracked books of every window, heaviest first
+     */
+    TrendingRanking snapshot() {
+        int[][] ids = new int[WINDOWS.length][];
+        double[][] weights = new double[WINDOWS.length][];
+        for (int w = 0; w < WINDOWS.length; w++) {
+            int n = heapSizes[w];
+            double[] values = counters[w];
+            // Al più candidates libri per finestra: ordinarli a ogni batch costa poco
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                order[i] = heaps[w][i];
+            }
+            Arrays.sort(order, (a, b) -> {
+                int byWeight = Double.compare(values[b], values[a]);
+                return byWeight != 0 ? byWeight : Integer.compare(bookIds[a], bookIds[b]);
+            });
+            ids[w] = new int[n];
+            weights[w] = new double[n];
+            for (int i = 0; i < n; i++) {
+                ids[w][i] = bookIds[order[i]];
+                weights[w][i] = values[order[i]];
+            }
+        }
+        return new TrendingRanking(ids, weights, rates.clone(), landmark);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long landmark() {
+        return landmark;
+    }
+
+    int[] bookIds() {
+        return Arrays.copyOf(bookIds, size);
+    }
+
+    double[] counters(TrendingWindow window) {
+        return Arrays.copyOf(counters[window.ordinal()], size);
+    }
+}
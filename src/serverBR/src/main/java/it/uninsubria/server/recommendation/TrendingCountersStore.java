@@ -0,0 +1,94 @@
+package it.uninsubria.server.recommendation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+
+import it.uninsubria.shared.model.TrendingWindow;
+
+/**
+ * Saves {@link TrendingCounters} to a file at shutdown, so a
+ * restarted server keeps the recent activity instead of starting from zero.
+ * <p>
+ * Layout (little endian): a header of six ints (magic, version, books,
+ * windows, landmark high and low word) followed by the book ids as an int
+ * array and the stored counters of every window, in {@link TrendingWindow}
+ * order, as double arrays. As for {@link AlsModelStore}, the file goes through
+ * a heap buffer, is written to a temporary sibling and moved into place. The heaps are rebuilt from the
+ * counters on load.
+ */
+final class TrendingCountersStore {
+
+    private static final int MAGIC = 0x54524431; // "TRD1"
+    private static final int VERSION = 1;
+    private static final int HEADER_INTS = 6;
+    private static final int WINDOWS = TrendingWindow.values().length;
+
+    private TrendingCountersStore() {
+    }
+
+    /**
+     * Writes the counters.
+     *
+     * @param counters the counters
+     * @param file the destination file
+     * @throws IOException if the file cannot be written
+     */
+    static void save(TrendingCounters counters, Path file) throws IOException {
+        int[] bookIds = counters.bookIds();
+        int books = bookIds.length;
+        long bytes = 4L * (HEADER_INTS + books) + 8L * WINDOWS * books;
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Trending counters too large to write: " + bytes + " bytes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) bytes).order(ByteOrder.LITTLE_ENDIAN);
+        long landmark = counters.landmark();
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.put(new int[] { MAGIC, VERSION, books, WINDOWS, (int) (landmark >>> 32), (int) landmark });
+        ints.put(bookIds);
+        buffer.position(4 * ints.position());
+        DoubleBuffer doubles = buffer.asDoubleBuffer();
+        for (TrendingWindow window : TrendingWindow.values()) {
+            doubles.put(counters.counters(window));
+        }
+        buffer.rewind();
+        AlsModelStore.write(buffer, file);
+    }
+
+    /**
+     * Reads counters written by {@link #save(TrendingCounters, Path)}.
+     *
+     * @param file the checkpoint file
+     * @param candidates books tracked per window
+     * @return the counters
+     * @throws IOException if the file cannot be read or is not a checkpoint of this version
+     */
+    static TrendingCounters load(Path file, int candidates) throws IOException {
+        ByteBuffer buffer = AlsModelStore.read(file, 4L * HEADER_INTS);
+        long size = buffer.capacity();
+        IntBuffer ints = buffer.asIntBuffer();
+        int[] header = new int[HEADER_INTS];
+        ints.get(header);
+        if (header[0] != MAGIC || header[1] != VERSION) {
+            throw new IOException("Not a trending checkpoint (version " + header[1] + ")");
+        }
+        int books = header[2];
+        // Le finestre fanno parte del formato: se cambiano si riparte da zero
+        if (books < 0 || header[3] != WINDOWS || size != 4L * (HEADER_INTS + books) + 8L * WINDOWS * books) {
+            throw new IOException("Corrupted trending checkpoint");
+        }
+        long landmark = ((long) header[4] << 32) | (header[5] & 0xFFFFFFFFL);
+        int[] bookIds = new int[books];
+        ints.get(bookIds);
+        buffer.position(4 * ints.position());
+        DoubleBuffer doubles = buffer.asDoubleBuffer();
+        double[][] stored = new double[WINDOWS][books];
+        for (int w = 0; w < WINDOWS; w++) {
+            doubles.get(stored[w]);
+        }
+        return TrendingCounters.restore(candidates, landmark, bookIds, stored);
+    }
+}
@@ -0,0 +1,81 @@
+package it.uninsubria.server.recommendation;
+
+import java.util.Arrays;
+
+import it.uninsubria.shared.model.TrendingWindow;
+
+/**
+ * Immutable snapshot of the books with the most recent activity in each
+ * {@link TrendingWindow}, heaviest first.
+ * <p>
+ * Weights are stored relative to the landmark of {@link TrendingCounters};
+ * the decay to the time of the read is applied here, once per lookup.
+ */
+public final class TrendingRanking {
+
+    private static final TrendingRanking EMPTY = new TrendingRanking(
+        new int[TrendingWindow.values().length][0], new double[TrendingWindow.values().length][0],
+        new double[TrendingWindow.values().length], 0L);
+
+    private final int[][] bookIds;
+    private final double[][] weights;
+    private final double[] rates;
+    private final long landmark;
+
+    TrendingRanking(int[][] bookIds, double[][] weights, double[] rates, long landmark) {
+        this.bookIds = bookIds;
+        this.weights = weights;
+        this.rates = rates;
+        this.landmark = landmark;
+    }
+
+    /**
+     * @return the ranking served before any event
+     */
+    public static TrendingRanking empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the trending books of a window.
+     *
+     * @param window the window
+     * @param k maximum number of books
+     * @param now time of the read, in milliseconds
+     * @param minScore minimum decayed count of a returned book
+     * @return book ids, most active first
+     */
+    public int[] top(TrendingWindow window, int k, long now, double minScore) {
+        int w = window.ordinal();
+        int[] ids = bookIds[w];
+        double[] ranked = weights[w];
+        // Ordinati per peso: ci si ferma al primo sotto la soglia
+        double threshold = minScore * Math.exp(rates[w] * (now - landmark));
+        int count = 0;
+        int limit = Math.min(Math.max(0, k), ids.length);
+        while (count < limit && ranked[count] >= threshold) {
+            count++;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Returns the decayed count of the book at a rank.
+     *
+     * @param window the window
+     * @param rank the rank, 0 for the most active book
+     * @param now time of the read, in milliseconds
+     * @return the weighted number of events, decayed to {@code now}
+     */
+    public double score(TrendingWindow window, int rank, long now) {
+        int w = window.ordinal();
+        return weights[w][rank] * Math.exp(-rates[w] * (now - landmark));
+    }
+
+    /**
+     * @return number of tracked books in a window
+     */
+    public int size(TrendingWindow window) {
+        return bookIds[window.ordinal()].length;
+    }
+}
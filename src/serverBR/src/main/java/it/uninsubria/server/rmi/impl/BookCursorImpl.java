@@ -0,0 +1,188 @@
+package it.uninsubria.server.rmi.impl;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.rmi.server.Unreferenced;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import it.uninsubria.server.dao.ResultCursor;
+import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookList;
+import it.uninsubria.shared.rmi.RemoteBookCursor;
+import it.uninsubria.shared.rmi.ServiceException;
+import it.uninsubria.shared.rmi.ServiceOverloadedException;
+import it.uninsubria.shared.utils.AppConstants;
+
+/**
+ * Exported {@link RemoteBookCursor} over a DAO {@link ResultCursor}.
+ * <p>
+ * Only one chunk is in memory at a time. The database cursor is released when it
+ * is read to the end, closed by the client, idle for longer than the lease, or no
+ * longer referenced by any client (RMI distributed GC); the remote object itself
+ * stays exported until the client closes it or drops its stub, so late calls get
+ * an empty chunk or an expiry error instead of a missing-object failure. At most
+ * {@link AppConstants.Database#MAX_OPEN_CURSORS} cursors are open at once, since
+ * each holds a pooled connection.
+ */
+class BookCursorImpl implements RemoteBookCursor, Unreferenced {
+    private static final Logger logger = Logger.getLogger(BookCursorImpl.class.getName());
+
+    private static final Set<BookCursorImpl> OPEN = ConcurrentHashMap.newKeySet();
+    private static final AtomicInteger openCount = new AtomicInteger();
+    private static final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "book-cursor-reaper");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        long period = Math.max(1000, AppConstants.Database.CURSOR_LEASE_MS / 4);
+        reaper.scheduleAtFixedRate(BookCursorImpl::closeExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a DAO cursor for a remote client.
+     */
+    @FunctionalInterface
+    interface CursorOpener {
+        ResultCursor<Book> open(int fetchSize) throws Exception;
+    }
+
+    private final ResultCursor<Book> cursor;
+    private final int chunkSize;
+    private final long leaseMs;
+    private volatile long lastAccess = System.currentTimeMillis();
+    private boolean closed;
+    private boolean expired;
+    private boolean unexported;
+
+    private BookCursorImpl(ResultCursor<Book> cursor, int chunkSize, long leaseMs) {
+        this.cursor = cursor;
+        this.chunkSize = chunkSize;
+        this.leaseMs = leaseMs;
+    }
+
+    /**
+     * Opens and exports a cursor.
+     *
+     * @param opener opens the DAO cursor
+     * @param requestedChunkSize chunk size asked by the client, clamped to the server limits
+     * @param leaseMs idle time after which the cursor is closed
+     * @return the exported stub
+     * @throws ServiceOverloadedException if too many cursors are open
+     * @throws Exception if the cursor cannot be opened or exported
+     */
+    static RemoteBookCursor open(CursorOpener opener, int requestedChunkSize, long leaseMs) throws Exception {
+        if (openCount.incrementAndGet() > AppConstants.Database.MAX_OPEN_CURSORS) {
+            openCount.decrementAndGet();
+            throw new ServiceOverloadedException("Too many open catalog cursors");
+        }
+        int chunkSize = requestedChunkSize <= 0
+            ? AppConstants.Database.CURSOR_DEFAULT_CHUNK_SIZE
+            : Math.min(requestedChunkSize, AppConstants.Database.CURSOR_MAX_CHUNK_SIZE);
+
+        ResultCursor<Book> cursor;
+        try {
+            cursor = opener.open(chunkSize);
+        } catch (Exception e) {
+            openCount.decrementAndGet();
+            throw e;
+        }
+        BookCursorImpl impl = new BookCursorImpl(cursor, chunkSize, leaseMs);
+        OPEN.add(impl);
+        try {
+            return (RemoteBookCursor) UnicastRemoteObject.exportObject(impl, RmiSocketFactories.PORT,
+                RmiSocketFactories.client(), RmiSocketFactories.server());
+        } catch (RemoteException e) {
+            impl.release(false);
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized List<Book> nextChunk() throws RemoteException {
+        if (expired) {
+            throw new ServiceException("Catalog cursor expired after " + leaseMs + " ms of inactivity");
+        }
+        if (closed) {
+            return new BookList();
+        }
+        lastAccess = System.currentTimeMillis();
+        try {
+            List<Book> chunk = cursor.next(chunkSize);
+            if (cursor.isExhausted()) {
+                // Resta esportato: la chiamata successiva riceve la lista vuota finale
+                release(false);
+            }
+            return BookList.of(chunk);
+        } catch (Exception e) {
+            release(false);
+            throw ServiceExceptions.wrap("Errore durante la lettura del catalogo", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        release(true);
+    }
+
+    @Override
+    public void unreferenced() {
+        // Il client è scomparso senza chiudere il cursore
+        release(true);
+    }
+
+    /**
+     * @return the number of cursors currently open
+     */
+    static int openCursors() {
+        return openCount.get();
+    }
+
+    static void closeExpired() {
+        long now = System.currentTimeMillis();
+        for (BookCursorImpl c : OPEN) {
+            if (now - c.lastAccess > c.leaseMs) {
+                c.expire();
+            }
+        }
+    }
+
+    private synchronized void expire() {
+        if (!closed) {
+            expired = true;
+            logger.info("Closing catalog cursor idle for more than " + leaseMs + " ms");
+            release(false);
+        }
+    }
+
+    private synchronized void release(boolean unexport) {
+        if (!closed) {
+            closed = true;
+            OPEN.remove(this);
+            openCount.decrementAndGet();
+            try {
+                cursor.close();
+            } catch (Exception e) {
+                logger.warning("Could not close catalog cursor: " + e.getMessage());
+            }
+        }
+        if (unexport && !unexported) {
+            unexported = true;
+            try {
+                // Le chiamate in corso terminano; le successive ricevono NoSuchObjectException
+                UnicastRemoteObject.unexportObject(this, false);
+            } catch (NoSuchObjectException ignored) {
+                // già rimosso
+            }
+        }
+    }
+}
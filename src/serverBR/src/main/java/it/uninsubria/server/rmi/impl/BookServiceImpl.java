@@ -9,13 +9,25 @@ import it.uninsubria.shared.rmi.ServiceException;
 
 import it.uninsubria.server.dao.BookDAO;
 import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookFacets;
+import it.uninsubria.shared.model.BookList;
+import it.uninsubria.shared.model.BookSummary;
+import it.uninsubria.shared.model.CategoryPage;
+import it.uninsubria.shared.model.CategorySort;
+import it.uninsubria.shared.model.FacetFilters;
 import it.uninsubria.shared.model.ReviewManager;
+import it.uninsubria.shared.model.SearchCompletion;
 import it.uninsubria.shared.rmi.BookService;
+import it.uninsubria.shared.rmi.RemoteBookCursor;
+import it.uninsubria.shared.utils.AppConstants;
 import it.uninsubria.shared.model.SuggestionEntry;
+import it.uninsubria.shared.model.TrendingWindow;
+import it.uninsubria.server.cache.PreSerializedResponseCache;
 import it.uninsubria.server.di.ServerDIContainer;
 import it.uninsubria.server.service.BookServiceCore;
 import it.uninsubria.server.ServerMessageManager;
 import it.uninsubria.server.service.BookServiceCoreImpl;
+import it.uninsubria.server.util.InputValidator;
 
 /**
  * RMI implementation of BookService, delegating to BookServiceCore for business logic.
@@ -32,12 +44,13 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
      * @throws RemoteException if RMI setup fails
      */
     public BookServiceImpl(BookDAO bookDAO) throws RemoteException {
-        super();
+        super(RmiSocketFactories.PORT, RmiSocketFactories.client(), RmiSocketFactories.server());
         this.bookDAO = bookDAO;
         // If a specific DAO is provided, create a dedicated core for it (for testing)
         // Otherwise use the global ServerDIContainer core
         if (bookDAO != null) {
-            this.bookCore = new BookServiceCoreImpl(bookDAO);
+            this.bookCore = new BookServiceCoreImpl(bookDAO, ServerDIContainer.getCatalogStore(),
+                ServerDIContainer.getPopularityRanker(), ServerDIContainer.getTrendingAggregator());
         } else {
             BookServiceCore core = ServerDIContainer.getBookCore();
             if (core != null) {
@@ -48,57 +61,89 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
         }
     }
 
+    /**
+     * Constructs a BookServiceImpl that delegates to the given core.
+     *
+     * @param bookDAO the BookDAO instance
+     * @param core the BookServiceCore to delegate to
+     * @throws RemoteException if RMI setup fails
+     */
+    public BookServiceImpl(BookDAO bookDAO, BookServiceCore core) throws RemoteException {
+        super(RmiSocketFactories.PORT, RmiSocketFactories.client(), RmiSocketFactories.server());
+        this.bookDAO = bookDAO;
+        this.bookCore = core;
+    }
+
     @Override
-    public List<Book> searchGlobally() throws RemoteException {
+    public List<BookSummary> searchGlobally() throws RemoteException {
         try {
-            return bookCore.searchGlobally();
+            // Solo le colonne delle liste, senza copie in cache
+            return bookCore.searchGloballySummaries(0, Integer.MAX_VALUE);
         } catch (Exception e) {
-            throw new ServiceException(ServerMessageManager.getString("server.error.search.title"), e);
+            throw ServiceExceptions.wrap(ServerMessageManager.getString("server.error.search.title"), e);
         }
     }
 
     @Override
-    public List<Book> searchByTitle(String title) throws RemoteException {
+    public List<BookSummary> searchByTitle(String title) throws RemoteException {
         try{
-            return bookCore.searchByTitle(title);
+            InputValidator.validateSearchQuery(title);
+            return allSummaries(title, null, null);
         }catch(Exception e){
-            throw new ServiceException(ServerMessageManager.getString("server.error.search.title"), e);
+            throw ServiceExceptions.wrap(ServerMessageManager.getString("server.error.search.title"), e);
         }
     }
 
     @Override
-    public List<Book> searchByAuthor(String author) throws RemoteException {
+    public List<BookSummary> searchByAuthor(String author) throws RemoteException {
         try{
-            return bookCore.searchByAuthor(author);
+            InputValidator.validateSearchQuery(author);
+            return allSummaries(null, author, null);
         }catch(Exception e){
-            throw new ServiceException(ServerMessageManager.getString("server.error.search.author"), e);
+            throw ServiceExceptions.wrap(ServerMessageManager.getString("server.error.search.author"), e);
         }
     }
 
     @Override
-    public List<Book> searchByAuthorAndYear(String author, int year) throws RemoteException {
+    public List<BookSummary> searchByAuthorAndYear(String author, int year) throws RemoteException {
         try{
-            return bookCore.searchByAuthorAndYear(author, year);
+            InputValidator.validateSearchQuery(author);
+            return allSummaries(null, author, year);
         }catch(Exception e){
-            throw new ServiceException("Errore durante la ricerca per autore e anno", e);
+            throw ServiceExceptions.wrap("Errore durante la ricerca per autore e anno", e);
         }
     }
 
     @Override
-    public List<Book> searchByTitleAndYear(String title, int year) throws RemoteException {
+    public List<BookSummary> searchByTitleAndYear(String title, int year) throws RemoteException {
         try{
-            return bookCore.searchByTitleAndYear(title, year);
+            InputValidator.validateSearchQuery(title);
+            return allSummaries(title, null, year);
         }catch(Exception e){
-            throw new ServiceException("Errore durante la ricerca per titolo e anno", e);
+            throw ServiceExceptions.wrap("Errore durante la ricerca per titolo e anno", e);
         }
     }
 
+    // Le ricerche non paginate restituiscono tutte le corrispondenze
+    private List<BookSummary> allSummaries(String title, String author, Integer year) throws Exception {
+        return bookCore.searchBookSummaries(title, author, year, 0, Integer.MAX_VALUE);
+    }
+
     @Override
     public Book getBookDetails(int bookId) throws RemoteException {
         try{
             return bookCore.getBookDetails(bookId);
         }catch(Exception e){
-            throw new ServiceException("Errore durante il recupero dei dettagli del libro", e);
+            throw ServiceExceptions.wrap("Errore durante il recupero dei dettagli del libro", e);
+        }
+    }
+
+    @Override
+    public List<Book> getBooksByIds(List<Integer> bookIds) throws RemoteException {
+        try {
+            return BookList.of(bookCore.getBooksByIds(bookIds));
+        } catch (Exception e) {
+            throw ServiceExceptions.wrap("Errore durante il recupero dei libri per ID", e);
         }
     }
 
@@ -107,16 +152,16 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
         try {
             return bookCore.getAggregatedReviews(bookId);
         } catch (Exception e) {
-            throw new ServiceException("Errore durante il recupero delle valutazioni del libro", e);
+            throw ServiceExceptions.wrap("Errore durante il recupero delle valutazioni del libro", e);
         }
     }
 
     @Override
     public List<Book> getLibraryBooks(int libraryId) throws RemoteException {
         try {
-            return bookCore.getLibraryBooks(libraryId);
+            return BookList.of(bookCore.getLibraryBooks(libraryId));
         } catch (Exception e) {
-            throw new ServiceException("Errore durante il recupero dei libri della libreria", e);
+            throw ServiceExceptions.wrap("Errore durante il recupero dei libri della libreria", e);
         }
     }
 
@@ -130,7 +175,7 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
                 return new ArrayList<>();
             }
         } catch (Exception e) {
-            throw new ServiceException("Errore nel recupero suggerimenti utente", e);
+            throw ServiceExceptions.wrap("Errore nel recupero suggerimenti utente", e);
         }
     }
     
@@ -146,7 +191,7 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
                 return new ArrayList<>();
             }
         } catch (Exception e) {
-            throw new ServiceException("Errore nel recupero suggerimenti libreria", e);
+            throw ServiceExceptions.wrap("Errore nel recupero suggerimenti libreria", e);
         }
     }
 
@@ -155,11 +200,11 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
         try {
             var core = ServerDIContainer.getSuggestionCore();
             if (core != null) {
-                return core.getUserSuggestionsForBookAndLibrary(userId, libraryId, baseBookId);
+                return BookList.of(core.getUserSuggestionsForBookAndLibrary(userId, libraryId, baseBookId));
             }
             return new ArrayList<>();
         } catch (Exception e) {
-            throw new ServiceException("Errore recupero suggerimenti per libro e libreria", e);
+            throw ServiceExceptions.wrap("Errore recupero suggerimenti per libro e libreria", e);
         }
     }
 
@@ -171,7 +216,7 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
                 return core.addSuggestion(userId, libraryId, baseBookId, suggestedBookId);
             }
         } catch (Exception e) {
-            throw new ServiceException("Errore durante l'aggiunta di un suggerimento (4-arg)", e);
+            throw ServiceExceptions.wrap("Errore durante l'aggiunta di un suggerimento (4-arg)", e);
         }
 		return false;
     }
@@ -186,7 +231,7 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
             boolean ok = addUserSuggestion(userId, baseBookId, libraryId, suggestedBookId);
             return ok ? 1 : -1;
         } catch (Exception e) {
-            throw new ServiceException("Errore durante l'aggiunta di un suggerimento ReturningId", e);
+            throw ServiceExceptions.wrap("Errore durante l'aggiunta di un suggerimento ReturningId", e);
         }
     }
 
@@ -200,13 +245,13 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
             }
             return true; // fallback permissivo
         } catch (Exception e) {
-            throw new ServiceException("Errore durante l'eliminazione del suggerimento", e);
+            throw ServiceExceptions.wrap("Errore durante l'eliminazione del suggerimento", e);
         }
     }
 
     @Override
     public void invalidateBooksCache() throws RemoteException {
-        try { bookCore.invalidateBooksCache(); } catch (Exception e){ throw new ServiceException("Errore invalidando cache dei libri", e); }
+        try { bookCore.invalidateBooksCache(); } catch (Exception e){ throw ServiceExceptions.wrap("Errore invalidando cache dei libri", e); }
     }
 
     @Override
@@ -218,7 +263,7 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
             }
             throw new ServiceException("SuggestionsService not available");
         } catch (Exception e) {
-            throw new ServiceException("Errore nella creazione del batch di suggerimenti", e);
+            throw ServiceExceptions.wrap("Errore nella creazione del batch di suggerimenti", e);
         }
     }
 
@@ -231,34 +276,56 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
             }
             throw new ServiceException("SuggestionsService not available");
         } catch (Exception e) {
-            throw new ServiceException("Errore nell'aggiunta dei suggerimenti al batch", e);
+            throw ServiceExceptions.wrap("Errore nell'aggiunta dei suggerimenti al batch", e);
+        }
+    }
+
+    @Override
+    public List<BookSummary> searchGloballyPaged(int offset, int limit) throws RemoteException {
+        try {
+            return bookCore.searchGloballySummaries(Math.max(0, offset), limit);
+        } catch (Exception e) {
+            throw ServiceExceptions.wrap("Errore durante la ricerca globale paginata", e);
         }
     }
 
     @Override
-    public List<Book> searchGloballyPaged(int offset, int limit) throws RemoteException {
+    public List<BookSummary> searchByTitlePaged(String query, int offset, int limit) throws RemoteException {
         try {
-            return bookCore.searchGloballyPaged(offset, limit);
+            InputValidator.validateSearchQuery(query);
+            return bookCore.searchBookSummaries(query, null, null, Math.max(0, offset), limit);
         } catch (Exception e) {
-            throw new ServiceException("Errore durante la ricerca globale paginata", e);
+            throw ServiceExceptions.wrap("Errore durante la ricerca per titolo paginata", e);
         }
     }
 
     @Override
-    public List<Book> searchByTitlePaged(String query, int offset, int limit) throws RemoteException {
+    public List<BookSummary> searchByAuthorPaged(String author, int offset, int limit) throws RemoteException {
         try {
-            return bookCore.searchByTitlePaged(query, offset, limit);
+            InputValidator.validateSearchQuery(author);
+            return bookCore.searchBookSummaries(null, author, null, Math.max(0, offset), limit);
         } catch (Exception e) {
-            throw new ServiceException("Errore durante la ricerca per titolo paginata", e);
+            throw ServiceExceptions.wrap("Errore durante la ricerca per autore paginata", e);
         }
     }
 
     @Override
-    public List<Book> searchByAuthorPaged(String author, int offset, int limit) throws RemoteException {
+    public List<BookSummary> searchBookSummaries(String title, String author, Integer year, int offset, int limit) throws RemoteException {
         try {
-            return bookCore.searchByAuthorPaged(author, offset, limit);
+            int pageSize = Math.max(0, Math.min(limit, AppConstants.Cache.MAX_SEARCH_PAGE_SIZE));
+            return bookCore.searchBookSummaries(title, author, year, Math.max(0, offset), pageSize);
         } catch (Exception e) {
-            throw new ServiceException("Errore durante la ricerca per autore paginata", e);
+            throw ServiceExceptions.wrap("Errore durante la ricerca dei libri", e);
+        }
+    }
+
+    @Override
+    public RemoteBookCursor openCatalogCursor(int chunkSize) throws RemoteException {
+        try {
+            return BookCursorImpl.open(bookCore::openCatalogCursor, chunkSize,
+                AppConstants.Database.CURSOR_LEASE_MS);
+        } catch (Exception e) {
+            throw ServiceExceptions.wrap("Errore durante l'apertura del cursore del catalogo", e);
         }
     }
 
@@ -267,7 +334,60 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
         try {
             return bookCore.getTotalBooksCount();
         } catch (Exception e) {
-            throw new ServiceException("Errore durante il conteggio totale dei libri", e);
+            throw ServiceExceptions.wrap("Errore durante il conteggio totale dei libri", e);
+        }
+    }
+
+    @Override
+    public List<Book> getPopularBooks(int offset, int limit) throws RemoteException {
+        try {
+            int pageSize = Math.max(0, Math.min(limit, AppConstants.Recommendation.MAX_POPULAR_PAGE_SIZE));
+            return PreSerializedResponseCache.books("books_popular_" + offset + "_" + pageSize, "popular",
+                bookCore.getPopularBooks(Math.max(0, offset), pageSize));
+        } catch (Exception e) {
+            throw ServiceExceptions.wrap("Errore durante il recupero dei libri più popolari", e);
+        }
+    }
+
+    @Override
+    public List<Book> getTrendingBooks(TrendingWindow window, int k) throws RemoteException {
+        try {
+            int count = Math.max(0, Math.min(k, AppConstants.Recommendation.TRENDING_CANDIDATES));
+            return BookList.of(bookCore.getTrendingBooks(window, count));
+        } catch (Exception e) {
+            throw ServiceExceptions.wrap("Errore durante il recupero dei libri di tendenza", e);
+        }
+    }
+
+    @Override
+    public BookFacets getFacets(String query, FacetFilters filters) throws RemoteException {
+        try {
+            return bookCore.getFacets(query, filters);
+        } catch (Exception e) {
+            throw ServiceExceptions.wrap("Errore durante il conteggio delle faccette", e);
+        }
+    }
+
+    @Override
+    public CategoryPage getBooksByCategory(String category, String query, CategorySort sort, String cursor, int limit)
+            throws RemoteException {
+        try {
+            int pageSize = Math.max(0, Math.min(limit, AppConstants.Cache.MAX_CATEGORY_PAGE_SIZE));
+            CategoryPage page = bookCore.getBooksByCategory(category, query, sort, cursor, pageSize);
+            // Pagine costruite dal catalogo a ogni richiesta: la cache pre-serializzata non le ritroverebbe
+            page.setBooks(BookList.of(page.getBooks()));
+            return page;
+        } catch (Exception e) {
+            throw ServiceExceptions.wrap("Errore durante il recupero dei libri della categoria", e);
+        }
+    }
+
+    @Override
+    public List<SearchCompletion> completeSearch(String prefix, int k) throws RemoteException {
+        try {
+            return bookCore.completeSearch(prefix, Math.max(0, Math.min(k, AppConstants.Cache.MAX_COMPLETIONS)));
+        } catch (Exception e) {
+            throw ServiceExceptions.wrap("Errore durante il completamento della ricerca", e);
         }
     }
 
@@ -276,45 +396,45 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
     @Override
     public List<Book> searchGloballyForUser(String userId) throws RemoteException {
         try {
-            return bookCore.searchGloballyForUser(userId);
+            return BookList.wrap(bookCore.searchGloballyForUser(userId));
         } catch (Exception e) {
-            throw new ServiceException("Errore durante la ricerca globale per utente", e);
+            throw ServiceExceptions.wrap("Errore durante la ricerca globale per utente", e);
         }
     }
 
     @Override
     public List<Book> searchByTitleForUser(String userId, String title) throws RemoteException {
         try {
-            return bookCore.searchByTitleForUser(userId, title);
+            return BookList.of(bookCore.searchByTitleForUser(userId, title));
         } catch (Exception e) {
-            throw new ServiceException(ServerMessageManager.getString("server.error.search.title.year"), e);
+            throw ServiceExceptions.wrap(ServerMessageManager.getString("server.error.search.title.year"), e);
         }
     }
 
     @Override
     public List<Book> searchByAuthorForUser(String userId, String author) throws RemoteException {
         try {
-            return bookCore.searchByAuthorForUser(userId, author);
+            return BookList.of(bookCore.searchByAuthorForUser(userId, author));
         } catch (Exception e) {
-            throw new ServiceException(ServerMessageManager.getString("server.error.search.author.year"), e);
+            throw ServiceExceptions.wrap(ServerMessageManager.getString("server.error.search.author.year"), e);
         }
     }
 
     @Override
     public List<Book> searchByAuthorAndYearForUser(String userId, String author, int year) throws RemoteException {
         try {
-            return bookCore.searchByAuthorAndYearForUser(userId, author, year);
+            return BookList.of(bookCore.searchByAuthorAndYearForUser(userId, author, year));
         } catch (Exception e) {
-            throw new ServiceException("Errore durante la ricerca per autore e anno per utente", e);
+            throw ServiceExceptions.wrap("Errore durante la ricerca per autore e anno per utente", e);
         }
     }
 
     @Override
     public List<Book> searchByTitleAndYearForUser(String userId, String title, int year) throws RemoteException {
         try {
-            return bookCore.searchByTitleAndYearForUser(userId, title, year);
+            return BookList.of(bookCore.searchByTitleAndYearForUser(userId, title, year));
         } catch (Exception e) {
-            throw new ServiceException("Errore durante la ricerca per titolo e anno per utente", e);
+            throw ServiceExceptions.wrap("Errore durante la ricerca per titolo e anno per utente", e);
         }
     }
 
@@ -323,7 +443,7 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
         try {
             return bookCore.getBookDetailsForUser(userId, bookId);
         } catch (Exception e) {
-            throw new ServiceException("Errore durante il recupero dei dettagli del libro per utente", e);
+            throw ServiceExceptions.wrap("Errore durante il recupero dei dettagli del libro per utente", e);
         }
     }
 
@@ -332,16 +452,16 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
         try {
             return bookCore.getAggregatedReviewsForUser(userId, bookId);
         } catch (Exception e) {
-            throw new ServiceException("Errore durante il recupero delle valutazioni per utente", e);
+            throw ServiceExceptions.wrap("Errore durante il recupero delle valutazioni per utente", e);
         }
     }
 
     @Override
     public List<Book> getLibraryBooksForUser(String userId, int libraryId) throws RemoteException {
         try {
-            return bookCore.getLibraryBooksForUser(userId, libraryId);
+            return BookList.of(bookCore.getLibraryBooksForUser(userId, libraryId));
         } catch (Exception e) {
-            throw new ServiceException("Errore durante il recupero dei libri della libreria per utente", e);
+            throw ServiceExceptions.wrap("Errore durante il recupero dei libri della libreria per utente", e);
         }
     }
 
@@ -350,43 +470,43 @@ public class BookServiceImpl extends UnicastRemoteObject implements BookService
         try {
             bookCore.invalidateBooksCacheForUser(userId);
         } catch (Exception e) {
-            throw new ServiceException("Errore durante l'invalidazione della cache libri per utente", e);
+            throw ServiceExceptions.wrap("Errore durante l'invalidazione della cache libri per utente", e);
         }
     }
 
     @Override
     public List<Book> searchGloballyPagedForUser(String userId, int offset, int limit) throws RemoteException {
         try {
-            return bookCore.searchGloballyPagedForUser(userId, offset, limit);
+            return BookList.of(bookCore.searchGloballyPagedForUser(userId, offset, limit));
         } catch (Exception e) {
-            throw new ServiceException("Errore durante la ricerca globale paginata per utente", e);
+            throw ServiceExceptions.wrap("Errore durante la ricerca globale paginata per utente", e);
         }
     }
 
     @Override
     public List<Book> searchByTitlePagedForUser(String userId, String query, int offset, int limit) throws RemoteException {
         try {
-            return bookCore.searchByTitlePagedForUser(userId, query, offset, limit);
+            return BookList.of(bookCore.searchByTitlePagedForUser(userId, query, offset, limit));
         } catch (Exception e) {
-            throw new ServiceException("Errore durante la ricerca per titolo paginata per utente", e);
+            throw ServiceExceptions.wrap("Errore durante la ricerca per titolo paginata per utente", e);
         }
     }
 
     @Override
     public List<Book> searchByAuthorPagedForUser(String userId, String author, int offset, int limit) throws RemoteException {
         try {
-            return bookCore.searchByAuthorPagedForUser(userId, author, offset, limit);
+            return BookList.of(bookCore.searchByAuthorPagedForUser(userId, author, offset, limit));
         } catch (Exception e) {
-            throw new ServiceException("Errore durante la ricerca per autore paginata per utente", e);
+            throw ServiceExceptions.wrap("Errore durante la ricerca per autore paginata per utente", e);
         }
     }
 
     @Override
     public List<Book> getSuggestedBooks(int bookId) throws RemoteException {
         try {
-            return bookDAO.getSuggestedBooks(bookId);
+            return BookList.of(bookDAO.getSuggestedBooks(bookId));
         } catch (Exception e) {
-            throw new ServiceException("Errore nel recupero dei libri suggeriti", e);
+            throw ServiceExceptions.wrap("Errore nel recupero dei libri suggeriti", e);
         }
     }
 }
@@ -14,7 +14,6 @@ import it.uninsubria.shared.rmi.LibraryService;
 
 import it.uninsubria.server.service.LibraryServiceCore;
 import it.uninsubria.server.di.ServerDIContainer;
-import it.uninsubria.shared.rmi.ServiceException;
 
 public class LibraryServiceImpl extends UnicastRemoteObject implements LibraryService {
     private static final Logger logger = LoggerFactory.getLogger(LibraryServiceImpl.class);
@@ -22,7 +21,7 @@ public class LibraryServiceImpl extends UnicastRemoteObject implements LibrarySe
     private final LibraryDAO libraryDAO;
 
     public LibraryServiceImpl(LibraryDAO libraryDAO) throws RemoteException {
-        super();
+        super(RmiSocketFactories.PORT, RmiSocketFactories.client(), RmiSocketFactories.server());
         this.libraryDAO = libraryDAO;
     }
 
@@ -34,10 +33,25 @@ public class LibraryServiceImpl extends UnicastRemoteObject implements LibrarySe
             return libraryDAO.getUserLibraries(username);
         } catch (SQLException e) {
             logger.error("SQL error nel recupero delle librerie per utente {}: {}", username, e.getMessage());
-            throw new ServiceException("Errore di accesso al database durante il recupero delle librerie.", e);
+            throw ServiceExceptions.wrap("Errore di accesso al database durante il recupero delle librerie.", e);
         } catch (Exception e) {
             logger.error("Errore generico nel recupero delle librerie per utente {}: {}", username, e.getMessage());
-            throw new ServiceException("Errore interno del server durante il recupero delle librerie.", e);
+            throw ServiceExceptions.wrap("Errore interno del server durante il recupero delle librerie.", e);
+        }
+    }
+
+    @Override
+    public List<Library> getUserLibrariesWithBooks(String username) throws RemoteException {
+        try {
+            LibraryServiceCore core = ServerDIContainer.getLibraryCore();
+            if (core != null) return core.getUserLibrariesWithBooks(username);
+            return libraryDAO.getUserLibrariesWithBooks(username);
+        } catch (SQLException e) {
+            logger.error("SQL error nel recupero delle librerie con libri per utente {}: {}", username, e.getMessage());
+            throw ServiceExceptions.wrap("Errore di accesso al database durante il recupero delle librerie.", e);
+        } catch (Exception e) {
+            logger.error("Errore generico nel recupero delle librerie con libri per utente {}: {}", username, e.getMessage());
+            throw ServiceExceptions.wrap("Errore interno del server durante il recupero delle librerie.", e);
         }
     }
 
@@ -49,10 +63,10 @@ public class LibraryServiceImpl extends UnicastRemoteObject implements LibrarySe
             return libraryDAO.getBooksInLibraries(idLibreria);
         } catch (SQLException e) {
             logger.error("SQL error nel recupero dei libri per la libreria {}: {}", idLibreria, e.getMessage());
-            throw new ServiceException("Errore di accesso al database durante il recupero dei libri.", e);
+            throw ServiceExceptions.wrap("Errore di accesso al database durante il recupero dei libri.", e);
         } catch (Exception e) {
             logger.error("Errore generico nel recupero dei libri per la libreria {}: {}", idLibreria, e.getMessage());
-            throw new ServiceException("Errore interno del server durante il recupero dei libri.", e);
+            throw ServiceExceptions.wrap("Errore interno del server durante il recupero dei libri.", e);
         }
     }
 
@@ -64,10 +78,10 @@ public class LibraryServiceImpl extends UnicastRemoteObject implements LibrarySe
             return libraryDAO.libraryExistsForUser(username, libraryName);
         } catch (SQLException e) {
             logger.error("SQL error nel verificare l'esistenza della libreria '{}' per utente {}: {}", libraryName, username, e.getMessage());
-            throw new ServiceException("Errore di accesso al database durante la verifica dell'esistenza della libreria.", e);
+            throw ServiceExceptions.wrap("Errore di accesso al database durante la verifica dell'esistenza della libreria.", e);
         } catch (Exception e) {
             logger.error("Errore generico nel verificare la libreria per l'utente {}: {}", username, e.getMessage());
-            throw new ServiceException("Errore interno del server durante la verifica della libreria.", e);
+            throw ServiceExceptions.wrap("Errore interno del server durante la verifica della libreria.", e);
         }
     }
 
@@ -82,10 +96,10 @@ public class LibraryServiceImpl extends UnicastRemoteObject implements LibrarySe
             return libraryDAO.addLibraryForUser(username, library);
         } catch (SQLException e) {
             logger.error("SQL error nell'aggiungere la libreria '{}' per utente {}: {}", library.getName(), username, e.getMessage());
-            throw new ServiceException("Errore di accesso al database durante l'inserimento della libreria.", e);
+            throw ServiceExceptions.wrap("Errore di accesso al database durante l'inserimento della libreria.", e);
         } catch (Exception e) {
             logger.error("Errore generico nell'aggiungere la libreria '{}' per utente {}: {}", library.getName(), username, e.getMessage());
-            throw new ServiceException("Errore interno del server durante l'inserimento della libreria.", e);
+            throw ServiceExceptions.wrap("Errore interno del server durante l'inserimento della libreria.", e);
         }
     }
 
@@ -100,10 +114,10 @@ public class LibraryServiceImpl extends UnicastRemoteObject implements LibrarySe
             libraryDAO.updateLibraryForUser(username, oldLibrary, newLibrary);
         } catch (SQLException e) {
             logger.error("SQL error durante l'aggiornamento della libreria per utente {}: {}", username, e.getMessage());
-            throw new ServiceException("Errore di accesso al database durante l'aggiornamento della libreria.", e);
+            throw ServiceExceptions.wrap("Errore di accesso al database durante l'aggiornamento della libreria.", e);
         } catch (Exception e) {
             logger.error("Errore generico durante l'aggiornamento della libreria per utente {}: {}", username, e.getMessage());
-            throw new ServiceException("Errore interno del server durante l'aggiornamento della libreria.", e);
+            throw ServiceExceptions.wrap("Errore interno del server durante l'aggiornamento della libreria.", e);
         }
     }
 
@@ -119,10 +133,10 @@ public class LibraryServiceImpl extends UnicastRemoteObject implements LibrarySe
             libraryDAO.deleteLibraryForUser(username, library);
         } catch (SQLException e) {
             logger.error("SQL error durante l'eliminazione della libreria per utente {}: {}", username, e.getMessage());
-            throw new ServiceException("Errore di accesso al database durante l'eliminazione della libreria.", e);
+            throw ServiceExceptions.wrap("Errore di accesso al database durante l'eliminazione della libreria.", e);
         } catch (Exception e) {
             logger.error("Errore generico durante l'eliminazione della libreria per utente {}: {}", username, e.getMessage());
-            throw new ServiceException("Errore interno del server durante l'eliminazione della libreria.", e);
+            throw ServiceExceptions.wrap("Errore interno del server durante l'eliminazione della libreria.", e);
         }
     }
 }
@@ -6,18 +6,21 @@ import java.util.List;
 import java.util.Map;
 
 import it.uninsubria.server.dao.ReviewDAO;
+import it.uninsubria.shared.exception.ValidationException;
+import it.uninsubria.shared.model.BookReviewStats;
 import it.uninsubria.shared.model.Review;
+import it.uninsubria.shared.model.ReviewList;
 import it.uninsubria.shared.rmi.ReviewsService;
+import it.uninsubria.shared.utils.AppConstants;
 
 import it.uninsubria.server.service.ReviewsServiceCore;
-import it.uninsubria.shared.rmi.ServiceException;
 
 public class ReviewsServiceImpl extends UnicastRemoteObject implements ReviewsService{
 
     private final ReviewsServiceCore core;
 
     public ReviewsServiceImpl(ReviewDAO reviewsDAO, ReviewsServiceCore core) throws RemoteException {
-        super();
+        super(RmiSocketFactories.PORT, RmiSocketFactories.client(), RmiSocketFactories.server());
         this.core = core;
     }
 
@@ -31,9 +34,9 @@ public class ReviewsServiceImpl extends UnicastRemoteObject implements ReviewsSe
     public List<Review> getReviewsByBook(int userId, int bookId) throws RemoteException {
         ensureCoreInitialized();
         try {
-            return core.getReviewsByBook(userId, bookId);
+            return ReviewList.of(core.getReviewsByBook(userId, bookId));
         } catch (Exception e) {
-            throw new ServiceException("Errore durante il recupero delle recensioni", e);
+            throw ServiceExceptions.wrap("Errore durante il recupero delle recensioni", e);
         }
     }
 
@@ -43,7 +46,7 @@ public class ReviewsServiceImpl extends UnicastRemoteObject implements ReviewsSe
         try {
             return core.addReview(userId, bookId, v);
         } catch (Exception e) {
-            throw new ServiceException("Errore durante l'aggiunta della recensione", e);
+            throw ServiceExceptions.wrap("Errore durante l'aggiunta della recensione", e);
         }
     }
 
@@ -53,7 +56,7 @@ public class ReviewsServiceImpl extends UnicastRemoteObject implements ReviewsSe
         try {
             return core.updateReview(userId, bookId, review);
         } catch (Exception e) {
-            throw new ServiceException("Errore durante l'aggiornamento della recensione", e);
+            throw ServiceExceptions.wrap("Errore durante l'aggiornamento della recensione", e);
         }
     }
 
@@ -61,9 +64,9 @@ public class ReviewsServiceImpl extends UnicastRemoteObject implements ReviewsSe
     public List<Review> getReviewsByBook(int bookId) throws RemoteException {
         ensureCoreInitialized();
         try {
-            return core.getReviewsByBook(bookId);
+            return ReviewList.of(core.getReviewsByBook(bookId));
         } catch (Exception e) {
-            throw new ServiceException("Errore durante il recupero delle recensioni", e);
+            throw ServiceExceptions.wrap("Errore durante il recupero delle recensioni", e);
         }
     }
 
@@ -71,9 +74,9 @@ public class ReviewsServiceImpl extends UnicastRemoteObject implements ReviewsSe
     public List<Review> getReviewsForBookAndUser(int userId, int bookId) throws RemoteException {
         ensureCoreInitialized();
         try {
-            return core.getReviewsForBookAndUser(userId, bookId);
+            return ReviewList.of(core.getReviewsForBookAndUser(userId, bookId));
         } catch (Exception e) {
-            throw new ServiceException("Errore durante il recupero delle recensioni per utente e libro", e);
+            throw ServiceExceptions.wrap("Errore durante il recupero delle recensioni per utente e libro", e);
         }
     }
 
@@ -83,9 +86,31 @@ public class ReviewsServiceImpl extends UnicastRemoteObject implements ReviewsSe
         try {
             return core.saveReview(userId, bookId, libraryId, scores, notes);
         } catch (Exception e) {
-            throw new ServiceException("Errore nel salvataggio della recensione", e);
+            throw ServiceExceptions.wrap("Errore nel salvataggio della recensione", e);
         }
     }
 
+    @Override
+    public List<BookReviewStats> getReviewStatsForBooks(int[] bookIds) throws RemoteException {
+        ensureCoreInitialized();
+        try {
+            if (bookIds != null && bookIds.length > AppConstants.Cache.MAX_REVIEW_STATS_BATCH) {
+                throw new ValidationException("Too many book ids: " + bookIds.length
+                    + " (max " + AppConstants.Cache.MAX_REVIEW_STATS_BATCH + ")");
+            }
+            return core.getReviewStatsForBooks(bookIds);
+        } catch (Exception e) {
+            throw ServiceExceptions.wrap("Errore durante il recupero delle statistiche delle recensioni", e);
+        }
+    }
 
+    @Override
+    public List<BookReviewStats> getAllReviewStats() throws RemoteException {
+        ensureCoreInitialized();
+        try {
+            return core.getAllReviewStats();
+        } catch (Exception e) {
+            throw ServiceExceptions.wrap("Errore durante il recupero delle statistiche delle recensioni", e);
+        }
+    }
 }
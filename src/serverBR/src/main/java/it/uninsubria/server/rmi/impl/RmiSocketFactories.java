@@ -0,0 +1,51 @@
+package it.uninsubria.server.rmi.impl;
+
+import it.uninsubria.server.monitoring.MonitoringService;
+import it.uninsubria.server.monitoring.RmiConnectionMetrics;
+import it.uninsubria.shared.rmi.CompressingServerSocketFactory;
+import it.uninsubria.shared.utils.AppConstants;
+
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.logging.Logger;
+
+/**
+ * Socket factories shared by all exported services, so they listen on one port.
+ * Threshold and buffer size can be overridden with RMI_COMPRESSION_THRESHOLD and RMI_SOCKET_BUFFER_SIZE.
+ */
+final class RmiSocketFactories {
+
+    private static final Logger logger = Logger.getLogger(RmiSocketFactories.class.getName());
+
+    /** Anonymous port, as with the default UnicastRemoteObject constructor. */
+    static final int PORT = 0;
+
+    private static final CompressingServerSocketFactory SERVER = new CompressingServerSocketFactory(
+        intEnv("RMI_COMPRESSION_THRESHOLD", AppConstants.Network.RMI_COMPRESSION_THRESHOLD_BYTES),
+        intEnv("RMI_SOCKET_BUFFER_SIZE", AppConstants.Network.RMI_SOCKET_BUFFER_SIZE),
+        new RmiConnectionMetrics(MonitoringService.getInstance().getRegistry()));
+    private static final RMIClientSocketFactory CLIENT = SERVER.clientFactory();
+
+    private RmiSocketFactories() {}
+
+    static RMIClientSocketFactory client() {
+        return CLIENT;
+    }
+
+    static RMIServerSocketFactory server() {
+        return SERVER;
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warning("Invalid value for " + name + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package it.uninsubria.server.rmi.impl;
+
+import it.uninsubria.server.ServerMessageManager;
+import it.uninsubria.server.monitoring.DatabaseOverloadedException;
+import it.uninsubria.shared.rmi.ServiceException;
+import it.uninsubria.shared.rmi.ServiceOverloadedException;
+
+/**
+ * Maps server-side failures to the exceptions returned over RMI.
+ */
+final class ServiceExceptions {
+
+    private ServiceExceptions() {}
+
+    /**
+     * Wraps a failure in a {@link ServiceException}; requests shed by the database
+     * concurrency limiter become a {@link ServiceOverloadedException} instead.
+     *
+     * @param message the error message for the operation
+     * @param e the failure
+     * @return the exception to throw
+     */
+    static ServiceException wrap(String message, Throwable e) {
+        if (isOverloaded(e)) {
+            return new ServiceOverloadedException(ServerMessageManager.getString("server.error.overloaded"));
+        }
+        return new ServiceException(message, e);
+    }
+
+    static boolean isOverloaded(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof DatabaseOverloadedException) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+}
@@ -19,7 +19,7 @@ public class SuggestionServiceImpl extends UnicastRemoteObject implements Sugges
     private final SuggestionServiceCore core;
 
     public SuggestionServiceImpl(SuggestionDAO dao, SuggestionServiceCore core) throws RemoteException {
-        super();
+        super(RmiSocketFactories.PORT, RmiSocketFactories.client(), RmiSocketFactories.server());
         this.dao = dao;
         this.core = core;
     }
@@ -34,60 +34,73 @@ public class SuggestionServiceImpl extends UnicastRemoteObject implements Sugges
     @Override
     public List<SuggestionEntry> getAllUserSuggestions(int userId) throws RemoteException {
         ensureCoreInitialized();
-        try { return core.getAllUserSuggestions(userId); } catch (Exception e) { throw new ServiceException("Errore", e); }
+        try { return core.getAllUserSuggestions(userId); } catch (Exception e) { throw ServiceExceptions.wrap("Errore", e); }
     }
 
     @Override
     public List<SuggestionEntry> getUserSuggestionsForLibrary(int userId, int libraryId) throws RemoteException {
         ensureCoreInitialized();
-        try { return core.getUserSuggestionsForLibrary(userId, libraryId); } catch (Exception e) { throw new ServiceException("Errore recupero suggerimenti libreria", e); }
+        try { return core.getUserSuggestionsForLibrary(userId, libraryId); } catch (Exception e) { throw ServiceExceptions.wrap("Errore recupero suggerimenti libreria", e); }
     }
 
     @Override
     public boolean addUserSuggestion(int userId, int baseBookId, int suggestedBookId) throws RemoteException {
         ensureCoreInitialized();
-        try { return core.addSuggestion(userId, null, baseBookId, suggestedBookId); } catch (Exception e) { throw new ServiceException("Errore", e); }
+        try { return core.addSuggestion(userId, null, baseBookId, suggestedBookId); } catch (Exception e) { throw ServiceExceptions.wrap("Errore", e); }
     }
 
     @Override
     public boolean deleteUserSuggestion(int userId, int baseBookId, int suggestedBookId) throws RemoteException {
         ensureCoreInitialized();
-        try { return core.deleteSuggestion(userId, baseBookId, suggestedBookId); } catch (Exception e) { throw new ServiceException("Errore", e); }
+        try { return core.deleteSuggestion(userId, baseBookId, suggestedBookId); } catch (Exception e) { throw ServiceExceptions.wrap("Errore", e); }
     }
 
     @Override
     public List<Book> getUserSuggestions(int userId, int baseBookId) throws RemoteException {
         ensureCoreInitialized();
-        try { return core.getUserSuggestions(userId, baseBookId); } catch (Exception e) { throw new ServiceException("Errore", e); }
+        try { return core.getUserSuggestions(userId, baseBookId); } catch (Exception e) { throw ServiceExceptions.wrap("Errore", e); }
     }
 
     @Override
     public List<Book> getUserSuggestionsForBookAndLibrary(int userId, int libraryId, int baseBookId) throws RemoteException {
         ensureCoreInitialized();
-        try { return core.getUserSuggestionsForBookAndLibrary(userId, libraryId, baseBookId); } catch (Exception e) { throw new ServiceException("Errore", e); }
+        try { return core.getUserSuggestionsForBookAndLibrary(userId, libraryId, baseBookId); } catch (Exception e) { throw ServiceExceptions.wrap("Errore", e); }
     }
 
     @Override
     public List<Book> getDynamicSuggestedBooks(int baseBookId, int libraryId, int userId, int topN) throws RemoteException {
         ensureCoreInitialized();
-        try { return core.getDynamicSuggestedBooks(baseBookId, libraryId, userId, topN); } catch (Exception e) { throw new ServiceException("Errore", e); }
+        try { return core.getDynamicSuggestedBooks(baseBookId, libraryId, userId, topN); } catch (Exception e) { throw ServiceExceptions.wrap("Errore", e); }
+    }
+
+    @Override
+    public List<Book> getRecommendedForUser(int userId, int topK) throws RemoteException {
+        ensureCoreInitialized();
+        try { return core.getRecommendedForUser(userId, topK); } catch (Exception e) { throw ServiceExceptions.wrap("Errore recupero libri consigliati", e); }
     }
 
     // New batch API (Stage 4: batch support using core)
     public int createSuggestionBatch(int userId, Integer libraryId) throws RemoteException {
-        try { return dao.createBatch(userId, libraryId); } catch (Exception e) { throw new ServiceException("Errore creazione batch", e); }
+        try { return dao.createBatch(userId, libraryId); } catch (Exception e) { throw ServiceExceptions.wrap("Errore creazione batch", e); }
     }
     public java.util.List<Integer> addSuggestionsToBatch(int batchId, int userId, Integer libraryId, int baseBookId, java.util.List<Integer> suggestedBookIds) throws RemoteException {
         java.util.List<Integer> ids = new java.util.ArrayList<>();
         java.util.List<Integer> failedIds = new java.util.ArrayList<>();
 
+        // Un'unica scrittura batch in una transazione; i libri non salvati vengono riportati tutti insieme
+        java.util.Map<Integer, Integer> saved;
+        try {
+            saved = dao.addAllToBatch(batchId, userId, libraryId, baseBookId, suggestedBookIds);
+        } catch (Exception e) {
+            logger.warning("Failed to save suggestion batch " + batchId + ": " + e.getMessage());
+            throw ServiceExceptions.wrap("Errore salvataggio suggerimenti. IDs falliti: " + suggestedBookIds, e);
+        }
         for (Integer sid : suggestedBookIds) {
-            try {
-                int id = dao.addToBatch(batchId, userId, libraryId, baseBookId, sid);
+            Integer id = saved.get(sid);
+            if (id != null) {
                 ids.add(id);
-            } catch (Exception e) {
-                // Log failure but continue with other suggestions
-                logger.warning("Failed to add suggestion for book ID " + sid + ": " + e.getMessage());
+            } else {
+                logger.warning("Failed to add suggestion for book ID " + sid);
                 failedIds.add(sid);
             }
         }
@@ -100,9 +113,9 @@ public class SuggestionServiceImpl extends UnicastRemoteObject implements Sugges
         return ids;
     }
     public java.util.List<SuggestionEntry> getSuggestionsForBatch(int batchId) throws RemoteException {
-        try { return dao.getSuggestionsForBatch(batchId); } catch (Exception e) { throw new ServiceException("Errore fetch batch", e); }
+        try { return dao.getSuggestionsForBatch(batchId); } catch (Exception e) { throw ServiceExceptions.wrap("Errore fetch batch", e); }
     }
     public boolean updateSuggestion(int userId, int suggestionId, int newSuggestedBookId) throws RemoteException {
-        try { return dao.updateSuggestion(userId, suggestionId, newSuggestedBookId); } catch (Exception e) { throw new ServiceException("Errore update suggestion", e); }
+        try { return dao.updateSuggestion(userId, suggestionId, newSuggestedBookId); } catch (Exception e) { throw ServiceExceptions.wrap("Errore update suggestion", e); }
     }
 }
@@ -21,7 +21,7 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
     private final UserDAO dao;
 
     public UserServiceImpl(UserDAO dao) throws RemoteException {
-        super();
+        super(RmiSocketFactories.PORT, RmiSocketFactories.client(), RmiSocketFactories.server());
         this.dao = dao;
     }
 
@@ -34,7 +34,9 @@ public class UserServiceImpl extends UnicastRemoteObject implements UserService
 
         // Check for specific exception types and wrap appropriately
         Throwable cause = e.getCause();
-        if (cause instanceof java.sql.SQLException) {
+        if (ServiceExceptions.isOverloaded(e)) {
+            return ServiceExceptions.wrap(operation, e);
+        } else if (cause instanceof java.sql.SQLException) {
             return new ServiceException("Errore database " + operation,
                 new DatabaseException("Database error during " + operation, e));
         } else if (cause instanceof java.rmi.RemoteException) {
@@ -2,8 +2,16 @@ package it.uninsubria.server.service;
 
 import java.util.List;
 
+import it.uninsubria.server.dao.ResultCursor;
 import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookFacets;
+import it.uninsubria.shared.model.BookSummary;
+import it.uninsubria.shared.model.CategoryPage;
+import it.uninsubria.shared.model.CategorySort;
+import it.uninsubria.shared.model.FacetFilters;
 import it.uninsubria.shared.model.ReviewManager;
+import it.uninsubria.shared.model.SearchCompletion;
+import it.uninsubria.shared.model.TrendingWindow;
 
 /**
  * Core service interface for book-related operations.
@@ -34,10 +42,12 @@ public interface BookServiceCore {
     /**
      * Searches for all books in the catalog (global search).
      * <p>
-     * Results are cached for performance. Large datasets are loaded
-     * in batches with the first batch returned immediately.
+     * Once the {@link it.uninsubria.server.catalog.ColumnarCatalog} is built the
+     * result is a read-only view of its rows, whose books are created as the
+     * list is read; until then the books are read from the database. Nothing
+     * is cached.
      * </p>
-     * 
+     *
      * @return list of all books in the catalog
      * @throws Exception if search fails due to database or cache errors
      */
@@ -90,6 +100,20 @@ public interface BookServiceCore {
      */
     Book getBookDetails(int bookId) throws Exception;
 
+    /**
+     * Retrieves several books by ID with a single round-trip.
+     * <p>
+     * Books already cached are served from memory; the remaining ones are
+     * loaded with one DAO query and cached individually. The result follows
+     * the order of the input IDs, and IDs that do not exist are skipped.
+     * </p>
+     *
+     * @param bookIds the book IDs to retrieve
+     * @return the books found, in input order
+     * @throws Exception if retrieval fails
+     */
+    List<Book> getBooksByIds(List<Integer> bookIds) throws Exception;
+
     /**
      * Retrieves all reviews for a specific book, aggregated by average scores.
      * 
@@ -130,6 +154,27 @@ public interface BookServiceCore {
      */
     List<Book> searchGloballyPaged(int offset, int limit) throws Exception;
 
+    /**
+     * Lists the summaries of the catalog in book ID order, from the
+     * {@link it.uninsubria.server.catalog.ColumnarCatalog} once it is built or
+     * else from the database. Nothing is cached.
+     *
+     * @param offset the number of records to skip
+     * @param limit the maximum number of records to return
+     * @return a page of summaries
+     * @throws Exception if database access fails
+     */
+    List<BookSummary> searchGloballySummaries(int offset, int limit) throws Exception;
+
+    /**
+     * Tells whether catalog reads are answered from the in-memory columnar
+     * catalog. Those results are new lists built on every call rather than
+     * cached objects.
+     *
+     * @return true while a columnar catalog is loaded
+     */
+    boolean isCatalogLoaded();
+
     /**
      * Performs paginated search for books by title.
      * 
@@ -152,6 +197,35 @@ public interface BookServiceCore {
      */
     List<Book> searchByAuthorPaged(String author, int offset, int limit) throws Exception;
 
+    /**
+     * Searches lightweight book summaries for lists and search results.
+     * <p>
+     * Only id, title, authors, category and year are loaded; the full
+     * {@link Book} is fetched on demand with {@link #getBookDetails(int)}.
+     * Null or empty filters are ignored.
+     * </p>
+     *
+     * @param title the title to search for, or null
+     * @param author the author name to search for, or null
+     * @param year the publication year, or null
+     * @param offset the number of records to skip
+     * @param limit the maximum number of records to return
+     * @return paginated list of summaries ordered by book ID
+     * @throws Exception if search fails
+     */
+    List<BookSummary> searchBookSummaries(String title, String author, Integer year, int offset, int limit) throws Exception;
+
+    /**
+     * Opens a database cursor over the whole catalog ordered by book ID.
+     * <p>
+     * Not cached: rows are streamed in chunks so memory stays bounded by the fetch size.
+     *
+     * @param fetchSize rows fetched from the database per round trip
+     * @return the open cursor; the caller must close it
+     * @throws Exception if the cursor cannot be opened
+     */
+    ResultCursor<Book> openCatalogCursor(int fetchSize) throws Exception;
+
     /**
      * Retrieves the total count of books in the catalog.
      * <p>
@@ -164,12 +238,89 @@ public interface BookServiceCore {
     int getTotalBooksCount() throws Exception;
 
     /**
-     * Searches for all books for a specific user (user-specific cache).
+     * Retrieves a page of the catalog ranked by popularity.
      * <p>
-     * Results are cached separately per user to prevent cache pollution
-     * between different users' searches.
+     * The ranking is kept in memory by the {@link it.uninsubria.server.recommendation.PopularityRanker};
+     * pages are cached per ranking version, so a review that changes the order
+     * never serves a stale page.
      * </p>
-     * 
+     *
+     * @param offset the number of books to skip
+     * @param limit the maximum number of books to return
+     * @return the most popular books, best first
+     * @throws Exception if the books cannot be loaded
+     */
+    List<Book> getPopularBooks(int offset, int limit) throws Exception;
+
+    /**
+     * Retrieves the books with the most recent activity in a time window.
+     * <p>
+     * Not cached: the ranking lives in memory in the
+     * {@link it.uninsubria.server.recommendation.TrendingAggregator} and
+     * changes with every review or shelved book; the books themselves come
+     * from the per-book cache.
+     * </p>
+     *
+     * @param window the time scale of the activity
+     * @param k the maximum number of books to return
+     * @return the trending books, most active first
+     * @throws Exception if the books cannot be loaded
+     */
+    List<Book> getTrendingBooks(TrendingWindow window, int k) throws Exception;
+
+    /**
+     * Counts the books matching a search by category, decade and publisher.
+     * <p>
+     * Not cached: the counts come from the posting lists of the
+     * {@link it.uninsubria.server.catalog.ColumnarCatalog}, or from one pass
+     * over its columns when a text search is active. Until the catalog is
+     * built they are counted by the database.
+     * </p>
+     *
+     * @param query text to look for in titles and authors, or null
+     * @param filters the selected facet values, or null
+     * @return the counts per facet
+     * @throws Exception if the query is not valid
+     */
+    BookFacets getFacets(String query, FacetFilters filters) throws Exception;
+
+    /**
+     * Gets a page of the books of a category with cursor paging.
+     * <p>
+     * The page is read from the per-category sorted lists of the
+     * {@link it.uninsubria.server.catalog.ColumnarCatalog}, or from the
+     * database until the catalog is built. Cursors are book ids, valid in both.
+     * </p>
+     *
+     * @param category the category name
+     * @param query text to look for in titles and authors, or null for the whole category
+     * @param sort the order of the books, or null for title order
+     * @param cursor the cursor of the previous page, or null for the first page
+     * @param limit the maximum number of books to return
+     * @return the page; its total counts the books matching the query
+     * @throws Exception if the cursor is not valid
+     */
+    CategoryPage getBooksByCategory(String category, String query, CategorySort sort, String cursor, int limit)
+        throws Exception;
+
+    /**
+     * Completes a prefix with the most popular titles and authors.
+     * <p>
+     * Completions come from the {@link it.uninsubria.server.catalog.CompletionIndex}
+     * of the columnar catalog, in memory, so they are not cached.
+     * </p>
+     *
+     * @param prefix the text typed so far
+     * @param k the maximum number of completions
+     * @return the completions, most popular first; empty until the columnar catalog is built
+     * @throws Exception if the prefix is too long
+     */
+    List<SearchCompletion> completeSearch(String prefix, int k) throws Exception;
+
+    /**
+     * Searches for all books for a specific user. The catalog is the same
+     * for every user, so this returns the same as {@link #searchGlobally()}.
+     *
      * @param userId the unique identifier of the user
      * @return list of all books
      * @throws Exception if search fails
@@ -1,14 +1,35 @@
 package it.uninsubria.server.service;
 
+import it.uninsubria.server.cache.CacheManager;
 import it.uninsubria.server.cache.HybridCacheManager;
+import it.uninsubria.server.cache.PreSerializedResponseCache;
+import it.uninsubria.server.catalog.CatalogFilter;
+import it.uninsubria.server.catalog.CatalogOrder;
+import it.uninsubria.server.catalog.CatalogStore;
+import it.uninsubria.server.catalog.ColumnarCatalog;
+import it.uninsubria.server.catalog.CompletionIndex;
 import it.uninsubria.server.dao.BookDAO;
+import it.uninsubria.server.dao.ResultCursor;
+import it.uninsubria.server.recommendation.PopularityRanker;
+import it.uninsubria.server.recommendation.PopularityRanking;
+import it.uninsubria.server.recommendation.TrendingAggregator;
 import it.uninsubria.server.util.InputValidator;
 import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookFacets;
+import it.uninsubria.shared.model.BookSummary;
+import it.uninsubria.shared.model.CategoryPage;
+import it.uninsubria.shared.model.CategorySort;
+import it.uninsubria.shared.model.FacetFilters;
 import it.uninsubria.shared.model.ReviewManager;
+import it.uninsubria.shared.model.SearchCompletion;
+import it.uninsubria.shared.model.TrendingWindow;
 import it.uninsubria.shared.utils.AppConstants;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -17,23 +38,38 @@ import java.util.logging.Logger;
 public class BookServiceCoreImpl implements BookServiceCore {
     private static final Logger logger = Logger.getLogger(BookServiceCoreImpl.class.getName());
     private final BookDAO bookDAO;
+    private final CatalogStore catalogStore;
+    private final PopularityRanker popularityRanker;
+    private final TrendingAggregator trendingAggregator;
 
     private static final long DEFAULT_CACHE_TTL = AppConstants.Time.TIMEOUT_10_MINUTES;
-    private static final long LARGE_DATASET_TTL = AppConstants.Time.TIMEOUT_1_HOUR;
     private static final long REVIEWS_CACHE_TTL = AppConstants.Time.TIMEOUT_2_MINUTES;
     private static final long LIBRARY_CACHE_TTL = AppConstants.Time.TIMEOUT_5_MINUTES;
 
-    private static final int LARGE_DATASET_THRESHOLD = AppConstants.Batch.LARGE_DATASET_THRESHOLD;
-    private static final int LARGE_DATASET_SIZE_THRESHOLD = AppConstants.Batch.LARGE_DATASET_SIZE_THRESHOLD;
-    private static final int BATCH_SIZE = AppConstants.Batch.DEFAULT_SIZE;
-
     /**
      * Constructs a BookServiceCoreImpl with the given BookDAO.
      *
      * @param bookDAO the BookDAO instance
      */
     public BookServiceCoreImpl(BookDAO bookDAO) {
+        this(bookDAO, null, null, null);
+    }
+
+    /**
+     * Constructs a BookServiceCoreImpl that serves catalog reads from the columnar
+     * catalog once it is built, and also serves the popularity and trending rankings.
+     *
+     * @param bookDAO the BookDAO instance
+     * @param catalogStore the off-heap copy of the catalog, or null to always query the database
+     * @param popularityRanker the ranker behind {@link #getPopularBooks(int, int)}, or null
+     * @param trendingAggregator the aggregator behind {@link #getTrendingBooks(TrendingWindow, int)}, or null
+     */
+    public BookServiceCoreImpl(BookDAO bookDAO, CatalogStore catalogStore, PopularityRanker popularityRanker,
+                               TrendingAggregator trendingAggregator) {
         this.bookDAO = bookDAO;
+        this.catalogStore = catalogStore;
+        this.popularityRanker = popularityRanker;
+        this.trendingAggregator = trendingAggregator;
     }
 
     // Generic cache helper methods
@@ -77,106 +113,157 @@ public class BookServiceCoreImpl implements BookServiceCore {
 
     @Override
     public List<Book> searchGlobally() throws Exception {
-        String cacheKey = "books_all";
-        @SuppressWarnings("unchecked")
-        List<Book> cached = HybridCacheManager.get("global", cacheKey, List.class);
-        if (cached != null && !cached.isEmpty() && cached.get(0) instanceof Book) {
-            return cached;
-        }
-
-        // Check total book count to decide loading strategy
-        int totalBooks = bookDAO.getTotalBooksCount();
-
-        List<Book> result;
-        if (totalBooks > LARGE_DATASET_THRESHOLD) {
-            result = loadBooksOptimized(totalBooks);
-        } else {
-            result = bookDAO.findAll();
+        ColumnarCatalog catalog = catalog();
+        if (catalog != null) {
+            // Vista sulle righe del catalogo: i libri si creano solo mentre la risposta viene serializzata
+            return catalog.bookView(catalog.select(CatalogFilter.all(), CatalogOrder.ID, 0, catalog.size()));
         }
-
-        // Cache with longer TTL for large datasets
-        long ttl = totalBooks > LARGE_DATASET_SIZE_THRESHOLD ? LARGE_DATASET_TTL : DEFAULT_CACHE_TTL;
-        HybridCacheManager.put("global", cacheKey, result, ttl, "books");
-        return result;
+        // Catalogo non ancora costruito: nessuna copia in cache, il catalogo la renderebbe superflua
+        return bookDAO.findAll();
     }
 
     /**
-      * Optimized loading for large book catalogs
-      */
-    private List<Book> loadBooksOptimized(int totalBooks) throws Exception {
-        List<Book> result = new ArrayList<>();
-        int batches = calculateBatchCount(totalBooks);
-
-        // Load first batch synchronously for immediate response
-        result.addAll(loadFirstBatch());
-
-        // Load remaining batches asynchronously and cache them
-        if (batches > 1) {
-            loadRemainingBatchesAsync(batches);
-        }
-
-        return result;
-    }
-
-    private int calculateBatchCount(int totalBooks) {
-        return (int) Math.ceil(totalBooks / (double) BATCH_SIZE);
-    }
-
-    private List<Book> loadFirstBatch() throws Exception {
-        return bookDAO.findAllPaged(0, BATCH_SIZE);
-    }
-
-    private void loadRemainingBatchesAsync(int totalBatches) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                for (int i = 1; i < totalBatches; i++) {
-                    List<Book> batch = loadBatch(i);
-                    cacheBatch(i, batch);
-                }
-            } catch (Exception e) {
-                logger.severe("Error loading book batches: " + e.getMessage());
-            }
-        });
-    }
-
-    private List<Book> loadBatch(int batchIndex) throws Exception {
-        int offset = batchIndex * BATCH_SIZE;
-        return bookDAO.findAllPaged(offset, BATCH_SIZE);
+     * @return the columnar catalog, or null while it is not built yet
+     */
+    private ColumnarCatalog catalog() {
+        return catalogStore != null ? catalogStore.get() : null;
     }
 
-    private void cacheBatch(int batchIndex, List<Book> batch) {
-        HybridCacheManager.put("global", "books_batch_" + batchIndex, batch, LARGE_DATASET_TTL, "books");
+    // Le ricerche non paginate restituiscono tutte le corrispondenze, come le query della DAO
+    private static List<Book> selectAll(ColumnarCatalog catalog, CatalogFilter filter) {
+        return catalog.books(catalog.select(filter, CatalogOrder.ID, 0, catalog.size()));
     }
 
     @Override
     public List<Book> searchByTitle(String title) throws Exception {
         validateSearchInput(title);
+        ColumnarCatalog catalog = catalog();
+        if (catalog != null) {
+            return selectAll(catalog, CatalogFilter.all().withTitle(title));
+        }
         return bookDAO.findByTitle(title);
     }
 
     @Override
     public List<Book> searchByAuthor(String author) throws Exception {
         validateSearchInput(author);
+        ColumnarCatalog catalog = catalog();
+        if (catalog != null) {
+            return selectAll(catalog, CatalogFilter.all().withAuthor(author));
+        }
         return bookDAO.findByAuthor(author);
     }
 
     @Override
     public List<Book> searchByAuthorAndYear(String author, int year) throws Exception {
         validateSearchInputAndYear(author, year);
+        ColumnarCatalog catalog = catalog();
+        if (catalog != null) {
+            return selectAll(catalog, CatalogFilter.all().withAuthor(author).withYear(year));
+        }
         return bookDAO.findByAuthorAndYear(author, year);
     }
 
     @Override
     public List<Book> searchByTitleAndYear(String title, int year) throws Exception {
         validateSearchInputAndYear(title, year);
+        ColumnarCatalog catalog = catalog();
+        if (catalog != null) {
+            return selectAll(catalog, CatalogFilter.all().withTitle(title).withYear(year));
+        }
         return bookDAO.findByTitleAndYear(title, year);
     }
 
     @Override
     public Book getBookDetails(int bookId) throws Exception {
+        ColumnarCatalog catalog = catalog();
+        int row = catalog != null ? catalog.rowOf(bookId) : -1;
+        if (row >= 0) {
+            return catalog.book(row);
+        }
         return bookDAO.findByID(bookId);
     }
 
+    @Override
+    public List<Book> getBooksByIds(List<Integer> bookIds) throws Exception {
+        ColumnarCatalog catalog = catalog();
+        if (catalog == null || bookIds == null || bookIds.isEmpty()) {
+            return getCachedBooksByIds(bookIds);
+        }
+        // Dal catalogo colonnare; i libri aggiunti dopo l'ultima build passano dalla cache
+        Map<Integer, Book> booksById = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : bookIds) {
+            if (id == null || booksById.containsKey(id)) {
+                continue;
+            }
+            int row = catalog.rowOf(id);
+            if (row >= 0) {
+                booksById.put(id, catalog.book(row));
+            } else {
+                missing.add(id);
+            }
+        }
+        for (Book book : getCachedBooksByIds(missing)) {
+            booksById.put(book.getBook_id(), book);
+        }
+        List<Book> result = new ArrayList<>();
+        for (Integer id : bookIds) {
+            Book book = id != null ? booksById.get(id) : null;
+            if (book != null) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    private List<Book> getCachedBooksByIds(List<Integer> bookIds) throws Exception {
+        List<Book> result = new ArrayList<>();
+        if (bookIds == null || bookIds.isEmpty()) {
+            return result;
+        }
+
+        // Distinct IDs keyed by their per-book cache key
+        Map<String, Integer> idsByKey = new LinkedHashMap<>();
+        for (Integer id : bookIds) {
+            if (id != null) {
+                idsByKey.putIfAbsent(bookCacheKey(id), id);
+            }
+        }
+
+        Map<String, Book> cached = CacheManager.getAll("global", idsByKey.keySet(), Book.class);
+        Map<Integer, Book> booksById = new HashMap<>();
+        for (Book book : cached.values()) {
+            booksById.put(book.getBook_id(), book);
+        }
+
+        int[] missingIds = idsByKey.entrySet().stream()
+            .filter(entry -> !cached.containsKey(entry.getKey()))
+            .mapToInt(Map.Entry::getValue)
+            .toArray();
+        if (missingIds.length > 0) {
+            Map<String, Book> loaded = new HashMap<>();
+            for (Book book : bookDAO.findByIds(missingIds)) {
+                booksById.put(book.getBook_id(), book);
+                loaded.put(bookCacheKey(book.getBook_id()), book);
+            }
+            CacheManager.putAll("global", loaded, DEFAULT_CACHE_TTL, "books");
+            logger.fine("getBooksByIds: " + cached.size() + " cached, " + loaded.size() + " loaded of " + missingIds.length + " missing");
+        }
+
+        for (Integer id : bookIds) {
+            Book book = id != null ? booksById.get(id) : null;
+            if (book != null) {
+                result.add(book);
+            }
+        }
+        return result;
+    }
+
+    private static String bookCacheKey(int bookId) {
+        return "book_details_" + bookId;
+    }
+
     @Override
     public List<ReviewManager> getAggregatedReviews(int idLibro) throws Exception {
         return bookDAO.getAggregatedReviews(idLibro);
@@ -191,19 +278,42 @@ public class BookServiceCoreImpl implements BookServiceCore {
     public void invalidateBooksCache() throws Exception {
         // Invalidate global book cache
         HybridCacheManager.invalidateByCategory("global", "books");
+        PreSerializedResponseCache.invalidateByCategory("books");
         logger.fine("Invalidated global books cache");
     }
 
+    @Override
+    public boolean isCatalogLoaded() {
+        return catalog() != null;
+    }
+
     @Override
     public List<Book> searchGloballyPaged(int offset, int limit) throws Exception {
+        ColumnarCatalog catalog = catalog();
+        if (catalog != null) {
+            return catalog.books(catalog.select(CatalogFilter.all(), CatalogOrder.ID, offset, limit));
+        }
         String cacheKey = "books_global_paged_" + offset + "_" + limit;
         return executeWithCaching("global", cacheKey, DEFAULT_CACHE_TTL, "books",
             () -> bookDAO.findAllPaged(offset, limit));
     }
 
+    @Override
+    public List<BookSummary> searchGloballySummaries(int offset, int limit) throws Exception {
+        ColumnarCatalog catalog = catalog();
+        if (catalog != null) {
+            return catalog.summaries(catalog.select(CatalogFilter.all(), CatalogOrder.ID, offset, limit));
+        }
+        return bookDAO.findSummaries(null, null, null, offset, limit);
+    }
+
     @Override
     public List<Book> searchByTitlePaged(String query, int offset, int limit) throws Exception {
         validateSearchInput(query);
+        ColumnarCatalog catalog = catalog();
+        if (catalog != null) {
+            return catalog.books(catalog.select(CatalogFilter.all().withTitle(query), CatalogOrder.ID, offset, limit));
+        }
         String cacheKey = "books_title_paged_" + query + "_" + offset + "_" + limit;
         return executeWithCaching("global", cacheKey, DEFAULT_CACHE_TTL, "books",
             () -> bookDAO.findByTitlePaged(query, offset, limit));
@@ -212,30 +322,174 @@ public class BookServiceCoreImpl implements BookServiceCore {
     @Override
     public List<Book> searchByAuthorPaged(String author, int offset, int limit) throws Exception {
         validateSearchInput(author);
+        ColumnarCatalog catalog = catalog();
+        if (catalog != null) {
+            return catalog.books(catalog.select(CatalogFilter.all().withAuthor(author), CatalogOrder.ID, offset, limit));
+        }
         String cacheKey = "books_author_paged_" + author + "_" + offset + "_" + limit;
         return executeWithCaching("global", cacheKey, DEFAULT_CACHE_TTL, "books",
             () -> bookDAO.findByAuthorPaged(author, offset, limit));
     }
 
+    @Override
+    public List<BookSummary> searchBookSummaries(String title, String author, Integer year, int offset, int limit) throws Exception {
+        if (title != null && !title.trim().isEmpty()) {
+            validateSearchInput(title);
+        }
+        if (author != null && !author.trim().isEmpty()) {
+            validateSearchInput(author);
+        }
+        if (year != null) {
+            InputValidator.validateYear(year);
+        }
+        ColumnarCatalog catalog = catalog();
+        if (catalog != null) {
+            CatalogFilter filter = CatalogFilter.all()
+                .withTitle(title != null ? title.trim() : null)
+                .withAuthor(author != null ? author.trim() : null)
+                .withYear(year);
+            return catalog.summaries(catalog.select(filter, CatalogOrder.ID, offset, limit));
+        }
+        String cacheKey = "books_summaries_" + title + "_" + author + "_" + year + "_" + offset + "_" + limit;
+        return executeWithCaching("global", cacheKey, DEFAULT_CACHE_TTL, "books",
+            () -> bookDAO.findSummaries(title, author, year, offset, limit));
+    }
+
+    @Override
+    public ResultCursor<Book> openCatalogCursor(int fetchSize) throws Exception {
+        ColumnarCatalog catalog = catalog();
+        if (catalog != null) {
+            return catalog.cursor(0);
+        }
+        return bookDAO.openCatalogCursor(fetchSize);
+    }
+
     @Override
     public int getTotalBooksCount() throws Exception {
+        ColumnarCatalog catalog = catalog();
+        if (catalog != null) {
+            return catalog.size();
+        }
         String cacheKey = "books_total_count";
         return executeWithCaching("global", cacheKey, DEFAULT_CACHE_TTL, "books",
             () -> bookDAO.getTotalBooksCount());
     }
 
+    @Override
+    public List<Book> getPopularBooks(int offset, int limit) throws Exception {
+        if (popularityRanker == null) {
+            return new ArrayList<>();
+        }
+        PopularityRanking ranking = popularityRanker.getRanking();
+        int[] page = ranking.page(offset, limit);
+        if (page.length == 0) {
+            return new ArrayList<>();
+        }
+        // La versione nella chiave rende inutile invalidare: un nuovo ordine usa chiavi nuove
+        String cacheKey = "books_popular_" + ranking.getVersion() + "_" + offset + "_" + limit;
+        return executeWithCaching("global", cacheKey, DEFAULT_CACHE_TTL, "popular",
+            () -> getBooksByIds(Arrays.stream(page).boxed().toList()));
+    }
+
+    @Override
+    public List<Book> getTrendingBooks(TrendingWindow window, int k) throws Exception {
+        if (trendingAggregator == null || window == null) {
+            return new ArrayList<>();
+        }
+        int[] trending = trendingAggregator.getTrendingBooks(window, k);
+        return getBooksByIds(Arrays.stream(trending).boxed().toList());
+    }
+
+    @Override
+    public BookFacets getFacets(String query, FacetFilters filters) throws Exception {
+        if (query != null && !query.trim().isEmpty()) {
+            validateSearchInput(query);
+        }
+        ColumnarCatalog catalog = catalog();
+        if (catalog == null) {
+            // Catalogo non ancora costruito (avvio o reset): conteggi con GROUP BY
+            return bookDAO.countFacets(query, filters, AppConstants.Cache.FACET_MAX_PUBLISHERS);
+        }
+        CatalogFilter filter = CatalogFilter.all().withText(query != null ? query.trim() : null);
+        if (filters != null) {
+            filter = filter.withCategory(filters.getCategory())
+                .withPublisher(filters.getPublisher())
+                .withDecade(filters.getDecade());
+        }
+        return catalog.facets(filter, AppConstants.Cache.FACET_MAX_PUBLISHERS);
+    }
+
+    @Override
+    public CategoryPage getBooksByCategory(String category, String query, CategorySort sort, String cursor, int limit)
+            throws Exception {
+        Integer afterBookId = null;
+        if (cursor != null) {
+            try {
+                afterBookId = Integer.valueOf(cursor);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Cursore di pagina non valido: " + cursor);
+            }
+        }
+        if (category == null || limit <= 0) {
+            return CategoryPage.empty();
+        }
+        CategorySort order = sort != null ? sort : CategorySort.TITLE_ASC;
+        String text = query != null && !query.trim().isEmpty() ? query.trim() : null;
+        ColumnarCatalog catalog = catalog();
+        if (catalog == null) {
+            // Catalogo non ancora costruito (avvio o reset): la pagina si legge dalla DAO
+            List<Book> books = bookDAO.findByCategoryPaged(category, text, order, afterBookId, limit + 1);
+            String nextCursor = null;
+            if (books.size() > limit) {
+                books = new ArrayList<>(books.subList(0, limit));
+                nextCursor = String.valueOf(books.get(limit - 1).getBook_id());
+            }
+            return new CategoryPage(books, nextCursor, bookDAO.countByCategory(category, text));
+        }
+        // Una riga in più dice se esiste una pagina successiva
+        CatalogFilter filter = CatalogFilter.all().withText(text);
+        int[] rows = catalog.categoryPage(category, filter, catalogOrder(order), isDescending(order), afterBookId,
+            limit + 1);
+        int[] page = rows.length > limit ? Arrays.copyOf(rows, limit) : rows;
+        String nextCursor = rows.length > limit ? String.valueOf(catalog.bookId(page[limit - 1])) : null;
+
+        // Nessuna cache: la pagina si legge dal catalogo in memoria, una copia per cursore sarebbe solo spreco
+        return new CategoryPage(catalog.books(page), nextCursor, catalog.categorySize(category, filter));
+    }
+
+    @Override
+    public List<SearchCompletion> completeSearch(String prefix, int k) throws Exception {
+        CompletionIndex index = catalogStore != null ? catalogStore.getCompletions() : null;
+        if (index == null || prefix == null || prefix.trim().isEmpty() || k <= 0) {
+            return new ArrayList<>();
+        }
+        validateSearchInput(prefix);
+        return index.complete(prefix, k);
+    }
+
+    private static CatalogOrder catalogOrder(CategorySort sort) {
+        switch (sort) {
+            case AUTHOR_ASC:
+            case AUTHOR_DESC:
+                return CatalogOrder.AUTHOR;
+            case YEAR_NEWEST:
+            case YEAR_OLDEST:
+                return CatalogOrder.NEWEST;
+            default:
+                return CatalogOrder.TITLE;
+        }
+    }
+
+    private static boolean isDescending(CategorySort sort) {
+        return sort == CategorySort.TITLE_DESC || sort == CategorySort.AUTHOR_DESC || sort == CategorySort.YEAR_OLDEST;
+    }
+
     // ===== NUOVI METODI PER CACHE PER-USER =====
 
     @Override
     public List<Book> searchGloballyForUser(String userId) throws Exception {
-        String cacheKey = "books_all";
-        @SuppressWarnings("unchecked")
-        List<Book> cached = HybridCacheManager.get(userId, cacheKey, List.class);
-        if (cached != null) return cached;
-
-        List<Book> result = bookDAO.findAll();
-        HybridCacheManager.put(userId, cacheKey, result, DEFAULT_CACHE_TTL, "books");
-        return result;
+        // Il catalogo è lo stesso per tutti gli utenti: una copia per utente sarebbe solo memoria sprecata
+        return searchGlobally();
     }
 
     @Override
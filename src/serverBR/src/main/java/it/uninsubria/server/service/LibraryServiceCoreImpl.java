@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.logging.Logger;
 import it.uninsubria.server.cache.CacheManager;
 import it.uninsubria.server.dao.LibraryDAO;
+import it.uninsubria.server.dao.UnitOfWork;
 import it.uninsubria.server.util.InputValidator;
 import it.uninsubria.shared.model.Library;
 
@@ -29,12 +30,28 @@ public class LibraryServiceCoreImpl implements LibraryServiceCore {
             logger.fine("Returning cached libraries, count: " + cached.size());
             return cached;
         }
-        List<Library> libs = libraryDAO.getUserLibraries(username);
+        // Una sola connessione per la lista e i libri di ogni libreria
+        List<Library> libs = UnitOfWork.run(() -> libraryDAO.getUserLibraries(username));
         logger.fine("Retrieved libraries from DAO, count: " + libs.size());
         CacheManager.put(username, cacheKey, libs, CacheManager.DEFAULT_TTL_LIBRARIES, "libraries");
         return libs;
     }
 
+    @Override
+    public List<Library> getUserLibrariesWithBooks(String username) throws Exception {
+        String cacheKey = "libraries_books_" + username;
+        @SuppressWarnings("unchecked")
+        List<Library> cached = CacheManager.get(username, cacheKey, List.class);
+        if (cached != null) {
+            logger.fine("Returning cached libraries with books, count: " + cached.size());
+            return cached;
+        }
+        List<Library> libs = libraryDAO.getUserLibrariesWithBooks(username);
+        logger.fine("Retrieved libraries with books from DAO, count: " + libs.size());
+        CacheManager.put(username, cacheKey, libs, CacheManager.DEFAULT_TTL_LIBRARIES, "libraries");
+        return libs;
+    }
+
     @Override
     public List<Integer> getBooksInLibraries(int libraryId) throws Exception {
         return libraryDAO.getBooksInLibraries(libraryId);
@@ -51,7 +68,8 @@ public class LibraryServiceCoreImpl implements LibraryServiceCore {
         if (library != null) {
             InputValidator.validateLibraryName(library.getName());
         }
-        Library result = libraryDAO.addLibraryForUser(username, library);
+        // Validazione, inserimento libreria e libri in un'unica transazione
+        Library result = UnitOfWork.run(() -> libraryDAO.addLibraryForUser(username, library));
         // Invalidate user-specific cache
         CacheManager.invalidateUserLibraries(username);
         return result;
@@ -63,7 +81,10 @@ public class LibraryServiceCoreImpl implements LibraryServiceCore {
         if (newLibrary != null) {
             InputValidator.validateLibraryName(newLibrary.getName());
         }
-        libraryDAO.updateLibraryForUser(username, oldLibrary, newLibrary);
+        UnitOfWork.run(() -> {
+            libraryDAO.updateLibraryForUser(username, oldLibrary, newLibrary);
+            return null;
+        });
         // Invalidate user-specific cache
         CacheManager.invalidateUserLibraries(username);
     }
@@ -72,7 +93,10 @@ public class LibraryServiceCoreImpl implements LibraryServiceCore {
     public void deleteLibraryForUser(String username, Library library) throws Exception {
         InputValidator.validateUsername(username);
         logger.fine("Deleting library '" + library.getName() + "' for user '" + username + "'");
-        libraryDAO.deleteLibraryForUser(username, library);
+        UnitOfWork.run(() -> {
+            libraryDAO.deleteLibraryForUser(username, library);
+            return null;
+        });
         // Invalidate user-specific cache
         CacheManager.invalidateUserLibraries(username);
         logger.fine("Library deletion completed and cache invalidated");
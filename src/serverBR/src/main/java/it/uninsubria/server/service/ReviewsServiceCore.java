@@ -3,6 +3,7 @@ package it.uninsubria.server.service;
 import java.util.List;
 import java.util.Map;
 
+import it.uninsubria.shared.model.BookReviewStats;
 import it.uninsubria.shared.model.Review;
 
 public interface ReviewsServiceCore {
@@ -12,4 +13,6 @@ public interface ReviewsServiceCore {
     List<Review> getReviewsByBook(int bookId) throws Exception;
     List<Review> getReviewsForBookAndUser(int userId, int bookId) throws Exception;
     boolean saveReview(int userId, int bookId, Integer libraryId, Map<String, Integer> scores, Map<String, String> notes) throws Exception;
+    List<BookReviewStats> getReviewStatsForBooks(int[] bookIds) throws Exception;
+    List<BookReviewStats> getAllReviewStats() throws Exception;
 }
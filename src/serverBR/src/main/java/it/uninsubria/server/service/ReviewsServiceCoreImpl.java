@@ -1,27 +1,43 @@
 package it.uninsubria.server.service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import it.uninsubria.server.cache.CacheManager;
 import it.uninsubria.server.dao.ReviewDAO;
 import it.uninsubria.server.util.InputValidator;
+import it.uninsubria.shared.model.BookReviewStats;
 import it.uninsubria.shared.model.Review;
 
 public class ReviewsServiceCoreImpl implements ReviewsServiceCore {
     private final ReviewDAO reviewDAO;
 
+    private static final String ALL_STATS_CACHE_KEY = "review_stats_all";
+    private static final String BATCH_STATS_CATEGORY = "review_stats";
+
     public ReviewsServiceCoreImpl(ReviewDAO reviewDAO) {
         this.reviewDAO = reviewDAO;
     }
 
     public boolean updateReview(int userId, int bookId, Review review) throws Exception {
-        return reviewDAO.updateReview(userId, bookId, review);
+        boolean result = reviewDAO.updateReview(userId, bookId, review);
+        if (result) {
+            invalidateReviewStats(bookId);
+        }
+        return result;
     }
 
     @Override
     public boolean addReview(int userId, int bookId, Review v) throws Exception {
-        return reviewDAO.addReview(userId, bookId, v);
+        boolean result = reviewDAO.addReview(userId, bookId, v);
+        if (result) {
+            invalidateReviewStats(bookId);
+        }
+        return result;
     }
 
     @Override
@@ -82,6 +98,7 @@ public class ReviewsServiceCoreImpl implements ReviewsServiceCore {
         // Invalidate related caches
         if (result) {
             CacheManager.invalidateBookData("global", bookId);
+            invalidateReviewStats(bookId);
         }
 
         return result;
@@ -97,5 +114,62 @@ public class ReviewsServiceCoreImpl implements ReviewsServiceCore {
         return reviewDAO.getReviewsForBookAndUser(userId, bookId);
     }
 
+    @Override
+    public List<BookReviewStats> getReviewStatsForBooks(int[] bookIds) throws Exception {
+        if (bookIds == null || bookIds.length == 0) {
+            return new ArrayList<>();
+        }
+
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (int id : bookIds) {
+            ids.add(id);
+        }
+        // Un'unica voce di cache per richiesta: una voce per libro riempirebbe la cache globale
+        String cacheKey = batchCacheKey(ids);
+        @SuppressWarnings("unchecked")
+        List<BookReviewStats> cached = CacheManager.get("global", cacheKey, List.class);
+        if (cached != null) {
+            return cached;
+        }
 
+        Map<Integer, BookReviewStats> statsById = new HashMap<>();
+        for (BookReviewStats stats : reviewDAO.getReviewStatsForBooks(ids.stream().mapToInt(Integer::intValue).toArray())) {
+            statsById.put(stats.getBookId(), stats);
+        }
+        List<BookReviewStats> result = new ArrayList<>();
+        for (Integer id : ids) {
+            BookReviewStats stats = statsById.get(id);
+            if (stats != null && stats.getReviewCount() > 0) {
+                result.add(stats);
+            }
+        }
+        CacheManager.put("global", cacheKey, result, CacheManager.DEFAULT_TTL_REVIEWS, BATCH_STATS_CATEGORY);
+        return result;
+    }
+
+    @Override
+    public List<BookReviewStats> getAllReviewStats() throws Exception {
+        @SuppressWarnings("unchecked")
+        List<BookReviewStats> cached = CacheManager.get("global", ALL_STATS_CACHE_KEY, List.class);
+        if (cached != null) {
+            return cached;
+        }
+        List<BookReviewStats> stats = reviewDAO.getAllReviewStats();
+        CacheManager.put("global", ALL_STATS_CACHE_KEY, stats, CacheManager.DEFAULT_TTL_REVIEWS, "reviews");
+        return stats;
+    }
+
+    private static String batchCacheKey(Set<Integer> ids) {
+        StringBuilder key = new StringBuilder("review_stats_batch_");
+        for (Integer id : ids) {
+            key.append(id).append(',');
+        }
+        return key.toString();
+    }
+
+    private static void invalidateReviewStats(int bookId) {
+        // Qualsiasi richiesta può contenere il libro: si scartano tutte le statistiche per gruppi
+        CacheManager.invalidateByCategory("global", BATCH_STATS_CATEGORY);
+        CacheManager.remove("global", ALL_STATS_CACHE_KEY);
+    }
 }
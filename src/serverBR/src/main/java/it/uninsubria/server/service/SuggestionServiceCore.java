@@ -13,4 +13,5 @@ public interface SuggestionServiceCore {
     List<Book> getUserSuggestions(int userId, int baseBookId) throws Exception;
     List<Book> getUserSuggestionsForBookAndLibrary(int userId, int libraryId, int baseBookId) throws Exception;
     List<Book> getDynamicSuggestedBooks(int baseBookId, int libraryId, int userId, int topN) throws Exception;
+    List<Book> getRecommendedForUser(int userId, int topK) throws Exception;
 }
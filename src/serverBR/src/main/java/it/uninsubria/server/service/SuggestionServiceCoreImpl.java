@@ -1,14 +1,33 @@
 package it.uninsubria.server.service;
 
+import java.util.ArrayList;
 import java.util.List;
 import it.uninsubria.server.dao.SuggestionDAO;
+import it.uninsubria.server.recommendation.CoOccurrenceRecommender;
+import it.uninsubria.server.recommendation.CollaborativeRecommender;
+import it.uninsubria.server.recommendation.ContentRecommender;
 import it.uninsubria.shared.model.Book;
 import it.uninsubria.shared.model.SuggestionEntry;
+import it.uninsubria.shared.utils.AppConstants;
 
 public class SuggestionServiceCoreImpl implements SuggestionServiceCore {
     
     private final SuggestionDAO dao;
-    public SuggestionServiceCoreImpl(SuggestionDAO dao) { this.dao = dao; }
+    private final CoOccurrenceRecommender recommender;
+    private final ContentRecommender content;
+    private final CollaborativeRecommender collaborative;
+    private final BookServiceCore books;
+
+    public SuggestionServiceCoreImpl(SuggestionDAO dao) { this(dao, null, null, null, null); }
+
+    public SuggestionServiceCoreImpl(SuggestionDAO dao, CoOccurrenceRecommender recommender, ContentRecommender content,
+                                     CollaborativeRecommender collaborative, BookServiceCore books) {
+        this.dao = dao;
+        this.recommender = recommender;
+        this.content = content;
+        this.collaborative = collaborative;
+        this.books = books;
+    }
     @Override
     public List<SuggestionEntry> getSuggestionsForBaseBook(int baseBookId) throws Exception {
         return dao.getSuggestionsForBaseBook(baseBookId);
@@ -16,8 +35,37 @@ public class SuggestionServiceCoreImpl implements SuggestionServiceCore {
 
     @Override
     public List<Book> getDynamicSuggestedBooks(int baseBookId, int libraryId, int userId, int topN) throws Exception {
-        // Fallback: if dynamic logic is not implemented, return static suggestions
-        return new java.util.ArrayList<>();
+        if (recommender == null || books == null) {
+            return new ArrayList<>();
+        }
+        int limit = Math.max(0, Math.min(topN, AppConstants.Recommendation.MAX_USER_RECOMMENDATIONS));
+        // Classifica dagli indici in memoria; i libri arrivano dalla cache per-libro del catalogo
+        List<Integer> bookIds = new ArrayList<>(limit);
+        for (int id : recommender.recommend(baseBookId, libraryId, limit)) {
+            bookIds.add(id);
+        }
+        if (bookIds.size() < limit && content != null) {
+            // Cold start: senza storico si completa con i libri simili per contenuto
+            int[] similar = content.similar(baseBookId, limit - bookIds.size(),
+                id -> bookIds.contains(id) || recommender.inLibrary(libraryId, id));
+            for (int id : similar) {
+                bookIds.add(id);
+            }
+        }
+        return books.getBooksByIds(bookIds);
+    }
+
+    @Override
+    public List<Book> getRecommendedForUser(int userId, int topK) throws Exception {
+        if (collaborative == null || books == null) {
+            return new ArrayList<>();
+        }
+        int limit = Math.max(0, Math.min(topK, AppConstants.Recommendation.MAX_USER_RECOMMENDATIONS));
+        List<Integer> bookIds = new ArrayList<>(limit);
+        for (int id : collaborative.recommend(userId, limit)) {
+            bookIds.add(id);
+        }
+        return books.getBooksByIds(bookIds);
     }
 
     @Override
@@ -2,10 +2,21 @@ package it.uninsubria.server.util;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.uninsubria.server.monitoring.AdaptiveConcurrencyLimiter;
+import it.uninsubria.server.monitoring.InstrumentedDataSource;
+import it.uninsubria.server.monitoring.MonitoringService;
 import it.uninsubria.shared.utils.AppConstants;
+import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.logging.Logger;
+import javax.sql.DataSource;
 
 /**
  * Connection Pool Manager using HikariCP for optimal database connection management.
@@ -24,11 +35,48 @@ import java.util.logging.Logger;
  * export DB_USERNAME=your_username
  * export DB_PASSWORD=your_password
  * </pre>
+ *
+ * <p>Connections are split into named pools ({@link Pool}) with separate sizing, so
+ * bulk scans cannot starve writes and logins. {@code DB_READ_URL} optionally points
+ * the read and background pools to a read replica. {@code DB_POOL_MAX_SIZE} sets the
+ * total number of connections, split across the pools in proportion to their default
+ * sizes; {@code DB_POOL_<NAME>_MAX_SIZE} overrides a single pool (e.g.
+ * {@code DB_POOL_READ_MAX_SIZE}). Likewise {@code DB_POOL_MIN_IDLE} is the total of idle
+ * connections, mostly kept by the read pool, and {@code DB_POOL_<NAME>_MIN_IDLE} overrides
+ * a single pool.
  */
 public class ConnectionPoolManager {
 
+    /**
+     * Named connection pools, chosen by operation type.
+     */
+    public enum Pool {
+        /** Catalog and other shared read-only queries; may target a replica. */
+        READ(AppConstants.Database.READ_POOL_MAX_SIZE),
+        /** Writes and latency-critical lookups (authentication); always the primary. */
+        WRITE(AppConstants.Database.WRITE_POOL_MAX_SIZE),
+        /** Cache warm-up and bulk scans; may target a replica. */
+        BACKGROUND(AppConstants.Database.BACKGROUND_POOL_MAX_SIZE);
+
+        private final int defaultMaxSize;
+
+        Pool(int defaultMaxSize) {
+            this.defaultMaxSize = defaultMaxSize;
+        }
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
     private static final Logger logger = Logger.getLogger(ConnectionPoolManager.class.getName());
+    private static final Map<Pool, HikariDataSource> pools = new EnumMap<>(Pool.class);
+    // Instrumented views of the pools handed out to DAOs and other callers
+    private static final Map<Pool, InstrumentedDataSource> instrumented = new EnumMap<>(Pool.class);
+    // Primary pool, kept for callers that do not pick a pool (initialization, reset, tests)
     private static HikariDataSource dataSource;
+    private static final ThreadLocal<Boolean> backgroundWork = ThreadLocal.withInitial(() -> Boolean.FALSE);
+    private static final DataSource readDataSource = new ReadRoutingDataSource();
 
     /**
      * Initializes the connection pool with environment variables.
@@ -82,70 +130,173 @@ public class ConnectionPoolManager {
      * @param driverClassName the JDBC driver class name
      */
     public static synchronized void initialize(String url, String username, String password, String driverClassName) {
-        if (dataSource != null && !dataSource.isClosed()) {
+        if (isInitialized()) {
             logger.warning("Connection pool already initialized");
             return;
         }
 
         try {
-            HikariConfig config = new HikariConfig();
-
-            // Basic connection settings
-            config.setJdbcUrl(url);
-            config.setUsername(username);
-            config.setPassword(password);
-            config.setDriverClassName(driverClassName);
-
-            // Read pool configuration from environment or use defaults from AppConstants
-            int maxPoolSize = getIntEnvVar("DB_POOL_MAX_SIZE", AppConstants.Database.CONNECTION_POOL_MAX_SIZE);
-            int minIdle = getIntEnvVar("DB_POOL_MIN_IDLE", AppConstants.Database.CONNECTION_POOL_MIN_IDLE);
-            int connectionTimeout = getIntEnvVar("DB_CONNECTION_TIMEOUT", AppConstants.Database.CONNECTION_TIMEOUT_MS);
-            int maxLifetime = getIntEnvVar("DB_MAX_LIFETIME", AppConstants.Database.MAX_LIFETIME_MS);
-            int validationTimeout = getIntEnvVar("DB_VALIDATION_TIMEOUT", AppConstants.Database.VALIDATION_TIMEOUT_MS);
-
-            logger.info("Using pool configuration from environment or defaults - Max: " + maxPoolSize + ", Min idle: " + minIdle);
-
-            // Optimized pool configuration for high-performance
-            config.setMaximumPoolSize(maxPoolSize);
-            config.setMinimumIdle(minIdle);
-            config.setConnectionTimeout(connectionTimeout);
-            config.setIdleTimeout(AppConstants.Database.IDLE_TIMEOUT_MS);
-            config.setMaxLifetime(maxLifetime);
-            config.setKeepaliveTime(AppConstants.Database.KEEPALIVE_TIME_MS);
-            config.setValidationTimeout(validationTimeout);
-
-            // Enhanced leak detection and monitoring
-            config.setLeakDetectionThreshold(AppConstants.Database.LEAK_DETECTION_THRESHOLD_MS);   // Detect leaks after 1 minute
-            config.setConnectionTestQuery("SELECT 1");  // Simple validation query
-
-            // Pool naming for monitoring
-            config.setPoolName("BookRecommenderPool");
-
-            // Advanced performance settings for PostgreSQL
-            config.addDataSourceProperty("cachePrepStmts", "true");
-            config.addDataSourceProperty("prepStmtCacheSize", "500");        // Increased cache
-            config.addDataSourceProperty("prepStmtCacheSqlLimit", "4096");   // Larger SQL cache
-            config.addDataSourceProperty("useServerPrepStmts", "true");
-            config.addDataSourceProperty("rewriteBatchedStatements", "true");// Batch optimization
-            config.addDataSourceProperty("cacheResultSetMetadata", "true");
-            config.addDataSourceProperty("cacheServerConfiguration", "true");
-            config.addDataSourceProperty("elideSetAutoCommits", "true");
-            config.addDataSourceProperty("maintainTimeStats", "false");      // Reduce overhead
-            
-            dataSource = new HikariDataSource(config);
-
-            logger.info("Connection pool initialized successfully");
-            logger.info("Pool settings - Max size: " + config.getMaximumPoolSize() +
-                       ", Min idle: " + config.getMinimumIdle() +
-                       ", Connection timeout: " + config.getConnectionTimeout() + "ms" +
-                       ", Max lifetime: " + config.getMaxLifetime() + "ms");
-            
+            String readUrl = System.getenv("DB_READ_URL");
+            if (readUrl == null || readUrl.trim().isEmpty()) {
+                readUrl = url;
+            } else {
+                logger.info("Read and background pools use replica: " + readUrl);
+            }
+
+            int slowQueryMs = getIntEnvVar("DB_SLOW_QUERY_MS", AppConstants.Database.SLOW_QUERY_THRESHOLD_MS);
+            for (Pool pool : Pool.values()) {
+                String poolUrl = pool == Pool.WRITE ? url : readUrl;
+                HikariDataSource ds = createPool(pool, poolUrl, username, password, driverClassName);
+                pools.put(pool, ds);
+                instrumented.put(pool, new InstrumentedDataSource(ds, pool.label(), slowQueryMs, createLimiter(pool, ds)));
+            }
+            dataSource = pools.get(Pool.WRITE);
+            registerSaturationMetrics();
+
+            logger.info("Connection pools initialized successfully");
         } catch (Exception e) {
             logger.severe("Failed to initialize connection pool: " + e.getMessage());
+            shutdown();
             throw new RuntimeException("Connection pool initialization failed", e);
         }
     }
-    
+
+    private static HikariDataSource createPool(Pool pool, String url, String username, String password, String driverClassName) {
+        HikariConfig config = new HikariConfig();
+
+        // Basic connection settings
+        config.setJdbcUrl(url);
+        config.setUsername(username);
+        config.setPassword(password);
+        config.setDriverClassName(driverClassName);
+
+        // Read pool configuration from environment or use defaults from AppConstants
+        String envName = pool.name();
+        int totalMaxSize = getIntEnvVar("DB_POOL_MAX_SIZE", AppConstants.Database.CONNECTION_POOL_MAX_SIZE);
+        int maxPoolSize = getIntEnvVar("DB_POOL_" + envName + "_MAX_SIZE", shareOf(pool, totalMaxSize));
+        int totalMinIdle = getIntEnvVar("DB_POOL_MIN_IDLE", AppConstants.Database.CONNECTION_POOL_MIN_IDLE);
+        int minIdle = Math.min(getIntEnvVar("DB_POOL_" + envName + "_MIN_IDLE", minIdleOf(pool, totalMinIdle)), maxPoolSize);
+        int connectionTimeout = getIntEnvVar("DB_CONNECTION_TIMEOUT", AppConstants.Database.CONNECTION_TIMEOUT_MS);
+        int maxLifetime = getIntEnvVar("DB_MAX_LIFETIME", AppConstants.Database.MAX_LIFETIME_MS);
+        int validationTimeout = getIntEnvVar("DB_VALIDATION_TIMEOUT", AppConstants.Database.VALIDATION_TIMEOUT_MS);
+
+        // Optimized pool configuration for high-performance
+        config.setMaximumPoolSize(maxPoolSize);
+        config.setMinimumIdle(minIdle);
+        config.setConnectionTimeout(connectionTimeout);
+        config.setIdleTimeout(AppConstants.Database.IDLE_TIMEOUT_MS);
+        config.setMaxLifetime(maxLifetime);
+        config.setKeepaliveTime(AppConstants.Database.KEEPALIVE_TIME_MS);
+        config.setValidationTimeout(validationTimeout);
+
+        // Enhanced leak detection and monitoring
+        config.setLeakDetectionThreshold(AppConstants.Database.LEAK_DETECTION_THRESHOLD_MS);   // Detect leaks after 1 minute
+        config.setConnectionTestQuery("SELECT 1");  // Simple validation query
+
+        // Pool naming for monitoring; HikariCP publishes hikaricp.connections.* tagged by pool name
+        config.setPoolName("BookRecommenderPool-" + pool.label());
+        config.setMetricRegistry(MonitoringService.getInstance().getRegistry());
+
+        // Advanced performance settings for PostgreSQL
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "500");        // Increased cache
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "4096");   // Larger SQL cache
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        config.addDataSourceProperty("rewriteBatchedStatements", "true");// Batch optimization
+        config.addDataSourceProperty("cacheResultSetMetadata", "true");
+        config.addDataSourceProperty("cacheServerConfiguration", "true");
+        config.addDataSourceProperty("elideSetAutoCommits", "true");
+        config.addDataSourceProperty("maintainTimeStats", "false");      // Reduce overhead
+
+        HikariDataSource ds = new HikariDataSource(config);
+        logger.info("Pool " + config.getPoolName() + " - Max size: " + config.getMaximumPoolSize() +
+                   ", Min idle: " + config.getMinimumIdle() +
+                   ", Connection timeout: " + config.getConnectionTimeout() + "ms" +
+                   ", Max lifetime: " + config.getMaxLifetime() + "ms");
+        return ds;
+    }
+
+    /**
+     * Returns the size of a pool when the given total is split across the pools in
+     * proportion to their default sizes. Every pool keeps at least one connection.
+     *
+     * @param pool the pool
+     * @param totalMaxSize the total number of connections
+     * @return the maximum size of the pool
+     */
+    static int shareOf(Pool pool, int totalMaxSize) {
+        int defaultTotal = 0;
+        for (Pool p : Pool.values()) {
+            defaultTotal += p.defaultMaxSize;
+        }
+        return Math.max(1, Math.round((float) totalMaxSize * pool.defaultMaxSize / defaultTotal));
+    }
+
+    /**
+     * Returns the minimum idle connections of a pool when the given total is split between
+     * the read and write pools: the write pool keeps a small share, the read pool the rest.
+     * The background pool opens connections only while a bulk scan runs.
+     *
+     * @param pool the pool
+     * @param totalMinIdle the idle connections held across all pools
+     * @return the minimum idle connections of the pool
+     */
+    static int minIdleOf(Pool pool, int totalMinIdle) {
+        int writeMinIdle = Math.min(AppConstants.Database.WRITE_POOL_MIN_IDLE, Math.max(0, totalMinIdle));
+        switch (pool) {
+            case READ:
+                return Math.max(0, totalMinIdle - writeMinIdle);
+            case WRITE:
+                return writeMinIdle;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Creates the adaptive concurrency limiter guarding checkouts from a pool. The
+     * background pool has none: its bulk scans are slow by design and are bounded by
+     * the pool size, so shedding them would only abort the rebuilds.
+     */
+    private static AdaptiveConcurrencyLimiter createLimiter(Pool pool, HikariDataSource ds) {
+        if (pool == Pool.BACKGROUND) {
+            return null;
+        }
+        int targetLatency = getIntEnvVar("DB_LIMITER_TARGET_LATENCY_MS", AppConstants.Database.LIMITER_TARGET_LATENCY_MS);
+        int maxWait = getIntEnvVar("DB_LIMITER_MAX_WAIT_MS", AppConstants.Database.LIMITER_MAX_WAIT_MS);
+        int maxQueue = getIntEnvVar("DB_LIMITER_MAX_QUEUE", AppConstants.Database.LIMITER_MAX_QUEUE);
+        return new AdaptiveConcurrencyLimiter(pool.label(), 1, ds.getMaximumPoolSize(), targetLatency, maxWait, maxQueue)
+            .bindTo(MonitoringService.getInstance().getRegistry());
+    }
+
+    /**
+     * Exports per-pool saturation (active / max) and waiting threads to Micrometer.
+     */
+    private static void registerSaturationMetrics() {
+        MeterRegistry registry = MonitoringService.getInstance().getRegistry();
+        for (Pool pool : Pool.values()) {
+            Gauge.builder("db.pool.saturation", pool, ConnectionPoolManager::saturation)
+                .tag("pool", pool.label())
+                .description("Active connections over maximum pool size")
+                .register(registry);
+            Gauge.builder("db.pool.waiting", pool, p -> {
+                    HikariDataSource ds = pools.get(p);
+                    return ds == null || ds.isClosed() ? 0 : ds.getHikariPoolMXBean().getThreadsAwaitingConnection();
+                })
+                .tag("pool", pool.label())
+                .description("Threads waiting for a connection")
+                .register(registry);
+        }
+    }
+
+    private static double saturation(Pool pool) {
+        HikariDataSource ds = pools.get(pool);
+        if (ds == null || ds.isClosed() || ds.getMaximumPoolSize() == 0) {
+            return 0;
+        }
+        return (double) ds.getHikariPoolMXBean().getActiveConnections() / ds.getMaximumPoolSize();
+    }
+
     /**
      * Gets a connection from the pool.
      * 
@@ -157,34 +308,85 @@ public class ConnectionPoolManager {
             throw new SQLException("Connection pool not initialized. Call initialize() first.");
         }
         
-        Connection conn = dataSource.getConnection();
+        Connection conn = instrumented.get(Pool.WRITE).getConnection();
         logger.fine("Connection retrieved from pool. Active connections: " + 
                     dataSource.getHikariPoolMXBean().getActiveConnections());
         return conn;
     }
     
     /**
-     * Closes the connection pool and releases all resources.
+     * Gets a connection from the given pool.
+     *
+     * @param pool the pool to use
+     * @return a database connection
+     * @throws SQLException if unable to get a connection
+     */
+    public static Connection getConnection(Pool pool) throws SQLException {
+        DataSource ds = instrumented.get(pool);
+        if (ds == null) {
+            throw new SQLException("Connection pool not initialized. Call initialize() first.");
+        }
+        return ds.getConnection();
+    }
+
+    /**
+     * Closes the connection pools and releases all resources.
      */
     public static synchronized void shutdown() {
-        if (dataSource != null && !dataSource.isClosed()) {
-            logger.info("Shutting down connection pool...");
-            dataSource.close();
+        if (!pools.isEmpty()) {
+            logger.info("Shutting down connection pools...");
+            for (HikariDataSource ds : pools.values()) {
+                if (!ds.isClosed()) {
+                    ds.close();
+                }
+            }
+            pools.clear();
+            instrumented.clear();
             dataSource = null;
             logger.info("Connection pool shutdown completed");
         }
     }
     
     /**
-     * Gets the DataSource for dependency injection.
+     * Gets the primary (write) DataSource for dependency injection.
      *
-     * @return the HikariDataSource
+     * @return the instrumented DataSource
      */
-    public static HikariDataSource getDataSource() {
-        if (dataSource == null) {
+    public static DataSource getDataSource() {
+        return getDataSource(Pool.WRITE);
+    }
+
+    /**
+     * Gets the DataSource of a named pool. Statements run through it are timed
+     * and published by {@link InstrumentedDataSource}.
+     *
+     * @param pool the pool
+     * @return the instrumented DataSource
+     */
+    public static DataSource getDataSource(Pool pool) {
+        DataSource ds = instrumented.get(pool);
+        if (ds == null) {
             throw new IllegalStateException("Connection pool not initialized. Call initialize() first.");
         }
-        return dataSource;
+        return ds;
+    }
+
+    /**
+     * Gets a DataSource for read-only queries. Connections come from the
+     * {@link Pool#BACKGROUND} pool on threads running background work, from
+     * {@link Pool#READ} otherwise.
+     *
+     * @return the routing DataSource
+     */
+    public static DataSource getReadDataSource() {
+        return readDataSource;
+    }
+
+    /**
+     * Marks the current thread as background work (e.g. for dedicated executor threads).
+     */
+    public static void markBackgroundThread() {
+        backgroundWork.set(Boolean.TRUE);
     }
 
     /**
@@ -193,18 +395,26 @@ public class ConnectionPoolManager {
      * @return pool statistics as formatted string
      */
     public static String getPoolStats() {
-        if (dataSource == null) {
+        if (pools.isEmpty()) {
             return "Connection pool not initialized";
         }
-        
-        var poolMXBean = dataSource.getHikariPoolMXBean();
-        return String.format(
-            "Pool Stats - Active: %d, Idle: %d, Waiting: %d, Total: %d",
-            poolMXBean.getActiveConnections(),
-            poolMXBean.getIdleConnections(),
-            poolMXBean.getThreadsAwaitingConnection(),
-            poolMXBean.getTotalConnections()
-        );
+
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Pool, HikariDataSource> entry : pools.entrySet()) {
+            var poolMXBean = entry.getValue().getHikariPoolMXBean();
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            sb.append(String.format(
+                "Pool Stats [%s] - Active: %d, Idle: %d, Waiting: %d, Total: %d",
+                entry.getKey().label(),
+                poolMXBean.getActiveConnections(),
+                poolMXBean.getIdleConnections(),
+                poolMXBean.getThreadsAwaitingConnection(),
+                poolMXBean.getTotalConnections()
+            ));
+        }
+        return sb.toString();
     }
     
     /**
@@ -216,6 +426,64 @@ public class ConnectionPoolManager {
         return dataSource != null && !dataSource.isClosed();
     }
 
+    private static Pool currentReadPool() {
+        return backgroundWork.get() ? Pool.BACKGROUND : Pool.READ;
+    }
+
+    /**
+     * DataSource that hands out connections from the read or background pool
+     * depending on the calling thread.
+     */
+    private static final class ReadRoutingDataSource implements DataSource {
+        @Override
+        public Connection getConnection() throws SQLException {
+            return ConnectionPoolManager.getConnection(currentReadPool());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return getDataSource(currentReadPool()).getConnection(username, password);
+        }
+
+        @Override
+        public PrintWriter getLogWriter() throws SQLException {
+            return getDataSource(Pool.READ).getLogWriter();
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) throws SQLException {
+            getDataSource(Pool.READ).setLogWriter(out);
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) throws SQLException {
+            getDataSource(Pool.READ).setLoginTimeout(seconds);
+        }
+
+        @Override
+        public int getLoginTimeout() throws SQLException {
+            return getDataSource(Pool.READ).getLoginTimeout();
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            if (iface.isInstance(this)) {
+                return iface.cast(this);
+            }
+            return getDataSource(currentReadPool()).unwrap(iface);
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) throws SQLException {
+            return iface.isInstance(this) || getDataSource(currentReadPool()).isWrapperFor(iface);
+        }
+    }
+
     private static int getIntEnvVar(String varName, int defaultValue) {
         String value = System.getenv(varName);
         if (value != null && !value.trim().isEmpty()) {
@@ -26,6 +26,10 @@ public final class SessionManager {
     private static final ConcurrentHashMap<String, UserSession> ACTIVE_SESSIONS=
             new ConcurrentHashMap<>();
 
+    /** Token of the active session of each username (one per user, see createSession). */
+    private static final ConcurrentHashMap<String, String> TOKENS_BY_USERNAME =
+            new ConcurrentHashMap<>();
+
     /** Cleanup scheduler for expired sessions. */
     private static final ScheduledExecutorService CLEANUP_SCHEDULER =
             Executors.newSingleThreadScheduledExecutor();
@@ -72,7 +76,7 @@ public final class SessionManager {
                     System.currentTimeMillis(), System.currentTimeMillis()
                     + SESSION_TIMEOUT
             );
-            ACTIVE_SESSIONS.put(token, session);
+            putSession(token, session);
             LOGGER.info("Session created for user: "
                 + user.getID()
                 + " (Active sessions: " + ACTIVE_SESSIONS.size() + ")");
@@ -110,6 +114,7 @@ public final class SessionManager {
                 }
                 if (session.isExpired()) {
                     LOGGER.warning("Session expired for user: " + session.getUsername());
+                    unindex(session, k);
                     return null;
                 }
                 JWTUtil.validateToken(token);
@@ -119,13 +124,13 @@ public final class SessionManager {
             });
 
             if (validatedSession == null) {
-                ACTIVE_SESSIONS.remove(token);
+                removeSession(token);
             }
 
             return validatedSession;
         } catch (SecurityException e) {
             LOGGER.warning("Session validation failed: " + e.getMessage());
-            ACTIVE_SESSIONS.remove(token);
+            removeSession(token);
             return null;
         }
 
@@ -139,7 +144,7 @@ public final class SessionManager {
      */
     public static boolean invalidateSession(String token) {
         if (token == null) return false;
-        UserSession removed = ACTIVE_SESSIONS.remove(token);
+        UserSession removed = removeSession(token);
         if (removed != null) {
             LOGGER.info("Session invalidated for user: " + removed.getUsername() +
                     " (Active sessions: " + ACTIVE_SESSIONS.size() + ")");
@@ -181,7 +186,7 @@ public final class SessionManager {
             }
         }
         for (String k : toRemove) {
-            UserSession rs = ACTIVE_SESSIONS.remove(k);
+            UserSession rs = removeSession(k);
             if (rs != null) {
                 count++;
                 LOGGER.info("Session invalidated for user ID: " + userId);
@@ -205,8 +210,8 @@ public final class SessionManager {
                     session.getUserId(), session.getUsername(), session.getEmail(),
                     session.getCreatedAt(), System.currentTimeMillis() + SESSION_TIMEOUT
             );
-            ACTIVE_SESSIONS.remove(token);
-            ACTIVE_SESSIONS.put(newToken, newSession);
+            removeSession(token);
+            putSession(newToken, newSession);
             LOGGER.info("Session refreshed for user: " + session.getUsername());
             return newToken;
         } catch (Exception e) {
@@ -246,6 +251,54 @@ public final class SessionManager {
         return ACTIVE_SESSIONS.get(token);
     }
 
+    /**
+     * Returns the user_id resolved at login for a user with an active session,
+     * so that per-user queries do not need to look it up again.
+     *
+     * @param username the username (userid)
+     * @return the user_id, or null if the user has no active session
+     */
+    public static Integer getSessionUserId(String username) {
+        if (username == null) return null;
+        String token = TOKENS_BY_USERNAME.get(username);
+        if (token == null) return null;
+        UserSession session = ACTIVE_SESSIONS.get(token);
+        if (session == null || session.isExpired()) {
+            return null;
+        }
+        return session.getUserId();
+    }
+
+    /**
+     * Stores a session and indexes its token by username.
+     */
+    private static void putSession(String token, UserSession session) {
+        ACTIVE_SESSIONS.put(token, session);
+        if (session.getUsername() != null) {
+            TOKENS_BY_USERNAME.put(session.getUsername(), token);
+        }
+    }
+
+    /**
+     * Removes a session and its username index entry.
+     *
+     * @return the removed session, or null if none
+     */
+    private static UserSession removeSession(String token) {
+        UserSession removed = ACTIVE_SESSIONS.remove(token);
+        if (removed != null) {
+            unindex(removed, token);
+        }
+        return removed;
+    }
+
+    private static void unindex(UserSession session, String token) {
+        // Rimuove l'indice solo se punta ancora a questo token (non a una sessione più recente)
+        if (session.getUsername() != null) {
+            TOKENS_BY_USERNAME.remove(session.getUsername(), token);
+        }
+    }
+
     /**
      * Cleans up expired sessions.
      */
@@ -273,7 +326,7 @@ public final class SessionManager {
         }
 
         for (String k : toRemove) {
-            ACTIVE_SESSIONS.remove(k);
+            removeSession(k);
             removedCount++;
         }
 
@@ -300,6 +353,7 @@ public final class SessionManager {
         }
         int sessionCount = ACTIVE_SESSIONS.size();
         ACTIVE_SESSIONS.clear();
+        TOKENS_BY_USERNAME.clear();
         LOGGER.info("SessionManager shutdown. Cleared " + sessionCount + " sessions.");
     }
 
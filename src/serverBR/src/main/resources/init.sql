@@ -14,6 +14,13 @@ CREATE TABLE IF NOT EXISTS Books (
     publish_date_year INT
 );
 
+-- Impronta (titolo, autori, anno) e hash del contenuto per l'import incrementale del catalogo
+ALTER TABLE Books
+    ADD COLUMN IF NOT EXISTS fingerprint TEXT;
+
+ALTER TABLE Books
+    ADD COLUMN IF NOT EXISTS content_hash TEXT;
+
 -- ===========================================
 -- 2. TABELLA: Users
 -- ===========================================
@@ -210,8 +217,25 @@ END $$;
 ALTER TABLE Suggested_Books
     ADD COLUMN IF NOT EXISTS created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP;
 
+-- Gli ID vengono dalla sequenza: allineala alle righe inserite con ID espliciti
+SELECT setval(pg_get_serial_sequence('suggested_books', 'suggested_id'), COALESCE(MAX(suggested_id), 0) + 1, false)
+FROM Suggested_Books;
+
 -- ===========================================
--- 7. INDEX UTILI
+-- 7. TABELLA: Catalog_Import_State
+-- ===========================================
+
+-- Checkpoint dell'import del catalogo: ultima riga CSV committata per sorgente
+CREATE TABLE IF NOT EXISTS Catalog_Import_State (
+    source_name TEXT PRIMARY KEY,
+    source_hash TEXT NOT NULL,
+    committed_line INT NOT NULL DEFAULT 0,
+    completed BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- ===========================================
+-- 8. INDEX UTILI
 -- ===========================================
 
 CREATE UNIQUE INDEX IF NOT EXISTS idx_library_user_name
@@ -220,8 +244,11 @@ CREATE UNIQUE INDEX IF NOT EXISTS idx_library_user_name
 CREATE INDEX IF NOT EXISTS idx_suggestion_user_library
     ON Suggested_Books(user_id, libraries_id);
 
+CREATE INDEX IF NOT EXISTS idx_books_fingerprint
+    ON Books(fingerprint);
+
 -- ===========================================
--- 7. DATI DI TEST: Library
+-- 9. DATI DI TEST: Library
 -- ===========================================
 
 
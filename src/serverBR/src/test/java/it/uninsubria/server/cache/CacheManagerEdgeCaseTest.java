@@ -254,4 +254,19 @@ public class CacheManagerEdgeCaseTest {
         assertNull("user1's cache should be cleared", CacheManager.get(user1, "key1", String.class));
         assertNotNull("user2's cache should remain", CacheManager.get(user2, "key2", String.class));
     }
+
+    @Test
+    public void testGetAllReturnsOnlyLiveKeys() throws InterruptedException {
+        CacheManager.put(TEST_USER_ID, "key1", "value1", 5000, "test");
+        CacheManager.put(TEST_USER_ID, "key2", "value2", 50, "test");
+        Thread.sleep(100);
+
+        java.util.Map<String, String> found = CacheManager.getAll(TEST_USER_ID,
+            java.util.Arrays.asList("key1", "key2", "key3"), String.class);
+
+        assertEquals("Only the live key should be returned", 1, found.size());
+        assertEquals("value1", found.get("key1"));
+        assertTrue("Unknown user should yield an empty map",
+            CacheManager.getAll("nobody", java.util.Arrays.asList("key1"), String.class).isEmpty());
+    }
 }
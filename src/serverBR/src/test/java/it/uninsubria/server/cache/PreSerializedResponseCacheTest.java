@@ -0,0 +1,81 @@
+package it.uninsubria.server.cache;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for PreSerializedResponseCache: reuse, rebuild and invalidation.
+ */
+public class PreSerializedResponseCacheTest {
+
+    private static List<Book> books(int count) {
+        List<Book> books = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Book b = new Book();
+            b.setBook_id(i);
+            b.setTitle("Title " + i);
+            b.setCategory("Fiction");
+            books.add(b);
+        }
+        return books;
+    }
+
+    @Before
+    public void setUp() {
+        PreSerializedResponseCache.clear();
+    }
+
+    @Test
+    public void testSameSourceReusesStoredBytes() {
+        List<Book> source = books(10);
+        long hits = PreSerializedResponseCache.getHits();
+        long served = PreSerializedResponseCache.getBytesServed();
+
+        List<Book> first = PreSerializedResponseCache.books("k", "books", source);
+        List<Book> second = PreSerializedResponseCache.books("k", "books", source);
+
+        assertSame(first, second);
+        assertEquals(10, second.size());
+        assertEquals(hits + 1, PreSerializedResponseCache.getHits());
+        assertEquals(served + ((BookList) first).encodedSize(), PreSerializedResponseCache.getBytesServed());
+    }
+
+    @Test
+    public void testNewSourceInstanceRebuilds() {
+        List<Book> first = PreSerializedResponseCache.books("k", "books", books(3));
+        long builds = PreSerializedResponseCache.getBuilds();
+
+        List<Book> second = PreSerializedResponseCache.books("k", "books", books(5));
+
+        assertNotSame(first, second);
+        assertEquals(5, second.size());
+        assertEquals(builds + 1, PreSerializedResponseCache.getBuilds());
+    }
+
+    @Test
+    public void testInvalidateByCategory() {
+        List<Book> source = books(3);
+        PreSerializedResponseCache.books("a", "books", source);
+        PreSerializedResponseCache.books("b", "other", source);
+
+        PreSerializedResponseCache.invalidateByCategory("books");
+
+        assertEquals(1, PreSerializedResponseCache.size());
+        long builds = PreSerializedResponseCache.getBuilds();
+        PreSerializedResponseCache.books("a", "books", source);
+        assertEquals(builds + 1, PreSerializedResponseCache.getBuilds());
+    }
+
+    @Test
+    public void testNullSource() {
+        assertNull(PreSerializedResponseCache.books("k", "books", null));
+    }
+}
@@ -0,0 +1,258 @@
+package it.uninsubria.server.catalog;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.uninsubria.server.dao.ResultCursor;
+import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookFacets;
+import it.uninsubria.shared.model.BookSummary;
+import it.uninsubria.shared.model.FacetCount;
+
+/**
+ * Unit tests for ColumnarCatalog and its off-heap columns.
+ * Tests materialization, filters, orders, paging, the cursor and facet counts.
+ */
+public class ColumnarCatalogTest {
+
+    private static Book book(int id, String title, String authors, String category, int year) {
+        Book book = new Book();
+        book.setBook_id(id);
+        book.setTitle(title);
+        book.setAuthors(authors);
+        book.setCategory(category);
+        book.setPublish_date_year(year);
+        return book;
+    }
+
+    private static ColumnarCatalog sample() {
+        return ColumnarCatalog.builder()
+            .add(book(2, "The Hobbit", "J.R.R. Tolkien", "Fantasy", 1937))
+            .add(book(5, "Dune", "Frank Herbert", "Science Fiction", 1965))
+            .add(book(7, "Il Nome della Rosa", "Umberto Eco", "Giallo", 1980))
+            .add(book(9, "Città invisibili", "Italo Calvino", "Fantasy", 1972))
+            .add(book(12, "Dune Messiah", "Frank Herbert", "Science Fiction", 1969))
+            .build();
+    }
+
+    private static Book published(int id, String title, String category, String publisher, int year) {
+        Book book = book(id, title, "Autore " + id, category, year);
+        book.setPublisher(publisher);
+        return book;
+    }
+
+    private static ColumnarCatalog faceted() {
+        return ColumnarCatalog.builder()
+            .add(published(1, "Alpha", "Fantasy", "Mondadori", 1995))
+            .add(published(2, "Beta", "Fantasy", "Einaudi", 2003))
+            .add(published(3, "Gamma", "Storia", "Mondadori", 1998))
+            .add(published(4, "Delta", "Storia", "Mondadori", 2007))
+            .add(published(5, "Alpha Beta", "Fantasy", "Mondadori", 2001))
+            .add(published(6, "Epsilon", null, "Einaudi", 0))
+            .build();
+    }
+
+    private static String counts(List<FacetCount> facet) {
+        StringBuilder text = new StringBuilder();
+        for (FacetCount count : facet) {
+            text.append(text.length() > 0 ? " " : "").append(count.getValue()).append('=').append(count.getCount());
+        }
+        return text.toString();
+    }
+
+    private static int[] ids(ColumnarCatalog catalog, int[] rows) {
+        int[] ids = new int[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            ids[i] = catalog.bookId(rows[i]);
+        }
+        return ids;
+    }
+
+    @Test
+    public void testMaterializesEveryColumn() {
+        Book original = book(3, "Perché è così", "Autore Ignoto", null, 2001);
+        original.setDescription("Descrizione con accenti: àèìòù");
+        original.setPublisher("Einaudi");
+        original.setPrice("12.50");
+        original.setPublisher_month("March");
+        ColumnarCatalog catalog = ColumnarCatalog.builder()
+            .add(original)
+            .add(book(4, null, null, "Saggi", 1999))
+            .build();
+
+        Book copy = catalog.book(0);
+        assertEquals(3, copy.getBook_id());
+        assertEquals("Perché è così", copy.getTitle());
+        assertEquals("Autore Ignoto", copy.getAuthors());
+        assertEquals("Descrizione con accenti: àèìòù", copy.getDescription());
+        assertNull(copy.getCategory());
+        assertEquals("Einaudi", copy.getPublisher());
+        assertEquals("12.50", copy.getPrice());
+        assertEquals("March", copy.getPublisher_month());
+        assertEquals(2001, copy.getPublish_date_year());
+
+        // I null restano null, non stringhe vuote
+        Book empty = catalog.book(1);
+        assertNull(empty.getTitle());
+        assertNull(empty.getAuthors());
+        assertNull(empty.getDescription());
+        assertEquals("Saggi", empty.getCategory());
+
+        BookSummary summary = catalog.summary(1);
+        assertEquals(4, summary.getBookId());
+        assertEquals(1999, summary.getPublishYear());
+        assertTrue(catalog.offHeapBytes() > 0);
+    }
+
+    @Test
+    public void testFiltersIgnoreCase() {
+        ColumnarCatalog catalog = sample();
+        int all = catalog.size();
+
+        assertArrayEquals(new int[] { 5, 12 },
+            ids(catalog, catalog.select(CatalogFilter.all().withTitle("dUNE"), CatalogOrder.ID, 0, all)));
+        assertArrayEquals(new int[] { 12 },
+            ids(catalog, catalog.select(CatalogFilter.all().withAuthor("herbert").withYear(1969), CatalogOrder.ID, 0, all)));
+        assertArrayEquals(new int[] { 2, 9 },
+            ids(catalog, catalog.select(CatalogFilter.all().withCategory("Fantasy"), CatalogOrder.ID, 0, all)));
+        // Ago non ASCII: confronto sul testo decodificato
+        assertArrayEquals(new int[] { 9 },
+            ids(catalog, catalog.select(CatalogFilter.all().withTitle("CITTÀ"), CatalogOrder.ID, 0, all)));
+
+        assertEquals(0, catalog.count(CatalogFilter.all().withCategory("Horror")));
+        assertEquals(2, catalog.count(CatalogFilter.all().withAuthor("Frank")));
+        assertEquals(all, catalog.count(CatalogFilter.all().withTitle("  ")));
+    }
+
+    @Test
+    public void testOrdersAndPaging() {
+        ColumnarCatalog catalog = sample();
+
+        assertArrayEquals(new int[] { 7, 9 },
+            ids(catalog, catalog.select(CatalogFilter.all(), CatalogOrder.ID, 2, 2)));
+        assertArrayEquals(new int[] { 9, 5, 12, 7, 2 },
+            ids(catalog, catalog.select(CatalogFilter.all(), CatalogOrder.TITLE, 0, 10)));
+        assertArrayEquals(new int[] { 7, 9 },
+            ids(catalog, catalog.select(CatalogFilter.all(), CatalogOrder.NEWEST, 0, 2)));
+        assertArrayEquals(new int[] { 5 },
+            ids(catalog, catalog.select(CatalogFilter.all().withAuthor("Herbert"), CatalogOrder.NEWEST, 1, 5)));
+        assertEquals(0, catalog.select(CatalogFilter.all(), CatalogOrder.ID, 5, 10).length);
+    }
+
+    @Test
+    public void testRowLookupAndCursor() throws Exception {
+        ColumnarCatalog catalog = sample();
+        assertEquals(2, catalog.rowOf(7));
+        assertEquals(-1, catalog.rowOf(8));
+        assertEquals(12, catalog.maxBookId());
+
+        List<Integer> seen = new ArrayList<>();
+        try (ResultCursor<Book> cursor = catalog.cursor(6)) {
+            List<Book> chunk;
+            while (!(chunk = cursor.next(2)).isEmpty()) {
+                for (Book book : chunk) {
+                    seen.add(book.getBook_id());
+                }
+            }
+            assertTrue(cursor.isExhausted());
+        }
+        assertEquals(List.of(7, 9, 12), seen);
+        assertEquals(0, ColumnarCatalog.empty().size());
+    }
+
+    @Test
+    public void testFacetsOfWholeCatalogComeFromPostingLists() {
+        BookFacets facets = faceted().facets(CatalogFilter.all(), 10);
+        assertEquals(6, facets.getTotalBooks());
+        assertEquals("Fantasy=3 Storia=2", counts(facets.getCategories()));
+        // Gli anni mancanti non hanno decennio
+        assertEquals("1990=2 2000=3", counts(facets.getDecades()));
+        assertEquals("Mondadori=4 Einaudi=2", counts(facets.getPublishers()));
+        assertEquals("Mondadori=4", counts(faceted().facets(CatalogFilter.all(), 1).getPublishers()));
+    }
+
+    @Test
+    public void testFacetIgnoresItsOwnCondition() {
+        ColumnarCatalog catalog = faceted();
+
+        BookFacets fantasy = catalog.facets(CatalogFilter.all().withCategory("Fantasy"), 10);
+        assertEquals(3, fantasy.getTotalBooks());
+        assertEquals("Fantasy=3 Storia=2", counts(fantasy.getCategories()));
+        assertEquals("1990=1 2000=2", counts(fantasy.getDecades()));
+        assertEquals("Mondadori=2 Einaudi=1", counts(fantasy.getPublishers()));
+
+        // Due condizioni: ogni faccetta applica solo l'altra
+        BookFacets both = catalog.facets(CatalogFilter.all().withCategory("Fantasy").withDecade(2000), 10);
+        assertEquals(2, both.getTotalBooks());
+        assertEquals("Fantasy=2 Storia=1", counts(both.getCategories()));
+        assertEquals("1990=1 2000=2", counts(both.getDecades()));
+        assertEquals("Einaudi=1 Mondadori=1", counts(both.getPublishers()));
+
+        // Ricerca testuale su titolo o autori
+        BookFacets alpha = catalog.facets(CatalogFilter.all().withText("ALPHA"), 10);
+        assertEquals(2, alpha.getTotalBooks());
+        assertEquals("Fantasy=2", counts(alpha.getCategories()));
+        assertEquals(1, catalog.facets(CatalogFilter.all().withText("autore 6"), 10).getTotalBooks());
+
+        BookFacets unknown = catalog.facets(CatalogFilter.all().withPublisher("Adelphi"), 10);
+        assertEquals(0, unknown.getTotalBooks());
+        assertEquals("Mondadori=4 Einaudi=2", counts(unknown.getPublishers()));
+        assertTrue(unknown.getCategories().isEmpty());
+    }
+
+    @Test
+    public void testSelectByFacetValues() {
+        ColumnarCatalog catalog = faceted();
+        assertArrayEquals(new int[] { 1, 3 }, ids(catalog,
+            catalog.select(CatalogFilter.all().withPublisher("Mondadori").withDecade(1990), CatalogOrder.ID, 0, 10)));
+        assertEquals(0, catalog.count(CatalogFilter.all().withDecade(1980)));
+    }
+
+    @Test
+    public void testCategoryPagesFollowTheCursor() {
+        ColumnarCatalog catalog = faceted();
+        assertEquals(3, catalog.categorySize("Fantasy"));
+        // Nome ripulito come lo mostra il client
+        assertEquals(2, catalog.categorySize(" storia "));
+        assertEquals(0, catalog.categorySize("Horror"));
+
+        assertArrayEquals(new int[] { 1, 5 }, ids(catalog, catalog.categoryPage("Fantasy", CatalogOrder.TITLE, false, null, 2)));
+        assertArrayEquals(new int[] { 2 }, ids(catalog, catalog.categoryPage("Fantasy", CatalogOrder.TITLE, false, 5, 2)));
+        assertEquals(0, catalog.categoryPage("Fantasy", CatalogOrder.TITLE, false, 2, 2).length);
+
+        // Dal fondo della lista: dal più vecchio
+        assertArrayEquals(new int[] { 1, 5 }, ids(catalog, catalog.categoryPage("Fantasy", CatalogOrder.NEWEST, true, null, 2)));
+        assertArrayEquals(new int[] { 2 }, ids(catalog, catalog.categoryPage("Fantasy", CatalogOrder.NEWEST, true, 5, 5)));
+        assertArrayEquals(new int[] { 4, 3 }, ids(catalog, catalog.categoryPage("Storia", CatalogOrder.AUTHOR, true, null, 5)));
+
+        // Un cursore fuori dalla categoria non si aggancia
+        assertEquals(0, catalog.categoryPage("Fantasy", CatalogOrder.TITLE, false, 3, 2).length);
+        assertEquals(0, catalog.categoryPage("Fantasy", CatalogOrder.TITLE, false, 99, 2).length);
+    }
+
+    @Test
+    public void testCategoryPagesSkipBooksNotMatchingTheFilter() {
+        ColumnarCatalog catalog = faceted();
+        CatalogFilter beta = CatalogFilter.all().withText("BETA");
+        assertEquals(2, catalog.categorySize("Fantasy", beta));
+        assertEquals(0, catalog.categorySize("Fantasy", CatalogFilter.all().withText("Gamma")));
+
+        assertArrayEquals(new int[] { 5 }, ids(catalog, catalog.categoryPage("Fantasy", beta, CatalogOrder.TITLE, false, null, 1)));
+        assertArrayEquals(new int[] { 2 }, ids(catalog, catalog.categoryPage("Fantasy", beta, CatalogOrder.TITLE, false, 5, 1)));
+        assertEquals(0, catalog.categoryPage("Fantasy", beta, CatalogOrder.TITLE, false, 2, 1).length);
+        // Il cursore può essere un libro che il filtro scarta
+        assertArrayEquals(new int[] { 5, 2 }, ids(catalog, catalog.categoryPage("Fantasy", beta, CatalogOrder.TITLE, false, 1, 5)));
+        assertArrayEquals(new int[] { 2, 5 }, ids(catalog, catalog.categoryPage("Fantasy", beta, CatalogOrder.TITLE, true, null, 5)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsBooksOutOfOrder() {
+        ColumnarCatalog.builder()
+            .add(book(5, "B", "A", null, 2000))
+            .add(book(5, "C", "A", null, 2000));
+    }
+}
@@ -0,0 +1,194 @@
+package it.uninsubria.server.catalog;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import it.uninsubria.server.dao.BookSignals;
+import it.uninsubria.server.dao.IntPairs;
+import it.uninsubria.server.dao.Ratings;
+import it.uninsubria.server.dao.RecommendationDAO;
+import it.uninsubria.server.recommendation.PopularityRanker;
+import it.uninsubria.server.recommendation.PopularityRanking;
+import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.SearchCompletion;
+
+/**
+ * Unit tests for CompletionIndex.
+ * Tests normalization, word starts, popularity order, reranking and a brute force comparison.
+ */
+public class CompletionIndexTest {
+
+    private static Book book(int id, String title, String authors) {
+        Book book = new Book();
+        book.setBook_id(id);
+        book.setTitle(title);
+        book.setAuthors(authors);
+        return book;
+    }
+
+    private static ColumnarCatalog sample() {
+        return ColumnarCatalog.builder()
+            .add(book(1, "Il Nome della Rosa", "By Eco, Umberto"))
+            .add(book(2, "Harry Potter e la pietra filosofale", "By Rowling, J.K."))
+            .add(book(3, "Harry Potter e la camera dei segreti", "By Rowling, J.K."))
+            .add(book(4, "Harrison's Principles", "By Harrison, T."))
+            .add(book(5, "Città invisibili", "By Calvino, Italo"))
+            .add(book(6, "Harry Potter e la pietra filosofale", "By Rowling, J.K."))
+            .add(book(7, null, "  "))
+            .build();
+    }
+
+    /**
+     * Ranks the books by their number of five star reviews.
+     */
+    private static PopularityRanking ranking(Map<Integer, Integer> reviews) throws Exception {
+        BookSignals signals = new BookSignals();
+        reviews.forEach((book, count) -> signals.add(book, count, 5.0 * count, 0, 0));
+        RecommendationDAO dao = new RecommendationDAO() {
+            @Override public IntPairs loadSuggestionPairs() { return new IntPairs(); }
+            @Override public IntPairs loadLibraryBooks() { return new IntPairs(); }
+            @Override public Ratings loadRatings() { return new Ratings(); }
+            @Override public BookSignals loadBookSignals() { return signals; }
+        };
+        PopularityRanker ranker = new PopularityRanker(dao);
+        assertTrue(ranker.refresh());
+        return ranker.getRanking();
+    }
+
+    private static List<String> texts(List<SearchCompletion> completions) {
+        List<String> texts = new ArrayList<>();
+        for (SearchCompletion completion : completions) {
+            texts.add(completion.getText());
+        }
+        return texts;
+    }
+
+    @Test
+    public void testNormalization() {
+        assertEquals("citta invisibili", CompletionIndex.normalize("  Città, invisibili!", false));
+        assertEquals("harrison s principles", CompletionIndex.normalize("Harrison's Principles", false));
+        assertEquals("harry ", CompletionIndex.normalize("HARRY ", true));
+        assertEquals("", CompletionIndex.normalize(" - ", true));
+        assertEquals("Eco, Umberto", CompletionIndex.authorText("By Eco, Umberto"));
+        assertNull(CompletionIndex.authorText("By  "));
+        assertNull(CompletionIndex.authorText("   "));
+    }
+
+    @Test
+    public void testCompletesWordsInOrderOfPopularity() throws Exception {
+        Map<Integer, Integer> reviews = new HashMap<>();
+        reviews.put(3, 50);
+        reviews.put(4, 20);
+        reviews.put(6, 5);
+        CompletionIndex index = CompletionIndex.build(sample(), ranking(reviews));
+
+        // Il titolo doppio compare una volta, con l'edizione più popolare
+        List<SearchCompletion> harr = index.complete("harr", 10);
+        assertEquals(List.of("Harry Potter e la camera dei segreti", "Harrison's Principles", "Harrison, T.",
+            "Harry Potter e la pietra filosofale"), texts(harr));
+        // Titolo e autore dello stesso libro: a parità di rango decide l'ordine dei termini
+        assertEquals(SearchCompletion.Kind.AUTHOR, harr.get(2).getKind());
+        assertEquals(4, harr.get(2).getBookId());
+        assertEquals(6, harr.get(3).getBookId());
+        assertEquals(List.of("Rowling, J.K."), texts(index.complete("rowl", 10)));
+        assertEquals(3, index.complete("rowl", 10).get(0).getBookId());
+        assertEquals(2, index.complete("harr", 2).size());
+
+        // Parole interne, accenti e maiuscole
+        assertEquals(List.of("Il Nome della Rosa"), texts(index.complete("ROSA", 10)));
+        assertEquals(List.of("Città invisibili"), texts(index.complete("citta", 10)));
+        assertEquals(List.of("Calvino, Italo"), texts(index.complete("Italo", 10)));
+        // Lo spazio finale chiede la parola intera
+        assertEquals(List.of("Harry Potter e la camera dei segreti", "Harry Potter e la pietra filosofale"),
+            texts(index.complete("harry ", 10)));
+
+        assertTrue(index.complete("osa", 10).isEmpty());
+        assertTrue(index.complete("  ", 10).isEmpty());
+        assertTrue(index.complete("zzz", 10).isEmpty());
+    }
+
+    @Test
+    public void testRerankKeepsTheTerms() throws Exception {
+        ColumnarCatalog catalog = sample();
+        CompletionIndex byId = CompletionIndex.build(catalog, PopularityRanking.empty());
+        // Senza classifica vale l'ordine degli id
+        assertEquals("Harry Potter e la pietra filosofale", byId.complete("harry", 1).get(0).getText());
+
+        Map<Integer, Integer> reviews = new HashMap<>();
+        reviews.put(4, 10);
+        PopularityRanking ranking = ranking(reviews);
+        CompletionIndex reranked = byId.rerank(ranking);
+        assertEquals(ranking.getVersion(), reranked.getRankingVersion());
+        assertEquals(byId.termCount(), reranked.termCount());
+        assertEquals("Harrison's Principles", reranked.complete("harr", 1).get(0).getText());
+        assertEquals("Harry Potter e la pietra filosofale", byId.complete("harr", 1).get(0).getText());
+    }
+
+    @Test
+    public void testMatchesBruteForceAcrossBlocks() throws Exception {
+        String[] words = { "alba", "albero", "amore", "bosco", "casa", "cielo", "mare", "marea", "notte", "sole" };
+        Random random = new Random(7);
+        ColumnarCatalog.Builder builder = ColumnarCatalog.builder();
+        List<Book> books = new ArrayList<>();
+        Map<Integer, Integer> reviews = new HashMap<>();
+        for (int id = 1; id <= 600; id++) {
+            StringBuilder title = new StringBuilder();
+            for (int w = 1 + random.nextInt(4); w > 0; w--) {
+                title.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            Book book = book(id, title.toString().trim() + " " + id, "By Autore " + words[random.nextInt(words.length)]);
+            books.add(book);
+            builder.add(book);
+            if (random.nextInt(3) == 0) {
+                reviews.put(id, 1 + random.nextInt(40));
+            }
+        }
+        PopularityRanking ranking = ranking(reviews);
+        CompletionIndex index = CompletionIndex.build(builder.build(), ranking);
+
+        // Rango di ogni entrata: quello del suo libro migliore
+        Map<Integer, Integer> bookRanks = new HashMap<>();
+        for (int rank = 0; rank < ranking.size(); rank++) {
+            bookRanks.put(ranking.bookAt(rank), rank);
+        }
+        Map<String, Integer> entryRanks = new HashMap<>();
+        for (Book book : books) {
+            int rank = bookRanks.getOrDefault(book.getBook_id(), ranking.size() + book.getBook_id() - 1);
+            entryRanks.merge("T" + CompletionIndex.normalize(book.getTitle(), false), rank, Math::min);
+            entryRanks.merge("A" + CompletionIndex.normalize(CompletionIndex.authorText(book.getAuthors()), false),
+                rank, Math::min);
+        }
+
+        for (String prefix : new String[] { "a", "al", "albe", "mare", "mare ", "s", "autore m", "4", "12", "zz" }) {
+            String key = CompletionIndex.normalize(prefix, true);
+            List<Integer> expected = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : entryRanks.entrySet()) {
+                String text = entry.getKey().substring(1);
+                if (text.startsWith(key) || text.contains(" " + key)) {
+                    expected.add(entry.getValue());
+                }
+            }
+            expected.sort(null);
+
+            List<SearchCompletion> completions = index.complete(prefix, 15);
+            List<Integer> actual = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            for (SearchCompletion completion : completions) {
+                String entry = (completion.getKind() == SearchCompletion.Kind.TITLE ? "T" : "A")
+                    + CompletionIndex.normalize(completion.getText(), false);
+                assertTrue(prefix + ": " + entry, seen.add(entry));
+                actual.add(entryRanks.get(entry));
+            }
+            assertEquals(prefix, expected.subList(0, Math.min(15, expected.size())), actual);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package it.uninsubria.server.dao;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import it.uninsubria.server.catalog.CatalogFilter;
+import it.uninsubria.server.catalog.CatalogOrder;
+import it.uninsubria.server.catalog.ColumnarCatalog;
+import it.uninsubria.server.dao.impl.BookDAOImpl;
+import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookFacets;
+import it.uninsubria.shared.model.CategorySort;
+import it.uninsubria.shared.model.FacetCount;
+import it.uninsubria.shared.model.FacetFilters;
+
+/**
+ * Checks which data source BookDAOImpl reads from, with a primary and a lagging
+ * replica backed by two H2 in-memory databases, and that the facet and category
+ * queries used before the catalog is built agree with the columnar catalog.
+ */
+public class BookDAOImplTest {
+
+    private JdbcDataSource primary;
+    private JdbcDataSource replica;
+
+    private static JdbcDataSource database(String name) throws Exception {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        ds.setUser("sa");
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("CREATE TABLE Books (book_id INT PRIMARY KEY, title TEXT, authors TEXT, descriptions TEXT, " +
+                "category TEXT, publisher TEXT, price TEXT, publish_date_month TEXT, publish_date_year INT)");
+            st.execute("CREATE TABLE Books_Libraries (libraries_id INT, book_id INT)");
+            st.execute("CREATE TABLE Suggested_Books (base_book_id INT, suggested_book_id INT)");
+            st.execute("INSERT INTO Books (book_id, title, authors) VALUES (1, 'Libro 1', 'Autore'), (2, 'Libro 2', 'Autore')");
+        }
+        return ds;
+    }
+
+    private static void execute(JdbcDataSource ds, String sql) throws Exception {
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        primary = database("bookdao_primary");
+        replica = database("bookdao_replica");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        execute(primary, "DROP ALL OBJECTS");
+        execute(replica, "DROP ALL OBJECTS");
+    }
+
+    private static String counts(List<FacetCount> facet) {
+        StringBuilder text = new StringBuilder();
+        for (FacetCount count : facet) {
+            text.append(text.length() > 0 ? " " : "").append(count.getValue()).append('=').append(count.getCount());
+        }
+        return text.toString();
+    }
+
+    private static String describe(BookFacets facets) {
+        return facets.getTotalBooks() + " | " + counts(facets.getCategories()) + " | "
+            + counts(facets.getDecades()) + " | " + counts(facets.getPublishers());
+    }
+
+    private static void insertFacetedBooks(JdbcDataSource ds) throws Exception {
+        execute(ds, "DELETE FROM Books");
+        execute(ds, "INSERT INTO Books (book_id, title, authors, category, publisher, publish_date_year) VALUES " +
+            "(1, 'Alpha', 'Rossi', 'Fantasy', 'Mondadori', 1995), (2, 'beta', 'Bianchi', 'Fantasy', 'Einaudi', 2003), " +
+            "(3, 'Gamma', 'Rossi', 'Storia', 'Mondadori', 1998), (4, 'Delta', 'Verdi', 'Storia', 'Mondadori', 2007), " +
+            "(5, 'Alpha Beta', 'bianchi', 'Fantasy', 'Mondadori', 2001), (6, 'Epsilon', 'Neri', NULL, 'Einaudi', 0), " +
+            "(7, 'Beta', 'Verdi', 'Fantasy', NULL, 2003)");
+    }
+
+    private static String describe(FacetFilters filter) {
+        return filter.getCategory() + "/" + filter.getPublisher() + "/" + filter.getDecade();
+    }
+
+    private static ColumnarCatalog catalogOf(BookDAO dao) throws Exception {
+        ColumnarCatalog.Builder builder = ColumnarCatalog.builder();
+        try (ResultCursor<Book> cursor = dao.openCatalogCursor(100)) {
+            for (Book book : cursor.next(100)) {
+                builder.add(book);
+            }
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void testFacetCountsMatchTheCatalog() throws Exception {
+        insertFacetedBooks(primary);
+        insertFacetedBooks(replica);
+        BookDAO dao = new BookDAOImpl(primary, replica);
+        ColumnarCatalog catalog = catalogOf(dao);
+
+        assertEquals("7 | Fantasy=4 Storia=2 | 1990=2 2000=4 | Mondadori=4 Einaudi=2",
+            describe(dao.countFacets(null, null, 10)));
+        FacetFilters[] filters = {
+            new FacetFilters(), new FacetFilters("Fantasy", null, null), new FacetFilters("Fantasy", null, 2000),
+            new FacetFilters(null, "Adelphi", null), new FacetFilters("Storia", "Mondadori", 1990)
+        };
+        for (String text : new String[] { null, "beta", "ROSSI" }) {
+            for (FacetFilters filter : filters) {
+                CatalogFilter expected = CatalogFilter.all().withText(text).withCategory(filter.getCategory())
+                    .withPublisher(filter.getPublisher()).withDecade(filter.getDecade());
+                assertEquals(text + " " + describe(filter),
+                    describe(catalog.facets(expected, 1)), describe(dao.countFacets(text, filter, 1)));
+            }
+        }
+    }
+
+    @Test
+    public void testCategoryPagesMatchTheCatalog() throws Exception {
+        insertFacetedBooks(primary);
+        insertFacetedBooks(replica);
+        BookDAO dao = new BookDAOImpl(primary, replica);
+        ColumnarCatalog catalog = catalogOf(dao);
+
+        assertEquals(catalog.categorySize("Fantasy"), dao.countByCategory("Fantasy", null));
+        assertEquals(2, dao.countByCategory(" storia ", null));
+        for (String text : new String[] { null, "beta", "BIANCHI" }) {
+            CatalogFilter filter = CatalogFilter.all().withText(text);
+            assertEquals(catalog.categorySize("Fantasy", filter), dao.countByCategory("Fantasy", text));
+            for (CategorySort sort : CategorySort.values()) {
+                assertCategoryPagesMatch(dao, catalog, text, sort);
+            }
+        }
+        // Un cursore fuori dalla categoria non si aggancia
+        assertTrue(dao.findByCategoryPaged("Fantasy", null, CategorySort.TITLE_ASC, 3, 2).isEmpty());
+    }
+
+    private static void assertCategoryPagesMatch(BookDAO dao, ColumnarCatalog catalog, String text, CategorySort sort)
+            throws Exception {
+        CatalogOrder order = sort.name().startsWith("TITLE") ? CatalogOrder.TITLE
+            : sort.name().startsWith("AUTHOR") ? CatalogOrder.AUTHOR : CatalogOrder.NEWEST;
+        boolean descending = sort == CategorySort.TITLE_DESC || sort == CategorySort.AUTHOR_DESC
+            || sort == CategorySort.YEAR_OLDEST;
+        List<Integer> expected = new ArrayList<>();
+        CatalogFilter filter = CatalogFilter.all().withText(text);
+        for (int row : catalog.categoryPage("Fantasy", filter, order, descending, null, 10)) {
+            expected.add(catalog.bookId(row));
+        }
+        // Pagine di due libri concatenate con il cursore
+        List<Integer> paged = new ArrayList<>();
+        Integer after = null;
+        List<Book> page;
+        while (!(page = dao.findByCategoryPaged("Fantasy", text, sort, after, 2)).isEmpty()) {
+            for (Book book : page) {
+                paged.add(book.getBook_id());
+            }
+            after = page.get(page.size() - 1).getBook_id();
+        }
+        assertEquals(text + " " + sort.name(), expected, paged);
+    }
+
+    @Test
+    public void testUserWrittenRowsAreReadFromThePrimary() throws Exception {
+        // Scritture non ancora replicate
+        execute(primary, "INSERT INTO Books_Libraries VALUES (7, 2)");
+        execute(primary, "INSERT INTO Suggested_Books VALUES (1, 2)");
+
+        BookDAO dao = new BookDAOImpl(primary, replica);
+        assertEquals(1, dao.getLibraryBooks(7).size());
+        assertEquals(2, dao.getLibraryBooks(7).get(0).getBook_id());
+        assertEquals(1, dao.getSuggestedBooks(1).size());
+    }
+
+    @Test
+    public void testCatalogIsReadFromTheReplica() throws Exception {
+        execute(primary, "INSERT INTO Books (book_id, title, authors) VALUES (3, 'Libro 3', 'Autore')");
+
+        BookDAO dao = new BookDAOImpl(primary, replica);
+        assertEquals(2, dao.findAll().size());
+        assertNull(dao.bookDetails(3));
+        assertEquals(3, new BookDAOImpl(primary).findAll().size());
+    }
+}
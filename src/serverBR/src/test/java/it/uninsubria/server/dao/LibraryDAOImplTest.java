@@ -1,13 +1,22 @@
 package it.uninsubria.server.dao;
 
+import static org.junit.Assert.*;
+
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.h2.jdbcx.JdbcDataSource;
 
 import it.uninsubria.shared.model.Library;
 import it.uninsubria.shared.model.Book;
 import it.uninsubria.server.dao.impl.LibraryDAOImpl;
+import it.uninsubria.server.event.WriteEventBus;
+import it.uninsubria.server.event.WriteEventListener;
 
 
 public class LibraryDAOImplTest {
@@ -82,4 +91,60 @@ public class LibraryDAOImplTest {
         LibraryDAO dao = new LibraryDAOImpl((Connection) null);
         dao.deleteLibraryForUser("", lib);
     }
+
+    private static Library library(int id, int... bookIds) {
+        List<Book> books = new ArrayList<>();
+        for (int bookId : bookIds) {
+            Book book = new Book();
+            book.setBook_id(bookId);
+            book.setTitle("Libro " + bookId);
+            book.setAuthors("Autore");
+            books.add(book);
+        }
+        Library library = new Library("Preferiti", books);
+        library.setId(id);
+        return library;
+    }
+
+    @Test
+    public void updateLibraryForUser_shouldPublishOnlyAddedBooks() throws Exception {
+        JdbcDataSource h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:librarydao;DB_CLOSE_DELAY=-1");
+        h2.setUser("sa");
+        try (Connection c = h2.getConnection(); Statement st = c.createStatement()) {
+            st.execute("CREATE TABLE Users (user_id INT PRIMARY KEY, userid TEXT)");
+            st.execute("CREATE TABLE Library (library_id INT PRIMARY KEY, name_library TEXT, user_id INT)");
+            st.execute("CREATE TABLE Books_Libraries (libraries_id INT, book_id INT, PRIMARY KEY (libraries_id, book_id))");
+            st.execute("INSERT INTO Users VALUES (1, 'lettore')");
+            st.execute("INSERT INTO Library VALUES (7, 'Preferiti', 1)");
+            st.execute("INSERT INTO Books_Libraries VALUES (7, 1), (7, 2)");
+        }
+        WriteEventListener listener = events -> { };
+        WriteEventBus bus = WriteEventBus.getInstance();
+        bus.subscribe(listener);
+        try {
+            LibraryDAO dao = new LibraryDAOImpl(h2);
+            long published = bus.getPublishedCount();
+
+            // Risalvare la stessa libreria non deve far crescere i contatori di tendenza
+            dao.updateLibraryForUser("lettore", library(7, 1, 2), library(7, 2, 1));
+            assertEquals(0, bus.getPublishedCount() - published);
+
+            dao.updateLibraryForUser("lettore", library(7, 1, 2), library(7, 2, 3, 3));
+            assertEquals(1, bus.getPublishedCount() - published);
+            try (Connection c = h2.getConnection(); Statement st = c.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT book_id FROM Books_Libraries WHERE libraries_id = 7 ORDER BY book_id")) {
+                List<Integer> books = new ArrayList<>();
+                while (rs.next()) {
+                    books.add(rs.getInt(1));
+                }
+                assertEquals(List.of(2, 3), books);
+            }
+        } finally {
+            bus.unsubscribe(listener);
+            try (Connection c = h2.getConnection(); Statement st = c.createStatement()) {
+                st.execute("DROP ALL OBJECTS");
+            }
+        }
+    }
 }
@@ -0,0 +1,142 @@
+package it.uninsubria.server.dao;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import it.uninsubria.server.dao.impl.SuggestionDAOImpl;
+import it.uninsubria.server.event.WriteEventBus;
+import it.uninsubria.server.event.WriteEventListener;
+
+public class SuggestionDAOImplTest {
+
+    /**
+     * Connection that records the transaction calls and fails with an unchecked
+     * exception on the first statement of the batch.
+     */
+    private static Connection failingConnection(List<String> calls) {
+        boolean[] autoCommit = { true };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getAutoCommit":
+                        return autoCommit[0];
+                    case "setAutoCommit":
+                        autoCommit[0] = (Boolean) args[0];
+                        calls.add("setAutoCommit(" + args[0] + ")");
+                        return null;
+                    case "createArrayOf":
+                        throw new IllegalStateException("driver failure");
+                    case "commit":
+                    case "rollback":
+                    case "close":
+                        calls.add(method.getName());
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    /**
+     * Result set over fixed rows of (int, boolean) columns.
+     */
+    private static ResultSet rows(Object[]... rows) {
+        Iterator<Object[]> it = Arrays.asList(rows).iterator();
+        Object[][] current = { null };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+            new Class<?>[] { ResultSet.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "next":
+                        current[0] = it.hasNext() ? it.next() : null;
+                        return current[0] != null;
+                    case "getInt":
+                        return current[0][(Integer) args[0] - 1];
+                    case "getBoolean":
+                        return current[0][(Integer) args[0] - 1];
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    /**
+     * Connection answering the queries of addAllToBatch: books 11 and 12 exist,
+     * and the upsert inserts 11 while 12 was already suggested.
+     */
+    private static Connection upsertConnection() {
+        boolean[] autoCommit = { true };
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getAutoCommit":
+                        return autoCommit[0];
+                    case "setAutoCommit":
+                        autoCommit[0] = (Boolean) args[0];
+                        return null;
+                    case "createArrayOf":
+                        return Proxy.newProxyInstance(Array.class.getClassLoader(), new Class<?>[] { Array.class },
+                            (p, m, a) -> null);
+                    case "prepareStatement": {
+                        String sql = (String) args[0];
+                        ResultSet result = sql.startsWith("SELECT book_id") ? rows(new Object[] { 11 }, new Object[] { 12 })
+                            : sql.startsWith("SELECT nextval") ? rows(new Object[] { 101 })
+                            : rows(new Object[] { 11, true }, new Object[] { 12, false });
+                        return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                            new Class<?>[] { PreparedStatement.class },
+                            (p, m, a) -> m.getName().equals("executeQuery") ? result : null);
+                    }
+                    case "commit":
+                    case "rollback":
+                    case "close":
+                        return null;
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    @Test
+    public void addAllToBatch_shouldPublishOnlyInsertedSuggestions() throws Exception {
+        WriteEventListener listener = events -> { };
+        WriteEventBus bus = WriteEventBus.getInstance();
+        bus.subscribe(listener);
+        try {
+            long published = bus.getPublishedCount();
+            Map<Integer, Integer> saved = new SuggestionDAOImpl(upsertConnection())
+                .addAllToBatch(100, 1, 5, 10, Arrays.asList(11, 12));
+
+            assertEquals(List.of(11, 12), new ArrayList<>(saved.keySet()));
+            // Il suggerimento 12 esisteva già: l'indice live non deve contarlo due volte
+            assertEquals(1, bus.getPublishedCount() - published);
+        } finally {
+            bus.unsubscribe(listener);
+        }
+    }
+
+    @Test
+    public void addAllToBatch_shouldRollBackOnRuntimeException() throws Exception {
+        List<String> calls = new ArrayList<>();
+        SuggestionDAO dao = new SuggestionDAOImpl(failingConnection(calls));
+        try {
+            dao.addAllToBatch(1, 1, null, 10, Arrays.asList(11, 12));
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // Il batch parziale non deve essere confermato al ripristino dell'autocommit
+            assertEquals(Arrays.asList("setAutoCommit(false)", "rollback", "setAutoCommit(true)", "close"), calls);
+        }
+    }
+}
@@ -4,10 +4,15 @@ import java.util.ArrayList;
 import java.util.List;
 
 import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookFacets;
+import it.uninsubria.shared.model.BookSummary;
+import it.uninsubria.shared.model.CategorySort;
+import it.uninsubria.shared.model.FacetCount;
+import it.uninsubria.shared.model.FacetFilters;
 import it.uninsubria.shared.model.ReviewManager;
 
 public class TestBookDAO implements BookDAO {
-    private final Book sampleBook = new Book(1, "Test Title", "Author", 2020);
+    private final Book sampleBook = book(1, "Test Title", "Author", 2020);
     private int findAllCalls = 0;
     private int findByTitleCalls = 0;
     private int findByAuthorCalls = 0;
@@ -16,6 +21,12 @@ public class TestBookDAO implements BookDAO {
     private int getAggregatedReviewsCalls = 0;
     private int getSuggestedBooksCalls = 0;
     private int findByTitleAndYearCalls = 0;
+    private int findByIdsCalls = 0;
+    private int findSummariesCalls = 0;
+    private int countFacetsCalls = 0;
+    private int findByCategoryCalls = 0;
+    private List<Book> catalog;
+    private ListCursor lastCursor;
 
 
     public int getFindAllCalls() { return findAllCalls; }
@@ -26,6 +37,40 @@ public class TestBookDAO implements BookDAO {
     public int getGetAggregatedReviewsCalls() { return getAggregatedReviewsCalls; }
     public int getGetSuggestedBooksCalls() { return getSuggestedBooksCalls; }
     public int getFindByTitleAndYearCalls() { return findByTitleAndYearCalls; }
+    public int getFindByIdsCalls() { return findByIdsCalls; }
+    public int getFindSummariesCalls() { return findSummariesCalls; }
+    public int getCountFacetsCalls() { return countFacetsCalls; }
+    public int getFindByCategoryCalls() { return findByCategoryCalls; }
+    public ListCursor getLastCursor() { return lastCursor; }
+
+    /** Sets the books returned by the catalog cursors; defaults to the sample book. */
+    public void setCatalog(List<Book> catalog) { this.catalog = catalog; }
+
+    /** In-memory cursor that records whether it was closed. */
+    public static class ListCursor implements ResultCursor<Book> {
+        private final List<Book> rows;
+        private int position;
+        private boolean closed;
+
+        ListCursor(List<Book> rows) { this.rows = rows; }
+
+        @Override
+        public List<Book> next(int max) {
+            if (closed) return new ArrayList<>();
+            int end = Math.min(rows.size(), position + max);
+            List<Book> chunk = new ArrayList<>(rows.subList(position, end));
+            position = end;
+            return chunk;
+        }
+
+        @Override
+        public boolean isExhausted() { return closed || position >= rows.size(); }
+
+        @Override
+        public void close() { closed = true; }
+
+        public boolean isClosed() { return closed; }
+    }
 
     @Override
     public Book bookDetails(int book_id) {
@@ -71,6 +116,16 @@ public class TestBookDAO implements BookDAO {
         return sampleBook;
     }
 
+    @Override
+    public List<Book> findByIds(int[] bookIds) {
+        findByIdsCalls++;
+        List<Book> list = new ArrayList<>();
+        for (int id : bookIds) {
+            list.add(book(id, "Test Title " + id, "Author", 2020));
+        }
+        return list;
+    }
+
     @Override
     public List<Book> getSuggestedBooks(int idLibro) {
         getSuggestedBooksCalls++;
@@ -117,8 +172,88 @@ public class TestBookDAO implements BookDAO {
         return list;
     }
 
+    @Override
+    public List<BookSummary> findSummaries(String title, String author, Integer year, int offset, int limit) throws Exception {
+        findSummariesCalls++;
+        List<BookSummary> list = new ArrayList<>();
+        list.add(new BookSummary(1, "Test Title", "Author", "Fiction", 2020));
+        return list;
+    }
+
+    @Override
+    public BookFacets countFacets(String text, FacetFilters filters, int maxPublishers) {
+        countFacetsCalls++;
+        List<FacetCount> categories = new ArrayList<>();
+        categories.add(new FacetCount("Fiction", 1));
+        return new BookFacets(1, categories, new ArrayList<>(), new ArrayList<>());
+    }
+
+    /** Books of the category in id order, whatever the requested sort. */
+    @Override
+    public List<Book> findByCategoryPaged(String category, String text, CategorySort sort, Integer afterBookId, int limit) {
+        findByCategoryCalls++;
+        List<Book> list = new ArrayList<>();
+        for (Book book : catalog != null ? catalog : List.of(sampleBook)) {
+            if (list.size() < limit && inCategory(book, category, text)
+                    && (afterBookId == null || book.getBook_id() > afterBookId)) {
+                list.add(book);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public int countByCategory(String category, String text) {
+        int count = 0;
+        for (Book book : catalog != null ? catalog : List.of(sampleBook)) {
+            if (inCategory(book, category, text)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean inCategory(Book book, String category, String text) {
+        if (!category.equalsIgnoreCase(book.getCategory())) {
+            return false;
+        }
+        if (text == null) {
+            return true;
+        }
+        String wanted = text.toLowerCase();
+        return (book.getTitle() != null && book.getTitle().toLowerCase().contains(wanted))
+            || (book.getAuthors() != null && book.getAuthors().toLowerCase().contains(wanted));
+    }
+
+    @Override
+    public ResultCursor<Book> openCatalogCursor(int fetchSize) {
+        lastCursor = new ListCursor(catalog != null ? catalog : List.of(sampleBook));
+        return lastCursor;
+    }
+
+    @Override
+    public ResultCursor<Book> openCatalogCursor(int afterBookId, int fetchSize) {
+        List<Book> rows = new ArrayList<>();
+        for (Book book : catalog != null ? catalog : List.of(sampleBook)) {
+            if (book.getBook_id() > afterBookId) {
+                rows.add(book);
+            }
+        }
+        lastCursor = new ListCursor(rows);
+        return lastCursor;
+    }
+
     @Override
     public int getTotalBooksCount() throws Exception {
         return 1;
     }
+
+    private static Book book(int id, String title, String authors, int year) {
+        Book book = new Book();
+        book.setBook_id(id);
+        book.setTitle(title);
+        book.setAuthors(authors);
+        book.setPublish_date_year(year);
+        return book;
+    }
 }
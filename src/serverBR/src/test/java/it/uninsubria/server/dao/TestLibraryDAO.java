@@ -3,24 +3,45 @@ package it.uninsubria.server.dao;
 import java.util.ArrayList;
 import java.util.List;
 
+import it.uninsubria.shared.model.Book;
 import it.uninsubria.shared.model.Library;
 
 public class TestLibraryDAO implements LibraryDAO {
     private int getUserLibrariesCalls = 0;
+    private int getUserLibrariesWithBooksCalls = 0;
     private int getBooksInLibrariesCalls = 0;
     private int libraryExistsForUserCalls = 0;
     private int addLibraryForUserCalls = 0;
     private int updateLibraryForUserCalls = 0;
     private int deleteLibraryForUserCalls = 0;
+    private int callsInUnitOfWork = 0;
 
     @Override
     public List<Library> getUserLibraries(String username) {
         getUserLibrariesCalls++;
+        if (UnitOfWork.isActive()) callsInUnitOfWork++;
         List<Library> list = new ArrayList<>();
         list.add(new Library(1, username, "TestLib"));
         return list;
     }
 
+    @Override
+    public List<Library> getUserLibrariesWithBooks(String username) {
+        getUserLibrariesWithBooksCalls++;
+        Library library = new Library(1, username, "TestLib");
+        List<Book> books = new ArrayList<>();
+        Book book = new Book();
+        book.setBook_id(1);
+        book.setTitle("Title");
+        book.setAuthors("Author");
+        book.setPublish_date_year(2020);
+        books.add(book);
+        library.setLibriDisponibili(books);
+        List<Library> list = new ArrayList<>();
+        list.add(library);
+        return list;
+    }
+
     @Override
     public List<Integer> getBooksInLibraries(int libraryId) {
         getBooksInLibrariesCalls++;
@@ -39,24 +60,29 @@ public class TestLibraryDAO implements LibraryDAO {
     @Override
     public Library addLibraryForUser(String username, Library library) {
         addLibraryForUserCalls++;
+        if (UnitOfWork.isActive()) callsInUnitOfWork++;
         return library;
     }
 
     @Override
     public void updateLibraryForUser(String username, Library oldLibrary, Library newLibrary) {
         updateLibraryForUserCalls++;
+        if (UnitOfWork.isActive()) callsInUnitOfWork++;
     }
 
     @Override
     public void deleteLibraryForUser(String username, Library library) {
         deleteLibraryForUserCalls++;
+        if (UnitOfWork.isActive()) callsInUnitOfWork++;
     }
 
     // Getters for test assertions
     public int getGetUserLibrariesCalls() { return getUserLibrariesCalls; }
+    public int getGetUserLibrariesWithBooksCalls() { return getUserLibrariesWithBooksCalls; }
     public int getGetBooksInLibrariesCalls() { return getBooksInLibrariesCalls; }
     public int getLibraryExistsForUserCalls() { return libraryExistsForUserCalls; }
     public int getAddLibraryForUserCalls() { return addLibraryForUserCalls; }
     public int getUpdateLibraryForUserCalls() { return updateLibraryForUserCalls; }
     public int getDeleteLibraryForUserCalls() { return deleteLibraryForUserCalls; }
+    public int getCallsInUnitOfWork() { return callsInUnitOfWork; }
 }
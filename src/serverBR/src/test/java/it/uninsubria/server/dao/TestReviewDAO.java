@@ -3,12 +3,14 @@ package it.uninsubria.server.dao;
 import java.util.ArrayList;
 import java.util.List;
 
+import it.uninsubria.shared.model.BookReviewStats;
 import it.uninsubria.shared.model.Review;
 
 public class TestReviewDAO implements ReviewDAO {
     private int addReviewCalls = 0;
     private int addSuggestionsCalls = 0;
     private int getReviewsByBookCalls = 0;
+    private int getReviewStatsCalls = 0;
     @Override
     public boolean addReview(int userId, int bookId, Review v) {
         addReviewCalls++;
@@ -35,9 +37,31 @@ public class TestReviewDAO implements ReviewDAO {
     public int getAddReviewCalls() { return addReviewCalls; }
     public int getAddSuggestionsCalls() { return addSuggestionsCalls; }
     public int getGetReviewsByBookCalls() { return getReviewsByBookCalls; }
+    public int getGetReviewStatsCalls() { return getReviewStatsCalls; }
 
 	@Override
 	public List<Review> getReviewsForBookAndUser(int userId, int bookId) throws Exception {
 		return new ArrayList<>();
 	}
+
+    @Override
+    public List<BookReviewStats> getReviewStatsForBooks(int[] bookIds) {
+        getReviewStatsCalls++;
+        // Solo i libri con ID pari hanno recensioni
+        List<BookReviewStats> stats = new ArrayList<>();
+        for (int id : bookIds) {
+            if (id % 2 == 0) {
+                stats.add(new BookReviewStats(id, 4.0, id));
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public List<BookReviewStats> getAllReviewStats() {
+        getReviewStatsCalls++;
+        List<BookReviewStats> stats = new ArrayList<>();
+        stats.add(new BookReviewStats(2, 4.0, 2));
+        return stats;
+    }
 }
@@ -1,7 +1,9 @@
 package it.uninsubria.server.dao;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import it.uninsubria.shared.model.Book;
 import it.uninsubria.shared.model.SuggestionEntry;
@@ -53,6 +55,15 @@ public class TestSuggestionDAO implements SuggestionDAO{
         return 1; // dummy
     }
 
+    @Override
+    public Map<Integer, Integer> addAllToBatch(int batchId, int userId, Integer libraryId, int baseBookId, List<Integer> suggestedBookIds) throws Exception {
+        Map<Integer, Integer> saved = new LinkedHashMap<>();
+        for (Integer id : suggestedBookIds) {
+            saved.put(id, batchId); // dummy
+        }
+        return saved;
+    }
+
     @Override
     public int addToBatch(int batchId, int userId, Integer libraryId, int baseBookId, int suggestedBookId) throws Exception {
         return 1; // dummy
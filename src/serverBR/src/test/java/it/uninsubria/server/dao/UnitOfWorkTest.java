@@ -0,0 +1,172 @@
+package it.uninsubria.server.dao;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Unit tests for UnitOfWork: connection sharing, commit and rollback.
+ */
+public class UnitOfWorkTest {
+
+    /** Records the calls made on the physical connections it hands out. */
+    private static class RecordingDataSource implements DataSource {
+        int opened;
+        int commits;
+        int rollbacks;
+        int closes;
+        boolean autoCommit = true;
+
+        @Override
+        public Connection getConnection() {
+            opened++;
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "commit": commits++; return null;
+                        case "rollback": rollbacks++; return null;
+                        case "close": closes++; return null;
+                        case "getAutoCommit": return autoCommit;
+                        case "setAutoCommit": autoCommit = (Boolean) args[0]; return null;
+                        default: return null;
+                    }
+                });
+        }
+
+        @Override public Connection getConnection(String u, String p) { return getConnection(); }
+        @Override public PrintWriter getLogWriter() { return null; }
+        @Override public void setLogWriter(PrintWriter out) {}
+        @Override public void setLoginTimeout(int seconds) {}
+        @Override public int getLoginTimeout() { return 0; }
+        @Override public Logger getParentLogger() throws SQLFeatureNotSupportedException { throw new SQLFeatureNotSupportedException(); }
+        @Override public <T> T unwrap(Class<T> iface) { return null; }
+        @Override public boolean isWrapperFor(Class<?> iface) { return false; }
+    }
+
+    @Test
+    public void testNestedCallsShareOneConnectionAndCommitOnce() throws Exception {
+        RecordingDataSource ds = new RecordingDataSource();
+
+        UnitOfWork.run(() -> {
+            try (Connection c = UnitOfWork.connection(ds)) {
+                c.commit(); // ignorato: la transazione appartiene all'unità
+            }
+            return UnitOfWork.run(() -> {
+                try (Connection c = UnitOfWork.connection(ds)) {
+                    assertTrue(c.getAutoCommit());
+                }
+                return null;
+            });
+        });
+
+        assertEquals(1, ds.opened);
+        assertEquals(1, ds.commits);
+        assertEquals(0, ds.rollbacks);
+        assertEquals(1, ds.closes);
+        assertTrue("Auto-commit should be restored", ds.autoCommit);
+        assertFalse(UnitOfWork.isActive());
+    }
+
+    @Test
+    public void testFailureRollsBack() throws Exception {
+        RecordingDataSource ds = new RecordingDataSource();
+
+        try {
+            UnitOfWork.run(() -> {
+                UnitOfWork.connection(ds);
+                throw new IllegalStateException("boom");
+            });
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+            // atteso
+        }
+
+        assertEquals(0, ds.commits);
+        assertEquals(1, ds.rollbacks);
+        assertEquals(1, ds.closes);
+    }
+
+    @Test
+    public void testSwallowedNestedFailureStillRollsBack() throws Exception {
+        RecordingDataSource ds = new RecordingDataSource();
+
+        try {
+            UnitOfWork.run(() -> {
+                UnitOfWork.connection(ds);
+                try {
+                    UnitOfWork.run(() -> { throw new SQLException("nested"); });
+                } catch (SQLException ignored) {
+                    // il chiamante prosegue, ma l'unità è compromessa
+                }
+                return null;
+            });
+            fail("Expected SQLException");
+        } catch (SQLException expected) {
+            // atteso
+        }
+
+        assertEquals(0, ds.commits);
+        assertTrue(ds.rollbacks >= 1);
+    }
+
+    @Test
+    public void testNoConnectionOpenedWhenUnused() throws Exception {
+        RecordingDataSource ds = new RecordingDataSource();
+        assertEquals("ok", UnitOfWork.run(() -> "ok"));
+        assertEquals(0, ds.opened);
+    }
+
+    @Test
+    public void testAfterCommitRunsOnlyOnceCommitted() throws Exception {
+        RecordingDataSource ds = new RecordingDataSource();
+        List<String> events = new ArrayList<>();
+
+        UnitOfWork.run(() -> {
+            UnitOfWork.connection(ds);
+            UnitOfWork.run(() -> {
+                UnitOfWork.afterCommit(() -> events.add("nested"));
+                return null;
+            });
+            UnitOfWork.afterCommit(() -> events.add("outer"));
+            assertTrue("Actions must wait for the commit", events.isEmpty());
+            return null;
+        });
+
+        assertEquals(1, ds.commits);
+        assertEquals(List.of("nested", "outer"), events);
+
+        // Fuori da un'unità l'azione è immediata
+        UnitOfWork.afterCommit(() -> events.add("now"));
+        assertEquals(3, events.size());
+    }
+
+    @Test
+    public void testAfterCommitDiscardedOnRollback() throws Exception {
+        RecordingDataSource ds = new RecordingDataSource();
+        List<String> events = new ArrayList<>();
+
+        try {
+            UnitOfWork.run(() -> {
+                UnitOfWork.connection(ds);
+                UnitOfWork.afterCommit(() -> events.add("lost"));
+                throw new SQLException("boom");
+            });
+            fail("Expected SQLException");
+        } catch (SQLException expected) {
+            // atteso
+        }
+
+        assertEquals(1, ds.rollbacks);
+        assertTrue(events.isEmpty());
+    }
+}
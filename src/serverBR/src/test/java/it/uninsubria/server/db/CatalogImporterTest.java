@@ -0,0 +1,189 @@
+package it.uninsubria.server.db;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.HexFormat;
+
+/**
+ * Runs the incremental catalog import against an H2 in-memory database.
+ */
+public class CatalogImporterTest {
+
+    private static final String HEADER = "Title‰Authors‰Description‰Category‰Publisher‰Price‰Month‰Year\n";
+    private static final String SOURCE = "test.csv";
+
+    private Connection h2;
+    private Connection conn;
+
+    /** Same function as PostgreSQL md5(), used by the fingerprint backfill. */
+    public static String md5(String value) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        h2 = DriverManager.getConnection("jdbc:h2:mem:importer;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement st = h2.createStatement()) {
+            st.execute("CREATE ALIAS md5 FOR \"" + CatalogImporterTest.class.getName() + ".md5\"");
+            st.execute("CREATE TABLE Books (" +
+                "book_id SERIAL PRIMARY KEY," +
+                "title TEXT NOT NULL," +
+                "authors TEXT NOT NULL," +
+                "descriptions TEXT," +
+                "category TEXT," +
+                "publisher TEXT," +
+                "price TEXT," +
+                "publish_date_month TEXT," +
+                "publish_date_year INT," +
+                "fingerprint TEXT," +
+                "content_hash TEXT)");
+            st.execute("CREATE TABLE Catalog_Import_State (" +
+                "source_name TEXT PRIMARY KEY," +
+                "source_hash TEXT NOT NULL," +
+                "committed_line INT NOT NULL DEFAULT 0," +
+                "completed BOOLEAN NOT NULL DEFAULT FALSE," +
+                "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        }
+        // H2 non supporta ON CONFLICT ... DO UPDATE: il salvataggio del checkpoint diventa un MERGE
+        conn = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+            new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                if (method.getName().equals("prepareStatement") && args.length == 1
+                        && ((String) args[0]).startsWith("INSERT INTO Catalog_Import_State")) {
+                    args = new Object[] { "MERGE INTO Catalog_Import_State " +
+                        "(source_name, source_hash, committed_line, completed, updated_at) KEY (source_name) " +
+                        "VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP)" };
+                }
+                try {
+                    return method.invoke(h2, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Statement st = h2.createStatement()) {
+            st.execute("DROP ALL OBJECTS");
+        }
+        h2.close();
+    }
+
+    private int importCsv(String body) throws Exception {
+        byte[] csv = (HEADER + body).getBytes(StandardCharsets.UTF_8);
+        return CatalogImporter.importBooks(conn, SOURCE, () -> new ByteArrayInputStream(csv));
+    }
+
+    private int count(String sql) throws Exception {
+        try (Statement st = h2.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private String description(String title, int year) throws Exception {
+        try (PreparedStatement ps = h2.prepareStatement(
+                "SELECT descriptions FROM Books WHERE title = ? AND publish_date_year = ?")) {
+            ps.setString(1, title);
+            ps.setInt(2, year);
+            try (ResultSet rs = ps.executeQuery()) {
+                assertTrue(title, rs.next());
+                return rs.getString(1);
+            }
+        }
+    }
+
+    @Test
+    public void testParsesRowsAndSkipsMalformedOnes() throws Exception {
+        importCsv(
+            "\"Il Nome della Rosa\"‰By Eco, Umberto‰Un giallo‰Fiction‰Bompiani‰$9.99‰March‰1980\n" +
+            "Città invisibili‰By Calvino, Italo‰‰Fiction‰Einaudi‰‰‰1972\n" +
+            "Campi insufficienti‰By Autore‰1999\n" +
+            "‰By Nessun titolo‰‰‰‰‰‰2000\n" +
+            "Titolo senza autori‰‰‰‰‰‰‰2000\n");
+
+        assertEquals(2, count("SELECT COUNT(*) FROM Books"));
+        assertEquals(0, count("SELECT COUNT(*) FROM Books WHERE fingerprint IS NULL OR content_hash IS NULL"));
+        assertEquals("Un giallo", description("Il Nome della Rosa", 1980));
+        assertNull(description("Città invisibili", 1972));
+        assertEquals(1, count("SELECT COUNT(*) FROM Catalog_Import_State WHERE source_name = '" + SOURCE
+            + "' AND completed AND committed_line = 6"));
+    }
+
+    @Test
+    public void testUpsertsOnlyNewAndChangedRows() throws Exception {
+        assertEquals(0, importCsv(
+            "Libro A‰By Autore‰Prima‰‰‰‰‰2001\n" +
+            "Libro B‰By Autore‰Invariato‰‰‰‰‰2002\n"));
+        int bookA = count("SELECT book_id FROM Books WHERE title = 'Libro A'");
+
+        // Stessa impronta con contenuto diverso aggiorna, impronta nuova inserisce, le righe ripetute contano una volta
+        assertEquals(1, importCsv(
+            "Libro A‰By Autore‰Dopo‰‰‰‰‰2001\n" +
+            "Libro B‰By Autore‰Invariato‰‰‰‰‰2002\n" +
+            "Libro C‰By Autore‰Nuovo‰‰‰‰‰2003\n" +
+            "Libro C‰By Autore‰Nuovo‰‰‰‰‰2003\n" +
+            "Libro A‰By Autore‰Prima‰‰‰‰‰1999\n"));
+
+        assertEquals(4, count("SELECT COUNT(*) FROM Books"));
+        assertEquals(bookA, count("SELECT book_id FROM Books WHERE title = 'Libro A' AND publish_date_year = 2001"));
+        assertEquals("Dopo", description("Libro A", 2001));
+        assertEquals("Prima", description("Libro A", 1999));
+        assertEquals("Invariato", description("Libro B", 2002));
+        assertEquals(1, count("SELECT COUNT(*) FROM Books WHERE title = 'Libro C'"));
+    }
+
+    @Test
+    public void testBackfilledRowsAreNotDuplicated() throws Exception {
+        // Libro caricato senza impronta, come fa DataSeeder
+        try (Statement st = h2.createStatement()) {
+            st.execute("INSERT INTO Books (title, authors, descriptions, publish_date_year) " +
+                "VALUES ('Libro A', 'By Autore', 'Vecchia', 2001)");
+        }
+        importCsv("Libro A‰By Autore‰Nuova‰‰‰‰‰2001\n");
+
+        assertEquals(1, count("SELECT COUNT(*) FROM Books"));
+        assertEquals("Nuova", description("Libro A", 2001));
+    }
+
+    @Test
+    public void testResumesAfterCommittedLineAndSkipsUnchangedSource() throws Exception {
+        String body =
+            "Libro A‰By Autore‰‰‰‰‰‰2001\n" +
+            "Libro B‰By Autore‰‰‰‰‰‰2002\n" +
+            "Libro C‰By Autore‰‰‰‰‰‰2003\n";
+        importCsv(body);
+        try (Statement st = h2.createStatement()) {
+            // Import interrotto dopo la riga 2 (intestazione compresa): Libro A è già committato
+            st.execute("DELETE FROM Books WHERE title <> 'Libro A'");
+            st.execute("UPDATE Catalog_Import_State SET committed_line = 2, completed = FALSE");
+            st.execute("UPDATE Books SET descriptions = 'Modificata' WHERE title = 'Libro A'");
+        }
+
+        importCsv(body);
+        assertEquals(3, count("SELECT COUNT(*) FROM Books"));
+        // La riga già committata non viene riletta
+        assertEquals("Modificata", description("Libro A", 2001));
+
+        // Sorgente invariata e import completato: nessuna scrittura
+        try (Statement st = h2.createStatement()) {
+            st.execute("DELETE FROM Books WHERE title = 'Libro C'");
+        }
+        importCsv(body);
+        assertEquals(2, count("SELECT COUNT(*) FROM Books"));
+    }
+}
@@ -0,0 +1,118 @@
+package it.uninsubria.server.db;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import it.uninsubria.shared.utils.AppConstants;
+
+/**
+ * Seeds an H2 in-memory database through the JDBC batch path of DataSeeder.
+ */
+public class DataSeederTest {
+
+    private static final String HEADER = "Title‰Authors‰Description‰Category‰Publisher‰Price‰Month‰Year\n";
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        conn = DriverManager.getConnection("jdbc:h2:mem:seeder;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE Books (" +
+                "book_id SERIAL PRIMARY KEY," +
+                "title VARCHAR(200) NOT NULL," +
+                "authors TEXT NOT NULL," +
+                "descriptions TEXT," +
+                "category TEXT," +
+                "publisher TEXT," +
+                "price TEXT," +
+                "publish_date_month TEXT," +
+                "publish_date_year INT)");
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP ALL OBJECTS");
+        }
+        conn.close();
+    }
+
+    private static ByteArrayInputStream csv(String body) {
+        return new ByteArrayInputStream((HEADER + body).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int count(String sql) throws Exception {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    @Test
+    public void testSeedsCleanRowsAndSkipsIncompleteOnes() throws Exception {
+        DataSeeder.SeedStats stats = DataSeeder.seedBooks(conn, csv(
+            "\"Il Nome della Rosa\"‰By Eco, Umberto‰Un giallo‰Fiction‰Bompiani‰Price Starting at $9.99‰March‰1980\n" +
+            "Senza anno‰By Autore‰‰‰‰‰‰abc\n" +
+            "Anno fuori intervallo‰By Autore‰‰‰‰‰‰3000\n" +
+            "‰By Nessun titolo‰‰‰‰‰‰2000\n" +
+            "Titolo senza autori‰‰‰‰‰‰‰2000\n" +
+            "Campi insufficienti‰By Autore‰2000\n"));
+
+        assertEquals(3, stats.getInserted());
+        assertEquals(3, stats.getSkipped());
+        assertEquals(0, stats.getErrors());
+        assertEquals(7, stats.getTotalLines());
+        assertTrue(conn.getAutoCommit());
+
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT title, descriptions, publisher, publish_date_month, publish_date_year " +
+                 "FROM Books ORDER BY book_id")) {
+            assertTrue(rs.next());
+            assertEquals("Il Nome della Rosa", rs.getString(1));
+            assertEquals("Un giallo", rs.getString(2));
+            assertEquals("Bompiani", rs.getString(3));
+            assertEquals("March", rs.getString(4));
+            assertEquals(1980, rs.getInt(5));
+
+            // Campi vuoti e anni non validi diventano NULL
+            assertTrue(rs.next());
+            assertNull(rs.getString(2));
+            assertNull(rs.getObject(5));
+            assertTrue(rs.next());
+            assertNull(rs.getObject(5));
+            assertFalse(rs.next());
+        }
+    }
+
+    @Test
+    public void testBadRowOnlyCostsItself() throws Exception {
+        int rows = AppConstants.Batch.DATA_SEEDER_BATCH_SIZE + 10;
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            // Una riga troppo lunga per la colonna fa fallire il suo batch, che viene ripetuto riga per riga
+            String title = i == 3 ? "T".repeat(300) : "Libro " + i;
+            body.append(title).append("‰By Autore ").append(i).append("‰‰‰‰‰‰2000\n");
+        }
+
+        DataSeeder.SeedStats stats = DataSeeder.seedBooks(conn, csv(body.toString()));
+
+        assertEquals(rows - 1, stats.getInserted());
+        assertEquals(1, stats.getErrors());
+        assertEquals(0, stats.getSkipped());
+        assertEquals(rows - 1, count("SELECT COUNT(*) FROM Books"));
+        assertEquals(0, count("SELECT COUNT(*) FROM Books WHERE LENGTH(title) > 200"));
+        assertEquals(1, count("SELECT COUNT(*) FROM Books WHERE title = 'Libro " + (rows - 1) + "'"));
+    }
+}
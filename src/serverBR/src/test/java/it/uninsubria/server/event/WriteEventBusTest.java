@@ -0,0 +1,117 @@
+package it.uninsubria.server.event;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for EventRing and WriteEventBus.
+ * Tests ordering, the bounded capacity, concurrent producers and batched delivery.
+ */
+public class WriteEventBusTest {
+
+    @Test
+    public void testRingKeepsOrderAndRejectsWhenFull() {
+        EventRing<Integer> ring = new EventRing<>(4);
+        assertEquals(4, ring.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertFalse("Il quinto elemento non entra", ring.offer(4));
+
+        List<Integer> out = new ArrayList<>();
+        assertEquals(2, ring.drainTo(out, 2));
+        assertTrue(ring.offer(4));
+        assertTrue(ring.offer(5));
+        assertEquals(4, ring.drainTo(out, 10));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), out);
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentProducersLoseNothing() throws Exception {
+        EventRing<Integer> ring = new EventRing<>(1024);
+        int producers = 4;
+        int perProducer = 20_000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ring.offer(base + i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            threads[p].start();
+        }
+
+        // Il consumatore verifica che ogni produttore sia ricevuto in ordine
+        int[] next = new int[producers];
+        List<Integer> out = new ArrayList<>();
+        int received = 0;
+        while (received < producers * perProducer) {
+            out.clear();
+            received += ring.drainTo(out, 256);
+            for (int value : out) {
+                int producer = value / perProducer;
+                assertEquals(producer * perProducer + next[producer], value);
+                next[producer]++;
+            }
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertTrue(ring.isEmpty());
+    }
+
+    @Test
+    public void testBusDeliversEveryEventInOrder() throws Exception {
+        WriteEventBus bus = new WriteEventBus(64);
+        List<WriteEvent> received = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(1);
+        bus.subscribe(events -> {
+            received.addAll(events);
+            if (received.size() == 500) {
+                done.countDown();
+            }
+        });
+        bus.start();
+        try {
+            for (int i = 0; i < 500; i++) {
+                while (!bus.publish(WriteEvent.libraryBookAdded(1, i))) {
+                    Thread.onSpinWait();
+                }
+            }
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        } finally {
+            bus.stop();
+        }
+        for (int i = 0; i < 500; i++) {
+            assertEquals(i, received.get(i).getBookId());
+        }
+        assertEquals(WriteEvent.Type.LIBRARY_BOOK_ADDED, received.get(0).getType());
+    }
+
+    @Test
+    public void testFullQueueDropsInsteadOfBlocking() {
+        WriteEventBus bus = new WriteEventBus(4);
+        // Senza listener la pubblicazione non accoda nulla
+        assertTrue(bus.publish(WriteEvent.reviewAdded(1, 1, 5f)));
+        assertEquals(0, bus.getPublishedCount());
+
+        bus.subscribe(events -> { });
+        for (int i = 0; i < 4; i++) {
+            assertTrue(bus.publish(WriteEvent.reviewAdded(1, i, 5f)));
+        }
+        // Dispatcher non avviato: la coda è piena e l'evento viene scartato
+        assertFalse(bus.publish(WriteEvent.reviewAdded(1, 99, 5f)));
+        assertEquals(4, bus.getPublishedCount());
+        assertEquals(1, bus.getDroppedCount());
+    }
+}
@@ -2,6 +2,8 @@ package it.uninsubria.server.integration;
 
 import static org.junit.Assert.*;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.util.List;
@@ -15,6 +17,7 @@ import org.junit.Test;
 
 import it.uninsubria.server.util.ConnectionPoolManager;
 import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookSummary;
 import it.uninsubria.shared.rmi.BookService;
 
 /**
@@ -28,6 +31,8 @@ public class EndToEndIntegrationTest {
     private static Thread serverThread;
     private static volatile boolean serverStarted = false;
     private static volatile Exception serverException = null;
+    // Checkpoint dei recommender fuori dalla directory del progetto
+    private static Path stateDir;
 
     @BeforeClass
     public static void setupTestEnvironment() throws Exception {
@@ -39,6 +44,7 @@ public class EndToEndIntegrationTest {
         try {
             // Initialize H2 database for testing (this sets up ConnectionPoolManager)
             TestDatabaseHelper.initializeTestDatabase();
+            stateDir = Files.createTempDirectory("server-state");
 
             // Start server once for all tests
             startServerInBackground();
@@ -147,7 +153,7 @@ public class EndToEndIntegrationTest {
             try {
                 System.out.println("TEST: Starting RMI server...");
                 // Start the RMI server directly
-                it.uninsubria.server.db.BookRecommenderServer.startServer();
+                it.uninsubria.server.db.BookRecommenderServer.startServer(stateDir);
                 System.out.println("TEST: RMI server started successfully");
                 serverStarted = true;
                 System.out.println("TEST: serverStarted set to true");
@@ -260,11 +266,11 @@ public class EndToEndIntegrationTest {
         BookService bookService = (BookService) registry.lookup("BookService");
 
         // Test global book search
-        List<Book> books = bookService.searchGlobally();
+        List<BookSummary> books = bookService.searchGlobally();
 
         // Debug: print what we got
         System.out.println("TEST: Found " + books.size() + " books");
-        for (Book book : books) {
+        for (BookSummary book : books) {
             System.out.println("TEST: Book: " + book.getTitle() + " by " + book.getAuthors());
         }
 
@@ -273,9 +279,9 @@ public class EndToEndIntegrationTest {
         assertTrue("Should have at least some test books", books.size() >= 3);
 
         // Verify book data structure
-        Book firstBook = books.get(0);
+        BookSummary firstBook = books.get(0);
         assertNotNull("Book title should not be null", firstBook.getTitle());
-        assertTrue("Book should have a valid year", firstBook.getPublish_date_year() > 0);
+        assertTrue("Book should have a valid year", firstBook.getPublishYear() > 0);
     }
 
     @Test(timeout = 8000) // 8 seconds timeout
@@ -284,7 +290,7 @@ public class EndToEndIntegrationTest {
         BookService bookService = (BookService) registry.lookup("BookService");
 
         // Test title search
-        List<Book> javaBooks = bookService.searchByTitle("Java");
+        List<BookSummary> javaBooks = bookService.searchByTitle("Java");
         assertNotNull("Java books search should return results", javaBooks);
 
         // Should find our test book "Java Programming"
@@ -293,7 +299,7 @@ public class EndToEndIntegrationTest {
         assertTrue("Should find Java programming book", foundJavaBook);
 
         // Test empty search
-        List<Book> emptyResults = bookService.searchByTitle("NonExistentBook12345");
+        List<BookSummary> emptyResults = bookService.searchByTitle("NonExistentBook12345");
         assertNotNull("Empty search should return empty list, not null", emptyResults);
     }
 
@@ -303,7 +309,7 @@ public class EndToEndIntegrationTest {
         BookService bookService = (BookService) registry.lookup("BookService");
 
         // Test author search
-        List<Book> rowlingBooks = bookService.searchByAuthor("Rowling");
+        List<BookSummary> rowlingBooks = bookService.searchByAuthor("Rowling");
         assertNotNull("Rowling books search should return results", rowlingBooks);
 
         // Should find our test book "Harry Potter"
@@ -318,27 +324,27 @@ public class EndToEndIntegrationTest {
         BookService bookService = (BookService) registry.lookup("BookService");
 
         // Test 1: Combined search for existing author and year
-        List<Book> results = bookService.searchByAuthorAndYear("Rowling", 1997);
+        List<BookSummary> results = bookService.searchByAuthorAndYear("Rowling", 1997);
         assertNotNull("Combined search should return results", results);
         assertTrue("Should find exactly one book", results.size() == 1);
 
         // Should find Harry Potter published in 1997
         boolean foundCorrectBook = results.stream()
-            .anyMatch(book -> book.getTitle().contains("Harry Potter") && book.getPublish_date_year() == 1997);
+            .anyMatch(book -> book.getTitle().contains("Harry Potter") && book.getPublishYear() == 1997);
         assertTrue("Should find Harry Potter from 1997", foundCorrectBook);
 
         // Test 2: Author exists but year doesn't match - should return empty
-        List<Book> noResultsAuthorYear = bookService.searchByAuthorAndYear("Rowling", 2023);
+        List<BookSummary> noResultsAuthorYear = bookService.searchByAuthorAndYear("Rowling", 2023);
         assertNotNull("Should return empty list, not null", noResultsAuthorYear);
         assertTrue("Should not find books when year doesn't match", noResultsAuthorYear.isEmpty());
 
         // Test 3: Year exists but author doesn't match - should return empty
-        List<Book> noResultsYearAuthor = bookService.searchByAuthorAndYear("John Doe", 1997);
+        List<BookSummary> noResultsYearAuthor = bookService.searchByAuthorAndYear("John Doe", 1997);
         assertNotNull("Should return empty list, not null", noResultsYearAuthor);
         assertTrue("Should not find books when author doesn't match", noResultsYearAuthor.isEmpty());
 
         // Test 4: Both author and year exist but not as a pair - should return empty
-        List<Book> noResultsWrongPair = bookService.searchByAuthorAndYear("Jane Smith", 1997);
+        List<BookSummary> noResultsWrongPair = bookService.searchByAuthorAndYear("Jane Smith", 1997);
         assertNotNull("Should return empty list, not null", noResultsWrongPair);
         assertTrue("Should not find books when pair doesn't exist", noResultsWrongPair.isEmpty());
     }
@@ -349,7 +355,7 @@ public class EndToEndIntegrationTest {
         BookService bookService = (BookService) registry.lookup("BookService");
 
         // Test multiple concurrent requests
-        CompletableFuture<List<Book>> future1 = CompletableFuture.supplyAsync(() -> {
+        CompletableFuture<List<BookSummary>> future1 = CompletableFuture.supplyAsync(() -> {
             try {
                 return bookService.searchByTitle("Java");
             } catch (Exception e) {
@@ -357,7 +363,7 @@ public class EndToEndIntegrationTest {
             }
         });
 
-        CompletableFuture<List<Book>> future2 = CompletableFuture.supplyAsync(() -> {
+        CompletableFuture<List<BookSummary>> future2 = CompletableFuture.supplyAsync(() -> {
             try {
                 return bookService.searchGlobally();
             } catch (Exception e) {
@@ -366,8 +372,8 @@ public class EndToEndIntegrationTest {
         });
 
         // Wait for both requests to complete (reduced timeout)
-        List<Book> javaResults = future1.get(5, TimeUnit.SECONDS);
-        List<Book> globalResults = future2.get(5, TimeUnit.SECONDS);
+        List<BookSummary> javaResults = future1.get(5, TimeUnit.SECONDS);
+        List<BookSummary> globalResults = future2.get(5, TimeUnit.SECONDS);
 
         assertNotNull("Concurrent Java search should work", javaResults);
         assertNotNull("Concurrent global search should work", globalResults);
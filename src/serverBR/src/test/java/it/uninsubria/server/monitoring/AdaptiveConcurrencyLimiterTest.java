@@ -0,0 +1,128 @@
+package it.uninsubria.server.monitoring;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for AdaptiveConcurrencyLimiter.
+ * Tests AIMD limit adjustment, queue bounds and deadline-based shedding.
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(1000);
+
+    @Test
+    public void testLimitGrowsUnderFastCalls() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 10, 100, 50, 10);
+        int initial = limiter.getLimit();
+
+        for (int i = 0; i < initial; i++) {
+            limiter.acquire();
+        }
+        limiter.release(FAST, false);
+
+        assertEquals(initial + 1, limiter.getLimit());
+    }
+
+    @Test
+    public void testLimitShrinksOnSlowOrFailedCalls() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 20, 100, 50, 10);
+        int initial = limiter.getLimit();
+
+        limiter.acquire();
+        limiter.release(SLOW, false);
+        int afterSlow = limiter.getLimit();
+        assertTrue("Slow call should reduce the limit", afterSlow < initial);
+
+        limiter.acquire();
+        limiter.release(FAST, true);
+        assertTrue("Failed call should reduce the limit", limiter.getLimit() <= afterSlow);
+    }
+
+    @Test
+    public void testReleaseWithoutSampleKeepsTheLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 20, 100, 50, 10);
+        int initial = limiter.getLimit();
+
+        limiter.acquire();
+        limiter.release();
+        assertEquals(initial, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testSamplesAdjustTheLimitWhileThePermitIsHeld() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 20, 100, 50, 10);
+        int initial = limiter.getLimit();
+
+        limiter.acquire();
+        limiter.onSample(SLOW, false);
+        assertTrue("Slow call should reduce the limit", limiter.getLimit() < initial);
+        assertEquals(1, limiter.getInFlight());
+        limiter.release();
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testLimitNeverBelowMinimum() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 4, 100, 50, 10);
+        for (int i = 0; i < 50; i++) {
+            limiter.acquire();
+            limiter.release(SLOW, false);
+        }
+        assertEquals(2, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testRejectsWhenQueueFull() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 100, 1000, 0);
+        limiter.acquire();
+
+        long start = System.nanoTime();
+        try {
+            limiter.acquire();
+            fail("Expected DatabaseOverloadedException");
+        } catch (DatabaseOverloadedException expected) {
+            assertTrue("Full queue should shed immediately", System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+        }
+        assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void testRejectsAfterDeadline() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 100, 50, 10);
+        limiter.acquire();
+
+        try {
+            limiter.acquire();
+            fail("Expected DatabaseOverloadedException");
+        } catch (DatabaseOverloadedException expected) {
+            assertEquals(0, limiter.getWaiting());
+        }
+    }
+
+    @Test
+    public void testQueuedCallerGetsReleasedPermit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 1, 1, 100, 2000, 10);
+        limiter.acquire();
+
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            limiter.release(FAST, false);
+        });
+        releaser.start();
+
+        limiter.acquire();
+        releaser.join();
+        assertEquals(1, limiter.getInFlight());
+    }
+}
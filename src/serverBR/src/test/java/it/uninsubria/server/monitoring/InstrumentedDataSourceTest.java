@@ -0,0 +1,210 @@
+package it.uninsubria.server.monitoring;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import io.micrometer.core.instrument.Timer;
+import it.uninsubria.server.dao.ResultCursor;
+import it.uninsubria.server.dao.impl.BookDAOImpl;
+import it.uninsubria.shared.model.Book;
+
+/**
+ * Unit tests for InstrumentedDataSource: SQL normalization, slow query recording
+ * and the concurrency limiter around connection checkout.
+ */
+public class InstrumentedDataSourceTest {
+
+    private final List<LogRecord> warnings = new ArrayList<>();
+    private final Handler handler = new Handler() {
+        @Override public void publish(LogRecord record) { warnings.add(record); }
+        @Override public void flush() {}
+        @Override public void close() {}
+    };
+    private JdbcDataSource h2;
+
+    @Before
+    public void setUp() throws Exception {
+        Logger.getLogger(InstrumentedDataSource.class.getName()).addHandler(handler);
+        h2 = new JdbcDataSource();
+        h2.setURL("jdbc:h2:mem:instrumented;DB_CLOSE_DELAY=-1");
+        h2.setUser("sa");
+        try (Connection c = h2.getConnection(); Statement st = c.createStatement()) {
+            st.execute("CREATE TABLE Books (book_id INT PRIMARY KEY, title TEXT, authors TEXT, descriptions TEXT, " +
+                "category TEXT, publisher TEXT, price TEXT, publish_date_month TEXT, publish_date_year INT)");
+            st.execute("INSERT INTO Books (book_id, title, authors) VALUES (1, 'Libro', 'Autore')");
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Logger.getLogger(InstrumentedDataSource.class.getName()).removeHandler(handler);
+        try (Connection c = h2.getConnection(); Statement st = c.createStatement()) {
+            st.execute("DROP ALL OBJECTS");
+        }
+    }
+
+    private static Timer queryTimer(String pool) {
+        return MonitoringService.getInstance().getRegistry().find("db.query.duration").tag("pool", pool).timer();
+    }
+
+    @Test
+    public void testSlowQueryIsLoggedWithCallerAndParameterShapes() throws Exception {
+        InstrumentedDataSource ds = new InstrumentedDataSource(h2, "test-slow", 0);
+        assertEquals(1, new BookDAOImpl(ds).bookDetails(1).getBook_id());
+
+        assertEquals(1, warnings.size());
+        String message = warnings.get(0).getMessage();
+        assertTrue(message, message.contains("in BookDAOImpl."));
+        assertTrue(message, message.contains("SELECT * FROM Books WHERE book_id = ?"));
+        assertTrue(message, message.contains("params=[Integer]"));
+        assertEquals(1, queryTimer("test-slow").count());
+    }
+
+    @Test
+    public void testFastQueryIsTimedButNotLogged() throws Exception {
+        InstrumentedDataSource ds = new InstrumentedDataSource(h2, "test-fast", 60_000);
+        new BookDAOImpl(ds).findAll();
+        new BookDAOImpl(ds).findAll();
+
+        assertTrue(warnings.isEmpty());
+        assertEquals(2, queryTimer("test-fast").count());
+    }
+
+    @Test
+    public void testMetersAreTaggedWithTheDaoMethod() throws Exception {
+        InstrumentedDataSource ds = new InstrumentedDataSource(h2, "test-method", 60_000);
+        new BookDAOImpl(ds).findAll();
+        new BookDAOImpl(ds).findAll();
+
+        Timer timer = MonitoringService.getInstance().getRegistry().find("db.query.duration")
+            .tags("pool", "test-method", "method", "BookDAOImpl.findAll").timer();
+        assertNotNull(timer);
+        assertEquals(2, timer.count());
+        assertNotNull(MonitoringService.getInstance().getRegistry().find("db.query.rows")
+            .tags("pool", "test-method", "method", "BookDAOImpl.findAll").summary());
+    }
+
+    @Test
+    public void testConnectionHoldsLimiterPermitUntilClose() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test-permit", 1, 1, 1000, 10, 10);
+        InstrumentedDataSource ds = new InstrumentedDataSource(h2, "test-permit", 60_000, limiter);
+
+        Connection first = ds.getConnection();
+        assertEquals(1, limiter.getInFlight());
+        try {
+            ds.getConnection();
+            fail("Expected DatabaseOverloadedException");
+        } catch (DatabaseOverloadedException expected) {
+            // Il limite è occupato dalla prima connessione
+        }
+        first.close();
+        first.close();
+        assertEquals(0, limiter.getInFlight());
+
+        try (Connection second = ds.getConnection()) {
+            assertEquals(1, limiter.getInFlight());
+        }
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testFailedCheckoutReturnsThePermit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test-failed", 1, 1, 1000, 10, 10);
+        // Database inesistente: l'apertura fallisce
+        JdbcDataSource broken = new JdbcDataSource();
+        broken.setURL("jdbc:h2:mem:missing;IFEXISTS=TRUE");
+        InstrumentedDataSource ds = new InstrumentedDataSource(broken, "test-failed", 60_000, limiter);
+        try {
+            ds.getConnection();
+            fail("Expected SQLException");
+        } catch (SQLException expected) {
+            assertEquals(0, limiter.getInFlight());
+        }
+    }
+
+    @Test
+    public void testLongHeldConnectionDoesNotShrinkTheLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test-held", 1, 10, 20, 10, 10);
+        InstrumentedDataSource ds = new InstrumentedDataSource(h2, "test-held", 60_000, limiter);
+        int initial = limiter.getLimit();
+
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.executeQuery("SELECT COUNT(*) FROM Books").close();
+            // Connessione tenuta oltre la latenza obiettivo senza query lente
+            Thread.sleep(60);
+        }
+        assertTrue(limiter.getLimit() >= initial);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testSlowStatementShrinksTheLimit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test-slowlimit", 1, 10, 20, 10, 10);
+        InstrumentedDataSource ds = new InstrumentedDataSource(h2, "test-slowlimit", 60_000, limiter);
+        int initial = limiter.getLimit();
+
+        try (Connection c = ds.getConnection(); Statement st = c.createStatement()) {
+            st.execute("CREATE ALIAS SLEEP FOR \"java.lang.Thread.sleep(long)\"");
+            st.execute("CALL SLEEP(60)");
+        }
+        assertTrue(limiter.getLimit() < initial);
+    }
+
+    @Test
+    public void testOpenCursorDoesNotHoldAPermit() throws Exception {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test-cursor", 1, 1, 1000, 10, 10);
+        InstrumentedDataSource ds = new InstrumentedDataSource(h2, "test-cursor", 60_000, limiter);
+
+        try (ResultCursor<Book> cursor = new BookDAOImpl(ds).openCatalogCursor(10)) {
+            assertEquals(0, limiter.getInFlight());
+            // Con il cursore aperto le altre richieste ottengono ancora il permesso
+            assertEquals(1, new BookDAOImpl(ds).findAll().size());
+            assertEquals(1, cursor.next(10).size());
+        }
+        assertEquals(0, limiter.getInFlight());
+        try (Connection c = ds.getConnection()) {
+            assertEquals(1, limiter.getInFlight());
+        }
+    }
+
+    @Test
+    public void testNormalizeCollapsesWhitespace() {
+        String sql = "SELECT *\n  FROM Books\tWHERE book_id = ?";
+        assertEquals("SELECT * FROM Books WHERE book_id = ?", InstrumentedDataSource.normalize(sql));
+    }
+
+    @Test
+    public void testNormalizeReplacesLiterals() {
+        String sql = "SELECT * FROM Books WHERE title = 'Dune' AND publish_date_year > 1990 LIMIT 50";
+        assertEquals("SELECT * FROM Books WHERE title = ? AND publish_date_year > ? LIMIT ?",
+            InstrumentedDataSource.normalize(sql));
+    }
+
+    @Test
+    public void testNormalizeCollapsesInLists() {
+        String two = InstrumentedDataSource.normalize("SELECT * FROM Books WHERE book_id IN (?, ?)");
+        String five = InstrumentedDataSource.normalize("SELECT * FROM Books WHERE book_id IN (?,?,?,?,?)");
+        assertEquals("SELECT * FROM Books WHERE book_id IN (?)", two);
+        assertEquals(two, five);
+    }
+
+    @Test
+    public void testNormalizeKeepsIdentifiersWithDigits() {
+        String sql = "SELECT md5(title) FROM Books_Libraries";
+        assertEquals(sql, InstrumentedDataSource.normalize(sql));
+    }
+}
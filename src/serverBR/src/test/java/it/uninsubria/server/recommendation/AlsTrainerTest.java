@@ -0,0 +1,197 @@
+package it.uninsubria.server.recommendation;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import it.uninsubria.server.dao.BookSignals;
+import it.uninsubria.server.dao.IntPairs;
+import it.uninsubria.server.dao.Ratings;
+import it.uninsubria.server.dao.RecommendationDAO;
+import it.uninsubria.server.event.WriteEvent;
+
+/**
+ * Unit tests for AlsTrainer, AlsModel, AlsModelStore and CollaborativeRecommender.
+ * Tests taste recovery, exclusion of rated books, determinism and persistence.
+ */
+public class AlsTrainerTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Two groups of readers with opposite tastes on books 1-10. Each reader
+     * leaves one book of each half unrated: user u skips book 1 + u % 5 and
+     * book 6 + u % 5.
+     */
+    private static Ratings twoTasteGroups() {
+        Ratings ratings = new Ratings();
+        for (int user = 1; user <= 40; user++) {
+            boolean likesFirstHalf = user <= 20;
+            for (int book = 1; book <= 10; book++) {
+                if (book == 1 + user % 5 || book == 6 + user % 5) {
+                    continue;
+                }
+                boolean firstHalf = book <= 5;
+                ratings.add(user, book, firstHalf == likesFirstHalf ? 5f : 1f);
+            }
+        }
+        return ratings;
+    }
+
+    private AlsModel train(Ratings ratings, ForkJoinPool on) {
+        return AlsTrainer.train(ratings, 4, 0.05f, 15, on);
+    }
+
+    @Test
+    public void testRecommendsUnratedBookOfSameTaste() {
+        AlsModel model = train(twoTasteGroups(), pool);
+
+        // L'utente 3 ha saltato i libri 4 e 9 e preferisce la prima metà
+        assertArrayEquals(new int[] { 4, 9 }, model.recommend(3, 5));
+        // L'utente 23 ha saltato i libri 4 e 9 e preferisce la seconda metà
+        assertArrayEquals(new int[] { 9, 4 }, model.recommend(23, 5));
+        assertTrue(model.predict(3, 4) > model.predict(3, 9));
+    }
+
+    @Test
+    public void testUnknownUserGetsNothing() {
+        AlsModel model = train(twoTasteGroups(), pool);
+
+        assertEquals(0, model.recommend(999, 5).length);
+        assertEquals(0f, model.predict(999, 1), 0f);
+        assertEquals(1, model.recommend(3, 1).length);
+    }
+
+    @Test
+    public void testTrainingIsDeterministicAcrossParallelism() {
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            AlsModel sequential = train(twoTasteGroups(), single);
+            AlsModel parallel = train(twoTasteGroups(), pool);
+            for (int user = 1; user <= 40; user++) {
+                for (int book = 1; book <= 10; book++) {
+                    assertEquals(sequential.predict(user, book), parallel.predict(user, book), 0f);
+                }
+            }
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStoreRoundTrip() throws Exception {
+        AlsModel model = train(twoTasteGroups(), pool);
+        Path dir = Files.createTempDirectory("als");
+        Path file = dir.resolve("model.bin");
+        try {
+            AlsModelStore.save(model, file);
+            AlsModel loaded = AlsModelStore.load(file);
+
+            assertEquals(model.getRank(), loaded.getRank());
+            assertEquals(model.getUserCount(), loaded.getUserCount());
+            assertEquals(model.getItemCount(), loaded.getItemCount());
+            for (int user = 1; user <= 40; user++) {
+                assertArrayEquals(model.recommend(user, 10), loaded.recommend(user, 10));
+                assertEquals(model.predict(user, 7), loaded.predict(user, 7), 0f);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    public void testRecommenderPersistsAndReloadsModel() throws Exception {
+        RecommendationDAO dao = new RecommendationDAO() {
+            @Override public IntPairs loadSuggestionPairs() { return new IntPairs(); }
+            @Override public IntPairs loadLibraryBooks() { return new IntPairs(); }
+            @Override public Ratings loadRatings() { return twoTasteGroups(); }
+            @Override public BookSignals loadBookSignals() { return new BookSignals(); }
+        };
+        Path dir = Files.createTempDirectory("als");
+        Path file = dir.resolve("model.bin");
+        CollaborativeRecommender first = new CollaborativeRecommender(dao, file, 2);
+        CollaborativeRecommender second = new CollaborativeRecommender(dao, file, 2);
+        try {
+            assertEquals(0, first.recommend(3, 5).length);
+            assertTrue(first.retrain());
+            assertTrue(Files.exists(file));
+            int[] expected = first.recommend(3, 5);
+
+            // Il secondo avvio serve subito il modello salvato, senza riaddestrare
+            second.start(60_000);
+            assertNotNull(second.getModel());
+            assertArrayEquals(expected, second.recommend(3, 5));
+        } finally {
+            first.stop();
+            second.stop();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    public void testResetDiscardsThePersistedModel() throws Exception {
+        RecommendationDAO dao = new RecommendationDAO() {
+            @Override public IntPairs loadSuggestionPairs() { return new IntPairs(); }
+            @Override public IntPairs loadLibraryBooks() { return new IntPairs(); }
+            @Override public Ratings loadRatings() { return twoTasteGroups(); }
+            @Override public BookSignals loadBookSignals() { return new BookSignals(); }
+        };
+        Path dir = Files.createTempDirectory("als");
+        Path file = dir.resolve("model.bin");
+        CollaborativeRecommender recommender = new CollaborativeRecommender(dao, file, 2);
+        try {
+            assertTrue(recommender.retrain());
+            // Il file appena letto può essere sostituito dal salvataggio successivo
+            assertNotNull(AlsModelStore.load(file));
+            assertTrue(recommender.retrain());
+
+            recommender.reset();
+            assertNull(recommender.getModel());
+            assertFalse(Files.exists(file));
+            assertEquals(0, recommender.recommend(3, 5).length);
+        } finally {
+            recommender.stop();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    public void testBooksReviewedAfterTrainingAreExcluded() throws Exception {
+        Ratings ratings = twoTasteGroups();
+        RecommendationDAO dao = new RecommendationDAO() {
+            @Override public IntPairs loadSuggestionPairs() { return new IntPairs(); }
+            @Override public IntPairs loadLibraryBooks() { return new IntPairs(); }
+            @Override public Ratings loadRatings() { return ratings; }
+            @Override public BookSignals loadBookSignals() { return new BookSignals(); }
+        };
+        CollaborativeRecommender recommender = new CollaborativeRecommender(dao, null, 2);
+        try {
+            assertTrue(recommender.retrain());
+            assertArrayEquals(new int[] { 4, 9 }, recommender.recommend(3, 5));
+
+            recommender.onEvents(List.of(WriteEvent.reviewAdded(3, 4, 5f)));
+            assertArrayEquals(new int[] { 9 }, recommender.recommend(3, 5));
+
+            // Una volta nel modello la recensione non serve più come esclusione a parte
+            ratings.add(3, 4, 5f);
+            assertTrue(recommender.retrain());
+            assertArrayEquals(new int[] { 9 }, recommender.recommend(3, 5));
+        } finally {
+            recommender.stop();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package it.uninsubria.server.recommendation;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import it.uninsubria.server.dao.BookSignals;
+import it.uninsubria.server.dao.IntPairs;
+import it.uninsubria.server.dao.Ratings;
+import it.uninsubria.server.dao.RecommendationDAO;
+
+/**
+ * Unit tests for CoOccurrenceIndex and CoOccurrenceRecommender.
+ * Tests ranking, popularity normalisation, exclusions and parallel builds.
+ */
+public class CoOccurrenceIndexTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private CoOccurrenceIndex build(IntPairs suggestions, IntPairs shelves) {
+        return CoOccurrenceIndex.build(suggestions, shelves, 10, 1000, 3.0f, pool);
+    }
+
+    private static IntPairs pairs(int... values) {
+        IntPairs pairs = new IntPairs();
+        for (int i = 0; i < values.length; i += 2) {
+            pairs.add(values[i], values[i + 1]);
+        }
+        return pairs;
+    }
+
+    @Test
+    public void testBooksShelvedTogetherAreNeighbours() {
+        // Librerie 1 e 2 contengono entrambe 10 e 20; 30 compare solo nella 2
+        CoOccurrenceIndex index = build(new IntPairs(), pairs(1, 10, 1, 20, 2, 10, 2, 20, 2, 30));
+
+        assertArrayEquals(new int[] { 20, 30 }, index.recommend(10, 0, 5));
+        assertTrue(index.score(10, 20) > index.score(10, 30));
+        assertEquals(0f, index.score(10, 10), 0f);
+    }
+
+    @Test
+    public void testPopularBooksAreNormalised() {
+        // 99 è su ogni scaffale, 20 divide con 10 l'unico scaffale in cui compare
+        IntPairs shelves = pairs(1, 10, 1, 20, 1, 99, 2, 10, 2, 99);
+        for (int lib = 3; lib < 20; lib++) {
+            shelves.add(lib, 99);
+            shelves.add(lib, 1000 + lib);
+        }
+        CoOccurrenceIndex index = build(new IntPairs(), shelves);
+
+        int[] related = index.recommend(10, 0, 5);
+        assertEquals(20, related[0]);
+        assertEquals(99, related[1]);
+    }
+
+    @Test
+    public void testSuggestionsWeighMoreInTheirDirection() {
+        CoOccurrenceIndex index = build(pairs(10, 20, 10, 20, 30, 10), new IntPairs());
+
+        assertEquals(20, index.recommend(10, 0, 5)[0]);
+        assertArrayEquals(new int[] { 10 }, index.recommend(20, 0, 5));
+        assertTrue(index.score(10, 20) > index.score(20, 10));
+    }
+
+    @Test
+    public void testExcludesBooksAlreadyInLibrary() {
+        CoOccurrenceIndex index = build(new IntPairs(), pairs(1, 10, 1, 20, 1, 30, 2, 10, 2, 20));
+
+        assertArrayEquals(new int[] { 30 }, index.recommend(10, 2, 5));
+        assertEquals(0, index.recommend(10, 1, 5).length);
+    }
+
+    @Test
+    public void testUnknownBookAndTopNLimit() {
+        CoOccurrenceIndex index = build(new IntPairs(), pairs(1, 10, 1, 20, 1, 30, 1, 40));
+
+        assertEquals(0, index.recommend(12345, 0, 5).length);
+        assertEquals(2, index.recommend(10, 0, 2).length);
+        assertEquals(0, CoOccurrenceIndex.empty().recommend(10, 0, 5).length);
+    }
+
+    @Test
+    public void testParallelBuildMatchesSequentialBuild() {
+        Random random = new Random(42);
+        IntPairs suggestions = new IntPairs();
+        IntPairs shelves = new IntPairs();
+        for (int i = 0; i < 2000; i++) {
+            suggestions.add(random.nextInt(500), random.nextInt(500));
+        }
+        for (int lib = 0; lib < 300; lib++) {
+            int size = 1 + random.nextInt(20);
+            for (int j = 0; j < size; j++) {
+                shelves.add(lib, lib * 100 % 500 + j);
+            }
+        }
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        try {
+            CoOccurrenceIndex sequential = CoOccurrenceIndex.build(suggestions, shelves, 10, 1000, 3.0f, single);
+            CoOccurrenceIndex parallel = build(suggestions, shelves);
+            assertEquals(sequential.neighbourCount(), parallel.neighbourCount());
+            for (int book = 0; book < 500; book++) {
+                assertArrayEquals(sequential.recommend(book, 7, 10), parallel.recommend(book, 7, 10));
+            }
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRecommenderSwapsInRebuiltIndex() throws Exception {
+        IntPairs[] shelves = { pairs(1, 10, 1, 20) };
+        RecommendationDAO dao = new RecommendationDAO() {
+            @Override public IntPairs loadSuggestionPairs() { return new IntPairs(); }
+            @Override public IntPairs loadLibraryBooks() { return shelves[0]; }
+            @Override public Ratings loadRatings() { return new Ratings(); }
+            @Override public BookSignals loadBookSignals() { return new BookSignals(); }
+        };
+        CoOccurrenceRecommender recommender = new CoOccurrenceRecommender(dao, 2);
+        try {
+            assertEquals(0, recommender.recommend(10, 0, 5).length);
+
+            assertTrue(recommender.rebuild());
+            assertArrayEquals(new int[] { 20 }, recommender.recommend(10, 0, 5));
+
+            shelves[0] = pairs(1, 10, 1, 30);
+            CoOccurrenceIndex before = recommender.getIndex();
+            assertArrayEquals(new int[] { 20 }, before.recommend(10, 0, 5));
+            recommender.rebuild();
+            assertArrayEquals(new int[] { 30 }, recommender.recommend(10, 0, 5));
+            assertArrayEquals("Old index is left untouched", new int[] { 20 }, before.recommend(10, 0, 5));
+        } finally {
+            recommender.stop();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package it.uninsubria.server.recommendation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import it.uninsubria.server.dao.TestBookDAO;
+import it.uninsubria.shared.model.Book;
+
+/**
+ * Unit tests for ContentSimilarityIndex and ContentRecommender.
+ * Tests ranking on metadata, exclusions, incremental loading and lookup cost.
+ */
+public class ContentSimilarityIndexTest {
+
+    private static Book book(int id, String title, String authors, String category, String description) {
+        Book book = new Book();
+        book.setBook_id(id);
+        book.setTitle(title);
+        book.setAuthors(authors);
+        book.setCategory(category);
+        book.setDescription(description);
+        book.setPublish_date_year(2000);
+        return book;
+    }
+
+    private static List<Book> sampleCatalog() {
+        List<Book> books = new ArrayList<>();
+        books.add(book(1, "Harry Potter and the Philosopher's Stone", "J. K. Rowling", "Fantasy",
+            "A young wizard discovers his magical heritage at Hogwarts school"));
+        books.add(book(2, "Harry Potter and the Chamber of Secrets", "J. K. Rowling", "Fantasy",
+            "The young wizard returns to Hogwarts school for his second year"));
+        books.add(book(3, "The Casual Vacancy", "J. K. Rowling", "Fiction",
+            "A small English town is shaken by the death of a parish councillor"));
+        books.add(book(4, "Introduction to Algorithms", "Thomas H. Cormen", "Computers",
+            "Comprehensive textbook covering sorting, graphs and dynamic programming"));
+        return books;
+    }
+
+    @Test
+    public void testSimilarMetadataRanksFirst() {
+        ContentSimilarityIndex index = new ContentSimilarityIndex();
+        assertEquals(4, index.addAll(sampleCatalog()));
+
+        int[] similar = index.similar(1, 3, id -> false);
+        assertTrue(similar.length > 0);
+        assertEquals(2, similar[0]);
+        for (int id : similar) {
+            assertNotEquals("Unrelated book should not be suggested", 4, id);
+            assertNotEquals("Base book should not be suggested", 1, id);
+        }
+        assertTrue(index.similarity(1, 2) > index.similarity(1, 3));
+    }
+
+    @Test
+    public void testExcludedBooksAreSkipped() {
+        ContentSimilarityIndex index = new ContentSimilarityIndex();
+        index.addAll(sampleCatalog());
+
+        for (int id : index.similar(1, 3, id -> id == 2)) {
+            assertNotEquals(2, id);
+        }
+        assertEquals(0, index.similar(99, 3, id -> false).length);
+    }
+
+    @Test
+    public void testDuplicateIdsAreIgnored() {
+        ContentSimilarityIndex index = new ContentSimilarityIndex();
+        index.addAll(sampleCatalog());
+
+        assertEquals(0, index.addAll(sampleCatalog()));
+        assertEquals(4, index.size());
+        assertEquals(4, index.getMaxBookId());
+    }
+
+    @Test
+    public void testBatchesMatchASingleLoad() {
+        List<Book> books = new ArrayList<>();
+        for (int id = 1; id <= 300; id++) {
+            books.add(book(id, "Volume " + (id % 40) + " of series " + (id % 13), "Author" + (id % 25),
+                "Fiction", "Story number " + (id % 60)));
+        }
+        ContentSimilarityIndex whole = new ContentSimilarityIndex(8, 2, 16, 64);
+        assertEquals(300, whole.addAll(books));
+        // Batch di dimensione diversa: le run vengono unite più volte
+        ContentSimilarityIndex batched = new ContentSimilarityIndex(8, 2, 16, 64);
+        int from = 0;
+        for (int size = 1; from < books.size(); size++) {
+            int to = Math.min(books.size(), from + size);
+            batched.addAll(books.subList(from, to));
+            from = to;
+        }
+
+        assertEquals(300, batched.size());
+        for (int id = 1; id <= 300; id++) {
+            assertArrayEquals("book " + id, whole.similar(id, 10, other -> false), batched.similar(id, 10, other -> false));
+        }
+    }
+
+    @Test
+    public void testJaccard() {
+        assertEquals(1f, ContentSimilarityIndex.jaccard(new int[] { 1, 2, 3 }, new int[] { 1, 2, 3 }), 0f);
+        assertEquals(0.5f, ContentSimilarityIndex.jaccard(new int[] { 1, 2, 3 }, new int[] { 2, 3, 4 }), 0f);
+        assertEquals(0f, ContentSimilarityIndex.jaccard(new int[0], new int[0]), 0f);
+    }
+
+    @Test
+    public void testRefreshAddsOnlyNewBooks() throws Exception {
+        TestBookDAO dao = new TestBookDAO();
+        List<Book> catalog = new ArrayList<>(sampleCatalog().subList(0, 2));
+        dao.setCatalog(catalog);
+        ContentRecommender recommender = new ContentRecommender(dao);
+
+        assertEquals(2, recommender.refresh());
+        assertTrue(dao.getLastCursor().isClosed());
+        assertArrayEquals(new int[] { 2 }, recommender.similar(1, 5, id -> false));
+
+        catalog.addAll(sampleCatalog().subList(2, 4));
+        assertEquals(2, recommender.refresh());
+        assertEquals(0, recommender.refresh());
+        assertEquals(4, recommender.getIndex().size());
+
+        recommender.reset();
+        assertEquals(0, recommender.getIndex().size());
+        assertEquals(4, recommender.refresh());
+    }
+
+    @Test
+    public void testLookupCostIsBounded() {
+        ContentSimilarityIndex index = new ContentSimilarityIndex();
+        List<Book> books = new ArrayList<>();
+        String[] categories = { "Fiction", "History", "Science", "Poetry" };
+        for (int id = 1; id <= 20000; id++) {
+            books.add(book(id, "Volume " + (id % 500) + " of series " + (id % 37),
+                "Author" + (id % 800), categories[id % categories.length],
+                "Story number " + (id % 1000) + " about topic" + (id % 90)));
+            if (books.size() == 500) {
+                index.addAll(books);
+                books.clear();
+            }
+        }
+
+        long start = System.nanoTime();
+        for (int id = 1; id <= 1000; id++) {
+            index.similar(id, 10, other -> false);
+        }
+        long averageMicros = (System.nanoTime() - start) / 1000 / 1000;
+        assertTrue("Average lookup took " + averageMicros + "us", averageMicros < 2000);
+    }
+}
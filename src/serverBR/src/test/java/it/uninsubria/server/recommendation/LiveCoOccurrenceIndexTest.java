@@ -0,0 +1,190 @@
+package it.uninsubria.server.recommendation;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.uninsubria.server.dao.BookSignals;
+import it.uninsubria.server.dao.IntPairs;
+import it.uninsubria.server.dao.Ratings;
+import it.uninsubria.server.dao.RecommendationDAO;
+import it.uninsubria.server.event.WriteEvent;
+
+/**
+ * Unit tests for LiveCoOccurrenceIndex, CoOccurrenceIndexStore and the
+ * incremental updates of CoOccurrenceRecommender.
+ * Tests patched rows against a full build, shelf updates, compaction and checkpoints.
+ */
+public class LiveCoOccurrenceIndexTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(2);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    private CoOccurrenceIndex build(IntPairs suggestions, IntPairs shelves) {
+        return CoOccurrenceIndex.build(suggestions, shelves, 10, 1000, 3.0f, pool);
+    }
+
+    private static LiveCoOccurrenceIndex live(CoOccurrenceIndex base) {
+        return new LiveCoOccurrenceIndex(base, 10, 200, 3.0f);
+    }
+
+    private static IntPairs pairs(int... values) {
+        IntPairs pairs = new IntPairs();
+        for (int i = 0; i < values.length; i += 2) {
+            pairs.add(values[i], values[i + 1]);
+        }
+        return pairs;
+    }
+
+    @Test
+    public void testPatchedRowsMatchFullBuild() {
+        LiveCoOccurrenceIndex index = live(build(pairs(10, 20), pairs(1, 10, 1, 40)));
+        index.apply(List.of(WriteEvent.suggestionAdded(7, 1, 10, 30), WriteEvent.suggestionAdded(8, 2, 10, 30)));
+
+        CoOccurrenceIndex full = build(pairs(10, 20, 10, 30, 10, 30), pairs(1, 10, 1, 40));
+        // Le righe dei due libri coinvolti coincidono con una build completa
+        assertArrayEquals(full.recommend(10, 0, 5), index.recommend(10, 0, 5));
+        assertArrayEquals(full.recommend(30, 0, 5), index.recommend(30, 0, 5));
+        for (int related : new int[] { 20, 30, 40 }) {
+            assertEquals(full.score(10, related), index.score(10, related), 1e-6f);
+        }
+        assertEquals(full.score(30, 10), index.score(30, 10), 1e-6f);
+    }
+
+    @Test
+    public void testShelvedBookJoinsNeighboursAndLibrary() {
+        LiveCoOccurrenceIndex index = live(build(new IntPairs(), pairs(1, 10, 1, 20, 2, 10, 2, 20)));
+        assertFalse(index.inLibrary(1, 30));
+
+        index.apply(List.of(WriteEvent.libraryBookAdded(1, 30)));
+        assertTrue(index.inLibrary(1, 30));
+        assertArrayEquals(new int[] { 20, 30 }, index.recommend(10, 0, 5));
+        assertArrayEquals(new int[] { 10, 20 }, index.recommend(30, 0, 5));
+        // I libri della libreria 1, vecchi e nuovi, sono esclusi
+        assertEquals(0, index.recommend(10, 1, 5).length);
+        assertArrayEquals(new int[] { 30 }, index.recommend(10, 2, 5));
+
+        // Un libro già presente non cambia nulla
+        int applied = index.appliedEvents();
+        index.apply(List.of(WriteEvent.libraryBookAdded(1, 30), WriteEvent.libraryBookAdded(1, 10)));
+        assertEquals(applied, index.appliedEvents());
+    }
+
+    @Test
+    public void testCompactFoldsUpdatesIntoIndex() {
+        LiveCoOccurrenceIndex index = live(build(pairs(10, 20), pairs(1, 10, 1, 20)));
+        index.apply(List.of(WriteEvent.suggestionAdded(7, null, 20, 50),
+            WriteEvent.libraryBookAdded(3, 60), WriteEvent.libraryBookAdded(1, 70)));
+
+        CoOccurrenceIndex compacted = index.compact();
+        for (int book : new int[] { 10, 20, 50, 60, 70 }) {
+            assertArrayEquals(index.recommend(book, 0, 10), compacted.recommend(book, 0, 10));
+        }
+        assertEquals(3f + 3f + 1f, compacted.popularity(20), 0f);
+        assertTrue(compacted.inLibrary(1, 70));
+        assertTrue(compacted.inLibrary(3, 60));
+        assertEquals(5, compacted.bookCount());
+
+        assertSame("Senza eventi la base resta quella", compacted, live(compacted).compact());
+    }
+
+    @Test
+    public void testCheckpointRoundTrip() throws Exception {
+        CoOccurrenceIndex index = build(pairs(10, 20, 30, 10), pairs(1, 10, 1, 20, 2, 20, 2, 40));
+        Path dir = Files.createTempDirectory("cooc");
+        Path file = dir.resolve("index.bin");
+        try {
+            CoOccurrenceIndexStore.save(index, file);
+            CoOccurrenceIndex loaded = CoOccurrenceIndexStore.load(file);
+
+            assertEquals(index.bookCount(), loaded.bookCount());
+            assertEquals(index.neighbourCount(), loaded.neighbourCount());
+            for (int book : new int[] { 10, 20, 30, 40 }) {
+                assertArrayEquals(index.recommend(book, 0, 10), loaded.recommend(book, 0, 10));
+                assertEquals(index.popularity(book), loaded.popularity(book), 0f);
+            }
+            assertEquals(index.score(10, 20), loaded.score(10, 20), 0f);
+            assertTrue(loaded.inLibrary(2, 40));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    public void testRecommenderRestartsFromCheckpoint() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        RecommendationDAO dao = new RecommendationDAO() {
+            @Override public IntPairs loadSuggestionPairs() { loads.incrementAndGet(); return pairs(10, 20); }
+            @Override public IntPairs loadLibraryBooks() { return pairs(1, 10, 1, 20); }
+            @Override public Ratings loadRatings() { return new Ratings(); }
+            @Override public BookSignals loadBookSignals() { return new BookSignals(); }
+        };
+        Path dir = Files.createTempDirectory("cooc");
+        Path file = dir.resolve("index.bin");
+        CoOccurrenceRecommender first = new CoOccurrenceRecommender(dao, file, 2);
+        CoOccurrenceRecommender second = new CoOccurrenceRecommender(dao, file, 2);
+        try {
+            assertTrue(first.rebuild());
+            first.onEvents(List.of(WriteEvent.libraryBookAdded(1, 30)));
+            assertArrayEquals(new int[] { 20, 30 }, first.recommend(10, 0, 5));
+            assertTrue(first.inLibrary(1, 30));
+
+            assertTrue(first.checkpoint());
+            assertFalse("Nessun evento nuovo, nessun checkpoint", first.checkpoint());
+            assertTrue(first.getIndex().inLibrary(1, 30));
+
+            // Il riavvio serve il checkpoint, aggiornamenti inclusi, senza ricostruire
+            second.start(60_000);
+            assertEquals(1, loads.get());
+            assertArrayEquals(new int[] { 20, 30 }, second.recommend(10, 0, 5));
+            assertTrue(second.inLibrary(1, 30));
+        } finally {
+            first.stop();
+            second.stop();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    public void testResetDiscardsTheCheckpoint() throws Exception {
+        RecommendationDAO dao = new RecommendationDAO() {
+            @Override public IntPairs loadSuggestionPairs() { return pairs(10, 20); }
+            @Override public IntPairs loadLibraryBooks() { return pairs(1, 10, 1, 20); }
+            @Override public Ratings loadRatings() { return new Ratings(); }
+            @Override public BookSignals loadBookSignals() { return new BookSignals(); }
+        };
+        Path dir = Files.createTempDirectory("cooc");
+        Path file = dir.resolve("index.bin");
+        CoOccurrenceRecommender recommender = new CoOccurrenceRecommender(dao, file, 2);
+        try {
+            assertTrue(recommender.rebuild());
+            assertTrue(Files.exists(file));
+
+            recommender.reset();
+            assertFalse(Files.exists(file));
+            assertEquals(0, recommender.getIndex().bookCount());
+            assertEquals(0, recommender.recommend(10, 0, 5).length);
+            // Gli eventi successivi al reset partono dall'indice vuoto
+            recommender.onEvents(List.of(WriteEvent.libraryBookAdded(1, 30)));
+            assertTrue(recommender.checkpoint());
+            assertFalse(CoOccurrenceIndexStore.load(file).inLibrary(1, 10));
+        } finally {
+            recommender.stop();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package it.uninsubria.server.recommendation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import it.uninsubria.server.dao.BookSignals;
+import it.uninsubria.server.dao.IntPairs;
+import it.uninsubria.server.dao.Ratings;
+import it.uninsubria.server.dao.RecommendationDAO;
+import it.uninsubria.server.event.WriteEvent;
+
+/**
+ * Unit tests for PopularityTable, PopularityRanking and PopularityRanker.
+ * Tests the Bayesian score, incremental moves against a full sort, paging and versions.
+ */
+public class PopularityRankerTest {
+
+    private static PopularityTable table(BookSignals signals) {
+        return new PopularityTable(signals, 5f, 1f, 0.5f, 1L);
+    }
+
+    private static int[] ids(PopularityRanking ranking) {
+        return ranking.page(0, ranking.size());
+    }
+
+    @Test
+    public void testFewHighScoresDoNotBeatManyGoodReviews() {
+        BookSignals signals = new BookSignals();
+        signals.add(1, 1, 5.0, 0, 0);     // una sola recensione perfetta
+        signals.add(2, 40, 160.0, 0, 0);  // molte recensioni buone
+        signals.add(3, 0, 0.0, 10, 4);    // solo librerie e suggerimenti
+        signals.add(4, 0, 0.0, 10, 4);
+        PopularityTable table = table(signals);
+
+        // Media globale: 165 / 41
+        assertEquals(165f / 41f, table.mean(), 1e-6f);
+        PopularityRanking ranking = table.snapshot();
+        assertEquals(2, ranking.bookAt(0));
+        assertArrayEquals("A parità di punteggio vince l'id più basso", new int[] { 2, 3, 4, 1 }, ids(ranking));
+
+        double quality = (5 * table.mean() + 160.0) / (5 + 40);
+        assertEquals((float) (quality * Math.log1p(40)), ranking.scoreAt(0), 1e-5f);
+    }
+
+    @Test
+    public void testReviewsKeepTheSameOrderAsAFullSort() {
+        BookSignals signals = new BookSignals();
+        int[] reviews = new int[61];
+        double[] sums = new double[61];
+        for (int book = 1; book <= 50; book++) {
+            reviews[book] = book % 7;
+            sums[book] = reviews[book] * (1 + book % 5);
+            signals.add(book, reviews[book], sums[book], book % 3, 0);
+        }
+        PopularityTable table = table(signals);
+        float mean = table.mean();
+
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            // Anche libri mai visti prima, che entrano in coda e risalgono
+            int book = 1 + random.nextInt(60);
+            int score = 1 + random.nextInt(5);
+            table.addReview(book, score);
+            reviews[book]++;
+            sums[book] += score;
+
+            List<Integer> expected = new ArrayList<>();
+            for (int b = 1; b <= 60; b++) {
+                if (b <= 50 || reviews[b] > 0) {
+                    expected.add(b);
+                }
+            }
+            expected.sort((a, b) -> {
+                int byScore = Float.compare(score(b, reviews, sums, mean), score(a, reviews, sums, mean));
+                return byScore != 0 ? byScore : Integer.compare(a, b);
+            });
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), ids(table.snapshot()));
+        }
+    }
+
+    private static float score(int book, int[] reviews, double[] sums, float mean) {
+        int libraries = book <= 50 ? book % 3 : 0;
+        double quality = (5 * mean + sums[book]) / (5 + reviews[book]);
+        return (float) (quality * Math.log1p(reviews[book] + libraries));
+    }
+
+    @Test
+    public void testPageBounds() {
+        PopularityRanking ranking = new PopularityRanking(new int[] { 7, 8, 9 }, new float[] { 3f, 2f, 1f }, 1L);
+        assertArrayEquals(new int[] { 8, 9 }, ranking.page(1, 10));
+        assertArrayEquals(new int[] { 7 }, ranking.page(0, 1));
+        assertEquals(0, ranking.page(3, 5).length);
+        assertEquals(0, ranking.page(-1, 5).length);
+        assertEquals(0, ranking.page(0, 0).length);
+        assertEquals(2, ranking.page(1, Integer.MAX_VALUE).length);
+        assertEquals(0, PopularityRanking.empty().size());
+    }
+
+    @Test
+    public void testRankerAppliesReviewsBetweenRefreshes() throws Exception {
+        BookSignals signals = new BookSignals();
+        signals.add(10, 3, 12.0, 0, 0);
+        signals.add(20, 3, 9.0, 0, 0);
+        RecommendationDAO dao = new RecommendationDAO() {
+            @Override public IntPairs loadSuggestionPairs() { return new IntPairs(); }
+            @Override public IntPairs loadLibraryBooks() { return new IntPairs(); }
+            @Override public Ratings loadRatings() { return new Ratings(); }
+            @Override public BookSignals loadBookSignals() { return signals; }
+        };
+        PopularityRanker ranker = new PopularityRanker(dao);
+
+        // Prima del caricamento gli eventi sono ignorati e la classifica è vuota
+        ranker.onEvents(List.of(WriteEvent.reviewAdded(1, 10, 5f)));
+        assertEquals(0, ranker.getRanking().size());
+
+        assertTrue(ranker.refresh());
+        PopularityRanking first = ranker.getRanking();
+        assertArrayEquals(new int[] { 10, 20 }, ids(first));
+
+        // Librerie e suggerimenti aspettano il prossimo ricaricamento
+        ranker.onEvents(List.of(WriteEvent.libraryBookAdded(1, 20), WriteEvent.suggestionAdded(1, null, 10, 20)));
+        assertSame(first, ranker.getRanking());
+
+        ranker.onEvents(List.of(WriteEvent.reviewAdded(1, 20, 5f), WriteEvent.reviewAdded(2, 20, 5f),
+            WriteEvent.reviewAdded(3, 20, 5f)));
+        PopularityRanking moved = ranker.getRanking();
+        assertArrayEquals(new int[] { 20, 10 }, ids(moved));
+        assertTrue(moved.getVersion() > first.getVersion());
+
+        assertTrue(ranker.refresh());
+        assertTrue("La versione non torna indietro", ranker.getRanking().getVersion() > moved.getVersion());
+    }
+}
@@ -0,0 +1,138 @@
+package it.uninsubria.server.recommendation;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import it.uninsubria.server.event.WriteEvent;
+import it.uninsubria.shared.model.TrendingWindow;
+import it.uninsubria.shared.utils.AppConstants;
+
+/**
+ * Unit tests for TrendingCounters, TrendingRanking, TrendingCountersStore and TrendingAggregator.
+ * Tests decay per window, exact heavy hitters across rescales and the shutdown checkpoint.
+ */
+public class TrendingAggregatorTest {
+
+    private static final long HOUR = AppConstants.Time.MILLIS_PER_HOUR;
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Test
+    public void testActivityFadesFasterInShorterWindows() {
+        AtomicLong now = new AtomicLong(T0);
+        TrendingAggregator aggregator = new TrendingAggregator(null, now::get);
+        List<WriteEvent> burst = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            burst.add(WriteEvent.reviewAdded(i, 1, 5f));
+        }
+        aggregator.onEvents(burst);
+        now.set(T0 + HOUR);
+        aggregator.onEvents(List.of(WriteEvent.libraryBookAdded(3, 2), WriteEvent.suggestionAdded(1, null, 2, 3)));
+
+        // Dopo un'ora i quattro eventi del libro 1 valgono 2, quello del libro 2 vale 1
+        assertArrayEquals(new int[] { 1, 2 }, aggregator.getTrendingBooks(TrendingWindow.HOUR, 10));
+        assertEquals(2.0, aggregator.getRanking().score(TrendingWindow.HOUR, 0, now.get()), 1e-9);
+        assertArrayEquals(new int[] { 1 }, aggregator.getTrendingBooks(TrendingWindow.HOUR, 1));
+
+        // Tre ore dopo nessuno supera la soglia nella finestra oraria, ma la settimana li ricorda
+        now.set(T0 + 4 * HOUR);
+        assertEquals(0, aggregator.getTrendingBooks(TrendingWindow.HOUR, 10).length);
+        assertArrayEquals(new int[] { 1, 2 }, aggregator.getTrendingBooks(TrendingWindow.WEEK, 10));
+    }
+
+    @Test
+    public void testHeapsKeepExactTopAcrossRescales() {
+        int candidates = 5;
+        TrendingCounters counters = new TrendingCounters(candidates, T0);
+        Random random = new Random(7);
+        List<long[]> events = new ArrayList<>();
+        long time = T0;
+        for (int i = 0; i < 3000; i++) {
+            // Circa 1000 ore in tutto: la finestra oraria sposta il landmark più volte
+            time += random.nextInt((int) (HOUR / 3));
+            int book = 1 + random.nextInt(30);
+            counters.add(book, 1f, time);
+            events.add(new long[] { book, time });
+        }
+
+        TrendingRanking ranking = counters.snapshot();
+        for (TrendingWindow window : TrendingWindow.values()) {
+            double rate = Math.log(2) / window.getHalfLifeMillis();
+            double[] expected = new double[31];
+            for (long[] event : events) {
+                expected[(int) event[0]] += Math.exp(-rate * (time - event[1]));
+            }
+            List<Integer> books = new ArrayList<>();
+            for (int b = 1; b <= 30; b++) {
+                books.add(b);
+            }
+            books.sort((a, b) -> Double.compare(expected[b], expected[a]));
+            int[] top = ranking.top(window, candidates, time, 0.0);
+            assertEquals(candidates, top.length);
+            for (int r = 0; r < candidates; r++) {
+                assertEquals(window + " rank " + r, (int) books.get(r), top[r]);
+                assertEquals(expected[top[r]], ranking.score(window, r, time), 1e-9 * expected[top[r]]);
+            }
+        }
+    }
+
+    @Test
+    public void testCountersSurviveRestart() throws Exception {
+        Path dir = Files.createTempDirectory("trending");
+        Path file = dir.resolve("trending.bin");
+        AtomicLong now = new AtomicLong(T0);
+        try {
+            TrendingAggregator first = new TrendingAggregator(file, now::get);
+            first.onEvents(List.of(WriteEvent.libraryBookAdded(1, 10), WriteEvent.libraryBookAdded(2, 10),
+                WriteEvent.reviewAdded(1, 20, 4f)));
+            first.stop();
+
+            now.set(T0 + HOUR);
+            TrendingAggregator second = new TrendingAggregator(file, now::get);
+            assertEquals(0, second.getTrendingBooks(TrendingWindow.DAY, 10).length);
+            second.start();
+            for (TrendingWindow window : TrendingWindow.values()) {
+                assertArrayEquals(first.getTrendingBooks(window, 10), second.getTrendingBooks(window, 10));
+                assertEquals(first.getRanking().score(window, 0, now.get()),
+                    second.getRanking().score(window, 0, now.get()), 1e-12);
+            }
+            assertArrayEquals(new int[] { 10, 20 }, second.getTrendingBooks(TrendingWindow.DAY, 10));
+
+            // I nuovi eventi si sommano ai contatori ripristinati
+            second.onEvents(List.of(WriteEvent.reviewAdded(1, 20, 5f), WriteEvent.reviewAdded(2, 20, 5f)));
+            assertArrayEquals(new int[] { 20, 10 }, second.getTrendingBooks(TrendingWindow.DAY, 10));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    @Test
+    public void testResetDiscardsCountersAndCheckpoint() throws Exception {
+        Path dir = Files.createTempDirectory("trending");
+        Path file = dir.resolve("trending.bin");
+        AtomicLong now = new AtomicLong(T0);
+        try {
+            TrendingAggregator aggregator = new TrendingAggregator(file, now::get);
+            aggregator.onEvents(List.of(WriteEvent.libraryBookAdded(1, 10)));
+            aggregator.stop();
+            assertTrue(Files.exists(file));
+
+            aggregator.reset();
+            assertFalse(Files.exists(file));
+            assertEquals(0, aggregator.getTrendingBooks(TrendingWindow.DAY, 10).length);
+            aggregator.onEvents(List.of(WriteEvent.reviewAdded(1, 20, 4f)));
+            assertArrayEquals(new int[] { 20 }, aggregator.getTrendingBooks(TrendingWindow.DAY, 10));
+        } finally {
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(dir);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package it.uninsubria.server.rmi.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import it.uninsubria.server.dao.TestBookDAO;
+import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.rmi.RemoteBookCursor;
+import it.uninsubria.shared.rmi.ServiceException;
+import it.uninsubria.shared.rmi.ServiceOverloadedException;
+import it.uninsubria.shared.utils.AppConstants;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unit tests for BookCursorImpl: chunking, release, lease expiry and the open-cursor cap.
+ */
+public class BookCursorImplTest {
+
+    private static TestBookDAO daoWithBooks(int count) {
+        List<Book> books = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Book b = new Book();
+            b.setBook_id(i);
+            b.setTitle("Title " + i);
+            books.add(b);
+        }
+        TestBookDAO dao = new TestBookDAO();
+        dao.setCatalog(books);
+        return dao;
+    }
+
+    @Test
+    public void testReadsCatalogInChunksAndReleasesAtEnd() throws Exception {
+        TestBookDAO dao = daoWithBooks(25);
+        int openBefore = BookCursorImpl.openCursors();
+        RemoteBookCursor cursor = BookCursorImpl.open(dao::openCatalogCursor, 10, 60_000);
+
+        assertEquals(10, cursor.nextChunk().size());
+        assertEquals(10, cursor.nextChunk().size());
+        List<Book> last = cursor.nextChunk();
+        assertEquals(5, last.size());
+        assertEquals(25, last.get(4).getBook_id());
+        assertTrue(cursor.nextChunk().isEmpty());
+
+        assertTrue("DAO cursor should be closed once exhausted", dao.getLastCursor().isClosed());
+        assertEquals(openBefore, BookCursorImpl.openCursors());
+        cursor.close();
+    }
+
+    @Test
+    public void testCloseReleasesDatabaseCursor() throws Exception {
+        TestBookDAO dao = daoWithBooks(25);
+        RemoteBookCursor cursor = BookCursorImpl.open(dao::openCatalogCursor, 10, 60_000);
+        cursor.nextChunk();
+
+        cursor.close();
+
+        assertTrue(dao.getLastCursor().isClosed());
+    }
+
+    @Test
+    public void testIdleCursorExpires() throws Exception {
+        TestBookDAO dao = daoWithBooks(25);
+        RemoteBookCursor cursor = BookCursorImpl.open(dao::openCatalogCursor, 10, 1);
+        Thread.sleep(20);
+
+        BookCursorImpl.closeExpired();
+
+        assertTrue(dao.getLastCursor().isClosed());
+        try {
+            cursor.nextChunk();
+            fail("Expected RemoteException");
+        } catch (RemoteException expected) {
+            // RMI incapsula l'eccezione lanciata dal server in una ServerException
+            assertTrue(expected.getCause() instanceof ServiceException);
+        }
+        cursor.close();
+    }
+
+    @Test
+    public void testRejectsWhenTooManyCursorsOpen() throws Exception {
+        List<RemoteBookCursor> open = new ArrayList<>();
+        try {
+            while (BookCursorImpl.openCursors() < AppConstants.Database.MAX_OPEN_CURSORS) {
+                open.add(BookCursorImpl.open(daoWithBooks(5)::openCatalogCursor, 10, 60_000));
+            }
+            try {
+                BookCursorImpl.open(daoWithBooks(5)::openCatalogCursor, 10, 60_000);
+                fail("Expected ServiceOverloadedException");
+            } catch (ServiceOverloadedException expected) {
+                // atteso
+            }
+        } finally {
+            for (RemoteBookCursor c : open) {
+                c.close();
+            }
+        }
+    }
+}
@@ -2,62 +2,202 @@ package it.uninsubria.server.rmi.impl;
 
 import static org.junit.Assert.*;
 
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.junit.BeforeClass;
 import org.junit.Test;
 
 import it.uninsubria.server.dao.BookDAO;
+import it.uninsubria.server.dao.ResultCursor;
 import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookSummary;
 import it.uninsubria.shared.model.ReviewManager;
 
 public class BookServiceImplTest {
+    @BeforeClass
+    public static void moveDiskCache() throws Exception {
+        // Le pagine salvate su disco non devono finire nella directory del progetto
+        it.uninsubria.server.cache.HybridCacheManager.setCacheDirectory(Files.createTempDirectory("hybrid-cache"));
+    }
+
+    private static Book book(int id, String title, String authors, String category, int year) {
+        Book book = new Book();
+        book.setBook_id(id);
+        book.setTitle(title);
+        book.setAuthors(authors);
+        book.setCategory(category);
+        book.setPublish_date_year(year);
+        return book;
+    }
+
     static class FakeBookDAO implements BookDAO {
         int findAllCalls = 0;
+        int summariesCalls = 0;
+        int summariesOffset = -1;
+        int summariesLimit = -1;
         @Override public Book bookDetails(int book_id) throws Exception { throw new UnsupportedOperationException(); }
         @Override public List<Book> findByTitle(String title) throws Exception { throw new UnsupportedOperationException(); }
         @Override public List<Book> findByAuthor(String author) throws Exception { throw new UnsupportedOperationException(); }
         @Override public List<Book> findByAuthorAndYear(String autore, int anno) throws Exception { throw new UnsupportedOperationException(); }
         @Override public Book findByID(int id) throws Exception { throw new UnsupportedOperationException(); }
-        @Override public List<Book> findAll() throws Exception { findAllCalls++; List<Book> l = new ArrayList<>(); l.add(new Book(1, "TestTitle", "TestAuthor", 2025)); return l; }
+        @Override public List<Book> findByIds(int[] bookIds) throws Exception { throw new UnsupportedOperationException(); }
+        @Override public List<Book> findAll() throws Exception { findAllCalls++; List<Book> l = new ArrayList<>(); l.add(book(1, "TestTitle", "TestAuthor", null, 2025)); return l; }
         @Override public List<Book> getSuggestedBooks(int idLibro) throws Exception {
             List<Book> suggestions = new ArrayList<>();
             if (idLibro == 1) {
-                suggestions.add(new Book(2, "Suggested Book 1", "Author 1", 2023));
-                suggestions.add(new Book(3, "Suggested Book 2", "Author 2", 2024));
+                suggestions.add(book(2, "Suggested Book 1", "Author 1", null, 2023));
+                suggestions.add(book(3, "Suggested Book 2", "Author 2", null, 2024));
             }
             return suggestions;
         }
         @Override public List<ReviewManager> getAggregatedReviews(int idLibro) throws Exception { throw new UnsupportedOperationException(); }
         @Override public List<Book> findByTitleAndYear(String title, int anno) throws Exception { throw new UnsupportedOperationException("Unimplemented method"); }
         @Override public List<Book> getLibraryBooks(int libraryId) throws Exception { return new ArrayList<>(); }
-        @Override public List<Book> findAllPaged(int offset, int limit) throws Exception { List<Book> l = new ArrayList<>(); l.add(new Book(1, "TestTitle", "TestAuthor", 2025)); return l; }
-        @Override public List<Book> findByTitlePaged(String title, int offset, int limit) throws Exception { List<Book> l = new ArrayList<>(); l.add(new Book(1, "TestTitle", "TestAuthor", 2025)); return l; }
-        @Override public List<Book> findByAuthorPaged(String author, int offset, int limit) throws Exception { List<Book> l = new ArrayList<>(); l.add(new Book(1, "TestTitle", "TestAuthor", 2025)); return l; }
+        @Override public List<Book> findAllPaged(int offset, int limit) throws Exception { List<Book> l = new ArrayList<>(); l.add(book(1, "TestTitle", "TestAuthor", null, 2025)); return l; }
+        @Override public List<Book> findByTitlePaged(String title, int offset, int limit) throws Exception { List<Book> l = new ArrayList<>(); l.add(book(1, "TestTitle", "TestAuthor", null, 2025)); return l; }
+        @Override public List<Book> findByAuthorPaged(String author, int offset, int limit) throws Exception { List<Book> l = new ArrayList<>(); l.add(book(1, "TestTitle", "TestAuthor", null, 2025)); return l; }
+        @Override public ResultCursor<Book> openCatalogCursor(int fetchSize) throws Exception { throw new UnsupportedOperationException(); }
+        @Override public ResultCursor<Book> openCatalogCursor(int afterBookId, int fetchSize) throws Exception { throw new UnsupportedOperationException(); }
+        @Override public List<BookSummary> findSummaries(String title, String author, Integer year, int offset, int limit) throws Exception { summariesCalls++; summariesOffset = offset; summariesLimit = limit; List<BookSummary> l = new ArrayList<>(); l.add(new BookSummary(1, "TestTitle", "TestAuthor", "Fiction", 2025)); return l; }
+        @Override public it.uninsubria.shared.model.BookFacets countFacets(String text, it.uninsubria.shared.model.FacetFilters filters, int maxPublishers) throws Exception { throw new UnsupportedOperationException(); }
+        @Override public List<Book> findByCategoryPaged(String category, String text, it.uninsubria.shared.model.CategorySort sort, Integer afterBookId, int limit) throws Exception { throw new UnsupportedOperationException(); }
+        @Override public int countByCategory(String category, String text) throws Exception { throw new UnsupportedOperationException(); }
         @Override public int getTotalBooksCount() throws Exception { return 1; }
     }
 
     @Test
-    public void testCachingFindAll() throws Exception {
-        // Clear cache before test to ensure clean state
+    public void testSearchBookSummariesClampsThePage() throws Exception {
         it.uninsubria.server.cache.CacheManager.clear();
-        // Also clear disk cache
-        try {
-            java.nio.file.Files.deleteIfExists(java.nio.file.Paths.get("./cache/global/books_all.cache"));
-        } catch (Exception e) {
-            // Ignore if file doesn't exist
+        // Anche le pagine salvate su disco da esecuzioni precedenti
+        it.uninsubria.server.cache.HybridCacheManager.invalidateByCategory("global", "books");
+        FakeBookDAO dao = new FakeBookDAO();
+        // Core senza catalogo in memoria: le ricerche arrivano alla DAO
+        BookServiceImpl service = new BookServiceImpl(dao, new it.uninsubria.server.service.BookServiceCoreImpl(dao));
+
+        List<BookSummary> summaries = service.searchBookSummaries("Test", null, null, -10, 1_000_000);
+        assertEquals(1, summaries.size());
+        assertEquals("TestTitle", summaries.get(0).getTitle());
+        assertEquals(0, dao.summariesOffset);
+        assertEquals(it.uninsubria.shared.utils.AppConstants.Cache.MAX_SEARCH_PAGE_SIZE, dao.summariesLimit);
+
+        service.searchBookSummaries("Other", null, null, 0, -5);
+        assertEquals(0, dao.summariesLimit);
+    }
+
+    @Test
+    public void testCatalogPagesSkipThePreSerializedCache() throws Exception {
+        it.uninsubria.server.dao.TestBookDAO dao = new it.uninsubria.server.dao.TestBookDAO();
+        List<Book> catalog = new ArrayList<>();
+        for (int id = 1; id <= 5; id++) {
+            catalog.add(book(id, "Titolo " + id, "Autore", null, 2000 + id));
         }
+        dao.setCatalog(catalog);
+        it.uninsubria.server.catalog.CatalogStore store = new it.uninsubria.server.catalog.CatalogStore(dao);
+        assertTrue(store.rebuild());
+        BookServiceImpl service = new BookServiceImpl(dao,
+            new it.uninsubria.server.service.BookServiceCoreImpl(dao, store, null, null));
 
-        // Test the service directly with a fake DAO (bypasses ServerDIContainer)
+        long builds = it.uninsubria.server.cache.PreSerializedResponseCache.getBuilds();
+        List<BookSummary> first = service.searchGloballyPaged(1, 2);
+        List<BookSummary> second = service.searchGloballyPaged(1, 2);
+        // Nessuna codifica che non verrebbe mai riutilizzata
+        assertEquals(builds, it.uninsubria.server.cache.PreSerializedResponseCache.getBuilds());
+        assertEquals(2, first.size());
+        assertEquals(2, first.get(0).getBookId());
+        assertEquals(3, second.get(1).getBookId());
+    }
+
+    @Test
+    public void testCategoryPagesAreReadFromTheCatalog() throws Exception {
+        it.uninsubria.server.dao.TestBookDAO dao = new it.uninsubria.server.dao.TestBookDAO();
+        List<Book> catalog = new ArrayList<>();
+        for (int id = 1; id <= 3; id++) {
+            catalog.add(book(id, "Titolo " + id, "Autore", "Fantasy", 2000 + id));
+        }
+        dao.setCatalog(catalog);
+        it.uninsubria.server.catalog.CatalogStore store = new it.uninsubria.server.catalog.CatalogStore(dao);
+        assertTrue(store.rebuild());
+        BookServiceImpl service = new BookServiceImpl(dao,
+            new it.uninsubria.server.service.BookServiceCoreImpl(dao, store, null, null));
+
+        long builds = it.uninsubria.server.cache.PreSerializedResponseCache.getBuilds();
+        it.uninsubria.shared.model.CategoryPage first = service.getBooksByCategory("Fantasy", null,
+            it.uninsubria.shared.model.CategorySort.TITLE_ASC, null, 2);
+        it.uninsubria.shared.model.CategoryPage second = service.getBooksByCategory("Fantasy", null,
+            it.uninsubria.shared.model.CategorySort.TITLE_ASC, first.getNextCursor(), 2);
+        assertEquals(builds, it.uninsubria.server.cache.PreSerializedResponseCache.getBuilds());
+        assertEquals(3, first.getTotalBooks());
+        assertEquals(2, first.getBooks().size());
+        assertEquals(1, second.getBooks().size());
+        assertEquals(3, second.getBooks().get(0).getBook_id());
+        assertNull(second.getNextCursor());
+
+        // La ricerca nella categoria si filtra sul server, totale compreso
+        it.uninsubria.shared.model.CategoryPage searched = service.getBooksByCategory("Fantasy", "titolo 2",
+            it.uninsubria.shared.model.CategorySort.TITLE_ASC, null, 2);
+        assertEquals(1, searched.getTotalBooks());
+        assertEquals(1, searched.getBooks().size());
+        assertEquals(2, searched.getBooks().get(0).getBook_id());
+        assertNull(searched.getNextCursor());
+    }
+
+    @Test
+    public void testSearchGloballyIsNotCached() throws Exception {
         FakeBookDAO dao = new FakeBookDAO();
         BookServiceImpl service = new BookServiceImpl(dao);
 
-        List<Book> first = service.searchGlobally();
+        long builds = it.uninsubria.server.cache.PreSerializedResponseCache.getBuilds();
+        List<BookSummary> first = service.searchGlobally();
         assertEquals(1, first.size());
-        assertEquals(1, dao.findAllCalls);
-        List<Book> second = service.searchGlobally();
-        assertEquals(1, dao.findAllCalls); // cached
-        assertEquals(first, second);
+        assertEquals(1, dao.summariesCalls);
+        List<BookSummary> second = service.searchGlobally();
+        // Senza catalogo in memoria si rilegge la DAO, senza copie pre-serializzate
+        assertEquals(2, dao.summariesCalls);
+        assertEquals(0, dao.findAllCalls);
+        assertEquals(builds, it.uninsubria.server.cache.PreSerializedResponseCache.getBuilds());
+        assertEquals(first.get(0).getBookId(), second.get(0).getBookId());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSearchGloballyForUserMarshalsTheCatalogRows() throws Exception {
+        it.uninsubria.server.dao.TestBookDAO dao = new it.uninsubria.server.dao.TestBookDAO();
+        List<Book> catalog = new ArrayList<>();
+        for (int id = 1; id <= 4; id++) {
+            catalog.add(book(id, "Titolo " + id, "Autore", "Fantasy", 2000 + id));
+        }
+        dao.setCatalog(catalog);
+        it.uninsubria.server.catalog.CatalogStore store = new it.uninsubria.server.catalog.CatalogStore(dao);
+        assertTrue(store.rebuild());
+        BookServiceImpl service = new BookServiceImpl(dao,
+            new it.uninsubria.server.service.BookServiceCoreImpl(dao, store, null, null));
+
+        java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        try (java.io.ObjectOutputStream out = new java.io.ObjectOutputStream(bytes)) {
+            out.writeObject(service.searchGloballyForUser("user"));
+        }
+        List<Book> received;
+        try (java.io.ObjectInputStream in = new java.io.ObjectInputStream(
+                new java.io.ByteArrayInputStream(bytes.toByteArray()))) {
+            received = (List<Book>) in.readObject();
+        }
+        assertTrue(received instanceof it.uninsubria.shared.model.BookList);
+        assertEquals(4, received.size());
+        assertEquals(3, received.get(2).getBook_id());
+        assertEquals("Titolo 4", received.get(3).getTitle());
+        assertEquals("Fantasy", received.get(0).getCategory());
+        assertEquals(0, dao.getFindAllCalls());
+
+        // Le liste per la griglia trasferiscono solo i riepiloghi
+        List<BookSummary> summaries = service.searchGlobally();
+        assertEquals(4, summaries.size());
+        assertEquals("Titolo 2", summaries.get(1).getTitle());
+        assertEquals(2004, summaries.get(3).getPublishYear());
+        assertEquals(1, service.searchByTitleAndYear("titolo", 2003).size());
+        assertEquals(4, service.searchByAuthor("AUTORE").size());
+        assertEquals(0, dao.getFindSummariesCalls());
     }
 
     @Test
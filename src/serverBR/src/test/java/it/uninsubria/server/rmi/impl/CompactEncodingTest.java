@@ -0,0 +1,175 @@
+package it.uninsubria.server.rmi.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookList;
+import it.uninsubria.shared.model.Review;
+import it.uninsubria.shared.model.ReviewList;
+import it.uninsubria.shared.model.ReviewManager;
+import it.uninsubria.shared.model.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the compact wire encoding of BookList and ReviewList.
+ * Checks round trips and compares size with default serialization.
+ */
+public class CompactEncodingTest {
+
+    private static final String[] CATEGORIES = { "Fiction", "History", "Science", "Poetry", "Travel" };
+    private static final String[] PUBLISHERS = { "Mondadori", "Einaudi", "Feltrinelli", "Adelphi" };
+
+    private static byte[] serialize(Object o) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] data) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return in.readObject();
+        }
+    }
+
+    private static List<Book> catalog(int size) {
+        List<Book> books = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            Book b = new Book();
+            b.setBook_id(i);
+            b.setTitle("Title " + i);
+            b.setAuthors("Author " + (i % 500));
+            b.setDescription("Description of book " + i);
+            b.setCategory(CATEGORIES[i % CATEGORIES.length]);
+            b.setPublisher(PUBLISHERS[i % PUBLISHERS.length]);
+            b.setPrice("Price Starting at $" + (i % 20));
+            b.setPublisher_month("January");
+            b.setPublish_date_year(1950 + i % 70);
+            books.add(b);
+        }
+        return books;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testBookListRoundTrip() throws Exception {
+        List<Book> books = catalog(3);
+        books.get(1).setDescription(null);
+        books.get(2).setCategory(null);
+        books.add(null);
+
+        List<Book> copy = (List<Book>) deserialize(serialize(BookList.of(books)));
+
+        assertTrue(copy instanceof BookList);
+        assertEquals(4, copy.size());
+        assertNull(copy.get(3));
+        for (int i = 0; i < 3; i++) {
+            Book expected = books.get(i);
+            Book actual = copy.get(i);
+            assertEquals(expected.getBook_id(), actual.getBook_id());
+            assertEquals(expected.getTitle(), actual.getTitle());
+            assertEquals(expected.getAuthors(), actual.getAuthors());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            assertEquals(expected.getCategory(), actual.getCategory());
+            assertEquals(expected.getPublisher(), actual.getPublisher());
+            assertEquals(expected.getPrice(), actual.getPrice());
+            assertEquals(expected.getPublisher_month(), actual.getPublisher_month());
+            assertEquals(expected.getPublish_date_year(), actual.getPublish_date_year());
+            assertNotNull("Selection property should be initialized", actual.selectedProperty());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPreEncodedListWritesSameFormat() throws Exception {
+        List<Book> books = catalog(50);
+        BookList preEncoded = BookList.preEncoded(books);
+
+        assertTrue(preEncoded.encodedSize() > 0);
+        List<Book> copy = (List<Book>) deserialize(serialize(preEncoded));
+        assertEquals(50, copy.size());
+        assertEquals(books.get(49).getTitle(), copy.get(49).getTitle());
+        assertEquals(serialize(BookList.of(books)).length, serialize(preEncoded).length);
+
+        preEncoded.remove(0);
+        assertEquals(-1, preEncoded.encodedSize());
+        assertEquals(49, ((List<Book>) deserialize(serialize(preEncoded))).size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReviewListRoundTripFlattensGraph() throws Exception {
+        User user = new User();
+        user.setUser_id(7);
+        user.setID("mrossi");
+        user.setName("Mario");
+        user.setSurname("Rossi");
+
+        Review review = new Review();
+        review.setUser(user);
+        review.setBookId(42);
+        review.setLibraryId(3);
+        review.setStyle(4);
+        review.setStyleNote("Scorrevole");
+        review.setContent(5);
+        review.setFinalScore(5);
+
+        List<Review> copy = (List<Review>) deserialize(serialize(ReviewList.of(List.of(review))));
+
+        Review r = copy.get(0);
+        assertEquals(Integer.valueOf(7), r.getUser().getUser_id());
+        assertEquals("mrossi", r.getUser().getID());
+        assertEquals("Mario", r.getUser().getName());
+        assertEquals("Rossi", r.getUser().getSurname());
+        assertEquals(42, r.getBooks().getBook_id());
+        assertEquals(Integer.valueOf(3), r.getLibraryId());
+        assertEquals(4, r.getStyle());
+        assertEquals("Scorrevole", r.getStyleNote());
+        assertEquals(5, r.getContent());
+        assertEquals(5, r.getFinalScore());
+        assertNull(r.getContentNote());
+    }
+
+    @Test
+    public void testCompactEncodingIsSmallerForLargePage() throws Exception {
+        List<Book> books = catalog(10_000);
+
+        byte[] standard = serialize(new ArrayList<>(books));
+        byte[] compact = serialize(BookList.of(books));
+
+        assertTrue("Compact encoding should be smaller", compact.length < standard.length);
+    }
+
+    @Test
+    public void testReviewManagerSerializationKeepsItsList() throws Exception {
+        ReviewManager manager = new ReviewManager();
+        List<Review> reviews = new ArrayList<>();
+        Review review = new Review();
+        review.setBookId(42);
+        review.setStyle(4);
+        reviews.add(review);
+        manager.setReviews(reviews);
+        manager.setMedia(4.5);
+        manager.setCriterio("stile");
+
+        ReviewManager copy = (ReviewManager) deserialize(serialize(manager));
+
+        // Il campo dell'oggetto serializzato non viene sostituito dalla lista compatta
+        assertSame(reviews, manager.getReviews());
+        assertTrue(copy.getReviews() instanceof ReviewList);
+        assertEquals(1, copy.getReviews().size());
+        assertEquals(4, copy.getReviews().get(0).getStyle());
+        assertEquals(4.5, copy.getMedia(), 0.0);
+        assertEquals("stile", copy.getCriterio());
+    }
+}
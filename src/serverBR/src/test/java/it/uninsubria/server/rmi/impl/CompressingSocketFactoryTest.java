@@ -0,0 +1,155 @@
+package it.uninsubria.server.rmi.impl;
+
+import static org.junit.Assert.*;
+
+import org.junit.After;
+import org.junit.Test;
+
+import it.uninsubria.shared.rmi.CompressingServerSocketFactory;
+import it.uninsubria.shared.rmi.ConnectionStats;
+
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tests RMI calls over the compressing socket factories on loopback.
+ */
+public class CompressingSocketFactoryTest {
+
+    public interface EchoService extends Remote {
+        List<String> repeat(String value, int times) throws RemoteException;
+    }
+
+    private static class EchoServiceImpl implements EchoService {
+        @Override
+        public List<String> repeat(String value, int times) {
+            List<String> result = new ArrayList<>();
+            for (int i = 0; i < times; i++) {
+                result.add(value + i);
+            }
+            return result;
+        }
+    }
+
+    private final List<ConnectionStats> closed = new CopyOnWriteArrayList<>();
+    private EchoServiceImpl exported;
+
+    private EchoService export(int threshold) throws RemoteException {
+        CompressingServerSocketFactory ssf = new CompressingServerSocketFactory(threshold, 64 * 1024, closed::add);
+        exported = new EchoServiceImpl();
+        return (EchoService) UnicastRemoteObject.exportObject(exported, 0, ssf.clientFactory(), ssf);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (exported != null) {
+            UnicastRemoteObject.unexportObject(exported, true);
+        }
+    }
+
+    @Test
+    public void testSmallAndLargeResponsesRoundTrip() throws Exception {
+        EchoService stub = export(1024);
+
+        assertEquals(List.of("a0", "a1"), stub.repeat("a", 2));
+
+        List<String> large = stub.repeat("Lorem ipsum dolor sit amet ", 20_000);
+        assertEquals(20_000, large.size());
+        assertEquals("Lorem ipsum dolor sit amet 19999", large.get(19_999));
+    }
+
+    @Test
+    public void testLargeMessageIsCompressedOnTheWire() throws Exception {
+        CompressingServerSocketFactory ssf = new CompressingServerSocketFactory(1024, 0, closed::add);
+        byte[] message = new byte[200_000];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) ('a' + i % 8);
+        }
+
+        try (ServerSocket server = ssf.createServerSocket(0);
+             Socket client = ssf.clientFactory().createSocket("localhost", server.getLocalPort());
+             Socket accepted = server.accept()) {
+            // Come in RMI, il client invia la richiesta prima che il server risponda
+            client.getOutputStream().write(1);
+            client.getOutputStream().flush();
+            assertEquals(1, accepted.getInputStream().read());
+
+            OutputStream out = accepted.getOutputStream();
+            out.write(message);
+            out.flush();
+
+            byte[] received = new byte[message.length];
+            new DataInputStream(client.getInputStream()).readFully(received);
+            assertArrayEquals(message, received);
+        }
+
+        assertEquals(1, closed.size());
+        ConnectionStats stats = closed.get(0);
+        assertEquals(message.length, stats.getRawBytesOut());
+        assertTrue("Wire bytes should be below raw bytes", stats.getWireBytesOut() < stats.getRawBytesOut());
+        assertEquals(1, stats.getCompressedFrames());
+        assertEquals(1, stats.getMessagesOut());
+    }
+
+    @Test
+    public void testSingleByteWritesAreSplitIntoFrames() throws Exception {
+        // Soglia irraggiungibile: frame in chiaro, 5 byte di intestazione ciascuno
+        CompressingServerSocketFactory ssf = new CompressingServerSocketFactory(Integer.MAX_VALUE, 0, closed::add);
+        int frameSize = 1 << 20;
+        byte[] message = new byte[frameSize + 100];
+        for (int i = 0; i < message.length; i++) {
+            message[i] = (byte) i;
+        }
+
+        try (ServerSocket server = ssf.createServerSocket(0);
+             Socket client = ssf.clientFactory().createSocket("localhost", server.getLocalPort());
+             Socket accepted = server.accept()) {
+            OutputStream out = client.getOutputStream();
+            for (int i = 0; i < frameSize + 10; i++) {
+                out.write(message[i]);
+            }
+            out.write(message, frameSize + 10, 90);
+            out.flush();
+
+            byte[] received = new byte[message.length];
+            new DataInputStream(accepted.getInputStream()).readFully(received);
+            assertArrayEquals(message, received);
+        }
+
+        // Statistiche del lato server: hello di 2 byte più due frame, uno pieno
+        // dalle scritture a singolo byte e l'ultimo al flush
+        ConnectionStats stats = closed.get(0);
+        assertEquals(message.length, stats.getRawBytesIn());
+        assertEquals(2 + message.length + 2 * 5, stats.getWireBytesIn());
+        assertEquals(1, stats.getMessagesIn());
+    }
+
+    @Test
+    public void testSmallMessageIsSentRaw() throws Exception {
+        CompressingServerSocketFactory ssf = new CompressingServerSocketFactory(1024, 0, closed::add);
+
+        try (ServerSocket server = ssf.createServerSocket(0);
+             Socket client = ssf.clientFactory().createSocket("localhost", server.getLocalPort());
+             Socket accepted = server.accept()) {
+            client.getOutputStream().write(new byte[] { 1, 2, 3 });
+            client.getOutputStream().flush();
+
+            byte[] received = new byte[3];
+            new DataInputStream(accepted.getInputStream()).readFully(received);
+            assertArrayEquals(new byte[] { 1, 2, 3 }, received);
+        }
+
+        ConnectionStats stats = closed.get(0);
+        assertEquals(3, stats.getRawBytesIn());
+        assertEquals(1, stats.getMessagesIn());
+        assertEquals(0, stats.getCompressedFrames());
+    }
+}
@@ -9,8 +9,12 @@ import org.junit.Before;
 import org.junit.After;
 
 import it.uninsubria.server.cache.CacheManager;
+import it.uninsubria.server.catalog.CatalogStore;
 import it.uninsubria.server.dao.TestBookDAO;
 import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookFacets;
+import it.uninsubria.shared.model.CategoryPage;
+import it.uninsubria.shared.model.CategorySort;
 
 public class BookServiceCoreTest {
 
@@ -25,7 +29,7 @@ public class BookServiceCoreTest {
     }
 
     @Test
-    public void testCachingFindAll() throws Exception {
+    public void testSearchGloballyReadsTheDatabaseUntilTheCatalogIsBuilt() throws Exception {
         TestBookDAO dao = new TestBookDAO();
         BookServiceCore core = new BookServiceCoreImpl(dao);
 
@@ -34,22 +38,44 @@ public class BookServiceCoreTest {
         assertEquals(1, first.size());
         assertEquals(1, dao.getFindAllCalls());
 
-        List<Book> second = core.searchGlobally();
-        assertEquals(1, dao.getFindAllCalls()); // should not call DAO again due to cache
-        assertEquals(first, second);
+        // Nessuna copia in cache: senza catalogo ogni richiesta arriva alla DAO
+        core.searchGlobally();
+        assertEquals(2, dao.getFindAllCalls());
+        core.searchGloballyForUser("user");
+        assertEquals(3, dao.getFindAllCalls());
+    }
+
+    @Test
+    public void testSearchGloballyServesTheCatalog() throws Exception {
+        TestBookDAO dao = new TestBookDAO();
+        List<Book> books = new java.util.ArrayList<>();
+        for (int id = 1; id <= 3; id++) {
+            Book book = new Book();
+            book.setBook_id(id);
+            book.setTitle("Titolo " + id);
+            books.add(book);
+        }
+        dao.setCatalog(books);
+        CatalogStore store = new CatalogStore(dao);
+        assertTrue(store.rebuild());
+        BookServiceCore core = new BookServiceCoreImpl(dao, store, null, null);
+
+        List<Book> all = core.searchGlobally();
+        assertEquals(3, all.size());
+        assertEquals(2, all.get(1).getBook_id());
+        assertEquals("Titolo 3", all.get(2).getTitle());
+        assertEquals(3, core.searchGloballyForUser("user").size());
+        assertEquals(0, dao.getFindAllCalls());
     }
 
     @Test
-    public void testInvalidateCacheReload() throws Exception {
+    public void testSearchBookSummariesDelegation() throws Exception {
         TestBookDAO dao = new TestBookDAO();
         BookServiceCore core = new BookServiceCoreImpl(dao);
-        // First call populates cache
-        core.searchGlobally();
-        assertEquals(1, dao.getFindAllCalls());
-        // Invalidate and fetch again
-        core.invalidateBooksCache();
-        core.searchGlobally();
-        assertEquals(2, dao.getFindAllCalls());
+        List<it.uninsubria.shared.model.BookSummary> res = core.searchBookSummaries("Test", "Author", 2020, 0, 20);
+        assertEquals(1, dao.getFindSummariesCalls());
+        assertEquals(1, res.size());
+        assertEquals(1, res.get(0).getBookId());
     }
 
     @Test
@@ -61,4 +87,58 @@ public class BookServiceCoreTest {
         assertEquals(1, dao.getFindByTitleCalls());
         assertEquals(1, res.size());
     }
+
+    @Test
+    public void testGetBooksByIdsKeepsInputOrderAndCaches() throws Exception {
+        TestBookDAO dao = new TestBookDAO();
+        BookServiceCore core = new BookServiceCoreImpl(dao);
+
+        List<Book> first = core.getBooksByIds(java.util.Arrays.asList(3, 1, 2, 1));
+        assertEquals(4, first.size());
+        assertEquals(3, first.get(0).getBook_id());
+        assertEquals(1, first.get(1).getBook_id());
+        assertEquals(2, first.get(2).getBook_id());
+        assertEquals(1, first.get(3).getBook_id());
+        assertEquals(1, dao.getFindByIdsCalls());
+
+        // All IDs are now cached: no further DAO round-trip
+        List<Book> second = core.getBooksByIds(java.util.Arrays.asList(2, 3));
+        assertEquals(2, second.size());
+        assertEquals(2, second.get(0).getBook_id());
+        assertEquals(1, dao.getFindByIdsCalls());
+    }
+
+    @Test
+    public void testFacetsAndCategoryPagesFallBackToTheDatabase() throws Exception {
+        TestBookDAO dao = new TestBookDAO();
+        List<Book> books = new java.util.ArrayList<>();
+        for (int id = 1; id <= 3; id++) {
+            Book book = new Book();
+            book.setBook_id(id);
+            book.setTitle("Titolo " + id);
+            book.setCategory("Fantasy");
+            books.add(book);
+        }
+        dao.setCatalog(books);
+        BookServiceCore core = new BookServiceCoreImpl(dao);
+
+        // Nessun catalogo colonnare: conteggi e pagine arrivano dal DAO
+        BookFacets facets = core.getFacets(null, null);
+        assertEquals(1, facets.getTotalBooks());
+        assertEquals(1, dao.getCountFacetsCalls());
+
+        CategoryPage first = core.getBooksByCategory("fantasy", null, CategorySort.TITLE_ASC, null, 2);
+        assertEquals(2, first.getBooks().size());
+        assertEquals(3, first.getTotalBooks());
+        assertNotNull(first.getNextCursor());
+
+        CategoryPage second = core.getBooksByCategory("fantasy", null, CategorySort.TITLE_ASC, first.getNextCursor(), 2);
+        assertEquals(1, second.getBooks().size());
+        assertEquals(3, second.getBooks().get(0).getBook_id());
+        assertNull(second.getNextCursor());
+
+        CategoryPage searched = core.getBooksByCategory("fantasy", " titolo 3 ", CategorySort.TITLE_ASC, null, 2);
+        assertEquals(1, searched.getTotalBooks());
+        assertEquals(3, searched.getBooks().get(0).getBook_id());
+    }
 }
@@ -25,6 +25,38 @@ public class LibraryServiceCoreTest {
         assertEquals(libs1, libs2);
     }
 
+    @Test
+    public void testCachingGetUserLibrariesWithBooks() throws Exception {
+        TestLibraryDAO dao = new TestLibraryDAO();
+        LibraryServiceCore core = new LibraryServiceCoreImpl(dao);
+        it.uninsubria.server.cache.CacheManager.clear();
+        List<Library> libs1 = core.getUserLibrariesWithBooks("bob");
+        assertEquals(1, libs1.size());
+        assertEquals(1, libs1.get(0).getLibriDisponibili().size());
+        assertEquals(1, dao.getGetUserLibrariesWithBooksCalls());
+        core.getUserLibrariesWithBooks("bob");
+        assertEquals(1, dao.getGetUserLibrariesWithBooksCalls()); // from cache
+        // a library write invalidates the cached projection
+        core.addLibraryForUser("bob", new Library(2, "bob", "NewLib"));
+        core.getUserLibrariesWithBooks("bob");
+        assertEquals(2, dao.getGetUserLibrariesWithBooksCalls());
+    }
+
+    @Test
+    public void testMultiStatementOperationsRunInOneUnitOfWork() throws Exception {
+        TestLibraryDAO dao = new TestLibraryDAO();
+        LibraryServiceCore core = new LibraryServiceCoreImpl(dao);
+        it.uninsubria.server.cache.CacheManager.clear();
+        Library library = new Library(2, "carol", "Lib");
+        core.getUserLibraries("carol");
+        core.addLibraryForUser("carol", library);
+        core.updateLibraryForUser("carol", library, new Library(2, "carol", "Renamed"));
+        core.deleteLibraryForUser("carol", library);
+        // La transazione è aperta dal servizio, non dal DAO
+        assertEquals(4, dao.getCallsInUnitOfWork());
+        assertFalse(it.uninsubria.server.dao.UnitOfWork.isActive());
+    }
+
     @Test
     public void testOtherDelegations() throws Exception {
         TestLibraryDAO dao = new TestLibraryDAO();
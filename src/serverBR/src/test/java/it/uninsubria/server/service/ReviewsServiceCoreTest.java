@@ -8,8 +8,15 @@ import org.junit.After;
 
 import it.uninsubria.server.cache.CacheManager;
 import it.uninsubria.server.dao.TestReviewDAO;
+import it.uninsubria.server.rmi.impl.ReviewsServiceImpl;
+import it.uninsubria.shared.model.BookReviewStats;
 import it.uninsubria.shared.model.Review;
+import it.uninsubria.shared.rmi.ServiceException;
+import it.uninsubria.shared.utils.AppConstants;
+
+import java.rmi.server.UnicastRemoteObject;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class ReviewsServiceCoreTest {
@@ -46,4 +53,59 @@ public class ReviewsServiceCoreTest {
         assertTrue(core.addReview(1, 1, r));
         assertEquals(1, dao.getAddReviewCalls());
     }
+
+    @Test
+    public void testReviewStatsForBooksOnlyReviewedAndCached() throws Exception {
+        TestReviewDAO dao = new TestReviewDAO();
+        ReviewsServiceCore core = new ReviewsServiceCoreImpl(dao);
+        List<BookReviewStats> first = core.getReviewStatsForBooks(new int[] {1, 2, 3, 4});
+        assertEquals(2, first.size());
+        assertEquals(2, first.get(0).getBookId());
+        assertEquals(4, first.get(1).getBookId());
+        assertEquals(1, dao.getGetReviewStatsCalls());
+
+        // La richiesta intera, libri senza recensioni compresi, occupa una sola voce di cache
+        assertEquals(1, CacheManager.getUserStats("global").size);
+        List<BookReviewStats> again = core.getReviewStatsForBooks(new int[] {1, 2, 2, 3, 4});
+        assertEquals(2, again.size());
+        assertEquals(1, dao.getGetReviewStatsCalls());
+
+        List<BookReviewStats> second = core.getReviewStatsForBooks(new int[] {3, 4});
+        assertEquals(1, second.size());
+        assertEquals(2, dao.getGetReviewStatsCalls());
+        assertEquals(2, CacheManager.getUserStats("global").size);
+    }
+
+    @Test
+    public void testReviewStatsEndpointRejectsOversizedBatch() throws Exception {
+        TestReviewDAO dao = new TestReviewDAO();
+        ReviewsServiceImpl service = new ReviewsServiceImpl(dao, new ReviewsServiceCoreImpl(dao));
+        try {
+            try {
+                service.getReviewStatsForBooks(new int[AppConstants.Cache.MAX_REVIEW_STATS_BATCH + 1]);
+                fail("Expected ServiceException");
+            } catch (ServiceException expected) {
+                assertEquals(0, dao.getGetReviewStatsCalls());
+            }
+            assertTrue(service.getReviewStatsForBooks(new int[AppConstants.Cache.MAX_REVIEW_STATS_BATCH]).isEmpty());
+        } finally {
+            UnicastRemoteObject.unexportObject(service, true);
+        }
+        assertEquals(1, dao.getGetReviewStatsCalls());
+    }
+
+    @Test
+    public void testAddReviewInvalidatesStats() throws Exception {
+        TestReviewDAO dao = new TestReviewDAO();
+        ReviewsServiceCore core = new ReviewsServiceCoreImpl(dao);
+        core.getReviewStatsForBooks(new int[] {2});
+        core.getAllReviewStats();
+        assertEquals(2, dao.getGetReviewStatsCalls());
+
+        Review r = new Review("noteStyle","noteContent","notePleasantness","noteOdness","noteEdition","noteFinal",1,1,1,1,1,1);
+        core.addReview(1, 2, r);
+        core.getReviewStatsForBooks(new int[] {2});
+        core.getAllReviewStats();
+        assertEquals(4, dao.getGetReviewStatsCalls());
+    }
 }
@@ -0,0 +1,46 @@
+package it.uninsubria.server.service;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import it.uninsubria.server.dao.TestBookDAO;
+import it.uninsubria.server.dao.TestSuggestionDAO;
+import it.uninsubria.server.recommendation.CoOccurrenceRecommender;
+import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.utils.AppConstants;
+
+public class SuggestionsServiceCoreTest {
+
+    /** Records the requested sizes instead of ranking. */
+    private static class RecordingRecommender extends CoOccurrenceRecommender {
+        final List<Integer> requested = new ArrayList<>();
+
+        RecordingRecommender() {
+            super(null, 1);
+        }
+
+        @Override
+        public int[] recommend(int baseBookId, int libraryId, int topN) {
+            requested.add(topN);
+            return new int[0];
+        }
+    }
+
+    @Test
+    public void testDynamicSuggestionsClampTopN() throws Exception {
+        RecordingRecommender recommender = new RecordingRecommender();
+        SuggestionServiceCore core = new SuggestionServiceCoreImpl(new TestSuggestionDAO(), recommender, null, null,
+            new BookServiceCoreImpl(new TestBookDAO()));
+
+        List<Book> negative = core.getDynamicSuggestedBooks(1, 1, 1, -5);
+        List<Book> huge = core.getDynamicSuggestedBooks(1, 1, 1, Integer.MAX_VALUE);
+
+        assertTrue(negative.isEmpty());
+        assertTrue(huge.isEmpty());
+        assertEquals(List.of(0, AppConstants.Recommendation.MAX_USER_RECOMMENDATIONS), recommender.requested);
+    }
+}
@@ -0,0 +1,105 @@
+package it.uninsubria.server.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.sql.Connection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import it.uninsubria.server.util.ConnectionPoolManager.Pool;
+import it.uninsubria.shared.utils.AppConstants;
+
+public class ConnectionPoolManagerTest {
+
+    private static boolean initializedHere;
+
+    @BeforeClass
+    public static void setUpClass() {
+        if (!ConnectionPoolManager.isInitialized()) {
+            ConnectionPoolManager.initialize("jdbc:h2:mem:pooltest;DB_CLOSE_DELAY=-1", "sa", "", "org.h2.Driver");
+            initializedHere = true;
+        }
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        if (initializedHere) {
+            ConnectionPoolManager.shutdown();
+        }
+    }
+
+    private static int activeConnections(Pool pool) throws Exception {
+        return ConnectionPoolManager.getDataSource(pool).unwrap(HikariDataSource.class)
+            .getHikariPoolMXBean().getActiveConnections();
+    }
+
+    @Test
+    public void testDefaultTotalIsSplitIntoTheDefaultPoolSizes() {
+        int total = AppConstants.Database.CONNECTION_POOL_MAX_SIZE;
+        assertEquals(AppConstants.Database.READ_POOL_MAX_SIZE, ConnectionPoolManager.shareOf(Pool.READ, total));
+        assertEquals(AppConstants.Database.WRITE_POOL_MAX_SIZE, ConnectionPoolManager.shareOf(Pool.WRITE, total));
+        assertEquals(AppConstants.Database.BACKGROUND_POOL_MAX_SIZE, ConnectionPoolManager.shareOf(Pool.BACKGROUND, total));
+    }
+
+    @Test
+    public void testLegacyTotalIsSplitProportionally() {
+        assertEquals(60, ConnectionPoolManager.shareOf(Pool.READ, 100));
+        assertEquals(30, ConnectionPoolManager.shareOf(Pool.WRITE, 100));
+        assertEquals(10, ConnectionPoolManager.shareOf(Pool.BACKGROUND, 100));
+        // Anche con un totale minimo ogni pool ha almeno una connessione
+        assertEquals(1, ConnectionPoolManager.shareOf(Pool.BACKGROUND, 2));
+        assertEquals(1, ConnectionPoolManager.shareOf(Pool.WRITE, 1));
+    }
+
+    @Test
+    public void testMinIdleIsSplitBetweenReadAndWrite() {
+        int total = AppConstants.Database.CONNECTION_POOL_MIN_IDLE;
+        // Le pool separate non tengono aperte più connessioni della pool unica che sostituiscono
+        assertEquals(total, ConnectionPoolManager.minIdleOf(Pool.READ, total) + ConnectionPoolManager.minIdleOf(Pool.WRITE, total));
+        assertEquals(AppConstants.Database.WRITE_POOL_MIN_IDLE, ConnectionPoolManager.minIdleOf(Pool.WRITE, total));
+        assertEquals(0, ConnectionPoolManager.minIdleOf(Pool.BACKGROUND, total));
+        assertEquals(0, ConnectionPoolManager.minIdleOf(Pool.READ, 1));
+        assertEquals(1, ConnectionPoolManager.minIdleOf(Pool.WRITE, 1));
+        assertEquals(0, ConnectionPoolManager.minIdleOf(Pool.WRITE, 0));
+    }
+
+    @Test
+    public void testPoolsAreSeparate() throws Exception {
+        assertSame(ConnectionPoolManager.getDataSource(), ConnectionPoolManager.getDataSource(Pool.WRITE));
+        assertNotSame(ConnectionPoolManager.getDataSource(Pool.READ).unwrap(HikariDataSource.class),
+            ConnectionPoolManager.getDataSource(Pool.WRITE).unwrap(HikariDataSource.class));
+        assertEquals("BookRecommenderPool-background",
+            ConnectionPoolManager.getDataSource(Pool.BACKGROUND).unwrap(HikariDataSource.class).getPoolName());
+    }
+
+    @Test
+    public void testReadsAreRoutedByThread() throws Exception {
+        int read = activeConnections(Pool.READ);
+        int background = activeConnections(Pool.BACKGROUND);
+        try (Connection c = ConnectionPoolManager.getReadDataSource().getConnection()) {
+            assertEquals(read + 1, activeConnections(Pool.READ));
+            assertEquals(background, activeConnections(Pool.BACKGROUND));
+        }
+
+        // I thread marcati come lavoro in background leggono dal proprio pool
+        CompletableFuture.runAsync(() -> {
+            ConnectionPoolManager.markBackgroundThread();
+            try (Connection c = ConnectionPoolManager.getReadDataSource().getConnection()) {
+                assertEquals(read, activeConnections(Pool.READ));
+                assertEquals(background + 1, activeConnections(Pool.BACKGROUND));
+                assertEquals("BookRecommenderPool-background",
+                    ConnectionPoolManager.getReadDataSource().unwrap(HikariDataSource.class).getPoolName());
+            } catch (Exception e) {
+                throw new AssertionError(e);
+            }
+        }, runnable -> new Thread(runnable).start()).get(10, TimeUnit.SECONDS);
+        assertEquals("BookRecommenderPool-read",
+            ConnectionPoolManager.getReadDataSource().unwrap(HikariDataSource.class).getPoolName());
+    }
+}
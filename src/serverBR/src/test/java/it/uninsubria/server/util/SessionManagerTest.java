@@ -0,0 +1,38 @@
+package it.uninsubria.server.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import it.uninsubria.shared.model.User;
+
+public class SessionManagerTest {
+
+    private static User user(int userId, String username) {
+        return User.builder().user_id(userId).id(username).email(username + "@example.com").build();
+    }
+
+    @Test
+    public void testSessionUserIdFollowsTheActiveSession() {
+        String token = SessionManager.createSession(user(41, "sessionuser"));
+        assertEquals(Integer.valueOf(41), SessionManager.getSessionUserId("sessionuser"));
+        assertNull(SessionManager.getSessionUserId("otheruser"));
+        assertNull(SessionManager.getSessionUserId(null));
+
+        SessionManager.invalidateSession(token);
+        assertNull(SessionManager.getSessionUserId("sessionuser"));
+    }
+
+    @Test
+    public void testInvalidatingUserSessionsClearsTheIndex() {
+        SessionManager.createSession(user(42, "relogin"));
+        SessionManager.createSession(user(43, "bystander"));
+        assertEquals(Integer.valueOf(42), SessionManager.getSessionUserId("relogin"));
+
+        SessionManager.invalidateUserSessions(42);
+        assertNull(SessionManager.getSessionUserId("relogin"));
+        // Le sessioni degli altri utenti restano indicizzate
+        assertEquals(Integer.valueOf(43), SessionManager.getSessionUserId("bystander"));
+        SessionManager.invalidateUserSessions(43);
+    }
+}
@@ -0,0 +1,55 @@
+package it.uninsubria.shared.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conteggi per faccetta di una ricerca nel catalogo, calcolati sul server.
+ * <p>
+ * Ogni faccetta è contata sui libri che soddisfano la ricerca e i filtri
+ * delle altre faccette, non il proprio: selezionata una categoria, le altre
+ * categorie restano visibili con i loro conteggi. {@link #getTotalBooks()}
+ * applica tutti i filtri.
+ */
+public class BookFacets implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int totalBooks;
+    private List<FacetCount> categories = new ArrayList<>();
+    private List<FacetCount> decades = new ArrayList<>();
+    private List<FacetCount> publishers = new ArrayList<>();
+
+    public BookFacets() {}
+
+    public BookFacets(int totalBooks, List<FacetCount> categories, List<FacetCount> decades,
+                      List<FacetCount> publishers) {
+        this.totalBooks = totalBooks;
+        this.categories = categories;
+        this.decades = decades;
+        this.publishers = publishers;
+    }
+
+    /**
+     * @return facets with no values, returned while the server cannot count them
+     */
+    public static BookFacets empty() {
+        return new BookFacets();
+    }
+
+    public boolean isEmpty() {
+        return categories.isEmpty() && decades.isEmpty() && publishers.isEmpty();
+    }
+
+    public int getTotalBooks() { return totalBooks; }
+    public void setTotalBooks(int v) { totalBooks = v; }
+    /** @return categories by descending count */
+    public List<FacetCount> getCategories() { return categories; }
+    public void setCategories(List<FacetCount> v) { categories = v; }
+    /** @return decades in chronological order, each named by its first year */
+    public List<FacetCount> getDecades() { return decades; }
+    public void setDecades(List<FacetCount> v) { decades = v; }
+    /** @return the most frequent publishers by descending count */
+    public List<FacetCount> getPublishers() { return publishers; }
+    public void setPublishers(List<FacetCount> v) { publishers = v; }
+}
@@ -0,0 +1,175 @@
+package it.uninsubria.shared.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List of books with a compact wire encoding for bulk RMI responses.
+ * <p>
+ * Default serialization writes the class descriptor of every element and repeats
+ * category and publisher strings for each book. This list writes a flat record per
+ * book instead: varint ids, a per-message dictionary for category, publisher,
+ * month and authors, and inline UTF-8 for title and description. Attached reviews
+ * and the UI selection state are not transferred.
+ * <p>
+ * A list built with {@link #preEncoded(List)} encodes itself once and then writes
+ * the stored bytes on every marshalling, which suits cached responses that are
+ * sent to many clients unchanged. Modifying the list drops the stored bytes.
+ */
+public class BookList extends AbstractList<Book> implements RandomAccess, Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+
+    private final List<Book> books;
+    private transient byte[] encoded;
+
+    /** Required by {@link Externalizable}. */
+    public BookList() {
+        this.books = new ArrayList<>();
+    }
+
+    public BookList(Collection<? extends Book> books) {
+        this.books = new ArrayList<>(books);
+    }
+
+    private BookList(List<Book> books) {
+        this.books = books;
+    }
+
+    /**
+     * Wraps a list for transfer without copying it: its elements are read only
+     * while the list is marshalled. The list must not change until then.
+     *
+     * @param books the books, may be null
+     * @return a BookList backed by the given list, or null
+     */
+    public static List<Book> wrap(List<Book> books) {
+        if (books == null || books instanceof BookList) {
+            return books;
+        }
+        return new BookList(books);
+    }
+
+    /**
+     * Wraps a list for transfer, unless it already uses the compact encoding.
+     *
+     * @param books the books, may be null
+     * @return a BookList with the same elements, or null
+     */
+    public static List<Book> of(List<Book> books) {
+        if (books == null || books instanceof BookList) {
+            return books;
+        }
+        return new BookList(books);
+    }
+
+    /**
+     * Creates a list whose wire form is computed now and reused by every later serialization.
+     *
+     * @param books the books to snapshot
+     * @return the pre-encoded list
+     * @throws IOException if encoding fails
+     */
+    public static BookList preEncoded(List<Book> books) throws IOException {
+        BookList list = new BookList(books);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, books.size() * 64));
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            list.writeBody(out);
+        }
+        list.encoded = bytes.toByteArray();
+        return list;
+    }
+
+    /**
+     * @return the size of the stored wire form, or -1 if the list is encoded on demand
+     */
+    public int encodedSize() {
+        byte[] e = encoded;
+        return e != null ? e.length : -1;
+    }
+
+    @Override
+    public Book get(int index) { return books.get(index); }
+
+    @Override
+    public int size() { return books.size(); }
+
+    @Override
+    public Book set(int index, Book book) { encoded = null; return books.set(index, book); }
+
+    @Override
+    public void add(int index, Book book) { encoded = null; books.add(index, book); }
+
+    @Override
+    public Book remove(int index) { encoded = null; return books.remove(index); }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        byte[] e = encoded;
+        if (e != null) {
+            out.write(e);
+        } else {
+            writeBody(out);
+        }
+    }
+
+    private void writeBody(DataOutput out) throws IOException {
+        WireFormat.DictionaryWriter dict = new WireFormat.DictionaryWriter();
+        out.writeByte(FORMAT_VERSION);
+        WireFormat.writeVarInt(out, books.size());
+        for (Book b : books) {
+            out.writeBoolean(b != null);
+            if (b == null) {
+                continue;
+            }
+            WireFormat.writeVarInt(out, b.getBook_id());
+            WireFormat.writeString(out, b.getTitle());
+            dict.write(out, b.getAuthors());
+            WireFormat.writeString(out, b.getDescription());
+            dict.write(out, b.getCategory());
+            dict.write(out, b.getPublisher());
+            dict.write(out, b.getPrice());
+            dict.write(out, b.getPublisher_month());
+            WireFormat.writeVarInt(out, b.getPublish_date_year());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new InvalidClassException(BookList.class.getName(), "Unsupported format version " + version);
+        }
+        WireFormat.DictionaryReader dict = new WireFormat.DictionaryReader();
+        int size = WireFormat.readVarInt(in);
+        books.clear();
+        for (int i = 0; i < size; i++) {
+            if (!in.readBoolean()) {
+                books.add(null);
+                continue;
+            }
+            Book b = new Book();
+            b.setBook_id(WireFormat.readVarInt(in));
+            b.setTitle(WireFormat.readString(in));
+            b.setAuthors(dict.read(in));
+            b.setDescription(WireFormat.readString(in));
+            b.setCategory(dict.read(in));
+            b.setPublisher(dict.read(in));
+            b.setPrice(dict.read(in));
+            b.setPublisher_month(dict.read(in));
+            b.setPublish_date_year(WireFormat.readVarInt(in));
+            books.add(b);
+        }
+    }
+}
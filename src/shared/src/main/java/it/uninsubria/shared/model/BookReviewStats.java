@@ -0,0 +1,29 @@
+package it.uninsubria.shared.model;
+
+import java.io.Serializable;
+
+/**
+ * Statistiche aggregate delle recensioni di un libro (media e numero di recensioni).
+ */
+public class BookReviewStats implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int bookId;
+    private double averageRating;
+    private int reviewCount;
+
+    public BookReviewStats() {}
+
+    public BookReviewStats(int bookId, double averageRating, int reviewCount) {
+        this.bookId = bookId;
+        this.averageRating = averageRating;
+        this.reviewCount = reviewCount;
+    }
+
+    public int getBookId() { return bookId; }
+    public void setBookId(int v) { bookId = v; }
+    public double getAverageRating() { return averageRating; }
+    public void setAverageRating(double v) { averageRating = v; }
+    public int getReviewCount() { return reviewCount; }
+    public void setReviewCount(int v) { reviewCount = v; }
+}
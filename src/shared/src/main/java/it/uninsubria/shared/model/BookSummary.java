@@ -0,0 +1,55 @@
+package it.uninsubria.shared.model;
+
+import java.io.Serializable;
+
+/**
+ * Proiezione leggera di un libro per liste e ricerche: solo i campi mostrati
+ * nelle liste (id, titolo, autori, categoria, anno). Il {@link Book} completo
+ * si recupera su richiesta con {@code BookService.getBookDetails}.
+ */
+public class BookSummary implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private int bookId;
+    private String title;
+    private String authors;
+    private String category;
+    private int publishYear;
+
+    public BookSummary() {}
+
+    public BookSummary(int bookId, String title, String authors, String category, int publishYear) {
+        this.bookId = bookId;
+        this.title = title;
+        this.authors = authors;
+        this.category = category;
+        this.publishYear = publishYear;
+    }
+
+    public int getBookId() { return bookId; }
+    public void setBookId(int v) { bookId = v; }
+    public String getTitle() { return title; }
+    public void setTitle(String v) { title = v; }
+    public String getAuthors() { return authors; }
+    public void setAuthors(String v) { authors = v; }
+    public String getCategory() { return category; }
+    public void setCategory(String v) { category = v; }
+    public int getPublishYear() { return publishYear; }
+    public void setPublishYear(int v) { publishYear = v; }
+
+    /**
+     * Crea un {@link Book} parziale con i soli campi della proiezione, per i
+     * componenti UI che lavorano su Book.
+     *
+     * @return the partial book
+     */
+    public Book toBook() {
+        Book book = new Book();
+        book.setBook_id(bookId);
+        book.setTitle(title);
+        book.setAuthors(authors);
+        book.setCategory(category);
+        book.setPublish_date_year(publishYear);
+        return book;
+    }
+}
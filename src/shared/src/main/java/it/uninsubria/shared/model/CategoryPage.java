@@ -0,0 +1,41 @@
+package it.uninsubria.shared.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Una pagina dei libri di una categoria. La pagina successiva si chiede
+ * passando {@link #getNextCursor()}; un cursore null indica l'ultima pagina.
+ */
+public class CategoryPage implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private List<Book> books = new ArrayList<>();
+    private String nextCursor;
+    private int totalBooks;
+
+    public CategoryPage() {}
+
+    public CategoryPage(List<Book> books, String nextCursor, int totalBooks) {
+        this.books = books;
+        this.nextCursor = nextCursor;
+        this.totalBooks = totalBooks;
+    }
+
+    /**
+     * @return a page with no books, returned while the server cannot page the category
+     */
+    public static CategoryPage empty() {
+        return new CategoryPage();
+    }
+
+    public List<Book> getBooks() { return books; }
+    public void setBooks(List<Book> v) { books = v; }
+    /** @return the cursor of the next page, or null if this is the last one */
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String v) { nextCursor = v; }
+    /** @return the number of books in the whole category */
+    public int getTotalBooks() { return totalBooks; }
+    public void setTotalBooks(int v) { totalBooks = v; }
+}
@@ -0,0 +1,15 @@
+package it.uninsubria.shared.model;
+
+/**
+ * Ordinamenti dei libri di una categoria, gli stessi offerti dalla vista di
+ * dettaglio della categoria. Titoli e autori si confrontano ignorando le
+ * maiuscole; a parità vale l'id del libro.
+ */
+public enum CategorySort {
+    TITLE_ASC,
+    TITLE_DESC,
+    AUTHOR_ASC,
+    AUTHOR_DESC,
+    YEAR_NEWEST,
+    YEAR_OLDEST
+}
@@ -0,0 +1,26 @@
+package it.uninsubria.shared.model;
+
+import java.io.Serializable;
+
+/**
+ * Un valore di una faccetta del catalogo (categoria, decennio o editore) con
+ * il numero di libri che lo hanno tra i risultati correnti.
+ */
+public class FacetCount implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String value;
+    private int count;
+
+    public FacetCount() {}
+
+    public FacetCount(String value, int count) {
+        this.value = value;
+        this.count = count;
+    }
+
+    public String getValue() { return value; }
+    public void setValue(String v) { value = v; }
+    public int getCount() { return count; }
+    public void setCount(int v) { count = v; }
+}
@@ -0,0 +1,31 @@
+package it.uninsubria.shared.model;
+
+import java.io.Serializable;
+
+/**
+ * Valori di faccetta selezionati dall'utente per restringere il catalogo.
+ * Un campo null non filtra; il decennio è indicato dal suo primo anno
+ * (1990 per gli anni 1990-1999).
+ */
+public class FacetFilters implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String category;
+    private String publisher;
+    private Integer decade;
+
+    public FacetFilters() {}
+
+    public FacetFilters(String category, String publisher, Integer decade) {
+        this.category = category;
+        this.publisher = publisher;
+        this.decade = decade;
+    }
+
+    public String getCategory() { return category; }
+    public void setCategory(String v) { category = v; }
+    public String getPublisher() { return publisher; }
+    public void setPublisher(String v) { publisher = v; }
+    public Integer getDecade() { return decade; }
+    public void setDecade(Integer v) { decade = v; }
+}
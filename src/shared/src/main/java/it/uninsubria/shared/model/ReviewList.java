@@ -0,0 +1,152 @@
+package it.uninsubria.shared.model;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * List of reviews with a compact wire encoding for bulk RMI responses.
+ * <p>
+ * Each review is written as a flat record: the author as user id plus username,
+ * name and surname through a per-message dictionary, the book as its id only,
+ * then scores and notes. The nested {@link User}, {@link Book} and review list
+ * graphs of default serialization are not transferred.
+ */
+public class ReviewList extends AbstractList<Review> implements RandomAccess, Externalizable {
+    private static final long serialVersionUID = 1L;
+    private static final int FORMAT_VERSION = 1;
+
+    private final List<Review> reviews;
+
+    /** Required by {@link Externalizable}. */
+    public ReviewList() {
+        this.reviews = new ArrayList<>();
+    }
+
+    public ReviewList(Collection<? extends Review> reviews) {
+        this.reviews = new ArrayList<>(reviews);
+    }
+
+    /**
+     * Wraps a list for transfer, unless it already uses the compact encoding.
+     *
+     * @param reviews the reviews, may be null
+     * @return a ReviewList with the same elements, or null
+     */
+    public static List<Review> of(List<Review> reviews) {
+        if (reviews == null || reviews instanceof ReviewList) {
+            return reviews;
+        }
+        return new ReviewList(reviews);
+    }
+
+    @Override
+    public Review get(int index) { return reviews.get(index); }
+
+    @Override
+    public int size() { return reviews.size(); }
+
+    @Override
+    public Review set(int index, Review review) { return reviews.set(index, review); }
+
+    @Override
+    public void add(int index, Review review) { reviews.add(index, review); }
+
+    @Override
+    public Review remove(int index) { return reviews.remove(index); }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.DictionaryWriter dict = new WireFormat.DictionaryWriter();
+        out.writeByte(FORMAT_VERSION);
+        WireFormat.writeVarInt(out, reviews.size());
+        for (Review r : reviews) {
+            out.writeBoolean(r != null);
+            if (r == null) {
+                continue;
+            }
+            User u = r.getUser();
+            out.writeBoolean(u != null);
+            if (u != null) {
+                WireFormat.writeVarInt(out, u.getUser_id() != null ? u.getUser_id() : -1);
+                dict.write(out, u.getID());
+                dict.write(out, u.getName());
+                dict.write(out, u.getSurname());
+            }
+            Book b = r.getBooks();
+            out.writeBoolean(b != null);
+            if (b != null) {
+                WireFormat.writeVarInt(out, b.getBook_id());
+            }
+            out.writeBoolean(r.getLibraryId() != null);
+            if (r.getLibraryId() != null) {
+                WireFormat.writeVarInt(out, r.getLibraryId());
+            }
+            WireFormat.writeVarInt(out, r.getStyle());
+            WireFormat.writeVarInt(out, r.getContent());
+            WireFormat.writeVarInt(out, r.getPleasantness());
+            WireFormat.writeVarInt(out, r.getOdness());
+            WireFormat.writeVarInt(out, r.getEditions());
+            WireFormat.writeVarInt(out, r.getFinalScore());
+            WireFormat.writeString(out, r.getStyleNote());
+            WireFormat.writeString(out, r.getContentNote());
+            WireFormat.writeString(out, r.getPleasantnessNote());
+            WireFormat.writeString(out, r.getOdnessNote());
+            WireFormat.writeString(out, r.getEditionsNote());
+            WireFormat.writeString(out, r.getFinalNoteScore());
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new InvalidClassException(ReviewList.class.getName(), "Unsupported format version " + version);
+        }
+        WireFormat.DictionaryReader dict = new WireFormat.DictionaryReader();
+        int size = WireFormat.readVarInt(in);
+        reviews.clear();
+        for (int i = 0; i < size; i++) {
+            if (!in.readBoolean()) {
+                reviews.add(null);
+                continue;
+            }
+            Review r = new Review();
+            if (in.readBoolean()) {
+                int userId = WireFormat.readVarInt(in);
+                User u = new User();
+                u.setUser_id(userId >= 0 ? userId : null);
+                u.setID(dict.read(in));
+                u.setName(dict.read(in));
+                u.setSurname(dict.read(in));
+                r.setUser(u);
+            }
+            if (in.readBoolean()) {
+                r.setBookId(WireFormat.readVarInt(in));
+            }
+            if (in.readBoolean()) {
+                r.setLibraryId(WireFormat.readVarInt(in));
+            }
+            r.setStyle(WireFormat.readVarInt(in));
+            r.setContent(WireFormat.readVarInt(in));
+            r.setPleasantness(WireFormat.readVarInt(in));
+            r.setOdness(WireFormat.readVarInt(in));
+            r.setEditions(WireFormat.readVarInt(in));
+            r.setFinalScore(WireFormat.readVarInt(in));
+            r.setStyleNote(WireFormat.readString(in));
+            r.setContentNote(WireFormat.readString(in));
+            r.setPleasantnessNote(WireFormat.readString(in));
+            r.setOdnessNote(WireFormat.readString(in));
+            r.setEditionsNote(WireFormat.readString(in));
+            r.setFinalNoteScore(WireFormat.readString(in));
+            reviews.add(r);
+        }
+    }
+}
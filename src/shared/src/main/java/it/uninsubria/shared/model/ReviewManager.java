@@ -1,5 +1,7 @@
 package it.uninsubria.shared.model;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -24,6 +26,21 @@ public class ReviewManager implements Serializable {
         this.reviews = new ArrayList<>();
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        // Le recensioni viaggiano con la codifica compatta di ReviewList; il campo resta invariato
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("reviews", ReviewList.of(reviews));
+        fields.put("criterio", criterio);
+        fields.put("media", media);
+        fields.put("avgStyle", avgStyle);
+        fields.put("avgContent", avgContent);
+        fields.put("avgPleasantness", avgPleasantness);
+        fields.put("avgOdness", avgOdness);
+        fields.put("avgEditions", avgEditions);
+        fields.put("avgFinal", avgFinal);
+        out.writeFields();
+    }
+
     public void setMedia(double media){
         this.media = media;
     }
@@ -0,0 +1,37 @@
+package it.uninsubria.shared.model;
+
+import java.io.Serializable;
+
+/**
+ * Un completamento proposto mentre l'utente digita nella barra di ricerca:
+ * un titolo o un autore del catalogo, con il libro più popolare da cui
+ * proviene.
+ */
+public class SearchCompletion implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /** Campo del catalogo da cui proviene il completamento. */
+    public enum Kind {
+        TITLE,
+        AUTHOR
+    }
+
+    private Kind kind;
+    private String text;
+    private int bookId;
+
+    public SearchCompletion() {}
+
+    public SearchCompletion(Kind kind, String text, int bookId) {
+        this.kind = kind;
+        this.text = text;
+        this.bookId = bookId;
+    }
+
+    public Kind getKind() { return kind; }
+    public void setKind(Kind v) { kind = v; }
+    public String getText() { return text; }
+    public void setText(String v) { text = v; }
+    public int getBookId() { return bookId; }
+    public void setBookId(int v) { bookId = v; }
+}
@@ -0,0 +1,27 @@
+package it.uninsubria.shared.model;
+
+import it.uninsubria.shared.utils.AppConstants;
+
+/**
+ * Time scale of a trending list: recent activity counts with a weight that
+ * halves every {@link #getHalfLifeMillis()}, so older activity fades out
+ * smoothly instead of falling off a window edge.
+ */
+public enum TrendingWindow {
+    HOUR(AppConstants.Time.MILLIS_PER_HOUR),
+    DAY(AppConstants.Time.MILLIS_PER_DAY),
+    WEEK(7 * AppConstants.Time.MILLIS_PER_DAY);
+
+    private final long halfLifeMillis;
+
+    TrendingWindow(long halfLifeMillis) {
+        this.halfLifeMillis = halfLifeMillis;
+    }
+
+    /**
+     * @return the time after which the weight of an event is halved
+     */
+    public long getHalfLifeMillis() {
+        return halfLifeMillis;
+    }
+}
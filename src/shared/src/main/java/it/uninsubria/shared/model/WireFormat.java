@@ -0,0 +1,114 @@
+package it.uninsubria.shared.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Primitive encoders shared by the compact collection types ({@link BookList}, {@link ReviewList}).
+ * <p>
+ * Integers are written as unsigned LEB128 varints, strings as a varint length
+ * followed by UTF-8 bytes (length 0 means null). Low-cardinality fields go
+ * through a per-message dictionary: the first occurrence is written inline and
+ * later occurrences are a varint back-reference.
+ */
+final class WireFormat {
+
+    private static final int DICT_NULL = 0;
+    private static final int DICT_NEW = 1;
+    private static final int DICT_REF_BASE = 2;
+
+    private WireFormat() {}
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed varint");
+    }
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int len = readVarInt(in);
+        if (len == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writer side of the per-message string dictionary.
+     */
+    static final class DictionaryWriter {
+        private final Map<String, Integer> codes = new HashMap<>();
+
+        void write(DataOutput out, String s) throws IOException {
+            if (s == null) {
+                writeVarInt(out, DICT_NULL);
+                return;
+            }
+            Integer code = codes.get(s);
+            if (code != null) {
+                writeVarInt(out, DICT_REF_BASE + code);
+                return;
+            }
+            codes.put(s, codes.size());
+            writeVarInt(out, DICT_NEW);
+            writeString(out, s);
+        }
+    }
+
+    /**
+     * Reader side of the per-message string dictionary; repeated values share one String instance.
+     */
+    static final class DictionaryReader {
+        private final List<String> values = new ArrayList<>();
+
+        String read(DataInput in) throws IOException {
+            int code = readVarInt(in);
+            if (code == DICT_NULL) {
+                return null;
+            }
+            if (code == DICT_NEW) {
+                String s = readString(in);
+                values.add(s);
+                return s;
+            }
+            int index = code - DICT_REF_BASE;
+            if (index < 0 || index >= values.size()) {
+                throw new StreamCorruptedException("Invalid dictionary reference: " + index);
+            }
+            return values.get(index);
+        }
+    }
+}
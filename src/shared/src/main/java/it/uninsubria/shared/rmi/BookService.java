@@ -1,8 +1,15 @@
 package it.uninsubria.shared.rmi;
 
 import it.uninsubria.shared.model.SuggestionEntry;
+import it.uninsubria.shared.model.BookFacets;
+import it.uninsubria.shared.model.CategoryPage;
+import it.uninsubria.shared.model.CategorySort;
+import it.uninsubria.shared.model.FacetFilters;
+import it.uninsubria.shared.model.TrendingWindow;
 import it.uninsubria.shared.model.Book;
+import it.uninsubria.shared.model.BookSummary;
 import it.uninsubria.shared.model.ReviewManager;
+import it.uninsubria.shared.model.SearchCompletion;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
@@ -22,83 +29,111 @@ import java.util.List;
  * <li>Review aggregation and retrieval</li>
  * </ul>
  *
+ * <p>Global, title and author searches return {@link BookSummary} projections
+ * for result lists; the full {@link Book} is fetched with
+ * {@link #getBookDetails(int)} when a book is opened.
+ *
  * @author Book Recommender Team
  * @version 1.0
  * @since 1.0
  */
 public interface BookService extends Remote {
     /**
-     * Retrieves all books from the system for global search.
+     * Retrieves the summaries of all books in the system for global search.
      *
-     * @return a list of all books in the system
+     * @return the summaries of all books, ordered by book ID
      * @throws RemoteException if a communication error occurs
      */
-    List<Book> searchGlobally() throws RemoteException;
+    List<BookSummary> searchGlobally() throws RemoteException;
     /**
      * Searches for books by title using the specified query string.
      *
      * @param query the search query for book titles
-     * @return a list of books matching the title query
+     * @return the summaries of the books matching the title query
      * @throws RemoteException if a communication error occurs
      */
-    List<Book> searchByTitle(String query) throws RemoteException;
+    List<BookSummary> searchByTitle(String query) throws RemoteException;
     /**
      * Searches for books by author.
      *
      * @param author the author name
-     * @return a list of books by the author
+     * @return the summaries of the books by the author
      * @throws RemoteException if a communication error occurs
      */
-    List<Book> searchByAuthor(String author) throws RemoteException;
+    List<BookSummary> searchByAuthor(String author) throws RemoteException;
     /**
      * Searches for books by author and publication year.
      *
      * @param author the author name
      * @param year the publication year
-     * @return a list of books by the author in the specified year
+     * @return the summaries of the books by the author in the specified year
      * @throws RemoteException if a communication error occurs
      */
-    List<Book> searchByAuthorAndYear(String author, int year) throws RemoteException;
+    List<BookSummary> searchByAuthorAndYear(String author, int year) throws RemoteException;
     /**
      * Searches for books by title and publication year.
      *
      * @param title the book title
      * @param year the publication year
-     * @return a list of books with the title in the specified year
+     * @return the summaries of the books with the title in the specified year
      * @throws RemoteException if a communication error occurs
      */
-    List<Book> searchByTitleAndYear(String title, int year) throws RemoteException;
+    List<BookSummary> searchByTitleAndYear(String title, int year) throws RemoteException;
 
     // Metodi per paginazione e lazy loading
     /**
-     * Retrieves all books with pagination.
+     * Retrieves the summaries of all books with pagination.
      *
      * @param offset the offset for pagination
      * @param limit the maximum number of results
-     * @return a list of books with pagination
+     * @return a page of summaries, ordered by book ID
      * @throws RemoteException if a communication error occurs
      */
-    List<Book> searchGloballyPaged(int offset, int limit) throws RemoteException;
+    List<BookSummary> searchGloballyPaged(int offset, int limit) throws RemoteException;
     /**
      * Searches for books by title with pagination.
      *
      * @param query the search query
      * @param offset the offset for pagination
      * @param limit the maximum number of results
-     * @return a list of books matching the query with pagination
+     * @return a page of summaries of the books matching the query
      * @throws RemoteException if a communication error occurs
      */
-    List<Book> searchByTitlePaged(String query, int offset, int limit) throws RemoteException;
+    List<BookSummary> searchByTitlePaged(String query, int offset, int limit) throws RemoteException;
     /**
      * Searches for books by author with pagination.
      *
      * @param author the author name
      * @param offset the offset for pagination
      * @param limit the maximum number of results
-     * @return a list of books by the author with pagination
+     * @return a page of summaries of the books by the author
+     * @throws RemoteException if a communication error occurs
+     */
+    List<BookSummary> searchByAuthorPaged(String author, int offset, int limit) throws RemoteException;
+    /**
+     * Searches lightweight book summaries (id, title, authors, category, year) for
+     * lists and search results; use {@link #getBookDetails(int)} for the full book.
+     * Null or empty filters are ignored.
+     *
+     * @param title the title query, or null
+     * @param author the author name, or null
+     * @param year the publication year, or null
+     * @param offset the offset for pagination
+     * @param limit the maximum number of results, capped by the server
+     * @return the matching summaries ordered by book ID
      * @throws RemoteException if a communication error occurs
      */
-    List<Book> searchByAuthorPaged(String author, int offset, int limit) throws RemoteException;
+    List<BookSummary> searchBookSummaries(String title, String author, Integer year, int offset, int limit) throws RemoteException;
+
+    /**
+     * Opens a cursor over the whole catalog, ordered by id, that streams it in
+     * chunks instead of returning one large list.
+     *
+     * @param chunkSize books per chunk, capped by the server
+     * @return the open cursor; read it to the end or close it
+     * @throws RemoteException if the cursor cannot be opened, e.g. too many are open
+     */
+    RemoteBookCursor openCatalogCursor(int chunkSize) throws RemoteException;
     /**
      * Gets the total number of books in the system.
      *
@@ -106,6 +141,65 @@ public interface BookService extends Remote {
      * @throws RemoteException if a communication error occurs
      */
     int getTotalBooksCount() throws RemoteException;
+
+    /**
+     * Gets a page of the catalog ranked by popularity, computed on the server
+     * from review scores, library inclusions and suggestions.
+     *
+     * @param offset the number of books to skip
+     * @param limit the maximum number of books to return, capped by the server
+     * @return the most popular books, best first; empty until the ranking is ready
+     * @throws RemoteException if a communication error occurs
+     */
+    List<Book> getPopularBooks(int offset, int limit) throws RemoteException;
+
+    /**
+     * Gets the books readers are shelving and reviewing right now.
+     *
+     * @param window the time scale of the activity, from the last hour to the last week
+     * @param k the maximum number of books to return, capped by the server
+     * @return the trending books, most active first; empty when nothing happened recently
+     * @throws RemoteException if a communication error occurs
+     */
+    List<Book> getTrendingBooks(TrendingWindow window, int k) throws RemoteException;
+
+    /**
+     * Counts the books matching a search by category, publication decade and
+     * publisher, without transferring the books.
+     *
+     * @param query text to look for in titles and authors, or null for the whole catalog
+     * @param filters the selected facet values, or null for none
+     * @return the counts per facet
+     * @throws RemoteException if a communication error occurs
+     */
+    BookFacets getFacets(String query, FacetFilters filters) throws RemoteException;
+
+    /**
+     * Gets a page of the books of a category, optionally narrowed to the books
+     * whose title or authors contain a text. The filtering happens on the
+     * server, so pages and totals already refer to the matching books.
+     *
+     * @param category the category name, as returned by {@link #getFacets(String, FacetFilters)}
+     * @param query text to look for in titles and authors, or null for the whole category
+     * @param sort the order of the books, or null for title order
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param limit the maximum number of books to return, capped by the server
+     * @return the page; its total counts the books matching the query
+     * @throws RemoteException if a communication error occurs or the cursor is not valid
+     */
+    CategoryPage getBooksByCategory(String category, String query, CategorySort sort, String cursor, int limit)
+        throws RemoteException;
+
+    /**
+     * Completes what the user is typing in the search box with titles and
+     * authors of the catalog. Meant to be called on every keystroke.
+     *
+     * @param prefix the text typed so far; accents, case and punctuation are ignored
+     * @param k the maximum number of completions, capped by the server
+     * @return the completions, most popular first; empty while the server catalog is loading
+     * @throws RemoteException if a communication error occurs
+     */
+    List<SearchCompletion> completeSearch(String prefix, int k) throws RemoteException;
     /**
      * Retrieves detailed information for a specific book by its ID.
      *
@@ -114,6 +208,14 @@ public interface BookService extends Remote {
      * @throws RemoteException if a communication error occurs
      */
     Book getBookDetails(int bookId) throws RemoteException;
+    /**
+     * Retrieves several books by ID in a single call.
+     *
+     * @param bookIds the IDs of the books to retrieve
+     * @return the books found, in the same order as the requested IDs (missing IDs are skipped)
+     * @throws RemoteException if a communication error occurs
+     */
+    List<Book> getBooksByIds(List<Integer> bookIds) throws RemoteException;
     /**
      * Gets aggregated reviews for a book.
      *
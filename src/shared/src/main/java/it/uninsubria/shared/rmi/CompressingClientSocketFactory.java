@@ -0,0 +1,69 @@
+package it.uninsubria.shared.rmi;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Client socket factory for the exported services.
+ * <p>
+ * It is serialized into the service stubs, so its settings come from the server.
+ * Sockets use TCP_NODELAY and the given buffer sizes; responses of at least
+ * {@code compressionThreshold} bytes arrive deflated unless the client disables it
+ * with the system property {@value #COMPRESSION_PROPERTY}{@code =false} (e.g. on a LAN).
+ */
+public class CompressingClientSocketFactory implements RMIClientSocketFactory, Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final Logger logger = Logger.getLogger(CompressingClientSocketFactory.class.getName());
+
+    public static final String COMPRESSION_PROPERTY = "bookrecommender.rmi.compression";
+
+    private final int compressionThreshold;
+    private final int bufferSize;
+
+    /**
+     * @param compressionThreshold minimum message size in bytes that gets compressed
+     * @param bufferSize socket send/receive buffer size in bytes, 0 for the OS default
+     */
+    public CompressingClientSocketFactory(int compressionThreshold, int bufferSize) {
+        this.compressionThreshold = compressionThreshold;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        CompressingSocket socket = new CompressingSocket(true, compressionThreshold, stats -> {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("RMI connection to " + host + ":" + port + " closed: " + stats);
+            }
+        });
+        try {
+            socket.configure(bufferSize);
+            socket.connect(new InetSocketAddress(host, port));
+            socket.sendHello(!"false".equalsIgnoreCase(System.getProperty(COMPRESSION_PROPERTY)));
+            return socket;
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        // RMI riusa le connessioni solo tra factory uguali
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompressingClientSocketFactory that = (CompressingClientSocketFactory) o;
+        return compressionThreshold == that.compressionThreshold && bufferSize == that.bufferSize;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(compressionThreshold, bufferSize);
+    }
+}
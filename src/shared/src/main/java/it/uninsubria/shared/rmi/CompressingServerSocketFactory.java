@@ -0,0 +1,88 @@
+package it.uninsubria.shared.rmi;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Server socket factory paired with {@link CompressingClientSocketFactory}.
+ * <p>
+ * Accepted sockets use TCP_NODELAY and the given buffer sizes and speak the framed,
+ * optionally compressed protocol of the client factory. The listener, if any,
+ * receives the traffic counters of each connection when it closes.
+ */
+public class CompressingServerSocketFactory implements RMIServerSocketFactory {
+
+    private static final int BACKLOG = 50;
+
+    private final int compressionThreshold;
+    private final int bufferSize;
+    private final Consumer<ConnectionStats> onConnectionClosed;
+
+    /**
+     * @param compressionThreshold minimum message size in bytes that gets compressed
+     * @param bufferSize socket send/receive buffer size in bytes, 0 for the OS default
+     * @param onConnectionClosed receives per-connection counters on close, may be null
+     */
+    public CompressingServerSocketFactory(int compressionThreshold, int bufferSize,
+                                          Consumer<ConnectionStats> onConnectionClosed) {
+        this.compressionThreshold = compressionThreshold;
+        this.bufferSize = bufferSize;
+        this.onConnectionClosed = onConnectionClosed;
+    }
+
+    /**
+     * @return the client factory to export together with this one
+     */
+    public CompressingClientSocketFactory clientFactory() {
+        return new CompressingClientSocketFactory(compressionThreshold, bufferSize);
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        ServerSocket server = new ServerSocket() {
+            @Override
+            public Socket accept() throws IOException {
+                if (isClosed()) {
+                    throw new SocketException("Socket is closed");
+                }
+                CompressingSocket socket = new CompressingSocket(false, compressionThreshold, onConnectionClosed);
+                implAccept(socket);
+                socket.configure(bufferSize);
+                return socket;
+            }
+        };
+        try {
+            server.setReuseAddress(true);
+            if (bufferSize > 0) {
+                // Va impostato prima del bind per valere anche sulle finestre TCP grandi
+                server.setReceiveBufferSize(bufferSize);
+            }
+            server.bind(new InetSocketAddress(port), BACKLOG);
+            return server;
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        // Factory uguali condividono la stessa porta tra i servizi esportati
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CompressingServerSocketFactory that = (CompressingServerSocketFactory) o;
+        return compressionThreshold == that.compressionThreshold && bufferSize == that.bufferSize
+            && Objects.equals(onConnectionClosed, that.onConnectionClosed);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(compressionThreshold, bufferSize);
+    }
+}
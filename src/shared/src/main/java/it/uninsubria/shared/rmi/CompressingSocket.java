@@ -0,0 +1,359 @@
+package it.uninsubria.shared.rmi;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Socket used by the compressing RMI socket factories.
+ * <p>
+ * Data written by RMI is buffered until flush and sent as one frame:
+ * {@code [type:1][length:4]([rawLength:4])[payload]}; the last frame of a
+ * message (the one written on flush) carries {@link #END_OF_MESSAGE}. Frames
+ * of at least {@code threshold} bytes are deflated when the peer accepts
+ * compressed frames and the result is actually smaller.
+ * <p>
+ * Negotiation: right after connecting, the client sends {@link #MAGIC} and a flag
+ * telling whether it accepts compressed frames. The server always accepts them,
+ * so the client can compress from its first request; the server reads the hello
+ * with the first request, hence before any response it may compress.
+ */
+final class CompressingSocket extends Socket {
+
+    static final int MAGIC = 0xB7;
+    static final int FLAG_ACCEPTS_COMPRESSION = 0x01;
+
+    private static final int FRAME_RAW = 0;
+    private static final int FRAME_DEFLATED = 1;
+    private static final int END_OF_MESSAGE = 0x80;
+    /** Frames larger than this are split, so a huge response never needs one huge buffer. */
+    private static final int MAX_FRAME_SIZE = 1 << 20;
+
+    private final boolean clientSide;
+    private final int threshold;
+    private final Consumer<ConnectionStats> onClose;
+    private final ConnectionStats stats = new ConnectionStats();
+
+    private volatile boolean peerAcceptsCompression;
+    private volatile boolean helloReceived;
+    private InputStream in;
+    private OutputStream out;
+    private boolean closed;
+
+    CompressingSocket(boolean clientSide, int threshold, Consumer<ConnectionStats> onClose) {
+        this.clientSide = clientSide;
+        this.threshold = threshold;
+        this.onClose = onClose;
+        // Il server accetta sempre frame compressi
+        this.peerAcceptsCompression = clientSide;
+        this.helloReceived = clientSide;
+    }
+
+    void configure(int bufferSize) throws SocketException {
+        setTcpNoDelay(true);
+        setKeepAlive(true);
+        if (bufferSize > 0) {
+            setSendBufferSize(bufferSize);
+            setReceiveBufferSize(bufferSize);
+        }
+    }
+
+    /**
+     * Sends the client hello; must be called once, right after connecting.
+     */
+    void sendHello(boolean acceptCompression) throws IOException {
+        OutputStream raw = super.getOutputStream();
+        raw.write(MAGIC);
+        raw.write(acceptCompression ? FLAG_ACCEPTS_COMPRESSION : 0);
+        raw.flush();
+        stats.wireBytesOut.addAndGet(2);
+    }
+
+    ConnectionStats getStats() {
+        return stats;
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException {
+        if (in == null) {
+            in = new FrameInputStream(new DataInputStream(super.getInputStream()));
+        }
+        return in;
+    }
+
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException {
+        if (out == null) {
+            out = new FrameOutputStream(new DataOutputStream(super.getOutputStream()));
+        }
+        return out;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            super.close();
+        } finally {
+            if (onClose != null) {
+                onClose.accept(stats);
+            }
+        }
+    }
+
+    private final class FrameOutputStream extends OutputStream {
+        private final DataOutputStream wire;
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private byte[] buf = new byte[8192];
+        private byte[] compressed = new byte[0];
+        private int count;
+
+        FrameOutputStream(DataOutputStream wire) {
+            this.wire = wire;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureCapacity(1);
+            buf[count++] = (byte) b;
+            // Anche le scritture a singolo byte non superano la dimensione massima del frame
+            if (count >= MAX_FRAME_SIZE) {
+                writeFrame(0);
+            }
+        }
+
+        @Override
+        public void write(byte[] b) throws IOException {
+            write(b, 0, b.length);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            // count resta sotto MAX_FRAME_SIZE tra una scrittura e l'altra, quindi chunk > 0
+            while (len > 0) {
+                int chunk = Math.min(len, MAX_FRAME_SIZE - count);
+                ensureCapacity(chunk);
+                System.arraycopy(b, off, buf, count, chunk);
+                count += chunk;
+                off += chunk;
+                len -= chunk;
+                if (count >= MAX_FRAME_SIZE) {
+                    writeFrame(0);
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                writeFrame(END_OF_MESSAGE);
+                stats.messagesOut.incrementAndGet();
+            }
+            wire.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                deflater.end();
+                wire.close();
+            }
+        }
+
+        private void ensureCapacity(int extra) {
+            if (count + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+            }
+        }
+
+        private void writeFrame(int marker) throws IOException {
+            stats.rawBytesOut.addAndGet(count);
+            int compressedLength = (peerAcceptsCompression && count >= threshold) ? deflate() : -1;
+            if (compressedLength > 0 && compressedLength < count) {
+                wire.writeByte(FRAME_DEFLATED | marker);
+                wire.writeInt(compressedLength);
+                wire.writeInt(count);
+                wire.write(compressed, 0, compressedLength);
+                stats.wireBytesOut.addAndGet(9L + compressedLength);
+                stats.compressedFrames.incrementAndGet();
+            } else {
+                wire.writeByte(FRAME_RAW | marker);
+                wire.writeInt(count);
+                wire.write(buf, 0, count);
+                stats.wireBytesOut.addAndGet(5L + count);
+            }
+            count = 0;
+        }
+
+        private int deflate() {
+            if (compressed.length < count) {
+                compressed = new byte[count];
+            }
+            deflater.reset();
+            deflater.setInput(buf, 0, count);
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished() && length < count) {
+                length += deflater.deflate(compressed, length, count - length);
+            }
+            // Se l'output compresso non è più piccolo si invia il frame in chiaro
+            return deflater.finished() ? length : -1;
+        }
+    }
+
+    private final class FrameInputStream extends InputStream {
+        private final DataInputStream wire;
+        private final Inflater inflater = new Inflater();
+        private byte[] frame = new byte[8192];
+        private byte[] compressed = new byte[0];
+        private int pos;
+        private int limit;
+
+        FrameInputStream(DataInputStream wire) {
+            this.wire = wire;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (pos == limit && !nextFrame()) {
+                return -1;
+            }
+            return frame[pos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (pos == limit && !nextFrame()) {
+                return -1;
+            }
+            int n = Math.min(len, limit - pos);
+            System.arraycopy(frame, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limit - pos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.end();
+            wire.close();
+        }
+
+        private boolean nextFrame() throws IOException {
+            if (!helloReceived) {
+                readHello();
+            }
+            // Salta eventuali frame vuoti
+            do {
+                int type = wire.read();
+                if (type < 0) {
+                    return false;
+                }
+                readFrame(type);
+            } while (limit == 0);
+            return true;
+        }
+
+        private void readHello() throws IOException {
+            int magic = wire.read();
+            if (magic < 0) {
+                throw new EOFException("Connection closed before handshake");
+            }
+            if (magic != MAGIC) {
+                throw new StreamCorruptedException("Unexpected RMI handshake byte: " + magic);
+            }
+            int flags = wire.readUnsignedByte();
+            peerAcceptsCompression = (flags & FLAG_ACCEPTS_COMPRESSION) != 0;
+            helloReceived = true;
+            stats.wireBytesIn.addAndGet(2);
+        }
+
+        private void readFrame(int header) throws IOException {
+            int type = header & ~END_OF_MESSAGE;
+            int length = wire.readInt();
+            if (length < 0 || length > MAX_FRAME_SIZE) {
+                throw new StreamCorruptedException("Invalid frame length: " + length);
+            }
+            pos = 0;
+            if (type == FRAME_RAW) {
+                ensureFrame(length);
+                wire.readFully(frame, 0, length);
+                limit = length;
+                stats.wireBytesIn.addAndGet(5L + length);
+            } else if (type == FRAME_DEFLATED) {
+                int rawLength = wire.readInt();
+                if (rawLength < 0 || rawLength > MAX_FRAME_SIZE) {
+                    throw new StreamCorruptedException("Invalid frame length: " + rawLength);
+                }
+                if (compressed.length < length) {
+                    compressed = new byte[length];
+                }
+                wire.readFully(compressed, 0, length);
+                ensureFrame(rawLength);
+                inflate(length, rawLength);
+                limit = rawLength;
+                stats.wireBytesIn.addAndGet(9L + length);
+                stats.compressedFrames.incrementAndGet();
+            } else {
+                throw new StreamCorruptedException("Unknown frame type: " + type);
+            }
+            stats.rawBytesIn.addAndGet(limit);
+            if ((header & END_OF_MESSAGE) != 0) {
+                stats.messagesIn.incrementAndGet();
+            }
+        }
+
+        private void inflate(int length, int rawLength) throws IOException {
+            inflater.reset();
+            inflater.setInput(compressed, 0, length);
+            try {
+                int n = 0;
+                while (n < rawLength && !inflater.finished()) {
+                    int r = inflater.inflate(frame, n, rawLength - n);
+                    if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    n += r;
+                }
+                if (n != rawLength) {
+                    throw new StreamCorruptedException("Truncated compressed frame");
+                }
+            } catch (DataFormatException e) {
+                throw new StreamCorruptedException("Corrupted compressed frame: " + e.getMessage());
+            }
+        }
+
+        private void ensureFrame(int size) {
+            if (frame.length < size) {
+                frame = new byte[size];
+            }
+        }
+    }
+}
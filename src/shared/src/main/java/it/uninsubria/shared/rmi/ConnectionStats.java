@@ -0,0 +1,35 @@
+package it.uninsubria.shared.rmi;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Traffic counters of a single RMI connection opened through the compressing socket factories.
+ * <p>
+ * Raw bytes are the bytes written or read by RMI; wire bytes are what actually
+ * crossed the socket after framing and compression. A message is one flushed
+ * frame, i.e. one RMI request or response.
+ */
+public class ConnectionStats {
+    final AtomicLong rawBytesOut = new AtomicLong();
+    final AtomicLong wireBytesOut = new AtomicLong();
+    final AtomicLong rawBytesIn = new AtomicLong();
+    final AtomicLong wireBytesIn = new AtomicLong();
+    final AtomicLong messagesOut = new AtomicLong();
+    final AtomicLong messagesIn = new AtomicLong();
+    final AtomicLong compressedFrames = new AtomicLong();
+
+    public long getRawBytesOut() { return rawBytesOut.get(); }
+    public long getWireBytesOut() { return wireBytesOut.get(); }
+    public long getRawBytesIn() { return rawBytesIn.get(); }
+    public long getWireBytesIn() { return wireBytesIn.get(); }
+    public long getMessagesOut() { return messagesOut.get(); }
+    public long getMessagesIn() { return messagesIn.get(); }
+    public long getCompressedFrames() { return compressedFrames.get(); }
+
+    @Override
+    public String toString() {
+        return "out " + getRawBytesOut() + "B raw/" + getWireBytesOut() + "B wire in " + getMessagesOut() + " msg, "
+            + "in " + getRawBytesIn() + "B raw/" + getWireBytesIn() + "B wire in " + getMessagesIn() + " msg, "
+            + getCompressedFrames() + " compressed frames";
+    }
+}
@@ -8,6 +8,7 @@ import it.uninsubria.shared.model.Library;
 
 public interface LibraryService extends Remote {
     List<Library> getUserLibraries(String username) throws RemoteException;
+    List<Library> getUserLibrariesWithBooks(String username) throws RemoteException;
     List<Integer> getBooksInLibrariesImpl(int idLibreria) throws RemoteException;
     boolean libraryExistsForUser(String username, String libraryName) throws RemoteException;
     Library addLibraryForUser(String username, Library library) throws RemoteException;
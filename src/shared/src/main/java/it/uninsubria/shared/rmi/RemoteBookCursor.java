@@ -0,0 +1,31 @@
+package it.uninsubria.shared.rmi;
+
+import it.uninsubria.shared.model.Book;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.List;
+
+/**
+ * Server-side cursor over a large book result, read one chunk per call.
+ * <p>
+ * The server keeps a database cursor open for it, so callers should read it to
+ * the end or {@link #close()} it. A cursor left idle longer than its lease is
+ * closed by the server and further reads fail.
+ */
+public interface RemoteBookCursor extends Remote {
+    /**
+     * Returns the next chunk of books.
+     *
+     * @return up to the chunk size given when opening; an empty list once all books have been read
+     * @throws RemoteException if the cursor expired or the read fails
+     */
+    List<Book> nextChunk() throws RemoteException;
+
+    /**
+     * Releases the cursor and its database resources. Safe to call more than once.
+     *
+     * @throws RemoteException if the remote call fails
+     */
+    void close() throws RemoteException;
+}
@@ -5,6 +5,7 @@ import java.rmi.RemoteException;
 import java.util.List;
 import java.util.Map;
 
+import it.uninsubria.shared.model.BookReviewStats;
 import it.uninsubria.shared.model.Review;
 
 public interface ReviewsService extends Remote{
@@ -15,4 +16,7 @@ public interface ReviewsService extends Remote{
     List<Review> getReviewsByBook(int bookId) throws RemoteException;
     boolean saveReview(int userId, int bookId, Integer libraryId, Map<String, Integer> scores, Map<String, String> notes) throws RemoteException;
     List<Review> getReviewsForBookAndUser(int userId, int bookId) throws RemoteException;
+
+    List<BookReviewStats> getReviewStatsForBooks(int[] bookIds) throws RemoteException;
+    List<BookReviewStats> getAllReviewStats() throws RemoteException;
 }
@@ -0,0 +1,10 @@
+package it.uninsubria.shared.rmi;
+
+/**
+ * Signals that the server rejected a request because it is overloaded; the call can be retried later.
+ */
+public class ServiceOverloadedException extends ServiceException {
+    public ServiceOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -15,6 +15,16 @@ public interface SuggestionsService extends Remote {
     List<Book> getUserSuggestions(int userId, int baseBookId) throws RemoteException;
     List<Book> getUserSuggestionsForBookAndLibrary(int userId, int libraryId, int baseBookId) throws RemoteException;
     List<Book> getDynamicSuggestedBooks(int baseBookId, int libraryId, int userId, int topN) throws RemoteException;
+    /**
+     * Returns the books predicted to interest a user most, from the scores of their
+     * reviews and those of similar readers; books the user already reviewed are excluded.
+     *
+     * @param userId the user
+     * @param topK maximum number of books, capped by the server
+     * @return the recommended books, best first; empty for users without reviews
+     * @throws RemoteException if the remote call fails
+     */
+    List<Book> getRecommendedForUser(int userId, int topK) throws RemoteException;
     int createSuggestionBatch(int userId, Integer libraryId) throws RemoteException;
     List<Integer> addSuggestionsToBatch(int batchId, int userId, Integer libraryId, int baseBookId, List<Integer> suggestedBookIds) throws RemoteException;
     List<SuggestionEntry> getSuggestionsForBatch(int batchId) throws RemoteException;
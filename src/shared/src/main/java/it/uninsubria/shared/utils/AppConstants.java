@@ -49,6 +49,10 @@ public final class AppConstants {
         public static final String RMI_HOST_DEFAULT = "localhost";
         /** Default PostgreSQL port. */
         public static final int POSTGRESQL_DEFAULT_PORT = 5432;
+        /** RMI messages at least this large are sent compressed. */
+        public static final int RMI_COMPRESSION_THRESHOLD_BYTES = 8 * 1024;
+        /** Send/receive buffer size of RMI sockets. */
+        public static final int RMI_SOCKET_BUFFER_SIZE = 64 * 1024;
     }
 
     /**
@@ -61,6 +65,20 @@ public final class AppConstants {
         public static final int MAX_CONCURRENT_USERS = 1000;
         /** Default cache TTL in milliseconds. */
         public static final long DEFAULT_TTL_MS = Time.TIMEOUT_5_MINUTES;
+        /** Interval between rebuilds of the off-heap columnar copy of the catalog. */
+        public static final long COLUMNAR_CATALOG_REFRESH_MS = Time.TIMEOUT_15_MINUTES;
+        /** Publishers returned per facet request; categories and decades are always complete. */
+        public static final int FACET_MAX_PUBLISHERS = 50;
+        /** Maximum number of books per category page. */
+        public static final int MAX_CATEGORY_PAGE_SIZE = 200;
+        /** Maximum number of book summaries per search request. */
+        public static final int MAX_SEARCH_PAGE_SIZE = 200;
+        /** Maximum number of completions per type-ahead request. */
+        public static final int MAX_COMPLETIONS = 20;
+        /** Interval between checks of the popularity ranking used to order the completions. */
+        public static final long COMPLETION_RERANK_MS = Time.MILLIS_PER_MINUTE;
+        /** Maximum number of book ids per review statistics request; larger sets use the full statistics. */
+        public static final int MAX_REVIEW_STATS_BATCH = 500;
     }
 
     /**
@@ -75,6 +93,8 @@ public final class AppConstants {
         public static final int LARGE_DATASET_SIZE_THRESHOLD = 50000;
         /** Batch size for data seeder. */
         public static final int DATA_SEEDER_BATCH_SIZE = 5000;
+        /** Batches buffered between the data seeder parser and writer. */
+        public static final int DATA_SEEDER_QUEUE_CAPACITY = 4;
     }
 
     /**
@@ -99,16 +119,108 @@ public final class AppConstants {
         public static final long KEEPALIVE_TIME_MS = Time.TIMEOUT_5_MINUTES;
         /** Leak detection threshold in milliseconds. */
         public static final long LEAK_DETECTION_THRESHOLD_MS = Time.MILLIS_PER_MINUTE;
-        /** Maximum connection pool size. */
+        /** Maximum number of connections across all pools, split in proportion to the pool sizes below. */
         public static final int CONNECTION_POOL_MAX_SIZE = 50;
-        /** Minimum idle connections in pool. */
+        /** Minimum idle connections across the read and write pools, as the single pool held before the split. */
         public static final int CONNECTION_POOL_MIN_IDLE = 10;
+        /** Minimum idle connections of the write pool, taken out of {@link #CONNECTION_POOL_MIN_IDLE}. */
+        public static final int WRITE_POOL_MIN_IDLE = 2;
+        /** Maximum size of the read pool (catalog and review queries). */
+        public static final int READ_POOL_MAX_SIZE = 30;
+        /** Maximum size of the write pool (writes and authentication). */
+        public static final int WRITE_POOL_MAX_SIZE = 15;
+        /** Maximum size of the background pool (cache warm-up and bulk scans). */
+        public static final int BACKGROUND_POOL_MAX_SIZE = 5;
         /** Connection timeout in milliseconds. */
         public static final int CONNECTION_TIMEOUT_MS = 20000;
         /** Maximum connection lifetime in milliseconds. */
         public static final int MAX_LIFETIME_MS = 1200000; // 20 minutes
         /** Validation timeout in milliseconds. */
         public static final int VALIDATION_TIMEOUT_MS = 5000;
+        /** Statement execution time above which a query is logged as slow, in milliseconds. */
+        public static final int SLOW_QUERY_THRESHOLD_MS = 500;
+        /** Statement execution time above which the concurrency limiter shrinks its limit, in milliseconds. */
+        public static final int LIMITER_TARGET_LATENCY_MS = 250;
+        /** Maximum time a request waits for a concurrency permit before being rejected, in milliseconds. */
+        public static final int LIMITER_MAX_WAIT_MS = 2000;
+        /** Maximum number of requests queued for a concurrency permit per pool. */
+        public static final int LIMITER_MAX_QUEUE = 100;
+        /** Default number of rows per chunk of a remote catalog cursor. */
+        public static final int CURSOR_DEFAULT_CHUNK_SIZE = 500;
+        /** Maximum number of rows per chunk of a remote catalog cursor. */
+        public static final int CURSOR_MAX_CHUNK_SIZE = 2000;
+        /** Idle time after which an open remote cursor is closed, in milliseconds. */
+        public static final long CURSOR_LEASE_MS = Time.MILLIS_PER_MINUTE;
+        /** Maximum number of remote cursors open at the same time; each holds a connection. */
+        public static final int MAX_OPEN_CURSORS = 8;
+    }
+
+    /**
+     * Recommendation engine constants.
+     */
+    public static class Recommendation {
+        /** Neighbours kept per book in the co-occurrence index. */
+        public static final int COOCCURRENCE_NEIGHBOURS = 50;
+        /** Interval between background rebuilds of the co-occurrence index. */
+        public static final long COOCCURRENCE_REBUILD_MS = Time.TIMEOUT_15_MINUTES;
+        /** Libraries with more books than this are ignored as co-occurrence signal. */
+        public static final int MAX_SHELF_SIZE = 1000;
+        /** Weight of an explicit suggestion relative to two books shelved together. */
+        public static final float SUGGESTION_WEIGHT = 3.0f;
+        /** Interval between checkpoints of the incrementally updated co-occurrence index. */
+        public static final long COOCCURRENCE_CHECKPOINT_MS = Time.TIMEOUT_5_MINUTES;
+        /** Default directory of the recommender checkpoints, relative to the server working directory. */
+        public static final String STATE_DIR = "./cache";
+        /** File in {@link #STATE_DIR} the co-occurrence index is checkpointed to, reloaded at startup. */
+        public static final String COOCCURRENCE_CHECKPOINT_FILE = "cooccurrence-index.bin";
+        /** Books added to larger libraries update co-occurrences only at the next rebuild. */
+        public static final int INCREMENTAL_MAX_SHELF_SIZE = 200;
+        /** Capacity of the write event queue; events beyond it are dropped until the next rebuild. */
+        public static final int EVENT_QUEUE_CAPACITY = 8192;
+        /** LSH bands of the content index; each band hashes {@link #MINHASH_ROWS} MinHash values. */
+        public static final int MINHASH_BANDS = 32;
+        /** MinHash values per LSH band. */
+        public static final int MINHASH_ROWS = 2;
+        /** Books kept per LSH bucket; bounds the candidates read by a lookup. */
+        public static final int LSH_MAX_BUCKET_SIZE = 128;
+        /** Candidates re-scored with exact Jaccard per lookup. */
+        public static final int LSH_MAX_CANDIDATES = 256;
+        /** Minimum Jaccard similarity of a content-based suggestion. */
+        public static final float CONTENT_MIN_SIMILARITY = 0.05f;
+        /** Interval between scans for books added to the catalog. */
+        public static final long CONTENT_REFRESH_MS = Time.TIMEOUT_5_MINUTES;
+        /** Latent factors per user and book in the collaborative filtering model. */
+        public static final int ALS_RANK = 32;
+        /** Regularization of the ALS solves, scaled by the number of ratings of the row. */
+        public static final float ALS_LAMBDA = 0.1f;
+        /** Alternating iterations per training run. */
+        public static final int ALS_ITERATIONS = 10;
+        /** Interval between training runs of the collaborative filtering model. */
+        public static final long ALS_RETRAIN_MS = Time.TIMEOUT_1_HOUR;
+        /** File in {@link #STATE_DIR} the trained factors are persisted to, reloaded at startup. */
+        public static final String ALS_MODEL_FILE = "als-model.bin";
+        /** Maximum number of recommended books per request, per user or per base book. */
+        public static final int MAX_USER_RECOMMENDATIONS = 50;
+        /** Reviews worth of prior pulling the average score of a book towards the global mean. */
+        public static final float POPULARITY_PRIOR_WEIGHT = 5.0f;
+        /** Weight of a library holding a book relative to a review, in the popularity engagement. */
+        public static final float POPULARITY_LIBRARY_WEIGHT = 1.0f;
+        /** Weight of a suggestion of a book relative to a review, in the popularity engagement. */
+        public static final float POPULARITY_SUGGESTION_WEIGHT = 0.5f;
+        /** Interval between full reloads of the popularity ranking. */
+        public static final long POPULARITY_REFRESH_MS = Time.TIMEOUT_15_MINUTES;
+        /** Maximum number of popular books per request. */
+        public static final int MAX_POPULAR_PAGE_SIZE = 100;
+        /** Weight of a review in the trending counters. */
+        public static final float TRENDING_REVIEW_WEIGHT = 1.0f;
+        /** Weight of a book added to a library in the trending counters. */
+        public static final float TRENDING_LIBRARY_WEIGHT = 1.0f;
+        /** Books tracked per trending window; requests can ask for at most this many. */
+        public static final int TRENDING_CANDIDATES = 256;
+        /** Books whose decayed count fell below this are no longer trending. */
+        public static final double TRENDING_MIN_SCORE = 0.5;
+        /** File in {@link #STATE_DIR} the trending counters are saved to at shutdown, reloaded at startup. */
+        public static final String TRENDING_CHECKPOINT_FILE = "trending-counters.bin";
     }
 
     /**